@@ -0,0 +1,106 @@
+package graph;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Reports, for each Graph backend and graph size, the estimated heap the
+ * graph retains and the bytes allocated per operation, to choose a backend
+ * for a corpus size from data.
+ *
+ * <p>Each graph has word-like labels and a Zipf-like out-degree, as
+ * VertexMemoryBenchmark builds. Footprints come from
+ * {@link FootprintAnalyzer}; allocation is the calling thread's allocated
+ * bytes, as HotSpot counts them, over a batch of each operation after a
+ * warm-up batch, divided by the batch size. ConcreteEdgesGraph scans every
+ * edge and ConcreteVerticesGraph every vertex per operation, so they are
+ * only measured on the smaller graphs, with smaller batches.
+ * Run with: {@code java -Xmx2g -cp bin graph.AllocationBenchmark [max vertices]}
+ */
+public class AllocationBenchmark {
+
+    private static final int BATCH = 20_000;
+    private static final int CONCRETE_EDGES_LIMIT = 2_000;
+    private static final int CONCRETE_VERTICES_LIMIT = 20_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile long sink;
+
+    private interface Operation {
+        void run(Graph<String> graph, String[] labels, Random random);
+    }
+
+    public static void main(String[] args) {
+        int maxVertices = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        System.out.println(FootprintAnalyzer.DEFAULT);
+        System.out.printf("%-22s %8s %8s %10s %9s %9s %9s %9s %9s%n", "backend", "vertices", "edges", "bytes/edge",
+                "B/add", "B/set", "B/bump", "B/targets", "B/sources");
+        for (int n = 1_000; n <= maxVertices; n *= 10) {
+            if (n <= CONCRETE_EDGES_LIMIT) {
+                measure("ConcreteEdgesGraph", n, BATCH / 10, ConcreteEdgesGraph::new);
+            }
+            if (n <= CONCRETE_VERTICES_LIMIT) {
+                measure("ConcreteVerticesGraph", n, BATCH / 10, ConcreteVerticesGraph::new);
+            }
+            measure("CompactVerticesGraph", n, BATCH, CompactVerticesGraph::new);
+        }
+    }
+
+    private static void measure(String name, int n, int batch, Supplier<Graph<String>> factory) {
+        String[] labels = new String[n + 2 * batch];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "w" + i;
+        }
+        Graph<String> graph = factory.get();
+        Random random = new Random(50);
+        for (int v = 0; v < n; v++) {
+            graph.add(labels[v]);
+            int degree = random.nextInt(10) == 0 ? 4 + random.nextInt(20) : 1 + random.nextInt(3);
+            for (int e = 0; e < degree; e++) {
+                graph.set(labels[v], labels[zipf(n, random)], 1 + random.nextInt(3));
+            }
+        }
+        FootprintAnalyzer.Footprint footprint = FootprintAnalyzer.DEFAULT.analyze(graph);
+
+        // Adds fresh vertices, then sets and bumps edges among existing ones
+        int[] next = { n };
+        double add = perOperation(graph, labels, batch, (g, l, r) -> g.add(l[next[0]++]));
+        double set = perOperation(graph, labels, batch,
+                (g, l, r) -> g.set(l[r.nextInt(n)], l[zipf(n, r)], 1 + r.nextInt(3)));
+        double bump = perOperation(graph, labels, batch, (g, l, r) -> {
+            String source = l[r.nextInt(n)];
+            String target = l[zipf(n, r)];
+            int weight = g.set(source, target, 1);
+            if (weight != 0) {
+                g.set(source, target, weight + 1);
+            }
+        });
+        double targets = perOperation(graph, labels, batch, (g, l, r) -> sink += g.targets(l[r.nextInt(n)]).size());
+        double sources = perOperation(graph, labels, batch, (g, l, r) -> sink += g.sources(l[zipf(n, r)]).size());
+        System.out.printf("%-22s %8d %8d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, footprint.vertexCount(),
+                footprint.edgeCount(), footprint.bytesPerEdge(), add, set, bump, targets, sources);
+    }
+
+    private static int zipf(int n, Random random) {
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n, random.nextDouble())) - 1);
+    }
+
+    /*
+     * Bytes allocated per run of operation, over a batch after a warm-up batch.
+     */
+    private static double perOperation(Graph<String> graph, String[] labels, int batch, Operation operation) {
+        Random random = new Random(51);
+        for (int i = 0; i < batch; i++) {
+            operation.run(graph, labels, random);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < batch; i++) {
+            operation.run(graph, labels, random);
+        }
+        return (THREADS.getThreadAllocatedBytes(thread) - before) / (double) batch;
+    }
+}
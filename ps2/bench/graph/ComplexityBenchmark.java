@@ -0,0 +1,71 @@
+package graph;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Checks how the Graph implementations that promise sublinear operations
+ * slow down as the graph grows, by timing GraphWorkload's operation mix.
+ *
+ * <p>Each implementation is filled with random edges, then timed on a
+ * random workload over its labels; the benchmark reports the best time per
+ * operation at each size and the slowdown from the smallest size to the
+ * largest. It exits with status 1 if any slowdown exceeds
+ * {@value #MAX_SLOWDOWN}x, as a regression to a linear scan would.
+ * Run with: {@code java -cp bin graph.ComplexityBenchmark [max edges]}
+ */
+public class ComplexityBenchmark {
+
+    /** Largest slowdown per operation accepted from the smallest graph to the largest. */
+    private static final double MAX_SLOWDOWN = 16;
+
+    private static final int SMALLEST = 1 << 10;
+    private static final int OPERATIONS = 20_000;
+    private static final int ROUNDS = 5;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        boolean sublinear = run("SnapshotGraph", SnapshotGraph::new, largest)
+                & run("CompactVerticesGraph", CompactVerticesGraph::new, largest)
+                & run("VersionedGraph", () -> new VersionedGraph<>(new SnapshotGraph<>()), largest)
+                & run("ShardedGraph", () -> ShardedGraph.inProcess(4), largest);
+        if (!sublinear) {
+            System.out.println("FAILED: slowdown above " + MAX_SLOWDOWN + "x");
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(String name, Supplier<Graph<String>> factory, int largest) {
+        System.out.println(name);
+        nanosPerOperation(factory.get(), SMALLEST); // Warm up the JIT
+        double small = 0;
+        double large = 0;
+        for (int edges = SMALLEST; edges <= largest; edges <<= 2) {
+            large = nanosPerOperation(factory.get(), edges);
+            small = edges == SMALLEST ? large : small;
+            System.out.printf("  %8d edges  %8.0f ns/op%n", edges, large);
+        }
+        System.out.printf("  slowdown      %8.1fx%n", large / small);
+        return large <= small * MAX_SLOWDOWN;
+    }
+
+    /*
+     * Fill a graph with about 'edges' random edges, then return the best
+     * time over several rounds of a workload over its labels, in
+     * nanoseconds per operation.
+     */
+    private static double nanosPerOperation(Graph<String> graph, int edges) {
+        int vertices = GraphWorkload.fill(graph, edges, Function.identity());
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            List<GraphWorkload.Operation> workload = GraphWorkload.generate(round, OPERATIONS, vertices);
+            long start = System.nanoTime();
+            sink += GraphWorkload.apply(workload, graph, Function.identity());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / OPERATIONS;
+    }
+}
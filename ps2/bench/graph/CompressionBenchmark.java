@@ -0,0 +1,106 @@
+package graph;
+
+import java.util.Random;
+
+/**
+ * Measures the memory a CompressedSnapshot saves over a CsrSnapshot of the
+ * same graph, and what decoding its rows costs.
+ *
+ * <p>The graph imitates a word graph: each vertex links to a few others
+ * drawn from a Zipf-like distribution, so a few hubs appear in most rows,
+ * and most weights are small. Scans sum the weights of every out-edge;
+ * lookups read the weight of random edges.
+ * Run with: {@code java -cp bin graph.CompressionBenchmark [vertices]}
+ */
+public class CompressionBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+    private static final int DEGREE = 8;
+
+    private static volatile long sink;
+
+    private interface Variant {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Random random = new Random(38);
+        PersistentGraph<Integer> graph = PersistentGraph.empty();
+        for (int v = 0; v < n; v++) {
+            graph = graph.withVertex(v);
+            for (int e = 0; e < DEGREE; e++) {
+                int target = (int) Math.min(n - 1, Math.floor(Math.pow(n, random.nextDouble())) - 1);
+                int weight = random.nextInt(10) == 0 ? 4 + random.nextInt(1000) : 1 + random.nextInt(2);
+                graph = graph.withEdge(v, target, weight);
+            }
+        }
+        CsrSnapshot<Integer> csr = CsrSnapshot.of(graph);
+        CompressedSnapshot<Integer> compressed = CompressedSnapshot.of(csr);
+
+        long csrBytes = 4L * (csr.outOffsets.length + csr.outTargets.length + csr.outWeights.length
+                + csr.inOffsets.length + csr.inSources.length + csr.inWeights.length);
+        System.out.printf("%d vertices, %d edges%n", csr.vertexCount(), csr.edgeCount());
+        System.out.printf("  %-12s %10d bytes %6.2f bytes/edge%n", "csr", csrBytes,
+                (double) csrBytes / csr.edgeCount());
+        System.out.printf("  %-12s %10d bytes %6.2f bytes/edge  (%.1fx smaller)%n", "compressed",
+                compressed.adjacencyBytes(), (double) compressed.adjacencyBytes() / csr.edgeCount(),
+                (double) csrBytes / compressed.adjacencyBytes());
+
+        measure("csr scan", csr.edgeCount(), () -> {
+            long sum = 0;
+            for (int v = 0; v < csr.vertexCount(); v++) {
+                for (int i = csr.outStart(v); i < csr.outEnd(v); i++) {
+                    sum += csr.outWeight(i) + csr.outTarget(i);
+                }
+            }
+            return sum;
+        });
+        measure("compressed scan", csr.edgeCount(), () -> {
+            long sum = 0;
+            for (int v = 0; v < compressed.vertexCount(); v++) {
+                CompressedSnapshot.EdgeCursor edges = compressed.outEdges(v);
+                while (edges.next()) {
+                    sum += edges.weight() + edges.vertex();
+                }
+            }
+            return sum;
+        });
+
+        int lookups = 1_000_000;
+        int[] sources = new int[lookups];
+        int[] targets = new int[lookups];
+        for (int q = 0; q < lookups; q++) {
+            sources[q] = random.nextInt(n);
+            targets[q] = random.nextInt(n);
+        }
+        measure("csr weight", lookups, () -> {
+            long sum = 0;
+            for (int q = 0; q < lookups; q++) {
+                sum += csr.weight(sources[q], targets[q]);
+            }
+            return sum;
+        });
+        measure("compressed weight", lookups, () -> {
+            long sum = 0;
+            for (int q = 0; q < lookups; q++) {
+                sum += compressed.weight(sources[q], targets[q]);
+            }
+            return sum;
+        });
+    }
+
+    private static void measure(String name, int operations, Variant variant) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += variant.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += variant.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-20s %8.2f ns/op%n", name, (double) best / operations);
+    }
+}
@@ -0,0 +1,71 @@
+package graph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures shipping a new version of a graph as a GraphDiff patch instead
+ * of as a full copy.
+ *
+ * <p>The new version adds, removes or reweights about one edge in a hundred. The benchmark
+ * reports the time to compute the diff, the size of the patch against the
+ * size of the whole new graph in the same encoding, and the time to apply
+ * the patch to a live copy of the old graph.
+ * Run with: {@code java -cp bin graph.DiffBenchmark [vertices]}
+ */
+public class DiffBenchmark {
+
+    private static final int DEGREE = 8;
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Random random = new Random(40);
+        PersistentGraph<Integer> before = PersistentGraph.empty();
+        for (int e = 0; e < DEGREE * n; e++) {
+            before = before.withEdge(random.nextInt(n), random.nextInt(n), 1 + random.nextInt(10));
+        }
+        PersistentGraph<Integer> after = before;
+        for (int e = 0; e < DEGREE * n / 100; e++) {
+            int source = random.nextInt(n);
+            List<Integer> targets = new ArrayList<>(after.targets(source).keySet());
+            int change = random.nextInt(3);
+            if (change == 0 || targets.isEmpty()) {
+                after = after.withEdge(source, random.nextInt(n), 1 + random.nextInt(10));
+            } else {
+                int target = targets.get(random.nextInt(targets.size()));
+                after = after.withEdge(source, target, change == 1 ? 0 : after.weight(source, target) + 1);
+            }
+        }
+
+        GraphDiff<Integer> diff = null;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            diff = GraphDiff.between(before, after);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(diff);
+        System.out.printf("  diff          %8.1f ms%n", best / 1e6);
+
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        diff.write(LabelCodec.INTEGER, new DataOutputStream(patch));
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        GraphDiff.between(PersistentGraph.<Integer>empty(), after).write(LabelCodec.INTEGER,
+                new DataOutputStream(full));
+        System.out.printf("  patch         %8d bytes%n  full graph    %8d bytes%n", patch.size(), full.size());
+
+        best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            SnapshotGraph<Integer> live = new SnapshotGraph<>();
+            GraphDiff.between(PersistentGraph.<Integer>empty(), before).applyTo(live);
+            long start = System.nanoTime();
+            diff.applyTo(live);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  apply patch   %8.1f ms%n", best / 1e6);
+    }
+}
@@ -0,0 +1,102 @@
+package graph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares two-hop bridge queries answered from hash maps of
+ * out-edges, as GraphPoet used to answer them, with AdjacencyIntersection's strategies on
+ * a CsrSnapshot of the same graph.
+ *
+ * <p>The graph has a few hubs adjacent to most vertices and many vertices
+ * of small degree, as a word graph does; queries pair hubs with hubs, hubs
+ * with ordinary vertices, and ordinary vertices with each other.
+ * Run with: {@code java -cp bin graph.IntersectionBenchmark [vertices]}
+ */
+public class IntersectionBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+    private static final int QUERIES = 5_000;
+    private static final int HUBS = 8;
+
+    private static volatile long sink;
+
+    private interface Variant {
+        long run(int[] sources, int[] targets);
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        Random random = new Random(37);
+        PersistentGraph<Integer> graph = PersistentGraph.empty();
+        for (int v = HUBS; v < n; v++) {
+            for (int e = 0; e < 4; e++) {
+                int other = random.nextInt(4) == 0 ? random.nextInt(HUBS) : random.nextInt(n);
+                graph = graph.withEdge(v, other, 1 + random.nextInt(5))
+                        .withEdge(other, v, 1 + random.nextInt(5));
+            }
+        }
+        CsrSnapshot<Integer> snapshot = CsrSnapshot.of(graph, Integer::compare);
+        Map<Integer, Map<Integer, Integer>> maps = new HashMap<>();
+        for (Integer vertex : graph.vertices()) {
+            maps.put(vertex, graph.targets(vertex));
+        }
+
+        for (String kind : new String[] { "hub-hub", "hub-leaf", "leaf-leaf" }) {
+            int[] sources = new int[QUERIES];
+            int[] targets = new int[QUERIES];
+            for (int q = 0; q < QUERIES; q++) {
+                sources[q] = kind.startsWith("hub") ? random.nextInt(HUBS) : HUBS + random.nextInt(n - HUBS);
+                targets[q] = kind.endsWith("hub") ? random.nextInt(HUBS) : HUBS + random.nextInt(n - HUBS);
+            }
+            System.out.println(kind + ":");
+            measure("maps", sources, targets, (s, t) -> {
+                long found = 0;
+                for (int q = 0; q < s.length; q++) {
+                    Integer bridge = null;
+                    int max = 0;
+                    for (Map.Entry<Integer, Integer> edge : maps.get(s[q]).entrySet()) {
+                        if (edge.getValue() > max && maps.get(edge.getKey()).containsKey(t[q])) {
+                            max = edge.getValue();
+                            bridge = edge.getKey();
+                        }
+                    }
+                    found += bridge == null ? 0 : bridge;
+                }
+                return found;
+            });
+            for (AdjacencyIntersection.Strategy strategy : AdjacencyIntersection.Strategy.values()) {
+                measure(strategy.toString(), sources, targets, (s, t) -> {
+                    long[] found = { 0 };
+                    for (int q = 0; q < s.length; q++) {
+                        AdjacencyIntersection.intersect(snapshot, snapshot.id(s[q]), snapshot.id(t[q]), strategy,
+                                (b, first, second) -> found[0] += first);
+                    }
+                    return found[0];
+                });
+            }
+            measure("adaptive bestBridge", sources, targets, (s, t) -> {
+                long found = 0;
+                for (int q = 0; q < s.length; q++) {
+                    found += AdjacencyIntersection.bestBridge(snapshot, snapshot.id(s[q]), snapshot.id(t[q]));
+                }
+                return found;
+            });
+        }
+    }
+
+    private static void measure(String name, int[] sources, int[] targets, Variant variant) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += variant.run(sources, targets);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += variant.run(sources, targets);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-22s %10.1f ns/query%n", name, (double) best / sources.length);
+    }
+}
@@ -0,0 +1,59 @@
+package graph;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap a word-like graph occupies in ConcreteVerticesGraph,
+ * with its two boxed maps per vertex, and in CompactVerticesGraph.
+ *
+ * <p>Each vertex is followed by one to three others in most cases, drawn
+ * from a Zipf-like distribution, so a few hubs collect most in-edges. Heap
+ * use is the difference in used memory after a full collection, before and
+ * after building the graph, so run with a fixed heap and nothing else
+ * going on.
+ * Run with: {@code java -Xms1g -Xmx1g -cp bin graph.VertexMemoryBenchmark [vertices]}
+ */
+public class VertexMemoryBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        measure("ConcreteVerticesGraph", n, ConcreteVerticesGraph::new);
+        measure("CompactVerticesGraph", n, CompactVerticesGraph::new);
+        measure("CompactVerticesGraph", 40 * n, CompactVerticesGraph::new);
+    }
+
+    private static void measure(String name, int n, Supplier<Graph<Integer>> factory) {
+        Random random = new Random(47);
+        long before = usedAfterGc();
+        long start = System.nanoTime();
+        Graph<Integer> graph = factory.get();
+        int edges = 0;
+        for (int v = 0; v < n; v++) {
+            graph.add(v);
+            int degree = random.nextInt(10) == 0 ? 4 + random.nextInt(20) : 1 + random.nextInt(3);
+            for (int e = 0; e < degree; e++) {
+                int target = (int) Math.min(n - 1, Math.floor(Math.pow(n, random.nextDouble())) - 1);
+                if (graph.set(v, target, 1 + random.nextInt(3)) == 0) {
+                    edges++;
+                }
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long bytes = usedAfterGc() - before;
+        sink = graph;
+        System.out.printf("%-22s %8d vertices %8d edges %10d bytes %7.1f bytes/edge %6d ms%n", name, n, edges,
+                bytes, (double) bytes / edges, millis);
+        sink = null;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
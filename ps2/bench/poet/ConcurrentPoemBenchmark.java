@@ -0,0 +1,133 @@
+package poet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures poem throughput while a writer keeps learning, with readers that
+ * take published adjacency blocks without locking, against the same poet
+ * behind one coarse lock shared by poem() and learn(), and against readers
+ * that also look bridges up in a {@link BridgeCache}, whose lookups do not
+ * lock either.
+ *
+ * <p>Each run starts a number of reader threads that generate poems and one
+ * writer that learns a short text at a time, for a fixed duration.
+ * Run with: {@code java -cp bin poet.ConcurrentPoemBenchmark [readers] [seconds]}
+ */
+public class ConcurrentPoemBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int CORPUS_WORDS = 1_000_000;
+    private static final int LEARN_WORDS = 200;
+
+    private static volatile long sink;
+
+    private interface Poet {
+        String poem(String input);
+
+        void learn(String text);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File corpus = File.createTempFile("corpus", ".txt");
+        corpus.deleteOnExit();
+        Files.write(corpus.toPath(), text(CORPUS_WORDS, new Random(48)).getBytes(StandardCharsets.UTF_8));
+
+        for (int round = 0; round < 2; round++) {
+            GraphPoet locked = new GraphPoet(corpus, new Vocabulary());
+            measure("coarse lock", readers, seconds, new Poet() {
+                @Override
+                public synchronized String poem(String input) {
+                    return locked.poem(input);
+                }
+
+                @Override
+                public synchronized void learn(String text) {
+                    locked.learn(text);
+                }
+            });
+            GraphPoet published = new GraphPoet(corpus, new Vocabulary());
+            measure("published blocks", readers, seconds, new Poet() {
+                @Override
+                public String poem(String input) {
+                    return published.poem(input);
+                }
+
+                @Override
+                public void learn(String text) {
+                    published.learn(text);
+                }
+            });
+            GraphPoet cached = new GraphPoet(corpus, new Vocabulary());
+            BridgeCache cache = cached.enableBridgeCache(1 << 16);
+            measure("blocks + cache", readers, seconds, new Poet() {
+                @Override
+                public String poem(String input) {
+                    return cached.poem(input);
+                }
+
+                @Override
+                public void learn(String text) {
+                    cached.learn(text);
+                }
+            });
+            System.out.println("  " + cache);
+        }
+    }
+
+    /*
+     * Zipf-like text over a synthetic vocabulary, so a few words are hubs.
+     */
+    private static String text(int words, Random random) {
+        StringBuilder text = new StringBuilder(words * 7);
+        for (int i = 0; i < words; i++) {
+            int rank = (int) Math.min(VOCABULARY - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(VOCABULARY))));
+            text.append('w').append(rank).append(i % 12 == 11 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+
+    private static void measure(String name, int readers, int seconds, Poet poet) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder poems = new LongAdder();
+        LongAdder learned = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            final Random random = new Random(r);
+            threads.add(new Thread(() -> {
+                long length = 0;
+                while (running.get()) {
+                    length += poet.poem(text(8, random)).length();
+                    poems.increment();
+                }
+                sink += length;
+            }));
+        }
+        threads.add(new Thread(() -> {
+            Random random = new Random(-1);
+            while (running.get()) {
+                poet.learn(text(LEARN_WORDS, random));
+                learned.increment();
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("%-18s %2d readers %12.0f poems/s %8.0f learns/s%n", name, readers,
+                poems.sum() / (double) seconds, learned.sum() / (double) seconds);
+    }
+}
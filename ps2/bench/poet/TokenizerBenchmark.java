@@ -0,0 +1,88 @@
+package poet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compares corpus tokenization by regular expression, as GraphPoet used to
+ * do it, with Tokenizer's word-at-a-time and byte-at-a-time scans.
+ *
+ * <p>Each variant splits a synthetic corpus into lowercased words; the
+ * "+ decode" variants also materialize them as strings, the work ingestion
+ * does before interning, and the others only visit the word spans.
+ * Run with: {@code java -cp bin poet.TokenizerBenchmark [megabytes]}
+ */
+public class TokenizerBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    private static volatile long sink;
+
+    private interface Variant {
+        long run(byte[] corpus);
+    }
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        byte[] corpus = corpus(megabytes << 20, new Random(35));
+
+        measure("regex split + toLowerCase", corpus, text -> {
+            long words = 0;
+            for (String token : new String(text, StandardCharsets.UTF_8).split("\\s+")) {
+                if (!token.isEmpty()) {
+                    words += token.toLowerCase().length();
+                }
+            }
+            return words;
+        });
+        measure("tokenizeScalar", corpus, text -> {
+            long[] bytes = { 0 };
+            Tokenizer.tokenizeScalar(text, 0, text.length, true, (word, start, end) -> bytes[0] += end - start);
+            return bytes[0];
+        });
+        measure("tokenize", corpus, text -> {
+            long[] bytes = { 0 };
+            Tokenizer.tokenize(text, 0, text.length, true, (word, start, end) -> bytes[0] += end - start);
+            return bytes[0];
+        });
+        measure("tokenizeScalar + decode", corpus, text -> {
+            long[] words = { 0 };
+            Tokenizer.tokenizeScalar(text, 0, text.length, true,
+                    (bytes, start, end) -> words[0] += Tokenizer.decode(bytes, start, end).length());
+            return words[0];
+        });
+        measure("tokenize + decode", corpus, text -> {
+            long[] words = { 0 };
+            Tokenizer.tokenize(text, 0, text.length, true,
+                    (bytes, start, end) -> words[0] += Tokenizer.decode(bytes, start, end).length());
+            return words[0];
+        });
+    }
+
+    private static byte[] corpus(int size, Random random) {
+        String[] words = { "The", "system", "of", "Mugar", "OMNI", "theater", "sound", "is", "a", "test",
+                "exploration", "strange", "new", "worlds", "civilizations", "To", "seek", "out", "life," };
+        String[] separators = { " ", " ", " ", "  ", "\n", "\t", " \r\n" };
+        StringBuilder text = new StringBuilder(size + 32);
+        while (text.length() < size) {
+            text.append(words[random.nextInt(words.length)]);
+            text.append(separators[random.nextInt(separators.length)]);
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void measure(String name, byte[] corpus, Variant variant) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += variant.run(corpus.clone());
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] copy = corpus.clone();
+            long start = System.nanoTime();
+            sink += variant.run(copy);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-28s %8.1f MB/s%n", name, corpus.length / (best / 1e9) / (1 << 20));
+    }
+}
@@ -0,0 +1,230 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of nonnegative edge weights stored in the narrowest width
+ * that holds them all: one byte each while every weight is below 256, two
+ * bytes below 65536, and four bytes otherwise. Storing a wider weight
+ * promotes the whole list; it is never narrowed again.
+ *
+ * <p>Most edges of a word graph have weight 1, so a backend that keeps its
+ * weights here pays one byte per edge instead of a boxed Integer. Counts
+ * are added with {@link #increment}, which saturates at
+ * {@link Integer#MAX_VALUE} instead of wrapping around.
+ *
+ * <p>Not threadsafe: a list must be confined to one thread, or published
+ * safely and not mutated afterwards.
+ */
+public final class AdaptiveWeights {
+
+    private static final int BYTE_LIMIT = 0xFF;
+    private static final int SHORT_LIMIT = 0xFFFF;
+
+    private byte[] bytes;
+    private short[] shorts;
+    private int[] ints;
+    private int size = 0;
+
+    // Abstraction function:
+    //   Represents the list of weights w_0..w_{size-1}, where w_i is
+    //   bytes[i] & 0xFF, shorts[i] & 0xFFFF or ints[i], whichever array is
+    //   not null.
+    //
+    // Representation invariant:
+    //   - exactly one of bytes, shorts and ints is not null
+    //   - 0 <= size <= length of that array
+    //   - ints[i] >= 0 for i < size
+    //
+    // Safety from rep exposure:
+    //   All fields are private and no array is ever returned.
+
+    /**
+     * Make an empty list.
+     */
+    public AdaptiveWeights() {
+        this(4);
+    }
+
+    /**
+     * Make an empty list with room for some weights.
+     *
+     * @param capacity number of weights to make room for, nonnegative
+     */
+    public AdaptiveWeights(int capacity) {
+        this.bytes = new byte[capacity];
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert (bytes != null ? 1 : 0) + (shorts != null ? 1 : 0) + (ints != null ? 1 : 0) == 1;
+        assert size >= 0 && size <= capacity();
+    }
+
+    /**
+     * @param a a nonnegative int
+     * @param b a nonnegative int
+     * @return a + b, or Integer.MAX_VALUE if the sum is larger
+     */
+    public static int saturatedAdd(int a, int b) {
+        int sum = a + b;
+        return sum < 0 ? Integer.MAX_VALUE : sum;
+    }
+
+    /** @return number of weights in this list */
+    public int size() {
+        return size;
+    }
+
+    /** @return bytes used per weight: 1, 2 or 4 */
+    public int width() {
+        return bytes != null ? 1 : shorts != null ? 2 : 4;
+    }
+
+    /** @return bytes of the array holding the weights, including spare room */
+    public long footprint() {
+        return (long) capacity() * width();
+    }
+
+    private int capacity() {
+        return bytes != null ? bytes.length : shorts != null ? shorts.length : ints.length;
+    }
+
+    /**
+     * @param index index of a weight, 0 <= index < size()
+     * @return the weight at index
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return bytes != null ? bytes[index] & BYTE_LIMIT
+                : shorts != null ? shorts[index] & SHORT_LIMIT : ints[index];
+    }
+
+    /**
+     * Replace a weight.
+     *
+     * @param index index of a weight, 0 <= index < size()
+     * @param weight new weight, nonnegative
+     * @return the previous weight at index
+     */
+    public int set(int index, int weight) {
+        int previous = get(index);
+        store(index, weight);
+        checkRep();
+        return previous;
+    }
+
+    /**
+     * Add to a weight, saturating at Integer.MAX_VALUE.
+     *
+     * @param index index of a weight, 0 <= index < size()
+     * @param delta amount to add, nonnegative
+     * @return the new weight at index
+     */
+    public int increment(int index, int delta) {
+        int weight = saturatedAdd(get(index), delta);
+        store(index, weight);
+        return weight;
+    }
+
+    /**
+     * Add a weight at the end of the list.
+     *
+     * @param weight weight to add, nonnegative
+     */
+    public void append(int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
+        if (size == capacity()) {
+            grow(Math.max(4, size * 2));
+        }
+        size++;
+        store(size - 1, weight);
+        checkRep();
+    }
+
+    /**
+     * Remove a weight, moving the later weights down by one.
+     *
+     * @param index index of a weight, 0 <= index < size()
+     * @return the removed weight
+     */
+    public int remove(int index) {
+        int previous = get(index);
+        Object array = bytes != null ? bytes : shorts != null ? shorts : ints;
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        checkRep();
+        return previous;
+    }
+
+    private void store(int index, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
+        if (bytes != null && weight > BYTE_LIMIT) {
+            promote(weight > SHORT_LIMIT ? 4 : 2);
+        } else if (shorts != null && weight > SHORT_LIMIT) {
+            promote(4);
+        }
+        if (bytes != null) {
+            bytes[index] = (byte) weight;
+        } else if (shorts != null) {
+            shorts[index] = (short) weight;
+        } else {
+            ints[index] = weight;
+        }
+    }
+
+    /*
+     * Copy the weights into arrays of the given width.
+     */
+    private void promote(int width) {
+        int capacity = capacity();
+        if (width == 2) {
+            shorts = new short[capacity];
+            for (int i = 0; i < size; i++) {
+                shorts[i] = (short) (bytes[i] & BYTE_LIMIT);
+            }
+        } else {
+            int[] wider = new int[capacity];
+            for (int i = 0; i < size; i++) {
+                wider[i] = bytes != null ? bytes[i] & BYTE_LIMIT : shorts[i] & SHORT_LIMIT;
+            }
+            ints = wider;
+            shorts = null;
+        }
+        bytes = null;
+    }
+
+    private void grow(int capacity) {
+        if (bytes != null) {
+            bytes = Arrays.copyOf(bytes, capacity);
+        } else if (shorts != null) {
+            shorts = Arrays.copyOf(shorts, capacity);
+        } else {
+            ints = Arrays.copyOf(ints, capacity);
+        }
+    }
+
+    /**
+     * Release spare room, once no more weights will be appended.
+     */
+    public void trim() {
+        if (capacity() > size) {
+            grow(size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            result.append(i == 0 ? "" : ", ").append(get(i));
+        }
+        return result.append("]").toString();
+    }
+}
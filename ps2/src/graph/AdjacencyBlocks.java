@@ -0,0 +1,334 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable adjacency of a graph whose vertices are small nonnegative
+ * integers, kept as one block of sorted neighbors per vertex and direction,
+ * for publishing a graph to readers while a writer changes it.
+ *
+ * <p>A writer changes its mutable graph, then makes the next version with
+ * {@link #withEdges}, and publishes it by a single volatile write
+ * (read-copy-update). The blocks are kept in chunks of {@value #CHUNK}
+ * vertices, and the next version copies only the blocks of the vertices
+ * whose edges changed, the chunks that hold them, and the short list of
+ * chunks; it shares everything else with the version before. Readers take
+ * whatever version is published and query it without locks or retries, so
+ * they never wait for the writer, and every query on one version sees one
+ * consistent graph.
+ *
+ * <p>Two-hop queries intersect the sorted blocks as
+ * {@link AdjacencyIntersection} does for {@link CsrSnapshot}s.
+ */
+public final class AdjacencyBlocks {
+
+    /** The adjacency of the empty graph, at version 0. */
+    public static final AdjacencyBlocks EMPTY = new AdjacencyBlocks(0, 0, new int[0][][], new int[0][][],
+            new int[0][][], new int[0][][]);
+
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK = 1 << CHUNK_BITS; // Vertices whose blocks are copied together
+    private static final int[][] EMPTY_CHUNK = new int[CHUNK][]; // Shared by chunks without edges; never changed
+
+    private final long version;
+    private final int length;
+    private final int[][][] outTargets;
+    private final int[][][] outWeights;
+    private final int[][][] inSources;
+    private final int[][][] inWeights;
+
+    // Abstraction function:
+    //   Represents, at 'version', the graph with an edge v -> t of weight w
+    //   for every v and i with t = out(v)[i] and w = outWeights at the same
+    //   place, where out(v) = outTargets[v / CHUNK][v % CHUNK], and likewise
+    //   for the other three arrays.
+    //
+    // Representation invariant:
+    //   - the four arrays have ceil(length / CHUNK) chunks, none null, each
+    //     of CHUNK blocks; a chunk without edges may be EMPTY_CHUNK
+    //   - a block is null iff the vertex has no edges in that direction;
+    //     otherwise its neighbors are sorted, distinct and nonnegative, below
+    //     length, with positive weights in the matching block
+    //   - t is in out(s) with weight w iff s is in in(t) with weight w
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final, and no array is ever returned.
+    //
+    // Thread safety argument:
+    //   Neither the arrays, the chunks nor the blocks are mutated after
+    //   construction, and all fields are final, so a version may be shared
+    //   between threads once published.
+
+    private AdjacencyBlocks(long version, int length, int[][][] outTargets, int[][][] outWeights,
+            int[][][] inSources, int[][][] inWeights) {
+        this.version = version;
+        this.length = length;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert outTargets.length == chunks(length) && outWeights.length == outTargets.length;
+        assert inSources.length == outTargets.length && inWeights.length == outTargets.length;
+        for (int chunk = 0; chunk < outTargets.length; chunk++) {
+            assert outTargets[chunk] != null && outWeights[chunk] != null;
+            assert inSources[chunk] != null && inWeights[chunk] != null;
+        }
+    }
+
+    private static int chunks(int length) {
+        return (length + CHUNK - 1) >>> CHUNK_BITS;
+    }
+
+    private static int[] block(int[][][] chunks, int vertex) {
+        return chunks[vertex >>> CHUNK_BITS][vertex & CHUNK - 1];
+    }
+
+    /**
+     * Make the adjacency of a whole graph, reading each vertex's edges once
+     * rather than collecting every edge first.
+     *
+     * @param graph graph whose vertices are nonnegative; not changed meanwhile
+     * @param version version of the new adjacency
+     * @return the adjacency of graph
+     * @throws IllegalArgumentException if a vertex of graph is negative
+     */
+    public static AdjacencyBlocks of(Graph<Integer> graph, long version) {
+        Set<Integer> vertices = graph.vertices();
+        int length = 0;
+        for (int vertex : vertices) {
+            if (vertex < 0) {
+                throw new IllegalArgumentException("Negative vertex: " + vertex);
+            }
+            length = Math.max(length, vertex + 1);
+        }
+        int[][][] outTargets = new int[chunks(length)][CHUNK][];
+        int[][][] outWeights = new int[chunks(length)][CHUNK][];
+        int[][][] inSources = new int[chunks(length)][CHUNK][];
+        int[][][] inWeights = new int[chunks(length)][CHUNK][];
+        for (int vertex : vertices) {
+            fill(graph.targets(vertex), vertex, outTargets, outWeights);
+            fill(graph.sources(vertex), vertex, inSources, inWeights);
+        }
+        return new AdjacencyBlocks(version, length, outTargets, outWeights, inSources, inWeights);
+    }
+
+    /*
+     * Set the blocks of vertex to its edges in one direction, sorted by
+     * neighbor, or leave them null if it has none.
+     */
+    private static void fill(Map<Integer, Integer> edges, int vertex, int[][][] neighbors, int[][][] blockWeights) {
+        if (edges.isEmpty()) {
+            return;
+        }
+        int[] sorted = new int[edges.size()];
+        int i = 0;
+        for (int neighbor : edges.keySet()) {
+            sorted[i++] = neighbor;
+        }
+        Arrays.sort(sorted);
+        int[] weights = new int[sorted.length];
+        for (i = 0; i < sorted.length; i++) {
+            weights[i] = edges.get(sorted[i]);
+        }
+        neighbors[vertex >>> CHUNK_BITS][vertex & CHUNK - 1] = sorted;
+        blockWeights[vertex >>> CHUNK_BITS][vertex & CHUNK - 1] = weights;
+    }
+
+    /**
+     * Pack an edge into a key for {@link #withEdges}.
+     *
+     * @param source source vertex, nonnegative
+     * @param target target vertex, nonnegative
+     * @return a key that differs for every pair of vertices
+     */
+    public static long key(int source, int target) {
+        return (long) source << 32 | target;
+    }
+
+    /**
+     * Make the next version of this adjacency, with some edges changed.
+     * Only the blocks of the vertices those edges leave or enter are copied;
+     * the new version shares the others with this one.
+     *
+     * @param weights the new weight of each changed edge, keyed by
+     *        {@link #key}; a weight of zero removes the edge
+     * @param version version of the new adjacency
+     * @return this adjacency with the edges in weights set to their weights
+     * @throws IllegalArgumentException if a vertex is negative or a weight
+     *         is negative
+     */
+    public AdjacencyBlocks withEdges(Map<Long, Integer> weights, long version) {
+        long[] out = new long[weights.size()];
+        long[] in = new long[weights.size()];
+        int length = this.length;
+        int k = 0;
+        for (Map.Entry<Long, Integer> edge : weights.entrySet()) {
+            long key = edge.getKey();
+            int source = (int) (key >>> 32);
+            int target = (int) key;
+            if (source < 0 || target < 0 || edge.getValue() < 0) {
+                throw new IllegalArgumentException("Negative vertex or weight: " + source + " -> " + target + " ("
+                        + edge.getValue() + ")");
+            }
+            length = Math.max(length, Math.max(source, target) + 1);
+            out[k] = key;
+            in[k] = key(target, source);
+            k++;
+        }
+        Arrays.sort(out);
+        Arrays.sort(in);
+        int[][][] newOutTargets = grow(outTargets, chunks(length));
+        int[][][] newOutWeights = grow(outWeights, chunks(length));
+        int[][][] newInSources = grow(inSources, chunks(length));
+        int[][][] newInWeights = grow(inWeights, chunks(length));
+        merge(out, false, weights, newOutTargets, newOutWeights);
+        merge(in, true, weights, newInSources, newInWeights);
+        return new AdjacencyBlocks(version, length, newOutTargets, newOutWeights, newInSources, newInWeights);
+    }
+
+    /*
+     * Copy the list of chunks to the given number of chunks, filling the new
+     * ones with the shared empty chunk, since no edge need touch a chunk
+     * between the old length and a new vertex.
+     */
+    private static int[][][] grow(int[][][] chunks, int count) {
+        int[][][] grown = Arrays.copyOf(chunks, count);
+        Arrays.fill(grown, chunks.length, count, EMPTY_CHUNK);
+        return grown;
+    }
+
+    /*
+     * Merge sorted changed edges, keyed by vertex then neighbor, into the
+     * blocks of each vertex they name, copying each chunk they change once.
+     * The keys of 'weights' are the changed keys with the vertices swapped
+     * iff swapped is true.
+     */
+    private static void merge(long[] changed, boolean swapped, Map<Long, Integer> weights, int[][][] neighbors,
+            int[][][] blockWeights) {
+        int copied = -1;
+        int start = 0;
+        while (start < changed.length) {
+            int vertex = (int) (changed[start] >>> 32);
+            int end = start;
+            while (end < changed.length && (int) (changed[end] >>> 32) == vertex) {
+                end++;
+            }
+            int chunk = vertex >>> CHUNK_BITS;
+            if (chunk != copied) {
+                // Vertices come in increasing order, so each chunk is copied once
+                neighbors[chunk] = neighbors[chunk].clone();
+                blockWeights[chunk] = blockWeights[chunk].clone();
+                copied = chunk;
+            }
+            int[] oldNeighbors = neighbors[chunk][vertex & CHUNK - 1];
+            int[] oldWeights = blockWeights[chunk][vertex & CHUNK - 1];
+            int oldSize = oldNeighbors == null ? 0 : oldNeighbors.length;
+            int[] mergedNeighbors = new int[oldSize + end - start];
+            int[] mergedWeights = new int[mergedNeighbors.length];
+            int size = 0;
+            int i = 0;
+            int j = start;
+            while (i < oldSize || j < end) {
+                int neighbor;
+                int weight;
+                if (j == end || i < oldSize && oldNeighbors[i] < (int) changed[j]) {
+                    neighbor = oldNeighbors[i];
+                    weight = oldWeights[i];
+                    i++;
+                } else {
+                    neighbor = (int) changed[j];
+                    weight = weights.get(swapped ? key(neighbor, vertex) : changed[j]);
+                    if (i < oldSize && oldNeighbors[i] == neighbor) {
+                        i++;
+                    }
+                    j++;
+                }
+                if (weight > 0) {
+                    mergedNeighbors[size] = neighbor;
+                    mergedWeights[size] = weight;
+                    size++;
+                }
+            }
+            neighbors[chunk][vertex & CHUNK - 1] = size == 0 ? null : Arrays.copyOf(mergedNeighbors, size);
+            blockWeights[chunk][vertex & CHUNK - 1] = size == 0 ? null : Arrays.copyOf(mergedWeights, size);
+            start = end;
+        }
+    }
+
+    /** @return the version given when this adjacency was made */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @param vertex a nonnegative vertex
+     * @return number of edges from vertex
+     */
+    public int outDegree(int vertex) {
+        return vertex < length && block(outTargets, vertex) != null ? block(outTargets, vertex).length : 0;
+    }
+
+    /**
+     * @param vertex a nonnegative vertex
+     * @return number of edges to vertex
+     */
+    public int inDegree(int vertex) {
+        return vertex < length && block(inSources, vertex) != null ? block(inSources, vertex).length : 0;
+    }
+
+    /**
+     * Visit every vertex b with edges source -> b and b -> target, in
+     * increasing order of b.
+     *
+     * @param source the first vertex, nonnegative
+     * @param target the last vertex, nonnegative
+     * @param visitor receives each such b with its two edge weights
+     */
+    public void intersect(int source, int target, AdjacencyIntersection.Visitor visitor) {
+        if (outDegree(source) > 0 && inDegree(target) > 0) {
+            AdjacencyIntersection.intersect(block(outTargets, source), block(outWeights, source),
+                    block(inSources, target), block(inWeights, target), visitor);
+        }
+    }
+
+    /**
+     * Find the best bridge from source to target: the vertex b with edges
+     * source -> b and b -> target whose first edge is heaviest, breaking
+     * ties by the smallest vertex.
+     *
+     * @param source the first vertex, nonnegative
+     * @param target the last vertex, nonnegative
+     * @return the best bridge, or -1 if there is none
+     */
+    public int bestBridge(int source, int target) {
+        if (outDegree(source) == 0 || inDegree(target) == 0) {
+            return -1;
+        }
+        return AdjacencyIntersection.bestBridge(block(outTargets, source), block(outWeights, source),
+                block(inSources, target), block(inWeights, target));
+    }
+
+    /**
+     * @param source a nonnegative vertex
+     * @param target a nonnegative vertex
+     * @return weight of the edge source -> target, or zero if there is none
+     */
+    public int weight(int source, int target) {
+        if (outDegree(source) == 0) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(block(outTargets, source), target);
+        return i >= 0 ? block(outWeights, source)[i] : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AdjacencyBlocks version " + version + " over " + length + " vertices";
+    }
+}
@@ -0,0 +1,309 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Intersection of sorted adjacency rows, for two-hop queries on
+ * {@link CsrSnapshot}s.
+ *
+ * <p>The vertices b on two-edge paths source -> b -> target are exactly the
+ * intersection of the out-row of source with the in-row of target. Both rows
+ * are sorted, so the intersection is computed by one of three strategies,
+ * chosen by the ratio of the rows' lengths s &lt;= l:
+ * <ul><li> merge: walk both rows together, O(s + l); best when they are of
+ *          similar length
+ *     <li> galloping: for each element of the shorter row, search the longer
+ *          row exponentially from the last match, O(s log(l / s))
+ *     <li> hash probe: look each element of the shorter row up in an
+ *          open-addressed hash index of the longer row, O(s); the index is
+ *          built once per row and kept with the snapshot, so this is used
+ *          only for long (hub) rows </ul>
+ */
+public final class AdjacencyIntersection {
+
+    /** Strategies for intersecting two sorted rows. */
+    public enum Strategy { MERGE, GALLOP, HASH_PROBE }
+
+    /**
+     * Receives the elements of an intersection.
+     */
+    public interface Visitor {
+        /**
+         * Visit a vertex in both rows.
+         *
+         * @param vertex number of the vertex
+         * @param firstWeight weight of the edge from source to vertex
+         * @param secondWeight weight of the edge from vertex to target
+         */
+        void visit(int vertex, int firstWeight, int secondWeight);
+    }
+
+    /** The longer row must be more than this many times longer to skip merging. */
+    static final int SKEW_RATIO = 16;
+
+    /** The longer row must be at least this long to be worth indexing. */
+    static final int HASH_MIN_LENGTH = 1024;
+
+    private AdjacencyIntersection() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /**
+     * @param shorter length of the shorter row
+     * @param longer length of the longer row
+     * @return the strategy used for rows of these lengths
+     */
+    public static Strategy strategy(int shorter, int longer) {
+        if ((long) shorter * SKEW_RATIO >= longer) {
+            return Strategy.MERGE;
+        }
+        return longer >= HASH_MIN_LENGTH ? Strategy.HASH_PROBE : Strategy.GALLOP;
+    }
+
+    /**
+     * Visit every vertex b with edges source -> b and b -> target, in
+     * increasing order of b.
+     *
+     * @param graph graph to search
+     * @param source number of the first vertex
+     * @param target number of the last vertex
+     * @param visitor receives each such b with its two edge weights
+     */
+    public static void intersect(CsrSnapshot<?> graph, int source, int target, Visitor visitor) {
+        int outLength = graph.outOffsets[source + 1] - graph.outOffsets[source];
+        int inLength = graph.inOffsets[target + 1] - graph.inOffsets[target];
+        intersect(graph, source, target, strategy(Math.min(outLength, inLength), Math.max(outLength, inLength)),
+                visitor);
+    }
+
+    /**
+     * Find the best bridge from source to target: the vertex b with edges
+     * source -> b and b -> target whose first edge is heaviest, breaking
+     * ties by the smallest vertex number.
+     *
+     * @param graph graph to search
+     * @param source number of the first vertex
+     * @param target number of the last vertex
+     * @return number of the best bridge, or -1 if there is none
+     */
+    public static int bestBridge(CsrSnapshot<?> graph, int source, int target) {
+        Best best = new Best();
+        intersect(graph, source, target, best);
+        return best.vertex;
+    }
+
+    /**
+     * Visit every vertex in both of two sorted rows held in their own
+     * arrays, in increasing order, merging or galloping as
+     * {@link #strategy} chooses; rows without an index are galloped instead
+     * of hash probed.
+     *
+     * @param out sorted distinct targets of the source
+     * @param outWeights weights of the edges to out
+     * @param in sorted distinct sources of the target
+     * @param inWeights weights of the edges from in
+     * @param visitor receives each vertex in both rows with its two edge
+     *        weights
+     */
+    public static void intersect(int[] out, int[] outWeights, int[] in, int[] inWeights, Visitor visitor) {
+        if (strategy(Math.min(out.length, in.length), Math.max(out.length, in.length)) == Strategy.MERGE) {
+            for (int i = 0, j = 0; i < out.length && j < in.length;) {
+                if (out[i] < in[j]) {
+                    i++;
+                } else if (out[i] > in[j]) {
+                    j++;
+                } else {
+                    visitor.visit(out[i], outWeights[i], inWeights[j]);
+                    i++;
+                    j++;
+                }
+            }
+        } else if (out.length <= in.length) {
+            for (int i = 0, j = 0; i < out.length && j < in.length; i++) {
+                j = gallop(in, j, in.length, out[i]);
+                if (j < in.length && in[j] == out[i]) {
+                    visitor.visit(out[i], outWeights[i], inWeights[j]);
+                }
+            }
+        } else {
+            for (int j = 0, i = 0; j < in.length && i < out.length; j++) {
+                i = gallop(out, i, out.length, in[j]);
+                if (i < out.length && out[i] == in[j]) {
+                    visitor.visit(in[j], outWeights[i], inWeights[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the best bridge between two sorted rows held in their own arrays,
+     * as {@link #bestBridge(CsrSnapshot, int, int)} does.
+     *
+     * @param out sorted distinct targets of the source
+     * @param outWeights weights of the edges to out
+     * @param in sorted distinct sources of the target
+     * @param inWeights weights of the edges from in
+     * @return the best bridge, or -1 if there is none
+     */
+    public static int bestBridge(int[] out, int[] outWeights, int[] in, int[] inWeights) {
+        Best best = new Best();
+        intersect(out, outWeights, in, inWeights, best);
+        return best.vertex;
+    }
+
+    /**
+     * Keeps the first vertex with the heaviest first edge; vertices arrive
+     * in increasing order, so ties go to the smallest.
+     */
+    private static final class Best implements Visitor {
+        private int vertex = -1;
+        private int weight = 0;
+
+        @Override
+        public void visit(int vertex, int firstWeight, int secondWeight) {
+            if (firstWeight > weight) {
+                this.vertex = vertex;
+                this.weight = firstWeight;
+            }
+        }
+    }
+
+    /*
+     * Intersect the out-row of source with the in-row of target using the
+     * given strategy.
+     */
+    static void intersect(CsrSnapshot<?> graph, int source, int target, Strategy strategy, Visitor visitor) {
+        int outFrom = graph.outOffsets[source];
+        int outTo = graph.outOffsets[source + 1];
+        int inFrom = graph.inOffsets[target];
+        int inTo = graph.inOffsets[target + 1];
+        if (outFrom == outTo || inFrom == inTo) {
+            return;
+        }
+        int[] out = graph.outTargets;
+        int[] in = graph.inSources;
+        boolean outShorter = outTo - outFrom <= inTo - inFrom;
+        switch (strategy) {
+        case MERGE:
+            merge(graph, outFrom, outTo, inFrom, inTo, visitor);
+            break;
+        case GALLOP:
+            if (outShorter) {
+                for (int i = outFrom, j = inFrom; i < outTo && j < inTo; i++) {
+                    j = gallop(in, j, inTo, out[i]);
+                    if (j < inTo && in[j] == out[i]) {
+                        visitor.visit(out[i], graph.outWeights[i], graph.inWeights[j]);
+                    }
+                }
+            } else {
+                for (int j = inFrom, i = outFrom; j < inTo && i < outTo; j++) {
+                    i = gallop(out, i, outTo, in[j]);
+                    if (i < outTo && out[i] == in[j]) {
+                        visitor.visit(in[j], graph.outWeights[i], graph.inWeights[j]);
+                    }
+                }
+            }
+            break;
+        case HASH_PROBE:
+            if (outShorter) {
+                int[] index = graph.index(false, target);
+                for (int i = outFrom; i < outTo; i++) {
+                    int j = probe(index, in, inFrom, out[i]);
+                    if (j >= 0) {
+                        visitor.visit(out[i], graph.outWeights[i], graph.inWeights[j]);
+                    }
+                }
+            } else {
+                int[] index = graph.index(true, source);
+                for (int j = inFrom; j < inTo; j++) {
+                    int i = probe(index, out, outFrom, in[j]);
+                    if (i >= 0) {
+                        visitor.visit(in[j], graph.outWeights[i], graph.inWeights[j]);
+                    }
+                }
+            }
+            break;
+        default:
+            throw new AssertionError(strategy);
+        }
+    }
+
+    private static void merge(CsrSnapshot<?> graph, int i, int outTo, int j, int inTo, Visitor visitor) {
+        int[] out = graph.outTargets;
+        int[] in = graph.inSources;
+        while (i < outTo && j < inTo) {
+            int a = out[i];
+            int b = in[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                visitor.visit(a, graph.outWeights[i], graph.inWeights[j]);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /*
+     * Returns the first index k in [from, to) with row[k] >= key, or to if
+     * there is none, probing from 'from' at doubling distances.
+     */
+    static int gallop(int[] row, int from, int to, int key) {
+        if (from >= to || row[from] >= key) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        while (low + step < to && row[low + step] < key) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low + step, to);
+        int found = Arrays.binarySearch(row, low + 1, high, key);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Build a hash index of row[from, to): an open-addressed table whose
+     * occupied slots hold k - from + 1 for each position k.
+     *
+     * @param row sorted distinct keys
+     * @param from start of the row
+     * @param to end of the row
+     * @return the index
+     */
+    static int[] buildIndex(int[] row, int from, int to) {
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * (to - from)) - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int k = from; k < to; k++) {
+            int slot = hash(row[k]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = k - from + 1;
+        }
+        return table;
+    }
+
+    /*
+     * Returns the position of key in row[from, ...) using its index, or -1.
+     */
+    private static int probe(int[] index, int[] row, int from, int key) {
+        int mask = index.length - 1;
+        for (int slot = hash(key) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int k = from + index[slot] - 1;
+            if (row[k] == key) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}
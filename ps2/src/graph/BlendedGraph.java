@@ -0,0 +1,326 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A read-only view of the weighted union of several graphs.
+ *
+ * <p>Each component graph has a share, and the shares are scaled to sum to
+ * one. The view has every vertex of a component with a positive share, and
+ * an edge wherever such a component has one. Its weight is the
+ * share-weighted sum of the components' weights for that edge, rounded to
+ * the nearest integer but never below 1. So blending two word graphs 70/30
+ * gives an edge the weight 0.7 * a + 0.3 * b, where a and b are its weights
+ * in the two graphs, or zero where a graph lacks the edge. Shares apply to
+ * raw weights: to blend corpora of very different sizes by their adjacency
+ * frequencies, scale the shares by the inverse of the corpus sizes.
+ *
+ * <p>Nothing is copied: each observer combines the components' answers when
+ * it is called, so the view always reflects the current components. A view
+ * made {@link #withMaterializer with a materializer} counts its queries,
+ * and once a given number arrive it copies the blend into a
+ * {@link CsrSnapshot} on an executor. Queries are then answered from the
+ * copy, until a component changes. A change is detected through the
+ * {@link #version()} of components that are VersionedGraphs or
+ * BlendedGraphs; other components must not be mutated while a view of them
+ * is materialized. The copy is then dropped and, if queries stay frequent,
+ * rebuilt.
+ *
+ * <p>The mutators of the view throw UnsupportedOperationException. The view
+ * is threadsafe if its components are.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class BlendedGraph<L> implements Graph<L> {
+
+    private final List<Graph<L>> graphs;
+    private final double[] shares;
+    private final long hotQueries;
+    private final Executor executor;
+    private final Graph<L> blend = new Blend();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicBoolean materializing = new AtomicBoolean();
+    private volatile Materialized<L> materialized = null;
+
+    // Abstraction function:
+    //   Represents the graph whose vertices are those of graphs.get(i) for
+    //   each i with shares[i] > 0, and whose edge s -> t, where some such
+    //   graph has it, has weight max(1, round(sum_i shares[i] * w_i)) for w_i
+    //   its weight in graphs.get(i), or zero if absent.
+    //
+    // Representation invariant:
+    //   - graphs.size() == shares.length > 0
+    //   - shares are nonnegative and sum to 1, up to rounding
+    //   - hotQueries > 0 iff executor != null
+    //   - if 'materialized' is not null, its snapshot equals this graph as of
+    //     its version
+    //
+    // Safety from rep exposure:
+    //   All fields are private. 'graphs' is an unmodifiable copy of the list
+    //   of components, which are shared on purpose and only read; 'shares'
+    //   is never returned. Observers return new or unmodifiable collections.
+    //
+    // Thread safety argument:
+    //   The components and shares are never changed by this view. 'queries'
+    //   and 'materializing' are atomic; 'materialized' is volatile and refers
+    //   to an immutable snapshot, so readers see it fully constructed. At most
+    //   one materialization runs at a time, guarded by 'materializing'.
+
+    private BlendedGraph(List<Graph<L>> graphs, double[] shares, long hotQueries, Executor executor) {
+        this.graphs = graphs;
+        this.shares = shares;
+        this.hotQueries = hotQueries;
+        this.executor = executor;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert graphs.size() == shares.length && shares.length > 0;
+        double sum = 0;
+        for (double share : shares) {
+            assert share >= 0;
+            sum += share;
+        }
+        assert Math.abs(sum - 1) < 1e-9;
+        assert (hotQueries > 0) == (executor != null);
+    }
+
+    /**
+     * Make a view of the weighted union of graphs.
+     *
+     * @param <L> type of vertex labels
+     * @param graphs the component graphs, at least one
+     * @param mix the share of each component, in the same order as graphs;
+     *        nonnegative and finite, and not all zero
+     * @return a view of the blend of graphs, without a materializer
+     * @throws IllegalArgumentException if graphs is empty, the lists differ
+     *         in size, or a share is negative or not finite, or all are zero
+     */
+    public static <L> BlendedGraph<L> of(List<? extends Graph<L>> graphs, List<Double> mix) {
+        if (graphs.isEmpty() || graphs.size() != mix.size()) {
+            throw new IllegalArgumentException("Need one share for each of at least one graph");
+        }
+        double sum = 0;
+        for (double share : mix) {
+            if (share < 0 || Double.isInfinite(share) || Double.isNaN(share)) {
+                throw new IllegalArgumentException("Shares must be nonnegative and finite: " + mix);
+            }
+            sum += share;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("Shares must not all be zero");
+        }
+        double[] shares = new double[mix.size()];
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = mix.get(i) / sum;
+        }
+        return new BlendedGraph<>(Collections.unmodifiableList(new ArrayList<>(graphs)), shares, 0, null);
+    }
+
+    /**
+     * Make a view of the same blend that materializes itself when hot.
+     *
+     * @param hotQueries number of queries after which, since this view was
+     *        made or its copy went stale, the blend is copied; must be
+     *        positive
+     * @param executor executor to copy the blend on
+     * @return a new view of the same blend, with a materializer
+     */
+    public BlendedGraph<L> withMaterializer(int hotQueries, Executor executor) {
+        if (hotQueries <= 0) {
+            throw new IllegalArgumentException("hotQueries must be positive");
+        }
+        return new BlendedGraph<>(graphs, shares, hotQueries, executor);
+    }
+
+    /**
+     * @return the sum of the versions of the components that are
+     *         VersionedGraphs or BlendedGraphs; it changes whenever one of
+     *         them does
+     */
+    public long version() {
+        long version = 0;
+        for (Graph<L> graph : graphs) {
+            if (graph instanceof VersionedGraph) {
+                version += ((VersionedGraph<L>) graph).version();
+            } else if (graph instanceof BlendedGraph) {
+                version += ((BlendedGraph<L>) graph).version();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return true iff queries are currently answered from a materialized
+     *         copy of the blend
+     */
+    public boolean isMaterialized() {
+        Materialized<L> current = materialized;
+        return current != null && current.version == version();
+    }
+
+    /**
+     * A copy of the blend, valid while the components are at its version.
+     */
+    private static final class Materialized<L> {
+        private final long version;
+        private final CsrSnapshot<L> snapshot;
+
+        private Materialized(long version, CsrSnapshot<L> snapshot) {
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /*
+     * Choose the graph to answer a query: the materialized copy if it is
+     * current, otherwise the lazy blend, counting the query towards the next
+     * materialization.
+     */
+    private Graph<L> reader() {
+        Materialized<L> current = materialized;
+        if (current != null) {
+            if (current.version == version()) {
+                return current.snapshot;
+            }
+            materialized = null;
+            queries.set(0);
+        }
+        if (executor != null && queries.incrementAndGet() >= hotQueries && materializing.compareAndSet(false, true)) {
+            executor.execute(this::materialize);
+        }
+        return blend;
+    }
+
+    /*
+     * Copy the blend and publish the copy if no component changed meanwhile.
+     */
+    private void materialize() {
+        try {
+            long version = version();
+            CsrSnapshot<L> snapshot = CsrSnapshot.of(blend);
+            if (version() == version) {
+                materialized = new Materialized<>(version, snapshot);
+            }
+            queries.set(0);
+        } finally {
+            materializing.set(false);
+        }
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        throw new UnsupportedOperationException("Blended graphs are read-only views");
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("Blended graphs are read-only views");
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("Blended graphs are read-only views");
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return reader().vertices();
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        return reader().sources(target);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        return reader().targets(source);
+    }
+
+    /**
+     * The blend computed from the components at each call.
+     */
+    private class Blend implements Graph<L> {
+
+        @Override
+        public boolean add(L vertex) {
+            throw new UnsupportedOperationException("Blended graphs are read-only views");
+        }
+
+        @Override
+        public int set(L source, L target, int weight) {
+            throw new UnsupportedOperationException("Blended graphs are read-only views");
+        }
+
+        @Override
+        public boolean remove(L vertex) {
+            throw new UnsupportedOperationException("Blended graphs are read-only views");
+        }
+
+        @Override
+        public Set<L> vertices() {
+            Set<L> vertices = new HashSet<>();
+            for (int i = 0; i < shares.length; i++) {
+                if (shares[i] > 0) {
+                    vertices.addAll(graphs.get(i).vertices());
+                }
+            }
+            return Collections.unmodifiableSet(vertices);
+        }
+
+        @Override
+        public Map<L, Integer> sources(L target) {
+            return combine(graph -> graph.sources(target));
+        }
+
+        @Override
+        public Map<L, Integer> targets(L source) {
+            return combine(graph -> graph.targets(source));
+        }
+
+        /*
+         * Blend the rows that row() reads from each component.
+         */
+        private Map<L, Integer> combine(Function<Graph<L>, Map<L, Integer>> row) {
+            Map<L, Double> sums = new HashMap<>();
+            for (int i = 0; i < shares.length; i++) {
+                if (shares[i] > 0) {
+                    double share = shares[i];
+                    row.apply(graphs.get(i)).forEach((label, weight) -> sums.merge(label, share * weight,
+                            Double::sum));
+                }
+            }
+            Map<L, Integer> blended = new HashMap<>();
+            sums.forEach((label, sum) -> blended.put(label, weight(sum)));
+            return blended;
+        }
+    }
+
+    /*
+     * Round a blended weight, keeping edges that some component has.
+     */
+    private static int weight(double sum) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(sum)));
+    }
+
+    @Override
+    public String toString() {
+        List<String> percentages = new ArrayList<>();
+        for (double share : shares) {
+            percentages.add(Math.round(share * 100) + "%");
+        }
+        return "BlendedGraph of " + graphs.size() + " graphs, shares " + percentages
+                + (isMaterialized() ? ", materialized" : "");
+    }
+}
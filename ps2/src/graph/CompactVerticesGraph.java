@@ -0,0 +1,475 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable vertex-centric Graph that keeps adjacency in primitive arrays
+ * instead of a map object per vertex.
+ *
+ * <p>Each vertex has a number, and for each direction a row of its
+ * neighbors' numbers with the edge weights. A vertex without edges in a
+ * direction has no row at all. A row of up to {@link #INLINE_LIMIT} edges
+ * is a small int array of neighbor and weight pairs, searched linearly;
+ * most words of a Zipfian corpus have one to three neighbors, so a typical
+ * edge costs eight bytes per direction. A longer row becomes an
+ * open-addressed table of neighbor numbers with linear probing, with its
+ * weights in {@link AdaptiveWeights}, so lookups stay O(1) on hub vertices
+ * and each weight takes one byte while it is small. A table that shrinks to
+ * half the inline limit becomes a small array again.
+ *
+ * <p>The numbers of removed vertices are reused by later ones. Not
+ * threadsafe.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class CompactVerticesGraph<L> implements Graph<L> {
+
+    /** Most edges a row holds as a small array. */
+    static final int INLINE_LIMIT = 8;
+
+    private static final int EMPTY = -1;
+
+    private final Map<L, Integer> ids = new HashMap<>();
+    private final List<L> labels = new ArrayList<>();
+    private int[] free = new int[0];
+    private int freeCount = 0;
+    private Object[] out = new Object[0];
+    private Object[] in = new Object[0];
+    private int[] outDegree = new int[0];
+    private int[] inDegree = new int[0];
+
+    // Abstraction function:
+    //   Represents the graph with a vertex labels.get(v) for each v in the
+    //   values of 'ids', and an edge labels.get(s) -> labels.get(t) of
+    //   weight w for each (t, w) in the row out[s].
+    //
+    // Representation invariant:
+    //   - ids.get(labels.get(v)) == v for every number v in use; the numbers
+    //     not in use are free[0..freeCount-1], and labels.get(v) is null
+    //     for them
+    //   - out, in, outDegree and inDegree are at least labels.size() long
+    //   - a row is null iff its degree is 0; a row of degree above
+    //     INLINE_LIMIT is a Table of that many neighbors, one of degree at
+    //     most INLINE_LIMIT / 2 is an int[] starting with that many
+    //     (neighbor, weight) pairs, and one in between may be either
+    //   - neighbors in a row are distinct numbers in use, weights positive
+    //   - t is in out[s] with weight w iff s is in in[t] with weight w
+    //
+    // Safety from rep exposure:
+    //   All fields are private; observers return new collections.
+    //
+    // Thread safety argument:
+    //   This type is not threadsafe.
+
+    /**
+     * Create an empty graph.
+     */
+    public CompactVerticesGraph() {
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert ids.size() + freeCount == labels.size();
+        assert out.length >= labels.size() && in.length >= labels.size();
+    }
+
+    /**
+     * An open-addressed set of neighbor numbers, probed linearly, with the
+     * weight of the neighbor in each slot.
+     */
+    private static final class Table {
+        private int[] keys;
+        private final AdaptiveWeights weights;
+        private int size = 0;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            weights = new AdaptiveWeights(capacity);
+            for (int i = 0; i < capacity; i++) {
+                weights.append(0);
+            }
+        }
+
+        private int mask() {
+            return keys.length - 1;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /*
+         * The slot holding key, or the empty slot where it belongs.
+         */
+        private int slot(int key) {
+            int slot = hash(key) & mask();
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask();
+            }
+            return slot;
+        }
+
+        private int get(int key) {
+            int slot = slot(key);
+            return keys[slot] == EMPTY ? 0 : weights.get(slot);
+        }
+
+        /*
+         * Set the weight of key, growing the table first if needed; return
+         * the previous weight.
+         */
+        private int put(int key, int weight) {
+            int slot = slot(key);
+            if (keys[slot] == key) {
+                return weights.set(slot, weight);
+            }
+            keys[slot] = key;
+            weights.set(slot, weight);
+            size++;
+            return 0;
+        }
+
+        /*
+         * Remove key, shifting later entries of its probe run back so that
+         * no tombstones are needed; return its weight, or 0 if absent.
+         */
+        private int remove(int key) {
+            int slot = slot(key);
+            if (keys[slot] == EMPTY) {
+                return 0;
+            }
+            int previous = weights.get(slot);
+            int hole = slot;
+            for (int next = (hole + 1) & mask(); keys[next] != EMPTY; next = (next + 1) & mask()) {
+                int home = hash(keys[next]) & mask();
+                // Move the entry at next into the hole unless its home lies
+                // cyclically in (hole, next]
+                if (hole <= next ? home <= hole || home > next : home <= hole && home > next) {
+                    keys[hole] = keys[next];
+                    weights.set(hole, weights.get(next));
+                    hole = next;
+                }
+            }
+            keys[hole] = EMPTY;
+            weights.set(hole, 0);
+            size--;
+            return previous;
+        }
+
+        private boolean full() {
+            return (size + 1) * 2 > keys.length;
+        }
+    }
+
+    /*
+     * Allocate a number for a new vertex.
+     */
+    private int allocate(L label) {
+        int v;
+        if (freeCount > 0) {
+            v = free[--freeCount];
+            labels.set(v, label);
+        } else {
+            v = labels.size();
+            labels.add(label);
+            if (v >= out.length) {
+                int capacity = Math.max(16, out.length * 2);
+                out = Arrays.copyOf(out, capacity);
+                in = Arrays.copyOf(in, capacity);
+                outDegree = Arrays.copyOf(outDegree, capacity);
+                inDegree = Arrays.copyOf(inDegree, capacity);
+            }
+        }
+        ids.put(label, v);
+        return v;
+    }
+
+    private int idOrAdd(L label) {
+        Integer id = ids.get(label);
+        return id != null ? id : allocate(label);
+    }
+
+    /*
+     * Weight of neighbor in a row, or 0.
+     */
+    private static int get(Object row, int degree, int neighbor) {
+        if (row instanceof Table) {
+            return ((Table) row).get(neighbor);
+        }
+        int[] pairs = (int[]) row;
+        for (int i = 0; i < 2 * degree; i += 2) {
+            if (pairs[i] == neighbor) {
+                return pairs[i + 1];
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Set the positive weight of neighbor in rows[v], returning the
+     * previous weight.
+     */
+    private static int put(Object[] rows, int[] degrees, int v, int neighbor, int weight) {
+        Object row = rows[v];
+        int degree = degrees[v];
+        if (row instanceof Table) {
+            Table table = (Table) row;
+            if (table.full() && table.get(neighbor) == 0) {
+                table = rehash(table, table.keys.length * 2);
+                rows[v] = table;
+            }
+            int previous = table.put(neighbor, weight);
+            if (previous == 0) {
+                degrees[v]++;
+            }
+            return previous;
+        }
+        int[] pairs = (int[]) row;
+        for (int i = 0; i < 2 * degree; i += 2) {
+            if (pairs[i] == neighbor) {
+                int previous = pairs[i + 1];
+                pairs[i + 1] = weight;
+                return previous;
+            }
+        }
+        if (degree == INLINE_LIMIT) {
+            Table table = new Table(4 * INLINE_LIMIT);
+            for (int i = 0; i < 2 * degree; i += 2) {
+                table.put(pairs[i], pairs[i + 1]);
+            }
+            table.put(neighbor, weight);
+            rows[v] = table;
+        } else {
+            if (pairs == null || pairs.length < 2 * (degree + 1)) {
+                pairs = pairs == null ? new int[2] : Arrays.copyOf(pairs, Math.min(2 * INLINE_LIMIT, pairs.length * 2));
+                rows[v] = pairs;
+            }
+            pairs[2 * degree] = neighbor;
+            pairs[2 * degree + 1] = weight;
+        }
+        degrees[v]++;
+        return 0;
+    }
+
+    /*
+     * Remove neighbor from rows[v], returning its weight, or 0 if absent.
+     */
+    private static int delete(Object[] rows, int[] degrees, int v, int neighbor) {
+        Object row = rows[v];
+        if (row == null) {
+            return 0;
+        }
+        int degree = degrees[v];
+        if (row instanceof Table) {
+            Table table = (Table) row;
+            int previous = table.remove(neighbor);
+            if (previous != 0) {
+                degrees[v]--;
+                if (table.size <= INLINE_LIMIT / 2) {
+                    rows[v] = inline(table);
+                }
+            }
+            return previous;
+        }
+        int[] pairs = (int[]) row;
+        for (int i = 0; i < 2 * degree; i += 2) {
+            if (pairs[i] == neighbor) {
+                int previous = pairs[i + 1];
+                // Move the last pair into the gap
+                pairs[i] = pairs[2 * degree - 2];
+                pairs[i + 1] = pairs[2 * degree - 1];
+                degrees[v]--;
+                if (degrees[v] == 0) {
+                    rows[v] = null;
+                }
+                return previous;
+            }
+        }
+        return 0;
+    }
+
+    private static Table rehash(Table table, int capacity) {
+        Table larger = new Table(capacity);
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            if (table.keys[slot] != EMPTY) {
+                larger.put(table.keys[slot], table.weights.get(slot));
+            }
+        }
+        return larger;
+    }
+
+    private static int[] inline(Table table) {
+        int[] pairs = new int[2 * INLINE_LIMIT];
+        int k = 0;
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            if (table.keys[slot] != EMPTY) {
+                pairs[k++] = table.keys[slot];
+                pairs[k++] = table.weights.get(slot);
+            }
+        }
+        return pairs;
+    }
+
+    /*
+     * Call visitor with each (neighbor, weight) of a row.
+     */
+    private static void forEach(Object row, int degree, EdgeVisitor visitor) {
+        if (row instanceof Table) {
+            Table table = (Table) row;
+            for (int slot = 0; slot < table.keys.length; slot++) {
+                if (table.keys[slot] != EMPTY) {
+                    visitor.visit(table.keys[slot], table.weights.get(slot));
+                }
+            }
+        } else if (row != null) {
+            int[] pairs = (int[]) row;
+            for (int i = 0; i < 2 * degree; i += 2) {
+                visitor.visit(pairs[i], pairs[i + 1]);
+            }
+        }
+    }
+
+    private interface EdgeVisitor {
+        void visit(int neighbor, int weight);
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        if (ids.containsKey(vertex)) {
+            return false;
+        }
+        allocate(vertex);
+        checkRep();
+        return true;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
+        if (weight == 0) {
+            Integer s = ids.get(source);
+            Integer t = ids.get(target);
+            if (s == null || t == null) {
+                return 0;
+            }
+            int previous = delete(out, outDegree, s, t);
+            if (previous != 0) {
+                delete(in, inDegree, t, s);
+            }
+            checkRep();
+            return previous;
+        }
+        int s = idOrAdd(source);
+        int t = idOrAdd(target);
+        int previous = put(out, outDegree, s, t, weight);
+        put(in, inDegree, t, s, weight);
+        checkRep();
+        return previous;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        Integer id = ids.remove(vertex);
+        if (id == null) {
+            return false;
+        }
+        int v = id;
+        forEach(out[v], outDegree[v], (target, weight) -> {
+            if (target != v) {
+                delete(in, inDegree, target, v);
+            }
+        });
+        forEach(in[v], inDegree[v], (source, weight) -> {
+            if (source != v) {
+                delete(out, outDegree, source, v);
+            }
+        });
+        out[v] = null;
+        in[v] = null;
+        outDegree[v] = 0;
+        inDegree[v] = 0;
+        labels.set(v, null);
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, Math.max(8, free.length * 2));
+        }
+        free[freeCount++] = v;
+        checkRep();
+        return true;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return new HashSet<>(ids.keySet());
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        return row(in, inDegree, target);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        return row(out, outDegree, source);
+    }
+
+    private Map<L, Integer> row(Object[] rows, int[] degrees, L label) {
+        Map<L, Integer> map = new HashMap<>();
+        Integer v = ids.get(label);
+        if (v != null) {
+            forEach(rows[v], degrees[v], (neighbor, weight) -> map.put(labels.get(neighbor), weight));
+        }
+        return map;
+    }
+
+    /**
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @return weight of the edge from source to target, or zero if there is
+     *         none
+     */
+    public int weight(L source, L target) {
+        Integer s = ids.get(source);
+        Integer t = ids.get(target);
+        return s == null || t == null || out[s] == null ? 0 : get(out[s], outDegree[s], t);
+    }
+
+    /**
+     * @return bytes of the arrays holding the adjacency of this graph, in
+     *         both directions, including spare room and the per-vertex
+     *         arrays, but not object headers or the label map
+     */
+    public long adjacencyBytes() {
+        long bytes = 8L * out.length + 8L * in.length + 4L * outDegree.length + 4L * inDegree.length;
+        for (int v = 0; v < labels.size(); v++) {
+            bytes += rowBytes(out[v]) + rowBytes(in[v]);
+        }
+        return bytes;
+    }
+
+    private static long rowBytes(Object row) {
+        if (row instanceof Table) {
+            Table table = (Table) row;
+            return 4L * table.keys.length + table.weights.footprint();
+        }
+        return row == null ? 0 : 4L * ((int[]) row).length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (L label : ids.keySet()) {
+            result.append(label).append(" -> ").append(targets(label)).append("\n");
+        }
+        return result.toString();
+    }
+}
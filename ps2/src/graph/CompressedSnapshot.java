@@ -0,0 +1,377 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of a graph with its adjacency compressed, for large
+ * graphs that are read far more than they are changed.
+ *
+ * <p>Like a {@link CsrSnapshot}, vertices are numbered 0..n-1 and each
+ * vertex has a row of targets and a row of sources in increasing order. Here
+ * a row is a byte string: each edge is the gap from the previous neighbor
+ * number, shifted left two bits, as a varint; weights 1 to 3 fill the two
+ * low bits, and any other weight leaves them zero and follows as its own
+ * varint. Vertices are numbered by decreasing degree, so the neighbors most
+ * rows share get the smallest numbers and the shortest gaps. A word graph's
+ * edges typically take one or two bytes each instead of eight.
+ *
+ * <p>Rows are read with an {@link EdgeCursor}, which decodes one edge at a
+ * time without allocating. A snapshot is also a read-only Graph; its
+ * mutators throw UnsupportedOperationException.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class CompressedSnapshot<L> implements Graph<L> {
+
+    private static final int SMALL_WEIGHTS = 3;
+
+    private final List<L> labels;
+    private final Map<L, Integer> ids;
+    private final int edgeCount;
+    private final int[] outOffsets;
+    private final byte[] outData;
+    private final int[] inOffsets;
+    private final byte[] inData;
+
+    // Abstraction function:
+    //   Represents the graph with vertices labels.get(0..n-1), n =
+    //   labels.size(), and an edge labels.get(v) -> labels.get(t) of weight w
+    //   for each (t, w) decoded from outData[outOffsets[v], outOffsets[v+1]).
+    //
+    // Representation invariant:
+    //   - ids.get(labels.get(v)) == v for all v, and labels are distinct
+    //   - outOffsets and inOffsets have length n + 1, start at 0, never
+    //     decrease, and end at the length of their data
+    //   - each row decodes to strictly increasing neighbor numbers below n
+    //     with positive weights, edgeCount edges in all
+    //   - the in-rows hold exactly the edges of the out-rows, reversed
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final. The arrays are never returned;
+    //   cursors only read them. Observers return new or unmodifiable
+    //   collections.
+    //
+    // Thread safety argument:
+    //   The rep is never mutated after construction and all fields are
+    //   final, so a snapshot may be shared between threads. Each cursor
+    //   belongs to the thread that made it.
+
+    private CompressedSnapshot(List<L> labels, int edgeCount, int[] outOffsets, byte[] outData,
+            int[] inOffsets, byte[] inData) {
+        this.labels = Collections.unmodifiableList(new ArrayList<>(labels));
+        this.ids = new HashMap<>();
+        for (int v = 0; v < labels.size(); v++) {
+            ids.put(labels.get(v), v);
+        }
+        this.edgeCount = edgeCount;
+        this.outOffsets = outOffsets;
+        this.outData = outData;
+        this.inOffsets = inOffsets;
+        this.inData = inData;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert ids.size() == labels.size();
+        assert outOffsets.length == labels.size() + 1 && inOffsets.length == labels.size() + 1;
+        assert outOffsets[labels.size()] == outData.length;
+        assert inOffsets[labels.size()] == inData.length;
+    }
+
+    /**
+     * Take a compressed snapshot of a graph, as {@link CsrSnapshot#of(Graph)}.
+     * The graph must not be mutated meanwhile.
+     *
+     * @param <L> type of vertex labels in graph
+     * @param graph graph to copy
+     * @return a compressed snapshot of graph
+     */
+    public static <L> CompressedSnapshot<L> of(Graph<L> graph) {
+        if (graph instanceof CompressedSnapshot) {
+            return (CompressedSnapshot<L>) graph;
+        }
+        return of(CsrSnapshot.of(graph));
+    }
+
+    /**
+     * Compress a CSR snapshot.
+     *
+     * @param <L> type of vertex labels in csr
+     * @param csr snapshot to compress
+     * @return a compressed snapshot of the same graph
+     */
+    public static <L> CompressedSnapshot<L> of(CsrSnapshot<L> csr) {
+        int n = csr.vertexCount();
+
+        // Number vertices by decreasing degree, breaking ties by old number
+        long[] byDegree = new long[n];
+        for (int v = 0; v < n; v++) {
+            long degree = (long) csr.outEnd(v) - csr.outStart(v) + csr.inEnd(v) - csr.inStart(v);
+            byDegree[v] = (Integer.MAX_VALUE - Math.min(degree, Integer.MAX_VALUE)) << 32 | v;
+        }
+        Arrays.sort(byDegree);
+        int[] renumber = new int[n];
+        List<L> labels = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            int v = (int) byDegree[k];
+            renumber[v] = k;
+            labels.add(csr.label(v));
+        }
+
+        int[] outOffsets = new int[n + 1];
+        int[] inOffsets = new int[n + 1];
+        byte[] outData = encode(labels.size(), csr.outOffsets, csr.outTargets, csr.outWeights, byDegree, renumber,
+                outOffsets);
+        byte[] inData = encode(labels.size(), csr.inOffsets, csr.inSources, csr.inWeights, byDegree, renumber,
+                inOffsets);
+        return new CompressedSnapshot<>(labels, csr.edgeCount(), outOffsets, outData, inOffsets, inData);
+    }
+
+    /*
+     * Encode the rows of a CSR direction in the new numbering, filling
+     * offsets with the start of each new row, and return the data.
+     */
+    private static byte[] encode(int n, int[] rowOffsets, int[] neighbors, int[] weights, long[] order,
+            int[] renumber, int[] offsets) {
+        Encoder encoder = new Encoder(neighbors.length + n);
+        long[] row = new long[0];
+        for (int k = 0; k < n; k++) {
+            int v = (int) order[k];
+            int from = rowOffsets[v];
+            int length = rowOffsets[v + 1] - from;
+            if (row.length < length) {
+                row = new long[Math.max(length, row.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                row[i] = ((long) renumber[neighbors[from + i]] << 32) | weights[from + i];
+            }
+            Arrays.sort(row, 0, length);
+            offsets[k] = encoder.size;
+            int previous = -1;
+            for (int i = 0; i < length; i++) {
+                int neighbor = (int) (row[i] >>> 32);
+                int weight = (int) row[i];
+                long gap = neighbor - previous - 1;
+                previous = neighbor;
+                if (weight <= SMALL_WEIGHTS) {
+                    encoder.varint(gap << 2 | weight);
+                } else {
+                    encoder.varint(gap << 2);
+                    encoder.varint(weight);
+                }
+            }
+        }
+        offsets[n] = encoder.size;
+        return Arrays.copyOf(encoder.bytes, encoder.size);
+    }
+
+    /**
+     * A growable byte array written as unsigned LEB128 varints.
+     */
+    private static final class Encoder {
+        private byte[] bytes;
+        private int size = 0;
+
+        Encoder(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void varint(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+
+    /**
+     * Reads one row of a compressed snapshot, an edge at a time. A cursor
+     * is not threadsafe.
+     */
+    public static final class EdgeCursor {
+
+        private final byte[] data;
+        private final int end;
+        private int position;
+        private int vertex = -1;
+        private int weight = 0;
+
+        // Abstraction function:
+        //   Represents the edges encoded in data[position, end), with
+        //   (vertex, weight) the edge read most recently, if any.
+        //
+        // Representation invariant:
+        //   - position <= end
+        //
+        // Safety from rep exposure:
+        //   All fields are private; 'data' is shared with the snapshot, which
+        //   never changes it, and is never returned.
+
+        private EdgeCursor(byte[] data, int start, int end) {
+            this.data = data;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Move to the next edge of the row.
+         *
+         * @return true if there was another edge, false if the row is done
+         */
+        public boolean next() {
+            if (position >= end) {
+                return false;
+            }
+            long code = varint();
+            vertex += (int) (code >>> 2) + 1;
+            int low = (int) code & 3;
+            weight = low != 0 ? low : (int) varint();
+            return true;
+        }
+
+        private long varint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        /** @return number of the neighbor at the current edge */
+        public int vertex() {
+            return vertex;
+        }
+
+        /** @return weight of the current edge */
+        public int weight() {
+            return weight;
+        }
+    }
+
+    /** @return number of vertices */
+    public int vertexCount() {
+        return labels.size();
+    }
+
+    /** @return number of edges */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return bytes of the arrays holding the adjacency of this snapshot,
+     *         in both directions
+     */
+    public long adjacencyBytes() {
+        return outData.length + inData.length + 4L * (outOffsets.length + inOffsets.length);
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return the label of that vertex
+     */
+    public L label(int vertex) {
+        return labels.get(vertex);
+    }
+
+    /**
+     * @param label a label
+     * @return the number of the vertex with that label, or -1 if none
+     */
+    public int id(L label) {
+        Integer id = ids.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return a cursor over the out-edges of vertex, in increasing order of
+     *         target
+     */
+    public EdgeCursor outEdges(int vertex) {
+        return new EdgeCursor(outData, outOffsets[vertex], outOffsets[vertex + 1]);
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return a cursor over the in-edges of vertex, in increasing order of
+     *         source
+     */
+    public EdgeCursor inEdges(int vertex) {
+        return new EdgeCursor(inData, inOffsets[vertex], inOffsets[vertex + 1]);
+    }
+
+    /**
+     * @param source number of a source vertex
+     * @param target number of a target vertex
+     * @return weight of the edge source -> target, or zero if there is none
+     */
+    public int weight(int source, int target) {
+        EdgeCursor edges = outEdges(source);
+        while (edges.next()) {
+            if (edges.vertex() >= target) {
+                return edges.vertex() == target ? edges.weight() : 0;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return Collections.unmodifiableSet(ids.keySet());
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        int v = id(target);
+        return v < 0 ? new HashMap<>() : toMap(inEdges(v));
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        int v = id(source);
+        return v < 0 ? new HashMap<>() : toMap(outEdges(v));
+    }
+
+    private Map<L, Integer> toMap(EdgeCursor edges) {
+        Map<L, Integer> map = new HashMap<>();
+        while (edges.next()) {
+            map.put(labels.get(edges.vertex()), edges.weight());
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedSnapshot with " + vertexCount() + " vertices and " + edgeCount() + " edges";
+    }
+}
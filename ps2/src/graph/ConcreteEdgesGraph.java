@@ -44,16 +44,29 @@ public class ConcreteEdgesGraph implements Graph<String> {
 
     @Override
     public int set(String source, String target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
         // Check if the edge already exists
-        for (Edge edge : edges) {
+        for (int i = 0; i < edges.size(); i++) {
+            Edge edge = edges.get(i);
             if (edge.getSource().equals(source) && edge.getTarget().equals(target)) {
                 int previousWeight = edge.getWeight();
-                edge.setWeight(weight);
+                if (weight == 0) {
+                    edges.remove(i);
+                } else {
+                    edge.setWeight(weight);
+                }
                 return previousWeight;
             }
         }
+        if (weight == 0) {
+            return 0; // Removing a missing edge changes nothing
+        }
 
-        // Edge does not exist, create a new one
+        // Edge does not exist, create a new one between (possibly new) vertices
+        vertices.add(source);
+        vertices.add(target);
         Edge newEdge = new Edge(source, target, weight);
         edges.add(newEdge);
         return 0; // No previous weight
@@ -81,10 +94,6 @@ public class ConcreteEdgesGraph implements Graph<String> {
 
     @Override
     public Map<String, Integer> sources(String target) {
-        if (!vertices.contains(target)) {
-            throw new IllegalArgumentException("Target vertex does not exist");
-        }
-
         Map<String, Integer> sourcesMap = new HashMap<>();
         for (Edge edge : edges) {
             if (edge.getTarget().equals(target)) {
@@ -96,10 +105,6 @@ public class ConcreteEdgesGraph implements Graph<String> {
 
     @Override
     public Map<String, Integer> targets(String source) {
-        if (!vertices.contains(source)) {
-            throw new IllegalArgumentException("Source vertex does not exist");
-        }
-
         Map<String, Integer> targetsMap = new HashMap<>();
         for (Edge edge : edges) {
             if (edge.getSource().equals(source)) {
@@ -17,9 +17,9 @@ import java.util.Set;
  * <p>
  * PS2 instructions: you MUST use the provided rep.
  */
-public class ConcreteVerticesGraph implements Graph<String> {
+public class ConcreteVerticesGraph<L> implements Graph<L> {
 
-    private final List<Vertex> vertices = new ArrayList<>();
+    private final List<Vertex<L>> vertices = new ArrayList<>();
 
 
     // Abstraction function:
@@ -47,33 +47,54 @@ public class ConcreteVerticesGraph implements Graph<String> {
 
     private void checkRep() {
         assert vertices != null : "Vertices list cannot be null";
-        for (Vertex v : vertices) {
+        for (Vertex<L> v : vertices) {
             assert v != null : "Vertex in the vertices list cannot be null";
             v.checkRep();
         }
     }
 
     @Override
-    public boolean add(String vertex) {
+    public boolean add(L vertex) {
         checkRep();
-        for (Vertex v : vertices) {
+        for (Vertex<L> v : vertices) {
             if (v.getLabel().equals(vertex)) {
                 return false; // Vertex with the given label already exists
             }
         }
-        vertices.add(new Vertex(vertex));
+        vertices.add(new Vertex<>(vertex));
         checkRep();
         return true;
     }
 
     @Override
-    public int set(String source, String target, int weight) {
+    public int set(L source, L target, int weight) {
         checkRep();
-        Vertex sourceVertex = findVertex(source);
-        Vertex targetVertex = findVertex(target);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
+        Vertex<L> sourceVertex = findVertex(source);
+        Vertex<L> targetVertex = findVertex(target);
 
-        if (sourceVertex == null || targetVertex == null) {
-            throw new IllegalArgumentException("Source or target vertex not found");
+        if (weight == 0) {
+            // Removing an edge never adds vertices
+            if (sourceVertex == null || targetVertex == null) {
+                return 0;
+            }
+            int previousWeight = sourceVertex.removeTarget(targetVertex);
+            targetVertex.removeSource(sourceVertex);
+            checkRep();
+            return previousWeight;
+        }
+
+        if (sourceVertex == null) {
+            sourceVertex = new Vertex<>(source);
+            vertices.add(sourceVertex);
+        }
+        if (targetVertex == null && source.equals(target)) {
+            targetVertex = sourceVertex; // Self-loop on a vertex added just above
+        } else if (targetVertex == null) {
+            targetVertex = new Vertex<>(target);
+            vertices.add(targetVertex);
         }
 
         int previousWeight = sourceVertex.addTarget(targetVertex, weight);
@@ -84,20 +105,23 @@ public class ConcreteVerticesGraph implements Graph<String> {
     }
 
     @Override
-    public boolean remove(String vertex) {
+    public boolean remove(L vertex) {
         checkRep();
-        Vertex targetVertex = findVertex(vertex);
+        Vertex<L> targetVertex = findVertex(vertex);
 
         if (targetVertex == null) {
             return false; // Vertex not found
         }
 
         // Remove the vertex from sources of other vertices
-        for (Vertex v : vertices) {
+        for (Vertex<L> v : vertices) {
             v.removeTarget(targetVertex);
         }
 
         // Remove the vertex from targets of other vertices
+        for (Vertex<L> v : vertices) {
+            v.removeSource(targetVertex);
+        }
         targetVertex.removeAllSources();
 
         // Remove the vertex from the vertices list
@@ -108,10 +132,10 @@ public class ConcreteVerticesGraph implements Graph<String> {
     }
 
     @Override
-    public Set<String> vertices() {
+    public Set<L> vertices() {
         checkRep();
-        Set<String> vertexSet = new HashSet<>();
-        for (Vertex v : vertices) {
+        Set<L> vertexSet = new HashSet<>();
+        for (Vertex<L> v : vertices) {
             vertexSet.add(v.getLabel());
         }
         checkRep();
@@ -119,16 +143,15 @@ public class ConcreteVerticesGraph implements Graph<String> {
     }
 
     @Override
-    public Map<String, Integer> sources(String target) {
+    public Map<L, Integer> sources(L target) {
         checkRep();
-        Vertex targetVertex = findVertex(target);
+        Vertex<L> targetVertex = findVertex(target);
 
+        Map<L, Integer> sourceMap = new HashMap<>();
         if (targetVertex == null) {
-            throw new IllegalArgumentException("Target vertex not found");
+            return sourceMap; // No such vertex, so no edges into it
         }
-
-        Map<String, Integer> sourceMap = new HashMap<>();
-        for (Map.Entry<Vertex, Integer> entry : targetVertex.getSources().entrySet()) {
+        for (Map.Entry<Vertex<L>, Integer> entry : targetVertex.getSources().entrySet()) {
             sourceMap.put(entry.getKey().getLabel(), entry.getValue());
         }
 
@@ -137,16 +160,15 @@ public class ConcreteVerticesGraph implements Graph<String> {
     }
 
     @Override
-    public Map<String, Integer> targets(String source) {
+    public Map<L, Integer> targets(L source) {
         checkRep();
-        Vertex sourceVertex = findVertex(source);
+        Vertex<L> sourceVertex = findVertex(source);
 
+        Map<L, Integer> targetMap = new HashMap<>();
         if (sourceVertex == null) {
-            throw new IllegalArgumentException("Source vertex not found");
+            return targetMap; // No such vertex, so no edges out of it
         }
-
-        Map<String, Integer> targetMap = new HashMap<>();
-        for (Map.Entry<Vertex, Integer> entry : sourceVertex.getTargets().entrySet()) {
+        for (Map.Entry<Vertex<L>, Integer> entry : sourceVertex.getTargets().entrySet()) {
             targetMap.put(entry.getKey().getLabel(), entry.getValue());
         }
 
@@ -158,7 +180,7 @@ public class ConcreteVerticesGraph implements Graph<String> {
     public String toString() {
         checkRep();
         StringBuilder sb = new StringBuilder();
-        for (Vertex v : vertices) {
+        for (Vertex<L> v : vertices) {
             sb.append(v.toString()).append("\n");
         }
         checkRep();
@@ -166,8 +188,8 @@ public class ConcreteVerticesGraph implements Graph<String> {
     }
 
     // Helper method to find a vertex by its label
-    private Vertex findVertex(String label) {
-        for (Vertex v : vertices) {
+    private Vertex<L> findVertex(L label) {
+        for (Vertex<L> v : vertices) {
             if (v.getLabel().equals(label)) {
                 return v;
             }
@@ -184,7 +206,7 @@ public class ConcreteVerticesGraph implements Graph<String> {
  * <p>
  * 
  */
-class Vertex {
+class Vertex<L> {
 
 //   Abstraction Function:</b> Each instance represents a unique vertex with a
 //   Incoming edges are stored in the 'sources' map, where the key is the source
@@ -209,9 +231,9 @@ class Vertex {
 //   through the
 //   getSources() and getTargets() methods, which return unmodifiable views.
 
-    private final String label;
-    private final Map<Vertex, Integer> sources;
-    private final Map<Vertex, Integer> targets;
+    private final L label;
+    private final Map<Vertex<L>, Integer> sources;
+    private final Map<Vertex<L>, Integer> targets;
 
     /**
      * Constructs a new vertex with the given label.
@@ -219,7 +241,7 @@ class Vertex {
      * @param label The label of the new vertex.
      * @throws IllegalArgumentException if the label is null.
      */
-    public Vertex(String label) {
+    public Vertex(L label) {
         this.label = label;
         this.sources = new HashMap<>();
         this.targets = new HashMap<>();
@@ -238,10 +260,10 @@ class Vertex {
         assert label != null : "Vertex label cannot be null";
         assert sources != null : "Sources map cannot be null";
         assert targets != null : "Targets map cannot be null";
-        for (Map.Entry<Vertex, Integer> entry : targets.entrySet()) {
+        for (Map.Entry<Vertex<L>, Integer> entry : targets.entrySet()) {
             assert entry.getKey() != null : "Target vertex in targets map cannot be null";
         }
-        for (Map.Entry<Vertex, Integer> entry : sources.entrySet()) {
+        for (Map.Entry<Vertex<L>, Integer> entry : sources.entrySet()) {
             assert entry.getKey() != null : "Source vertex in sources map cannot be null";
         }
     }
@@ -254,7 +276,7 @@ class Vertex {
      * @param weight The weight of the outgoing edge.
      * @throws IllegalArgumentException if the target vertex is null.
      */
-    public int addTarget(Vertex target, int weight) {
+    public int addTarget(Vertex<L> target, int weight) {
         checkRep();
         Integer previousWeight = targets.put(target, weight);
         checkRep();
@@ -265,12 +287,13 @@ class Vertex {
      * Removes the outgoing edge to the specified target vertex.
      *
      * @param target The target vertex.
-     * @throws IllegalArgumentException if the target vertex is null.
+     * @return The weight of the removed edge, or zero if there was no such edge.
      */
-    public void removeTarget(Vertex target) {
+    public int removeTarget(Vertex<L> target) {
         checkRep();
-        targets.remove(target);
+        Integer previousWeight = targets.remove(target);
         checkRep();
+        return previousWeight != null ? previousWeight : 0;
     }
 
     /**
@@ -280,12 +303,23 @@ class Vertex {
      * @param weight The weight of the incoming edge.
      * @throws IllegalArgumentException if the source vertex is null.
      */
-    public void addSource(Vertex source, int weight) {
+    public void addSource(Vertex<L> source, int weight) {
         checkRep();
         sources.put(source, weight);
         checkRep();
     }
 
+    /**
+     * Removes the incoming edge from the specified source vertex.
+     *
+     * @param source The source vertex.
+     */
+    public void removeSource(Vertex<L> source) {
+        checkRep();
+        sources.remove(source);
+        checkRep();
+    }
+
     public void removeAllSources() {
         checkRep();
         sources.clear();
@@ -297,7 +331,7 @@ class Vertex {
      *
      * @return The label of this vertex.
      */
-    public String getLabel() {
+    public L getLabel() {
         return label;
     }
 
@@ -308,7 +342,7 @@ class Vertex {
      * @param weight The weight of the outgoing edge.
      * @throws IllegalArgumentException if the target vertex is null.
      */
-    public Map<Vertex, Integer> getSources() {
+    public Map<Vertex<L>, Integer> getSources() {
         return Collections.unmodifiableMap(sources);
     }
 
@@ -317,7 +351,7 @@ class Vertex {
      *
      * @return An unmodifiable view of the targets map.
      */
-    public Map<Vertex, Integer> getTargets() {
+    public Map<Vertex<L>, Integer> getTargets() {
         return Collections.unmodifiableMap(targets);
     }
 
@@ -326,7 +360,7 @@ class Vertex {
         checkRep();
         StringBuilder sb = new StringBuilder();
         sb.append(label).append(" -> [");
-        for (Map.Entry<Vertex, Integer> entry : targets.entrySet()) {
+        for (Map.Entry<Vertex<L>, Integer> entry : targets.entrySet()) {
             sb.append(entry.getKey().getLabel()).append(" (").append(entry.getValue()).append("), ");
         }
         if (!targets.isEmpty()) {
@@ -0,0 +1,339 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable snapshot of a graph in compressed sparse row (CSR) form.
+ *
+ * <p>Vertices are numbered 0..n-1. The targets of vertex v are
+ * outTarget(i) for i in [outStart(v), outEnd(v)), in increasing order, with
+ * weights outWeight(i); the sources of v are laid out the same way in the
+ * in-arrays. Algorithms that walk the whole graph read these flat int arrays
+ * instead of copying a map per vertex.
+ *
+ * <p>A snapshot is also a read-only Graph; its mutators throw
+ * UnsupportedOperationException.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class CsrSnapshot<L> implements Graph<L> {
+
+    private final List<L> labels;
+    private final Map<L, Integer> ids;
+    final int[] outOffsets;
+    final int[] outTargets;
+    final int[] outWeights;
+    final int[] inOffsets;
+    final int[] inSources;
+    final int[] inWeights;
+    private final ConcurrentMap<Integer, int[]> outIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, int[]> inIndexes = new ConcurrentHashMap<>();
+
+    // Abstraction function:
+    //   Represents the graph with vertices labels.get(0..n-1), n =
+    //   labels.size(), and an edge labels.get(v) -> labels.get(outTargets[i])
+    //   of weight outWeights[i] for each v and outOffsets[v] <= i <
+    //   outOffsets[v + 1].
+    //
+    // Representation invariant:
+    //   - ids.get(labels.get(v)) == v for all v, and labels are distinct
+    //   - outOffsets and inOffsets have length n + 1, start at 0, never
+    //     decrease, and end at the number of edges
+    //   - each row of outTargets (inSources) is strictly increasing
+    //   - all weights are positive
+    //   - the in-arrays hold exactly the edges of the out-arrays, reversed
+    //   - outIndexes.get(v) (inIndexes.get(v)), if present, is the hash index
+    //     of the out-row (in-row) of v built by AdjacencyIntersection
+    //
+    // Safety from rep exposure:
+    //   'labels' and 'ids' are private and never returned. The arrays are
+    //   package-private so that algorithms in this package can scan them
+    //   directly; those algorithms must not modify them. Public accessors
+    //   return single elements only. The index maps are only ever added to,
+    //   and are safe to share between threads.
+
+    CsrSnapshot(List<L> labels, int[] outOffsets, int[] outTargets, int[] outWeights) {
+        this.labels = Collections.unmodifiableList(new ArrayList<>(labels));
+        this.ids = new HashMap<>();
+        for (int v = 0; v < labels.size(); v++) {
+            ids.put(labels.get(v), v);
+        }
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+
+        // Reverse by counting sort; scanning sources in order keeps rows sorted
+        int n = labels.size();
+        int[] inOffsets = new int[n + 1];
+        for (int i = 0; i < outTargets.length; i++) {
+            inOffsets[outTargets[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] next = Arrays.copyOf(inOffsets, n);
+        int[] inSources = new int[outTargets.length];
+        int[] inWeights = new int[outTargets.length];
+        for (int u = 0; u < n; u++) {
+            for (int i = outOffsets[u]; i < outOffsets[u + 1]; i++) {
+                int slot = next[outTargets[i]]++;
+                inSources[slot] = u;
+                inWeights[slot] = outWeights[i];
+            }
+        }
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert ids.size() == labels.size();
+        assert outOffsets.length == labels.size() + 1;
+        assert outOffsets[labels.size()] == outTargets.length;
+        assert inOffsets[labels.size()] == inSources.length;
+    }
+
+    /**
+     * Take a snapshot of a graph, reading the targets of its vertices in
+     * parallel on the common fork-join pool. The graph must not be mutated
+     * meanwhile.
+     *
+     * @param <L> type of vertex labels in graph
+     * @param graph graph to copy
+     * @return a snapshot of graph
+     */
+    public static <L> CsrSnapshot<L> of(Graph<L> graph) {
+        if (graph instanceof CsrSnapshot) {
+            return (CsrSnapshot<L>) graph;
+        }
+        return of(graph, new ArrayList<>(graph.vertices()));
+    }
+
+    /**
+     * Take a snapshot of a graph whose vertex numbers follow the order of
+     * their labels, as {@link #of(Graph)}.
+     *
+     * @param <L> type of vertex labels in graph
+     * @param graph graph to copy
+     * @param order order of the labels; vertex u gets a smaller number than
+     *        v iff order puts u before v
+     * @return a snapshot of graph
+     */
+    public static <L> CsrSnapshot<L> of(Graph<L> graph, Comparator<? super L> order) {
+        List<L> labels = new ArrayList<>(graph.vertices());
+        labels.sort(order);
+        return of(graph, labels);
+    }
+
+    private static <L> CsrSnapshot<L> of(Graph<L> graph, List<L> labels) {
+        Map<L, Integer> ids = new HashMap<>();
+        for (int v = 0; v < labels.size(); v++) {
+            ids.put(labels.get(v), v);
+        }
+
+        int n = labels.size();
+        int[][] rowTargets = new int[n][];
+        int[][] rowWeights = new int[n][];
+        IntStream.range(0, n).parallel().forEach(v -> {
+            Map<L, Integer> targets = graph.targets(labels.get(v));
+            long[] packed = new long[targets.size()];
+            int k = 0;
+            for (Map.Entry<L, Integer> target : targets.entrySet()) {
+                packed[k++] = ((long) ids.get(target.getKey()) << 32) | target.getValue();
+            }
+            Arrays.sort(packed);
+            rowTargets[v] = new int[packed.length];
+            rowWeights[v] = new int[packed.length];
+            for (int i = 0; i < packed.length; i++) {
+                rowTargets[v][i] = (int) (packed[i] >>> 32);
+                rowWeights[v][i] = (int) packed[i];
+            }
+        });
+
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + rowTargets[v].length;
+        }
+        int[] targets = new int[offsets[n]];
+        int[] weights = new int[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(rowTargets[v], 0, targets, offsets[v], rowTargets[v].length);
+            System.arraycopy(rowWeights[v], 0, weights, offsets[v], rowWeights[v].length);
+        }
+        return new CsrSnapshot<>(labels, offsets, targets, weights);
+    }
+
+    /** @return number of vertices */
+    public int vertexCount() {
+        return labels.size();
+    }
+
+    /** @return number of edges */
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return the label of that vertex
+     */
+    public L label(int vertex) {
+        return labels.get(vertex);
+    }
+
+    /**
+     * @param label a label
+     * @return the number of the vertex with that label, or -1 if none
+     */
+    public int id(L label) {
+        Integer id = ids.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return index of its first out-edge
+     */
+    public int outStart(int vertex) {
+        return outOffsets[vertex];
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return index just after its last out-edge
+     */
+    public int outEnd(int vertex) {
+        return outOffsets[vertex + 1];
+    }
+
+    /**
+     * @param edge an out-edge index
+     * @return number of the edge's target
+     */
+    public int outTarget(int edge) {
+        return outTargets[edge];
+    }
+
+    /**
+     * @param edge an out-edge index
+     * @return weight of the edge
+     */
+    public int outWeight(int edge) {
+        return outWeights[edge];
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return index of its first in-edge
+     */
+    public int inStart(int vertex) {
+        return inOffsets[vertex];
+    }
+
+    /**
+     * @param vertex a vertex number
+     * @return index just after its last in-edge
+     */
+    public int inEnd(int vertex) {
+        return inOffsets[vertex + 1];
+    }
+
+    /**
+     * @param edge an in-edge index
+     * @return number of the edge's source
+     */
+    public int inSource(int edge) {
+        return inSources[edge];
+    }
+
+    /**
+     * @param edge an in-edge index
+     * @return weight of the edge
+     */
+    public int inWeight(int edge) {
+        return inWeights[edge];
+    }
+
+    /*
+     * Returns the hash index of the out-row (if out) or in-row of vertex,
+     * building it on first use.
+     */
+    int[] index(boolean out, int vertex) {
+        if (out) {
+            return outIndexes.computeIfAbsent(vertex,
+                    v -> AdjacencyIntersection.buildIndex(outTargets, outOffsets[v], outOffsets[v + 1]));
+        }
+        return inIndexes.computeIfAbsent(vertex,
+                v -> AdjacencyIntersection.buildIndex(inSources, inOffsets[v], inOffsets[v + 1]));
+    }
+
+    /**
+     * @param source number of a source vertex
+     * @param target number of a target vertex
+     * @return weight of the edge source -> target, or zero if there is none
+     */
+    public int weight(int source, int target) {
+        int i = Arrays.binarySearch(outTargets, outOffsets[source], outOffsets[source + 1], target);
+        return i < 0 ? 0 : outWeights[i];
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("Snapshots are immutable");
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return Collections.unmodifiableSet(ids.keySet());
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        Map<L, Integer> sources = new HashMap<>();
+        int v = id(target);
+        if (v >= 0) {
+            for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+                sources.put(labels.get(inSources[i]), inWeights[i]);
+            }
+        }
+        return sources;
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        Map<L, Integer> targets = new HashMap<>();
+        int v = id(source);
+        if (v >= 0) {
+            for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                targets.put(labels.get(outTargets[i]), outWeights[i]);
+            }
+        }
+        return targets;
+    }
+
+    @Override
+    public String toString() {
+        return "CsrSnapshot with " + vertexCount() + " vertices and " + edgeCount() + " edges";
+    }
+}
@@ -0,0 +1,254 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable bound on the out-edges of each vertex of a graph: at most a
+ * maximum number of edges, the heaviest, each at least a minimum weight.
+ *
+ * <p>Pruning a vertex streams its out-edges once through a min-heap holding
+ * the heaviest edges seen so far, so the work is O(d log k) and the extra
+ * memory O(k) for a vertex of out-degree d and a cap of k edges, however
+ * many edges a hub vertex has. Of equally heavy edges, those to the targets
+ * first in a given order are kept.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class DegreeCap<L> {
+
+    private final int maxOutDegree;
+    private final int minWeight;
+    private final Comparator<? super L> ties;
+
+    // Abstraction function:
+    //   Represents the bound keeping, of each vertex's out-edges of weight at
+    //   least minWeight, the maxOutDegree heaviest, preferring targets first
+    //   in 'ties' among equal weights.
+    //
+    // Representation invariant:
+    //   - maxOutDegree >= 0 and minWeight >= 1
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final; 'ties' is shared but never mutated.
+    //
+    // Thread safety argument:
+    //   This type is immutable; each prune() keeps its heap in local variables.
+
+    private DegreeCap(int maxOutDegree, int minWeight, Comparator<? super L> ties) {
+        this.maxOutDegree = maxOutDegree;
+        this.minWeight = minWeight;
+        this.ties = ties;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert maxOutDegree >= 0 && minWeight >= 1;
+    }
+
+    /**
+     * Make a bound.
+     *
+     * @param <L> type of vertex labels
+     * @param maxOutDegree most out-edges a vertex keeps, nonnegative;
+     *        Integer.MAX_VALUE for no limit
+     * @param minWeight least weight of an edge that is kept, positive
+     * @param ties order of targets; of edges of equal weight, those to the
+     *        targets first in this order are kept
+     * @return the bound
+     */
+    public static <L> DegreeCap<L> of(int maxOutDegree, int minWeight, Comparator<? super L> ties) {
+        if (maxOutDegree < 0 || minWeight < 1) {
+            throw new IllegalArgumentException("maxOutDegree must be nonnegative and minWeight positive");
+        }
+        return new DegreeCap<>(maxOutDegree, minWeight, ties);
+    }
+
+    /** @return most out-edges a vertex keeps */
+    public int maxOutDegree() {
+        return maxOutDegree;
+    }
+
+    /** @return least weight of an edge that is kept */
+    public int minWeight() {
+        return minWeight;
+    }
+
+    /**
+     * @return true iff this bound keeps every edge of every graph
+     */
+    public boolean isUnbounded() {
+        return maxOutDegree == Integer.MAX_VALUE && minWeight == 1;
+    }
+
+    /**
+     * Select the out-edges of a vertex that this bound keeps.
+     *
+     * @param targets the out-edges of a vertex, as returned by
+     *        {@link Graph#targets}; not modified
+     * @return the targets of the kept edges
+     */
+    public Set<L> keep(Map<L, Integer> targets) {
+        Heap<L> heap = select(targets);
+        Set<L> kept = new HashSet<>();
+        for (int i = 0; i < heap.size; i++) {
+            kept.add(heap.label(i));
+        }
+        return kept;
+    }
+
+    /**
+     * Remove the out-edges of a vertex that this bound does not keep.
+     *
+     * @param graph graph to prune
+     * @param source a vertex of graph
+     * @return number of edges removed
+     */
+    public int prune(Graph<L> graph, L source) {
+        return prune(graph, source, new ArrayList<L>());
+    }
+
+    /**
+     * Remove the out-edges of a vertex that this bound does not keep, and
+     * report the targets of the removed edges.
+     *
+     * @param graph graph to prune
+     * @param source a vertex of graph
+     * @param removed receives the target of each removed edge
+     * @return number of edges removed
+     */
+    public int prune(Graph<L> graph, L source, Collection<? super L> removed) {
+        Map<L, Integer> targets = graph.targets(source);
+        if (targets.size() <= maxOutDegree && minWeight == 1) {
+            return 0;
+        }
+        Set<L> kept = keep(targets);
+        List<L> dropped = new ArrayList<>(targets.size() - kept.size());
+        for (L target : targets.keySet()) {
+            if (!kept.contains(target)) {
+                dropped.add(target);
+            }
+        }
+        for (L target : dropped) {
+            graph.set(source, target, 0);
+        }
+        removed.addAll(dropped);
+        return dropped.size();
+    }
+
+    /**
+     * Remove the out-edges of every vertex that this bound does not keep.
+     *
+     * @param graph graph to prune
+     * @return number of edges removed
+     */
+    public int prune(Graph<L> graph) {
+        int removed = 0;
+        for (L source : new ArrayList<>(graph.vertices())) {
+            removed += prune(graph, source);
+        }
+        return removed;
+    }
+
+    /*
+     * Stream the edges of weight at least minWeight through a min-heap of
+     * at most maxOutDegree edges, leaving the heaviest in it.
+     */
+    private Heap<L> select(Map<L, Integer> targets) {
+        Heap<L> heap = new Heap<>(Math.min(maxOutDegree, targets.size()), ties);
+        if (maxOutDegree == 0) {
+            return heap;
+        }
+        for (Map.Entry<L, Integer> edge : targets.entrySet()) {
+            int weight = edge.getValue();
+            if (weight < minWeight) {
+                continue;
+            }
+            if (heap.size < maxOutDegree) {
+                heap.push(edge.getKey(), weight);
+            } else if (heap.weaker(0, edge.getKey(), weight)) {
+                heap.replaceRoot(edge.getKey(), weight);
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * A bounded binary min-heap of edges, with the edge least worth keeping
+     * at the root.
+     */
+    private static final class Heap<L> {
+        private final Object[] labels;
+        private final int[] weights;
+        private final Comparator<? super L> ties;
+        private int size = 0;
+
+        private Heap(int capacity, Comparator<? super L> ties) {
+            this.labels = new Object[capacity];
+            this.weights = new int[capacity];
+            this.ties = ties;
+        }
+
+        @SuppressWarnings("unchecked")
+        private L label(int i) {
+            return (L) labels[i];
+        }
+
+        /*
+         * True iff the edge at i is less worth keeping than (label, weight).
+         */
+        private boolean weaker(int i, L label, int weight) {
+            return weights[i] < weight || weights[i] == weight && ties.compare(label(i), label) > 0;
+        }
+
+        private void push(L label, int weight) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (weaker(parent, label, weight)) {
+                    break;
+                }
+                // The new edge is weaker than its parent: move the parent down
+                labels[i] = labels[parent];
+                weights[i] = weights[parent];
+                i = parent;
+            }
+            labels[i] = label;
+            weights[i] = weight;
+        }
+
+        private void replaceRoot(L label, int weight) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && weaker(child + 1, label(child), weights[child])) {
+                    child++;
+                }
+                // child is now the weaker child; stop if the new edge is weaker still
+                if (weaker(child, label, weight)) {
+                    labels[i] = labels[child];
+                    weights[i] = weights[child];
+                    i = child;
+                } else {
+                    break;
+                }
+            }
+            labels[i] = label;
+            weights[i] = weight;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DegreeCap(" + (maxOutDegree == Integer.MAX_VALUE ? "unlimited" : maxOutDegree + " edges")
+                + ", min weight " + minWeight + ")";
+    }
+}
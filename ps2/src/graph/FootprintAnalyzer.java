@@ -0,0 +1,413 @@
+package graph;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Estimates the heap a graph retains, from the object layouts of 64-bit
+ * HotSpot as JOL reports them, without an agent.
+ *
+ * <p>The analyzer walks every object reachable from the graph through
+ * instance fields and array elements, once each, and sums their sizes:
+ * an object header, its fields at their primitive or reference sizes, and
+ * padding to 8 bytes; an array header and its elements, likewise padded.
+ * Vertex labels are left out, since the caller shares them, as are classes,
+ * static fields, threads, class loaders and executors. Where the JVM does
+ * not let fields be read by reflection, as in java.util on Java 9 and
+ * later, strings and collections are estimated from their sizes: a hash
+ * table of the default initial capacity and load factor and one node per
+ * entry for maps and sets, a full array for other collections; other such
+ * objects count only themselves.
+ *
+ * <p>The result is an estimate: fields are not packed as tightly as
+ * HotSpot packs them, and objects shared with anything outside the graph
+ * are counted as the graph's.
+ */
+public final class FootprintAnalyzer {
+
+    /** Analyzer with the layout of this JVM: compressed references below a 32 GB heap. */
+    public static final FootprintAnalyzer DEFAULT = new FootprintAnalyzer(
+            Runtime.getRuntime().maxMemory() < 32L << 30);
+
+    private static final int ALIGNMENT = 8;
+    private static final int DEFAULT_TABLE_SLOTS = 16;
+
+    private final boolean compressedReferences;
+    private final int headerBytes;
+    private final int arrayHeaderBytes;
+    private final int referenceBytes;
+    private final Map<Class<?>, Shape> shapes = Collections.synchronizedMap(new HashMap<Class<?>, Shape>());
+
+    // Abstraction function:
+    //   Represents the layout model of a 64-bit JVM with or without
+    //   compressed references; 'shapes' caches the layout of each class
+    //   analyzed so far.
+    //
+    // Representation invariant:
+    //   - headerBytes, arrayHeaderBytes and referenceBytes are those of
+    //     compressedReferences: 12, 16, 4 with them, 16, 24, 8 without
+    //
+    // Safety from rep exposure:
+    //   All fields are private; 'shapes' is never returned.
+    //
+    // Thread safety argument:
+    //   The layout fields are final and immutable; 'shapes' is synchronized,
+    //   and a Shape is immutable once cached. Each analysis keeps its walk
+    //   state in local variables.
+
+    private FootprintAnalyzer(boolean compressedReferences) {
+        this.compressedReferences = compressedReferences;
+        this.headerBytes = compressedReferences ? 12 : 16;
+        this.arrayHeaderBytes = compressedReferences ? 16 : 24;
+        this.referenceBytes = compressedReferences ? 4 : 8;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert referenceBytes == (compressedReferences ? 4 : 8);
+        assert headerBytes == (compressedReferences ? 12 : 16);
+        assert arrayHeaderBytes == (compressedReferences ? 16 : 24);
+    }
+
+    /**
+     * @param compressedReferences true for the layout with 4-byte
+     *        references and 12-byte headers, false for 8-byte references and
+     *        16-byte headers
+     * @return an analyzer with that layout
+     */
+    public FootprintAnalyzer withCompressedReferences(boolean compressedReferences) {
+        return new FootprintAnalyzer(compressedReferences);
+    }
+
+    /** @return true iff this analyzer assumes compressed references */
+    public boolean compressedReferences() {
+        return compressedReferences;
+    }
+
+    /**
+     * Estimate the heap a graph retains. The graph must not be mutated
+     * meanwhile.
+     *
+     * @param <L> type of vertex labels in graph
+     * @param graph graph to analyze
+     * @return the estimated footprint of graph, without its labels
+     */
+    public <L> Footprint analyze(Graph<L> graph) {
+        Set<L> vertices = graph.vertices();
+        long edges = 0;
+        for (L vertex : vertices) {
+            edges += graph.targets(vertex).size();
+        }
+        Map<Object, Boolean> excluded = new IdentityHashMap<>();
+        for (L vertex : vertices) {
+            excluded.put(vertex, true);
+        }
+        Walk walk = new Walk(excluded);
+        walk.visit(graph);
+        return new Footprint(graph.getClass().getSimpleName(), vertices.size(), edges, walk.bytes, walk.objects,
+                walk.byClass);
+    }
+
+    /**
+     * Estimate the heap retained by everything reachable from an object.
+     *
+     * @param root object to measure
+     * @return estimated bytes of root and every object reachable from it
+     */
+    public long sizeOf(Object root) {
+        Walk walk = new Walk(new IdentityHashMap<Object, Boolean>());
+        walk.visit(root);
+        return walk.bytes;
+    }
+
+    /**
+     * The state of one walk of an object graph.
+     */
+    private class Walk {
+        private final Map<Object, Boolean> seen;
+        private final Deque<Object> pending = new ArrayDeque<>();
+        private final Map<String, Long> byClass = new HashMap<>();
+        private long bytes = 0;
+        private long objects = 0;
+
+        private Walk(Map<Object, Boolean> excluded) {
+            this.seen = excluded;
+        }
+
+        private void visit(Object root) {
+            push(root);
+            while (!pending.isEmpty()) {
+                Object object = pending.pop();
+                Class<?> type = object.getClass();
+                long size;
+                if (type.isArray()) {
+                    size = array(object, type.getComponentType());
+                } else {
+                    Shape shape = shape(type);
+                    size = shape.bytes;
+                    if (shape.fields != null) {
+                        for (Field field : shape.fields) {
+                            push(read(field, object));
+                        }
+                    } else {
+                        size += opaque(object);
+                    }
+                }
+                count(type.getName(), size);
+            }
+        }
+
+        private void push(Object object) {
+            if (object != null && !skipped(object) && seen.put(object, true) == null) {
+                pending.push(object);
+            }
+        }
+
+        private void count(String type, long size) {
+            bytes += size;
+            objects++;
+            byClass.merge(type, size, Long::sum);
+        }
+
+        private long array(Object array, Class<?> component) {
+            int length = Array.getLength(array);
+            if (!component.isPrimitive()) {
+                for (Object element : (Object[]) array) {
+                    push(element);
+                }
+            }
+            return align(arrayHeaderBytes + (long) length * size(component));
+        }
+
+        /*
+         * Estimate the internals of an object whose fields cannot be read,
+         * pushing the elements of collections; returns bytes beyond the
+         * object's own shape.
+         */
+        private long opaque(Object object) {
+            if (object instanceof String) {
+                // The compact strings of Java 9 and later, if Latin-1
+                return align(arrayHeaderBytes + ((String) object).length());
+            }
+            if (object instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) object;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    push(entry.getKey());
+                    push(entry.getValue());
+                }
+                return hashTable(map.size());
+            }
+            if (object instanceof Collection) {
+                Collection<?> collection = (Collection<?>) object;
+                for (Object element : collection) {
+                    push(element);
+                }
+                if (object instanceof Set) {
+                    // A HashSet holds a HashMap of its elements
+                    return align(headerBytes + 4 * 4 + 3 * referenceBytes) + hashTable(collection.size());
+                }
+                return align(arrayHeaderBytes + (long) collection.size() * referenceBytes);
+            }
+            return 0;
+        }
+
+        /*
+         * A HashMap's table and nodes for size entries, as a default-sized
+         * map grows to hold them: the table starts at 16 slots and doubles
+         * whenever size exceeds 0.75 of it, and each node holds a hash and
+         * three references.
+         */
+        private long hashTable(int size) {
+            if (size == 0) {
+                return 0;
+            }
+            long capacity = Math.max(DEFAULT_TABLE_SLOTS,
+                    Long.highestOneBit(Math.max(1, (long) Math.ceil(size / 0.75) - 1)) << 1);
+            long nodes = (long) size * align(headerBytes + 4 + 3 * referenceBytes);
+            return align(arrayHeaderBytes + capacity * referenceBytes) + nodes;
+        }
+    }
+
+    /*
+     * Objects shared by more than the graph, which are never walked into.
+     */
+    private static boolean skipped(Object object) {
+        return object instanceof Class || object instanceof Thread || object instanceof ClassLoader
+                || object instanceof Executor;
+    }
+
+    private static Object read(Field field, Object object) {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError("Field made accessible: " + field, e);
+        }
+    }
+
+    /**
+     * The size of a class's instances and its readable reference fields.
+     */
+    private static final class Shape {
+        private final long bytes;
+        private final List<Field> fields;
+
+        private Shape(long bytes, List<Field> fields) {
+            this.bytes = bytes;
+            this.fields = fields;
+        }
+    }
+
+    /*
+     * Lay out the instance fields of type and its superclasses; the fields
+     * are null if any of them cannot be read by reflection.
+     */
+    private Shape shape(Class<?> type) {
+        Shape shape = shapes.get(type);
+        if (shape != null) {
+            return shape;
+        }
+        long bytes = headerBytes;
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                bytes += size(field.getType());
+                if (!field.getType().isPrimitive() && fields != null) {
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch (RuntimeException e) {
+                        // Encapsulated by the module system or a security manager
+                        fields = null;
+                    }
+                }
+            }
+        }
+        shape = new Shape(align(bytes), fields == null ? null : Collections.unmodifiableList(fields));
+        shapes.put(type, shape);
+        return shape;
+    }
+
+    private int size(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return referenceBytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    @Override
+    public String toString() {
+        return "FootprintAnalyzer(" + (compressedReferences ? "compressed" : "uncompressed") + " references)";
+    }
+
+    /**
+     * The estimated footprint of one graph. Immutable.
+     */
+    public static final class Footprint {
+        private final String type;
+        private final int vertices;
+        private final long edges;
+        private final long bytes;
+        private final long objects;
+        private final Map<String, Long> byClass;
+
+        // Abstraction function:
+        //   Represents a graph of class 'type' with 'vertices' vertices and
+        //   'edges' edges that retains 'bytes' bytes in 'objects' objects,
+        //   'byClass' of them in instances of each class.
+        //
+        // Representation invariant:
+        //   - counts are nonnegative, and byClass's values sum to bytes
+        //   - byClass is in decreasing order of bytes
+        //
+        // Safety from rep exposure:
+        //   All fields are private and final; 'byClass' is unmodifiable.
+
+        private Footprint(String type, int vertices, long edges, long bytes, long objects,
+                Map<String, Long> byClass) {
+            this.type = type;
+            this.vertices = vertices;
+            this.edges = edges;
+            this.bytes = bytes;
+            this.objects = objects;
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(byClass.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            Map<String, Long> ranked = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> entry : entries) {
+                ranked.put(entry.getKey(), entry.getValue());
+            }
+            this.byClass = Collections.unmodifiableMap(ranked);
+            assert vertices >= 0 && edges >= 0 && bytes >= 0 && objects >= 0;
+        }
+
+        /** @return number of vertices of the graph */
+        public int vertexCount() {
+            return vertices;
+        }
+
+        /** @return number of edges of the graph */
+        public long edgeCount() {
+            return edges;
+        }
+
+        /** @return estimated bytes the graph retains, without its labels */
+        public long bytes() {
+            return bytes;
+        }
+
+        /** @return number of objects counted in bytes() */
+        public long objects() {
+            return objects;
+        }
+
+        /** @return bytes() per vertex, or 0 if there are none */
+        public double bytesPerVertex() {
+            return vertices == 0 ? 0 : (double) bytes / vertices;
+        }
+
+        /** @return bytes() per edge, or 0 if there are none */
+        public double bytesPerEdge() {
+            return edges == 0 ? 0 : (double) bytes / edges;
+        }
+
+        /**
+         * @return estimated bytes in instances of each class, by class name,
+         *         largest first
+         */
+        public Map<String, Long> bytesByClass() {
+            return byClass;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d vertices, %d edges, %d bytes in %d objects"
+                    + " (%.1f bytes/vertex, %.1f bytes/edge)", type, vertices, edges, bytes, objects,
+                    bytesPerVertex(), bytesPerEdge());
+        }
+    }
+}
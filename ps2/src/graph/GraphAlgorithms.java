@@ -0,0 +1,206 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Whole-graph algorithms over immutable {@link CsrSnapshot}s.
+ *
+ * <p>Results are arrays indexed by the snapshot's vertex numbers; use
+ * {@link CsrSnapshot#label(int)} to map them back to labels. Data-parallel
+ * steps run on a caller-supplied fork-join pool, or on the common pool.
+ */
+public final class GraphAlgorithms {
+
+    private GraphAlgorithms() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /**
+     * Weighted PageRank on the common fork-join pool.
+     *
+     * @see #pageRank(CsrSnapshot, double, int, double, ForkJoinPool)
+     */
+    public static double[] pageRank(CsrSnapshot<?> graph, double damping, int maxIterations, double tolerance) {
+        return pageRank(graph, damping, maxIterations, tolerance, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute weighted PageRank: a random surfer follows an out-edge with
+     * probability proportional to its weight, and with probability
+     * 1 - damping (or always, from a vertex without out-edges) jumps to a
+     * vertex chosen uniformly at random.
+     *
+     * <p>Each iteration pulls rank along in-edges, one vertex per task, so
+     * no two tasks write the same element.
+     *
+     * @param graph graph to rank
+     * @param damping probability of following an edge, in [0, 1]
+     * @param maxIterations maximum number of iterations
+     * @param tolerance stop once the L1 change of the ranks falls below this
+     * @param pool pool to run on
+     * @return rank of each vertex; ranks sum to 1 (for a nonempty graph)
+     */
+    public static double[] pageRank(CsrSnapshot<?> graph, double damping, int maxIterations, double tolerance,
+            ForkJoinPool pool) {
+        int n = graph.vertexCount();
+        if (n == 0) {
+            return new double[0];
+        }
+        long[] outWeight = new long[n];
+        for (int v = 0; v < n; v++) {
+            for (int i = graph.outOffsets[v]; i < graph.outOffsets[v + 1]; i++) {
+                outWeight[v] += graph.outWeights[i];
+            }
+        }
+
+        double[] rank = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        double[] next = new double[n];
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            double dangling = 0;
+            for (int v = 0; v < n; v++) {
+                if (outWeight[v] == 0) {
+                    dangling += rank[v];
+                }
+            }
+            final double base = (1 - damping) / n + damping * dangling / n;
+            final double[] current = rank;
+            final double[] updated = next;
+            double change = pool.submit(() -> IntStream.range(0, n).parallel().mapToDouble(v -> {
+                double sum = 0;
+                for (int i = graph.inOffsets[v]; i < graph.inOffsets[v + 1]; i++) {
+                    int u = graph.inSources[i];
+                    sum += current[u] * graph.inWeights[i] / outWeight[u];
+                }
+                updated[v] = base + damping * sum;
+                return Math.abs(updated[v] - current[v]);
+            }).sum()).join();
+            next = rank;
+            rank = updated;
+            if (change < tolerance) {
+                break;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Find strongly connected components with an iterative version of
+     * Tarjan's algorithm. Tarjan's algorithm is a single depth-first search,
+     * so this runs on the calling thread; it reads only the CSR arrays.
+     *
+     * @param graph graph to decompose
+     * @return component number of each vertex; vertices u and v are in the
+     *         same strongly connected component iff their numbers are equal,
+     *         and numbers are 0..c-1 for c components
+     */
+    public static int[] stronglyConnectedComponents(CsrSnapshot<?> graph) {
+        int n = graph.vertexCount();
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        int[] lowlink = new int[n];
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int[] stack = new int[n];
+        int stackSize = 0;
+        int[] path = new int[n];
+        int[] nextEdge = new int[n];
+        int nextIndex = 0;
+        int components = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            path[depth++] = root;
+            index[root] = lowlink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            nextEdge[root] = graph.outOffsets[root];
+
+            while (depth > 0) {
+                int v = path[depth - 1];
+                if (nextEdge[v] < graph.outOffsets[v + 1]) {
+                    int w = graph.outTargets[nextEdge[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowlink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        nextEdge[w] = graph.outOffsets[w];
+                        path[depth++] = w;
+                    } else if (component[w] < 0) {
+                        // w is still on the stack
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = path[depth - 1];
+                    lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+                }
+                if (lowlink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        component[w] = components;
+                    } while (w != v);
+                    components++;
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Level-synchronous breadth-first search on the common fork-join pool.
+     *
+     * @see #breadthFirstSearch(CsrSnapshot, int, ForkJoinPool)
+     */
+    public static int[] breadthFirstSearch(CsrSnapshot<?> graph, int source) {
+        return breadthFirstSearch(graph, source, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Find the number of edges on a shortest path from source to every
+     * vertex. Each level's frontier is expanded in parallel; a vertex joins
+     * the next frontier only through the task that wins the atomic update of
+     * its distance.
+     *
+     * @param graph graph to search
+     * @param source number of the vertex to start from
+     * @param pool pool to run on
+     * @return distance of each vertex from source, or -1 if unreachable
+     */
+    public static int[] breadthFirstSearch(CsrSnapshot<?> graph, int source, ForkJoinPool pool) {
+        int n = graph.vertexCount();
+        AtomicIntegerArray distance = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            distance.set(v, -1);
+        }
+        distance.set(source, 0);
+        int[] frontier = { source };
+        for (int level = 1; frontier.length > 0; level++) {
+            final int[] current = frontier;
+            final int next = level;
+            frontier = pool.submit(() -> IntStream.of(current).parallel().flatMap(v -> {
+                IntStream.Builder claimed = IntStream.builder();
+                for (int i = graph.outOffsets[v]; i < graph.outOffsets[v + 1]; i++) {
+                    int w = graph.outTargets[i];
+                    if (distance.get(w) < 0 && distance.compareAndSet(w, -1, next)) {
+                        claimed.add(w);
+                    }
+                }
+                return claimed.build();
+            }).toArray()).join();
+        }
+
+        int[] result = new int[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = distance.get(v);
+        }
+        return result;
+    }
+}
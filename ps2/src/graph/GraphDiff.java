@@ -0,0 +1,369 @@
+package graph;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An immutable edge-level difference between two graphs: the vertices to
+ * add and remove, and the edges to set, that turn one into the other.
+ *
+ * <p>A diff is computed in parallel over partitions of the vertices, and can
+ * be written as a compact binary patch and applied in place to a live graph,
+ * so a new version of a large graph can be shipped as its changes. Edges
+ * that disappear with a removed vertex are counted as removed but not listed,
+ * since removing the vertex removes them.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class GraphDiff<L> {
+
+    private static final int PATCH_MAGIC = 0x47444946;
+    private static final int PARTITION_SIZE = 1024;
+
+    private final List<L> removedVertices;
+    private final List<L> addedVertices;
+    private final Map<L, Map<L, Integer>> edges;
+    private final int addedEdges;
+    private final int removedEdges;
+    private final int reweightedEdges;
+
+    // Abstraction function:
+    //   Represents the change that removes removedVertices, then adds
+    //   addedVertices, then sets each edge s -> t to edges.get(s).get(t),
+    //   where zero removes the edge; of the edges it changes, addedEdges are
+    //   new, removedEdges disappear (with or without their vertices) and
+    //   reweightedEdges change weight.
+    //
+    // Representation invariant:
+    //   - removedVertices and addedVertices are disjoint and have no duplicates
+    //   - no key of 'edges' or of its values is in removedVertices
+    //   - every map in 'edges' is nonempty, and every weight is nonnegative
+    //   - the edge counts are nonnegative
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final, and the collections are
+    //   unmodifiable.
+    //
+    // Thread safety argument:
+    //   This type is immutable.
+
+    private GraphDiff(List<L> removedVertices, List<L> addedVertices, Map<L, Map<L, Integer>> edges,
+            int addedEdges, int removedEdges, int reweightedEdges) {
+        this.removedVertices = Collections.unmodifiableList(removedVertices);
+        this.addedVertices = Collections.unmodifiableList(addedVertices);
+        Map<L, Map<L, Integer>> copy = new LinkedHashMap<>();
+        edges.forEach((source, targets) -> copy.put(source, Collections.unmodifiableMap(targets)));
+        this.edges = Collections.unmodifiableMap(copy);
+        this.addedEdges = addedEdges;
+        this.removedEdges = removedEdges;
+        this.reweightedEdges = reweightedEdges;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert Collections.disjoint(removedVertices, addedVertices);
+        assert addedEdges >= 0 && removedEdges >= 0 && reweightedEdges >= 0;
+        for (Map<L, Integer> targets : edges.values()) {
+            assert !targets.isEmpty();
+        }
+    }
+
+    /**
+     * Compute the difference between two graphs, comparing the edges of
+     * their vertices in parallel on the common fork-join pool. Neither graph
+     * may be mutated meanwhile.
+     *
+     * @param <L> type of vertex labels
+     * @param before the old graph
+     * @param after the new graph
+     * @return a diff whose applyTo() turns a graph equal to before into one
+     *         equal to after
+     */
+    public static <L> GraphDiff<L> between(Graph<L> before, Graph<L> after) {
+        Set<L> beforeVertices = before.vertices();
+        Set<L> afterVertices = after.vertices();
+        List<L> removed = new ArrayList<>();
+        for (L vertex : beforeVertices) {
+            if (!afterVertices.contains(vertex)) {
+                removed.add(vertex);
+            }
+        }
+        List<L> added = new ArrayList<>();
+        for (L vertex : afterVertices) {
+            if (!beforeVertices.contains(vertex)) {
+                added.add(vertex);
+            }
+        }
+        Set<L> union = new HashSet<>(beforeVertices);
+        union.addAll(added);
+        Set<L> gone = new HashSet<>(removed);
+        Part<L> part = ForkJoinPool.commonPool().invoke(
+                new Compare<>(before, after, new ArrayList<>(union), gone, 0, union.size()));
+        return new GraphDiff<>(removed, added, part.edges, part.added, part.removed, part.reweighted);
+    }
+
+    /**
+     * The diff of the out-edges of some vertices.
+     */
+    private static class Part<L> {
+        private final Map<L, Map<L, Integer>> edges = new LinkedHashMap<>();
+        private int added = 0;
+        private int removed = 0;
+        private int reweighted = 0;
+
+        private void merge(Part<L> other) {
+            edges.putAll(other.edges);
+            added += other.added;
+            removed += other.removed;
+            reweighted += other.reweighted;
+        }
+    }
+
+    /**
+     * Compares the out-edges of a range of vertices, split in halves until
+     * the range is at most one partition long.
+     */
+    private static class Compare<L> extends RecursiveTask<Part<L>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Graph<L> before;
+        private final Graph<L> after;
+        private final List<L> vertices;
+        private final Set<L> gone;
+        private final int from;
+        private final int to;
+
+        private Compare(Graph<L> before, Graph<L> after, List<L> vertices, Set<L> gone, int from, int to) {
+            this.before = before;
+            this.after = after;
+            this.vertices = vertices;
+            this.gone = gone;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Part<L> compute() {
+            if (to - from > PARTITION_SIZE) {
+                int middle = (from + to) >>> 1;
+                Compare<L> left = new Compare<>(before, after, vertices, gone, from, middle);
+                left.fork();
+                Part<L> right = new Compare<>(before, after, vertices, gone, middle, to).compute();
+                Part<L> part = left.join();
+                part.merge(right);
+                return part;
+            }
+            Part<L> part = new Part<>();
+            for (int v = from; v < to; v++) {
+                L source = vertices.get(v);
+                Map<L, Integer> old = before.targets(source);
+                Map<L, Integer> now = after.targets(source);
+                Map<L, Integer> changed = new HashMap<>();
+                for (Map.Entry<L, Integer> edge : now.entrySet()) {
+                    Integer previous = old.get(edge.getKey());
+                    if (previous == null) {
+                        part.added++;
+                        changed.put(edge.getKey(), edge.getValue());
+                    } else if (!previous.equals(edge.getValue())) {
+                        part.reweighted++;
+                        changed.put(edge.getKey(), edge.getValue());
+                    }
+                }
+                for (L target : old.keySet()) {
+                    if (!now.containsKey(target)) {
+                        part.removed++;
+                        if (!gone.contains(source) && !gone.contains(target)) {
+                            changed.put(target, 0);
+                        }
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    part.edges.put(source, changed);
+                }
+            }
+            return part;
+        }
+    }
+
+    /** @return vertices the diff removes */
+    public List<L> removedVertices() {
+        return removedVertices;
+    }
+
+    /** @return vertices the diff adds */
+    public List<L> addedVertices() {
+        return addedVertices;
+    }
+
+    /** @return number of edges in the new graph but not the old */
+    public int addedEdges() {
+        return addedEdges;
+    }
+
+    /** @return number of edges in the old graph but not the new */
+    public int removedEdges() {
+        return removedEdges;
+    }
+
+    /** @return number of edges in both graphs with different weights */
+    public int reweightedEdges() {
+        return reweightedEdges;
+    }
+
+    /** @return true iff the diff changes nothing */
+    public boolean isEmpty() {
+        return removedVertices.isEmpty() && addedVertices.isEmpty() && edges.isEmpty();
+    }
+
+    /**
+     * Apply this diff to a graph in place. If the graph equals the old graph
+     * of the diff, it then equals the new one; otherwise each change is
+     * applied as it stands, as by the Graph mutators.
+     *
+     * @param graph graph to change
+     */
+    public void applyTo(Graph<L> graph) {
+        for (L vertex : removedVertices) {
+            graph.remove(vertex);
+        }
+        for (L vertex : addedVertices) {
+            graph.add(vertex);
+        }
+        edges.forEach((source, targets) -> targets.forEach((target, weight) -> graph.set(source, target, weight)));
+    }
+
+    /**
+     * Write this diff as a binary patch. Each label is written once by codec;
+     * vertices are then referred to by their position in that table, and
+     * numbers are written as variable-length integers.
+     *
+     * @param codec encoding of labels
+     * @param out where to write the patch
+     * @throws IOException if out cannot be written
+     */
+    public void write(LabelCodec<L> codec, DataOutput out) throws IOException {
+        Map<L, Integer> table = new LinkedHashMap<>();
+        for (L vertex : removedVertices) {
+            table.putIfAbsent(vertex, table.size());
+        }
+        for (L vertex : addedVertices) {
+            table.putIfAbsent(vertex, table.size());
+        }
+        edges.forEach((source, targets) -> {
+            table.putIfAbsent(source, table.size());
+            targets.keySet().forEach(target -> table.putIfAbsent(target, table.size()));
+        });
+
+        out.writeInt(PATCH_MAGIC);
+        writeVarint(table.size(), out);
+        for (L label : table.keySet()) {
+            codec.write(label, out);
+        }
+        writeVarint(removedVertices.size(), out);
+        writeVarint(addedVertices.size(), out);
+        writeVarint(addedEdges, out);
+        writeVarint(removedEdges, out);
+        writeVarint(reweightedEdges, out);
+        writeVarint(edges.size(), out);
+        for (Map.Entry<L, Map<L, Integer>> row : edges.entrySet()) {
+            writeVarint(table.get(row.getKey()), out);
+            writeVarint(row.getValue().size(), out);
+            for (Map.Entry<L, Integer> edge : row.getValue().entrySet()) {
+                writeVarint(table.get(edge.getKey()), out);
+                writeVarint(edge.getValue(), out);
+            }
+        }
+    }
+
+    /**
+     * Read a patch written by {@link #write}.
+     *
+     * @param <L> type of vertex labels
+     * @param codec encoding of labels, as used by write()
+     * @param in where to read the patch from
+     * @return the diff
+     * @throws IOException if in cannot be read or does not hold a patch
+     */
+    public static <L> GraphDiff<L> read(LabelCodec<L> codec, DataInput in) throws IOException {
+        if (in.readInt() != PATCH_MAGIC) {
+            throw new IOException("Not a graph patch");
+        }
+        int size = readVarint(in);
+        List<L> table = new ArrayList<>(Math.min(size, 1 << 16)); // A corrupt size must not allocate much
+        for (int i = 0; i < size; i++) {
+            table.add(codec.read(in));
+        }
+        int removedCount = readVarint(in);
+        int addedCount = readVarint(in);
+        if (removedCount > size - addedCount) {
+            throw new IOException("Corrupt graph patch");
+        }
+        List<L> removed = new ArrayList<>(table.subList(0, removedCount));
+        List<L> added = new ArrayList<>(table.subList(removedCount, removedCount + addedCount));
+        int addedEdges = readVarint(in);
+        int removedEdges = readVarint(in);
+        int reweightedEdges = readVarint(in);
+        int rows = readVarint(in);
+        Map<L, Map<L, Integer>> edges = new LinkedHashMap<>();
+        try {
+            for (int r = 0; r < rows; r++) {
+                L source = table.get(readVarint(in));
+                int count = readVarint(in);
+                Map<L, Integer> targets = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    L target = table.get(readVarint(in));
+                    targets.put(target, readVarint(in));
+                }
+                edges.put(source, targets);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt graph patch", e);
+        }
+        return new GraphDiff<>(removed, added, edges, addedEdges, removedEdges, reweightedEdges);
+    }
+
+    private static void writeVarint(int value, DataOutput out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /*
+     * Read a varint written by writeVarint(). Every count, index and weight
+     * of a patch is nonnegative, so a negative value means a corrupt patch.
+     */
+    private static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Corrupt graph patch");
+    }
+
+    @Override
+    public String toString() {
+        return "GraphDiff removing " + removedVertices.size() + " and adding " + addedVertices.size()
+                + " vertices, " + addedEdges + " edges added, " + removedEdges + " removed, " + reweightedEdges
+                + " reweighted";
+    }
+}
@@ -0,0 +1,230 @@
+package graph;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Operation counts, latency histograms and allocation estimates for a graph,
+ * plus structural statistics read from the graph on demand.
+ *
+ * <p>Measurements are off until {@link #setEnabled(boolean)} is called; while
+ * off, instrumented code only pays for one volatile read per operation.
+ * Measurements can be read directly, through JMX after {@link #register},
+ * or streamed to a {@link MetricsSink}.
+ *
+ * <p>The structural attributes (vertex and edge counts, degree histogram)
+ * walk the observed graph, so they must not be read while another thread
+ * mutates a graph that is not itself thread-safe.
+ */
+public class GraphMetrics implements GraphMetricsMBean {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Graph<?> observed;
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private volatile boolean enabled = false;
+    private volatile boolean trackingAllocations = false;
+    private volatile MetricsSink sink = null;
+
+    // Abstraction function:
+    //   Represents the measurements operations.get(name) of each operation
+    //   performed on 'observed' while enabled, and the current structure of
+    //   'observed'.
+    //
+    // Representation invariant:
+    //   - 'observed' is not null
+    //
+    // Safety from rep exposure:
+    //   All fields are private; only names, numbers and fresh arrays are
+    //   returned.
+    //
+    // Thread safety argument:
+    //   Flags are volatile, 'operations' is a concurrent map, and each
+    //   Operation only holds thread-safe counters.
+
+    /**
+     * Measurements of one kind of operation.
+     */
+    private static class Operation {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    /**
+     * Create disabled metrics for a graph.
+     *
+     * @param observed graph whose structure the metrics report
+     */
+    public GraphMetrics(Graph<?> observed) {
+        this.observed = observed;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isTrackingAllocations() {
+        return trackingAllocations;
+    }
+
+    @Override
+    public void setTrackingAllocations(boolean tracking) {
+        this.trackingAllocations = tracking && allocationsSupported();
+    }
+
+    /**
+     * @param sink sink to receive every measurement from now on, or null
+     */
+    public void setSink(MetricsSink sink) {
+        this.sink = sink;
+    }
+
+    private static boolean allocationsSupported() {
+        return THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+    }
+
+    /**
+     * Read the allocation counter of the current thread, to pass to
+     * {@link #record} after the operation.
+     *
+     * @return bytes allocated so far by the current thread, or -1 if
+     *         allocation tracking is off
+     */
+    public long allocatedBytes() {
+        if (!trackingAllocations) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Record one operation that started at startNanos, as measured by
+     * System.nanoTime(). Callers should check {@link #isEnabled()} first.
+     *
+     * @param operation name of the operation
+     * @param startNanos System.nanoTime() when the operation started
+     * @param startAllocated allocatedBytes() when the operation started
+     */
+    public void record(String operation, long startNanos, long startAllocated) {
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = startAllocated < 0 ? -1 : Math.max(0, allocatedBytes() - startAllocated);
+        Operation measurements = operations.get(operation);
+        if (measurements == null) {
+            measurements = operations.computeIfAbsent(operation, name -> new Operation());
+        }
+        measurements.count.increment();
+        measurements.latency.record(nanos);
+        if (allocated > 0) {
+            measurements.allocated.add(allocated);
+        }
+        MetricsSink current = sink;
+        if (current != null) {
+            current.record(operation, nanos, allocated);
+        }
+    }
+
+    @Override
+    public String[] getOperations() {
+        String[] names = operations.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        return names;
+    }
+
+    @Override
+    public long count(String operation) {
+        Operation measurements = operations.get(operation);
+        return measurements == null ? 0 : measurements.count.sum();
+    }
+
+    @Override
+    public long latencyPercentile(String operation, double percentile) {
+        Operation measurements = operations.get(operation);
+        return measurements == null ? 0 : measurements.latency.percentile(percentile);
+    }
+
+    @Override
+    public long allocatedBytes(String operation) {
+        Operation measurements = operations.get(operation);
+        return measurements == null ? 0 : measurements.allocated.sum();
+    }
+
+    @Override
+    public int getVertexCount() {
+        return observed.vertices().size();
+    }
+
+    @Override
+    public long getEdgeCount() {
+        return edgeCount(observed);
+    }
+
+    private static <L> long edgeCount(Graph<L> graph) {
+        long edges = 0;
+        for (L vertex : graph.vertices()) {
+            edges += graph.targets(vertex).size();
+        }
+        return edges;
+    }
+
+    @Override
+    public long[] getOutDegreeHistogram() {
+        return outDegreeHistogram(observed);
+    }
+
+    private static <L> long[] outDegreeHistogram(Graph<L> graph) {
+        long[] histogram = new long[32];
+        int highest = 0;
+        for (L vertex : graph.vertices()) {
+            int bucket = 31 - Integer.numberOfLeadingZeros(graph.targets(vertex).size() + 1);
+            histogram[bucket]++;
+            highest = Math.max(highest, bucket);
+        }
+        return Arrays.copyOf(histogram, highest + 1);
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * Register these metrics with the platform MBean server.
+     *
+     * @param name name to tell these metrics apart from other graphs'
+     * @return the name under which the metrics were registered
+     * @throws JMException if the metrics cannot be registered, e.g. because
+     *         the name is already taken
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("graph:type=GraphMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("GraphMetrics");
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            sb.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue().latency);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package graph;
+
+/**
+ * JMX management interface of {@link GraphMetrics}.
+ */
+public interface GraphMetricsMBean {
+
+    /** @return true if operations are being measured */
+    public boolean isEnabled();
+
+    /** @param enabled whether to measure operations */
+    public void setEnabled(boolean enabled);
+
+    /** @return true if per-operation allocation is being estimated */
+    public boolean isTrackingAllocations();
+
+    /** @param tracking whether to estimate per-operation allocation */
+    public void setTrackingAllocations(boolean tracking);
+
+    /** @return names of the operations measured so far */
+    public String[] getOperations();
+
+    /**
+     * @param operation name of an operation
+     * @return number of times the operation was measured
+     */
+    public long count(String operation);
+
+    /**
+     * @param operation name of an operation
+     * @param percentile percentile in [0, 100]
+     * @return estimated latency of the operation at that percentile, in nanoseconds
+     */
+    public long latencyPercentile(String operation, double percentile);
+
+    /**
+     * @param operation name of an operation
+     * @return total bytes allocated by measured calls of the operation
+     */
+    public long allocatedBytes(String operation);
+
+    /** @return number of vertices in the observed graph */
+    public int getVertexCount();
+
+    /** @return number of edges in the observed graph */
+    public long getEdgeCount();
+
+    /**
+     * @return out-degree histogram of the observed graph: element i counts
+     *         the vertices whose out-degree d has floor(log2(d + 1)) == i
+     */
+    public long[] getOutDegreeHistogram();
+
+    /** Forget all measurements. */
+    public void reset();
+
+}
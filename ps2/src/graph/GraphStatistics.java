@@ -0,0 +1,346 @@
+package graph;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Summary statistics of a weighted directed graph: degree and weight
+ * distributions, hub vertices, reciprocity and strongly connected components.
+ * Immutable.
+ *
+ * <p>Histograms are logarithmic: element i of a histogram counts the values x
+ * with floor(log2(x + 1)) == i, so degree 0 is in bucket 0, degrees 1-2 in
+ * bucket 1, 3-6 in bucket 2, and so on.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class GraphStatistics<L> {
+
+    private static final int PARTITION_SIZE = 512;
+
+    private final int vertexCount;
+    private final long edgeCount;
+    private final long totalWeight;
+    private final int maxWeight;
+    private final long reciprocalEdges;
+    private final long[] outDegreeHistogram;
+    private final long[] inDegreeHistogram;
+    private final long[] weightHistogram;
+    private final Map<L, Integer> outHubs;
+    private final Map<L, Integer> inHubs;
+    private final int componentCount;
+    private final int largestComponent;
+
+    // Abstraction function:
+    //   Represents the statistics of a graph with 'vertexCount' vertices and
+    //   'edgeCount' edges whose weights sum to 'totalWeight'; 'outHubs' and
+    //   'inHubs' map the vertices of highest out-/in-degree to their degree,
+    //   in decreasing order of degree.
+    //
+    // Representation invariant:
+    //   - counts are nonnegative, reciprocalEdges <= edgeCount
+    //   - every histogram sums to vertexCount (degrees) or edgeCount (weights)
+    //   - componentCount <= vertexCount, largestComponent <= vertexCount
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final; arrays are copied and maps are
+    //   unmodifiable when returned.
+
+    private GraphStatistics(Partial<L> totals, int componentCount, int largestComponent) {
+        this.vertexCount = totals.vertices;
+        this.edgeCount = totals.edges;
+        this.totalWeight = totals.totalWeight;
+        this.maxWeight = totals.maxWeight;
+        this.reciprocalEdges = totals.reciprocalEdges;
+        this.outDegreeHistogram = trim(totals.outDegrees);
+        this.inDegreeHistogram = trim(totals.inDegrees);
+        this.weightHistogram = trim(totals.weights);
+        this.outHubs = Collections.unmodifiableMap(ranked(totals.outHubs));
+        this.inHubs = Collections.unmodifiableMap(ranked(totals.inHubs));
+        this.componentCount = componentCount;
+        this.largestComponent = largestComponent;
+        checkRep();
+    }
+
+    private GraphStatistics(GraphStatistics<?> other, Map<L, Integer> outHubs, Map<L, Integer> inHubs) {
+        this.vertexCount = other.vertexCount;
+        this.edgeCount = other.edgeCount;
+        this.totalWeight = other.totalWeight;
+        this.maxWeight = other.maxWeight;
+        this.reciprocalEdges = other.reciprocalEdges;
+        this.outDegreeHistogram = other.outDegreeHistogram;
+        this.inDegreeHistogram = other.inDegreeHistogram;
+        this.weightHistogram = other.weightHistogram;
+        this.outHubs = Collections.unmodifiableMap(outHubs);
+        this.inHubs = Collections.unmodifiableMap(inHubs);
+        this.componentCount = other.componentCount;
+        this.largestComponent = other.largestComponent;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert reciprocalEdges <= edgeCount;
+        assert Arrays.stream(outDegreeHistogram).sum() == vertexCount;
+        assert Arrays.stream(weightHistogram).sum() == edgeCount;
+        assert componentCount <= vertexCount;
+    }
+
+    /**
+     * Compute the statistics of a graph from a CSR snapshot of it. The graph
+     * must not be mutated while the snapshot is taken.
+     *
+     * @param <L> type of vertex labels in graph
+     * @param graph graph to summarize
+     * @param hubs number of hub vertices to report for each direction
+     * @return statistics of graph
+     */
+    public static <L> GraphStatistics<L> of(Graph<L> graph, int hubs) {
+        return of(CsrSnapshot.of(graph), hubs);
+    }
+
+    /**
+     * Compute the statistics of a snapshot, scanning vertex partitions in
+     * parallel on the common fork-join pool.
+     *
+     * @param <L> type of vertex labels in graph
+     * @param graph snapshot to summarize
+     * @param hubs number of hub vertices to report for each direction
+     * @return statistics of graph
+     */
+    public static <L> GraphStatistics<L> of(CsrSnapshot<L> graph, int hubs) {
+        Partial<L> totals = ForkJoinPool.commonPool().invoke(new Pass<>(graph, 0, graph.vertexCount(), hubs));
+        int[] component = GraphAlgorithms.stronglyConnectedComponents(graph);
+        int[] sizes = new int[graph.vertexCount()];
+        int componentCount = 0;
+        int largest = 0;
+        for (int c : component) {
+            componentCount = Math.max(componentCount, c + 1);
+            largest = Math.max(largest, ++sizes[c]);
+        }
+        return new GraphStatistics<>(totals, componentCount, largest);
+    }
+
+    /**
+     * Relabel the hub vertices of these statistics.
+     *
+     * @param <M> type of the new labels
+     * @param relabel function from old labels to distinct new labels
+     * @return the same statistics with each hub label l replaced by relabel(l)
+     */
+    public <M> GraphStatistics<M> relabel(Function<L, M> relabel) {
+        return new GraphStatistics<>(this, relabelKeys(outHubs, relabel), relabelKeys(inHubs, relabel));
+    }
+
+    private static <L, M> Map<M, Integer> relabelKeys(Map<L, Integer> hubs, Function<L, M> relabel) {
+        Map<M, Integer> relabelled = new LinkedHashMap<>();
+        for (Map.Entry<L, Integer> hub : hubs.entrySet()) {
+            relabelled.put(relabel.apply(hub.getKey()), hub.getValue());
+        }
+        return relabelled;
+    }
+
+    /**
+     * Statistics of part of the vertices, merged up the fork-join tree.
+     */
+    private static class Partial<L> {
+        private int vertices = 0;
+        private long edges = 0;
+        private long totalWeight = 0;
+        private int maxWeight = 0;
+        private long reciprocalEdges = 0;
+        private final long[] outDegrees = new long[32];
+        private final long[] inDegrees = new long[32];
+        private final long[] weights = new long[32];
+        private final PriorityQueue<Map.Entry<L, Integer>> outHubs = new PriorityQueue<>(Map.Entry.comparingByValue());
+        private final PriorityQueue<Map.Entry<L, Integer>> inHubs = new PriorityQueue<>(Map.Entry.comparingByValue());
+
+        private void merge(Partial<L> other, int hubs) {
+            vertices += other.vertices;
+            edges += other.edges;
+            totalWeight += other.totalWeight;
+            maxWeight = Math.max(maxWeight, other.maxWeight);
+            reciprocalEdges += other.reciprocalEdges;
+            for (int i = 0; i < 32; i++) {
+                outDegrees[i] += other.outDegrees[i];
+                inDegrees[i] += other.inDegrees[i];
+                weights[i] += other.weights[i];
+            }
+            for (Map.Entry<L, Integer> hub : other.outHubs) {
+                offer(outHubs, hub, hubs);
+            }
+            for (Map.Entry<L, Integer> hub : other.inHubs) {
+                offer(inHubs, hub, hubs);
+            }
+        }
+    }
+
+    /**
+     * One streaming pass over a range of vertices, split in halves until the
+     * range is at most one partition long.
+     */
+    private static class Pass<L> extends RecursiveTask<Partial<L>> {
+        private static final long serialVersionUID = 1L;
+
+        private final CsrSnapshot<L> graph;
+        private final int from;
+        private final int to;
+        private final int hubs;
+
+        private Pass(CsrSnapshot<L> graph, int from, int to, int hubs) {
+            this.graph = graph;
+            this.from = from;
+            this.to = to;
+            this.hubs = hubs;
+        }
+
+        @Override
+        protected Partial<L> compute() {
+            if (to - from > PARTITION_SIZE) {
+                int middle = (from + to) >>> 1;
+                Pass<L> left = new Pass<>(graph, from, middle, hubs);
+                left.fork();
+                Partial<L> right = new Pass<>(graph, middle, to, hubs).compute();
+                Partial<L> partial = left.join();
+                partial.merge(right, hubs);
+                return partial;
+            }
+            Partial<L> partial = new Partial<>();
+            for (int v = from; v < to; v++) {
+                int outDegree = graph.outEnd(v) - graph.outStart(v);
+                int inDegree = graph.inEnd(v) - graph.inStart(v);
+                partial.vertices++;
+                partial.edges += outDegree;
+                partial.outDegrees[log2(outDegree)]++;
+                partial.inDegrees[log2(inDegree)]++;
+                offer(partial.outHubs, new AbstractMap.SimpleImmutableEntry<>(graph.label(v), outDegree), hubs);
+                offer(partial.inHubs, new AbstractMap.SimpleImmutableEntry<>(graph.label(v), inDegree), hubs);
+                for (int i = graph.outStart(v); i < graph.outEnd(v); i++) {
+                    int weight = graph.outWeight(i);
+                    partial.totalWeight += weight;
+                    partial.maxWeight = Math.max(partial.maxWeight, weight);
+                    partial.weights[log2(weight)]++;
+                    if (graph.weight(graph.outTarget(i), v) > 0) {
+                        partial.reciprocalEdges++;
+                    }
+                }
+            }
+            return partial;
+        }
+    }
+
+    private static int log2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value + 1);
+    }
+
+    private static <L> void offer(PriorityQueue<Map.Entry<L, Integer>> hubs, Map.Entry<L, Integer> candidate, int limit) {
+        if (limit <= 0) {
+            return;
+        }
+        if (hubs.size() < limit) {
+            hubs.add(candidate);
+        } else if (hubs.peek().getValue() < candidate.getValue()) {
+            hubs.poll();
+            hubs.add(candidate);
+        }
+    }
+
+    private static <L> Map<L, Integer> ranked(PriorityQueue<Map.Entry<L, Integer>> hubs) {
+        List<Map.Entry<L, Integer>> entries = new ArrayList<>(hubs);
+        entries.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+        Map<L, Integer> ranked = new LinkedHashMap<>();
+        for (Map.Entry<L, Integer> entry : entries) {
+            ranked.put(entry.getKey(), entry.getValue());
+        }
+        return ranked;
+    }
+
+    private static long[] trim(long[] histogram) {
+        int length = histogram.length;
+        while (length > 1 && histogram[length - 1] == 0) {
+            length--;
+        }
+        return Arrays.copyOf(histogram, length);
+    }
+
+    /** @return number of vertices */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /** @return number of edges */
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    /** @return sum of all edge weights */
+    public long totalWeight() {
+        return totalWeight;
+    }
+
+    /** @return largest edge weight, or zero if there are no edges */
+    public int maxWeight() {
+        return maxWeight;
+    }
+
+    /** @return logarithmic histogram of out-degrees, one count per vertex */
+    public long[] outDegreeHistogram() {
+        return outDegreeHistogram.clone();
+    }
+
+    /** @return logarithmic histogram of in-degrees, one count per vertex */
+    public long[] inDegreeHistogram() {
+        return inDegreeHistogram.clone();
+    }
+
+    /** @return logarithmic histogram of edge weights, one count per edge */
+    public long[] weightHistogram() {
+        return weightHistogram.clone();
+    }
+
+    /** @return vertices of highest out-degree mapped to their out-degree, highest first */
+    public Map<L, Integer> outHubs() {
+        return outHubs;
+    }
+
+    /** @return vertices of highest in-degree mapped to their in-degree, highest first */
+    public Map<L, Integer> inHubs() {
+        return inHubs;
+    }
+
+    /**
+     * @return fraction of edges u -> v for which v -> u is also an edge, or
+     *         zero if there are no edges
+     */
+    public double reciprocity() {
+        return edgeCount == 0 ? 0 : (double) reciprocalEdges / edgeCount;
+    }
+
+    /** @return number of strongly connected components */
+    public int componentCount() {
+        return componentCount;
+    }
+
+    /** @return number of vertices in the largest strongly connected component */
+    public int largestComponent() {
+        return largestComponent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d vertices, %d edges (total weight %d, max %d), reciprocity %.3f, "
+                + "%d strongly connected components (largest %d)%n  out-degrees %s%n  in-degrees %s%n"
+                + "  weights %s%n  out hubs %s%n  in hubs %s",
+                vertexCount, edgeCount, totalWeight, maxWeight, reciprocity(), componentCount, largestComponent,
+                Arrays.toString(outDegreeHistogram), Arrays.toString(inDegreeHistogram),
+                Arrays.toString(weightHistogram), outHubs, inHubs);
+    }
+}
@@ -0,0 +1,125 @@
+package graph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Graph that measures the operations performed on it.
+ *
+ * <p>Wraps another graph and forwards every operation to it. While its
+ * {@link GraphMetrics} are enabled, each operation's latency (and, if asked
+ * for, allocation) is recorded under the operation's name; while disabled,
+ * operations are forwarded after a single volatile read.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class InstrumentedGraph<L> implements Graph<L> {
+
+    private final Graph<L> graph;
+    private final GraphMetrics metrics;
+
+    // Abstraction function:
+    //   Represents the same graph as 'graph'; 'metrics' holds measurements
+    //   of the operations made through this wrapper.
+    //
+    // Representation invariant:
+    //   - 'graph' and 'metrics' are not null, and 'metrics' observes 'graph'
+    //
+    // Safety from rep exposure:
+    //   - fields are private and final; 'metrics' is returned on purpose, but
+    //     it only reads 'graph'
+
+    /**
+     * Wrap a graph, with measurements disabled.
+     *
+     * @param graph graph to forward to
+     */
+    public InstrumentedGraph(Graph<L> graph) {
+        this.graph = graph;
+        this.metrics = new GraphMetrics(graph);
+    }
+
+    /**
+     * @return the metrics of this graph
+     */
+    public GraphMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        if (!metrics.isEnabled()) {
+            return graph.add(vertex);
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        boolean added = graph.add(vertex);
+        metrics.record("add", start, allocated);
+        return added;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        if (!metrics.isEnabled()) {
+            return graph.set(source, target, weight);
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        int previousWeight = graph.set(source, target, weight);
+        metrics.record("set", start, allocated);
+        return previousWeight;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        if (!metrics.isEnabled()) {
+            return graph.remove(vertex);
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        boolean removed = graph.remove(vertex);
+        metrics.record("remove", start, allocated);
+        return removed;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        if (!metrics.isEnabled()) {
+            return graph.vertices();
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        Set<L> vertices = graph.vertices();
+        metrics.record("vertices", start, allocated);
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        if (!metrics.isEnabled()) {
+            return graph.sources(target);
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        Map<L, Integer> sources = graph.sources(target);
+        metrics.record("sources", start, allocated);
+        return sources;
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        if (!metrics.isEnabled()) {
+            return graph.targets(source);
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        Map<L, Integer> targets = graph.targets(source);
+        metrics.record("targets", start, allocated);
+        return targets;
+    }
+
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package graph;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A binary encoding of vertex labels, for storing graphs in files.
+ *
+ * @param <L> type of vertex labels
+ */
+public interface LabelCodec<L> {
+
+    /** Encodes String labels with {@link DataOutput#writeUTF}. */
+    public static final LabelCodec<String> STRING = new LabelCodec<String>() {
+        @Override public void write(String label, DataOutput out) throws IOException {
+            out.writeUTF(label);
+        }
+
+        @Override public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /** Encodes Integer labels as four bytes. */
+    public static final LabelCodec<Integer> INTEGER = new LabelCodec<Integer>() {
+        @Override public void write(Integer label, DataOutput out) throws IOException {
+            out.writeInt(label);
+        }
+
+        @Override public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /**
+     * Write a label.
+     *
+     * @param label label to write
+     * @param out where to write it
+     * @throws IOException if out cannot be written
+     */
+    public void write(L label, DataOutput out) throws IOException;
+
+    /**
+     * Read a label written by {@link #write}.
+     *
+     * @param in where to read from
+     * @return the label
+     * @throws IOException if in cannot be read or ends too early
+     */
+    public L read(DataInput in) throws IOException;
+
+}
@@ -0,0 +1,132 @@
+package graph;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of nonnegative long values, such as latencies in
+ * nanoseconds.
+ *
+ * <p>Buckets are log-linear, as in HdrHistogram: every power-of-two range is
+ * split into 16 equal sub-buckets, so any recorded value is known to within
+ * about 6% while the whole long range fits in a fixed array of counters.
+ * Recording is a single atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // Abstraction function:
+    //   Represents the multiset of recorded values in which counts.get(i)
+    //   values lie in [lowerBound(i), lowerBound(i + 1)).
+    //
+    // Representation invariant:
+    //   - every count is nonnegative
+    //
+    // Safety from rep exposure:
+    //   'counts' is private and final, and never returned.
+    //
+    // Thread safety argument:
+    //   'counts' is an atomic array; readers may see a histogram that is
+    //   missing values recorded concurrently, but never a corrupt one.
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value value to record; negative values are recorded as zero
+     */
+    public void record(long value) {
+        counts.incrementAndGet(bucket(Math.max(0, value)));
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Estimate a percentile of the recorded values.
+     *
+     * @param percentile percentile to estimate, in [0, 100]
+     * @return the lower bound of the bucket holding that percentile, or zero
+     *         if no values have been recorded
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return lowerBound(i);
+            }
+        }
+        return lowerBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return the approximate mean of the recorded values, or zero if no
+     *         values have been recorded
+     */
+    public double mean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            total += count;
+            sum += (double) count * lowerBound(i);
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%d p99=%d p99.9=%d",
+                count(), percentile(50), percentile(99), percentile(99.9));
+    }
+}
@@ -0,0 +1,118 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A shard held in this process.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+class LocalShard<L> implements Shard<L> {
+
+    private final Map<L, Map<L, Integer>> out = new HashMap<>();
+    private final Map<L, Map<L, Integer>> in = new HashMap<>();
+
+    // Abstraction function:
+    //   Represents the shard whose vertices are the keys of 'out', where
+    //   out.get(u) holds the out-edges and in.get(u) the in-edges of u.
+    //
+    // Representation invariant:
+    //   - 'out' and 'in' have the same keys
+    //   - every weight is positive
+    //
+    // Safety from rep exposure:
+    //   All fields are private; observers return copies.
+    //
+    // Thread safety argument:
+    //   Every method holds this object's lock.
+
+    private void checkRep() {
+        assert out.size() == in.size();
+    }
+
+    @Override
+    public synchronized boolean add(L vertex) {
+        if (out.containsKey(vertex)) {
+            return false;
+        }
+        out.put(vertex, new HashMap<>());
+        in.put(vertex, new HashMap<>());
+        checkRep();
+        return true;
+    }
+
+    @Override
+    public synchronized int setTarget(L source, L target, int weight) {
+        return set(out, source, target, weight);
+    }
+
+    @Override
+    public synchronized int setSource(L target, L source, int weight) {
+        return set(in, target, source, weight);
+    }
+
+    /*
+     * Set edges.get(vertex).get(other) to weight, as described by setTarget.
+     */
+    private int set(Map<L, Map<L, Integer>> edges, L vertex, L other, int weight) {
+        if (weight != 0) {
+            add(vertex);
+        }
+        Map<L, Integer> adjacent = edges.get(vertex);
+        if (adjacent == null) {
+            return 0;
+        }
+        Integer previous = weight == 0 ? adjacent.remove(other) : adjacent.put(other, weight);
+        return previous == null ? 0 : previous;
+    }
+
+    @Override
+    public synchronized List<Map<L, Integer>> remove(L vertex) {
+        Map<L, Integer> targets = out.remove(vertex);
+        if (targets == null) {
+            return null;
+        }
+        Map<L, Integer> sources = in.remove(vertex);
+        checkRep();
+        return Arrays.asList(targets, sources);
+    }
+
+    @Override
+    public synchronized Set<L> vertices() {
+        return new HashSet<>(out.keySet());
+    }
+
+    @Override
+    public synchronized Map<L, Integer> targets(L source) {
+        Map<L, Integer> targets = out.get(source);
+        return targets == null ? new HashMap<>() : new HashMap<>(targets);
+    }
+
+    @Override
+    public synchronized Map<L, Integer> sources(L target) {
+        Map<L, Integer> sources = in.get(target);
+        return sources == null ? new HashMap<>() : new HashMap<>(sources);
+    }
+
+    @Override
+    public synchronized Set<L> withTarget(Collection<L> candidates, L target) {
+        Set<L> result = new HashSet<>();
+        for (L candidate : candidates) {
+            Map<L, Integer> targets = out.get(candidate);
+            if (targets != null && targets.containsKey(target)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+    }
+}
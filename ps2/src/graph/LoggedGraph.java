@@ -0,0 +1,598 @@
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * A Graph whose mutations are recorded in a write-ahead log, so that they
+ * survive a crash of the process.
+ *
+ * <p>The graph lives in a directory of numbered files: snapshots
+ * "snapshot-k" hold the whole graph as of the start of log segment k, and
+ * log segments "log-k" hold one record per mutation (add, set or remove),
+ * each framed with its length and a CRC32 checksum. Opening the directory
+ * loads the latest snapshot and replays the segments after it; a torn record
+ * at the end of the last segment, left by a crash mid-write, is discarded,
+ * but a damaged record anywhere else makes opening fail.
+ *
+ * <p>Records are appended to a memory buffer and written by a background
+ * thread, which syncs the file once per batch (group commit). With
+ * syncWrites, every mutation waits until its record is on disk, and
+ * concurrent mutations share one fsync; without it, call {@link #sync()} to
+ * wait for all records so far. A mutation whose labels the codec cannot
+ * encode throws UncheckedIOException and changes neither the graph nor the
+ * log.
+ *
+ * <p>{@link #compact(Executor)} folds the log into a fresh snapshot: it starts
+ * a new segment, then writes the snapshot of everything before that segment
+ * on the given executor while writers carry on, syncs the directory so the
+ * snapshot's name is durable, and only then deletes the old files.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class LoggedGraph<L> implements Graph<L>, Closeable {
+
+    private static final byte ADD = 1;
+    private static final byte SET = 2;
+    private static final byte REMOVE = 3;
+    private static final int SNAPSHOT_MAGIC = 0x47534e50;
+    private static final String LOG = "log-";
+    private static final String SNAPSHOT = "snapshot-";
+
+    private final Path directory;
+    private final LabelCodec<L> codec;
+    private final boolean syncWrites;
+    private final SnapshotGraph<L> graph = new SnapshotGraph<>();
+    private final Thread flusher;
+
+    // guarded by this
+    private FileChannel log;
+    private int segment;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended = 0;
+    private long durable = 0;
+    private boolean closed = false;
+    private IOException failure = null;
+
+    // Abstraction function:
+    //   Represents the graph 'graph', whose every mutation since the snapshot
+    //   in 'directory' is recorded in the log segments there (records 1 to
+    //   'durable') or in 'pending' (records durable+1 to 'appended').
+    //
+    // Representation invariant:
+    //   - durable <= appended
+    //   - 'log' is open on segment 'segment' of 'directory' unless closed
+    //   - applying the snapshot and segments in 'directory' followed by the
+    //     records in 'pending' to an empty graph yields 'graph'
+    //
+    // Safety from rep exposure:
+    //   All fields are private; observers return copies from 'graph'.
+    //
+    // Thread safety argument:
+    //   Mutators apply their change and append its record while holding this
+    //   object's lock, so records are in the same order as the changes. The
+    //   flusher thread takes the lock only to swap out 'pending' and to
+    //   publish 'durable'; it writes and syncs the file without the lock, and
+    //   is the only writer of 'log' while it is open.
+
+    private LoggedGraph(Path directory, LabelCodec<L> codec, boolean syncWrites) {
+        this.directory = directory;
+        this.codec = codec;
+        this.syncWrites = syncWrites;
+        this.flusher = new Thread(this::flushLoop, "LoggedGraph flusher " + directory);
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Open a logged graph, recovering its state from directory.
+     *
+     * @param <L> type of vertex labels
+     * @param directory directory holding the graph's files; created if needed
+     * @param codec encoding of labels in the files
+     * @param syncWrites if true, every mutation returns only once its record
+     *        is on disk
+     * @return the recovered graph
+     * @throws IOException if the files cannot be read or created, or hold a
+     *         damaged record other than a torn one at the end of the log
+     */
+    public static <L> LoggedGraph<L> open(Path directory, LabelCodec<L> codec, boolean syncWrites)
+            throws IOException {
+        Files.createDirectories(directory);
+        LoggedGraph<L> graph = new LoggedGraph<>(directory, codec, syncWrites);
+        graph.recover();
+        graph.flusher.start();
+        return graph;
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> unfinished = Files.newDirectoryStream(directory, SNAPSHOT + "*.tmp")) {
+            for (Path file : unfinished) {
+                Files.delete(file); // Left by a compaction that crashed
+            }
+        }
+        List<Integer> snapshots = numbered(SNAPSHOT);
+        List<Integer> segments = numbered(LOG);
+        int first = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        if (!snapshots.isEmpty()) {
+            readSnapshot(directory.resolve(SNAPSHOT + first));
+        }
+        int last = first - 1;
+        for (int number : segments) {
+            if (number >= first) {
+                last = number;
+            }
+        }
+        for (int number : segments) {
+            if (number >= first) {
+                replay(directory.resolve(LOG + number), number == last);
+            }
+        }
+        segment = last + 1;
+        log = openSegment(segment);
+    }
+
+    private List<Integer> numbered(String prefix) throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d+")) {
+                    numbers.add(Integer.parseInt(suffix));
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(directory.resolve(LOG + number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /*
+     * Apply every record of a segment. Only the last segment can have been
+     * cut short by a crash, so only there is a damaged record at the very end
+     * discarded, and the segment cut off before it; damage anywhere else
+     * means the log itself is corrupt.
+     */
+    private void replay(Path file, boolean last) throws IOException {
+        long valid = 0;
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (valid < size) {
+                long remaining = size - valid;
+                String damage = null;
+                boolean torn = false;
+                byte[] payload = null;
+                if (remaining < 8) {
+                    damage = "a partial record header";
+                    torn = true;
+                } else {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length == 0) {
+                        damage = "a record of length 0";
+                        torn = zeros(in, remaining - 8); // Space the crash left unwritten
+                    } else if (length < 0 || length > remaining - 8) {
+                        damage = "a record of length " + length + " with " + (remaining - 8) + " bytes left";
+                        torn = length > 0;
+                    } else {
+                        payload = new byte[length];
+                        in.readFully(payload);
+                        if (checksum != checksum(payload, payload.length)) {
+                            damage = "a record with a bad checksum";
+                            torn = length == remaining - 8;
+                        }
+                    }
+                }
+                if (damage != null) {
+                    if (!last || !torn) {
+                        throw new IOException("Corrupt graph log " + file + ": " + damage + " at byte " + valid);
+                    }
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                valid += 8 + payload.length;
+            }
+        }
+        if (valid < size) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+    }
+
+    /*
+     * Return true iff the next count bytes of in are all zero.
+     */
+    private static boolean zeros(InputStream in, long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            if (in.read() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void apply(DataInputStream record) throws IOException {
+        byte op = record.readByte();
+        switch (op) {
+        case ADD:
+            graph.add(codec.read(record));
+            break;
+        case SET:
+            L source = codec.read(record);
+            L target = codec.read(record);
+            graph.set(source, target, record.readInt());
+            break;
+        case REMOVE:
+            graph.remove(codec.read(record));
+            break;
+        default:
+            throw new IOException("Unknown log record type " + op);
+        }
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /*
+     * Encode a record, before its change is made, so that a label the codec
+     * cannot write leaves both the graph and the log unchanged.
+     */
+    private byte[] encode(byte op, L first, L second, int weight) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            codec.write(first, out);
+            if (op == SET) {
+                codec.write(second, out);
+                out.writeInt(weight);
+            }
+        } catch (IOException e) {
+            // Memory cannot fail, but the codec can reject a label, as
+            // writeUTF does one longer than 65535 bytes
+            throw new UncheckedIOException("Cannot encode log record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Append an encoded record to 'pending'; caller holds the lock.
+     * Returns the record's sequence number.
+     */
+    private long append(byte[] payload) {
+        int checksum = checksum(payload, payload.length);
+        writeInt(payload.length);
+        writeInt(checksum);
+        pending.write(payload, 0, payload.length);
+        notifyAll();
+        return ++appended;
+    }
+
+    private void writeInt(int value) {
+        pending.write(value >>> 24);
+        pending.write(value >>> 16);
+        pending.write(value >>> 8);
+        pending.write(value);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long upTo;
+            FileChannel channel;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return; // Closed and drained
+                }
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                upTo = appended;
+                channel = log;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                durable = upTo;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void awaitDurable(long sequence) {
+        while (durable < sequence && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the log", e);
+            }
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Graph log failed", failure);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Graph log is closed");
+        }
+        checkFailure();
+    }
+
+    /**
+     * Wait until every mutation so far is on disk.
+     *
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        byte[] record = encode(ADD, vertex, null, 0);
+        long sequence;
+        synchronized (this) {
+            checkOpen();
+            if (!graph.add(vertex)) {
+                return false;
+            }
+            sequence = append(record);
+        }
+        if (syncWrites) {
+            awaitDurable(sequence);
+        }
+        return true;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        byte[] record = encode(SET, source, target, weight);
+        long sequence;
+        int previousWeight;
+        synchronized (this) {
+            checkOpen();
+            previousWeight = graph.set(source, target, weight);
+            if (previousWeight == weight) {
+                return previousWeight;
+            }
+            sequence = append(record);
+        }
+        if (syncWrites) {
+            awaitDurable(sequence);
+        }
+        return previousWeight;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        byte[] record = encode(REMOVE, vertex, null, 0);
+        long sequence;
+        synchronized (this) {
+            checkOpen();
+            if (!graph.remove(vertex)) {
+                return false;
+            }
+            sequence = append(record);
+        }
+        if (syncWrites) {
+            awaitDurable(sequence);
+        }
+        return true;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return graph.vertices();
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        return graph.sources(target);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        return graph.targets(source);
+    }
+
+    /**
+     * @return the current version of this graph, which later mutations of
+     *         this graph do not change
+     */
+    public PersistentGraph<L> snapshot() {
+        return graph.snapshot();
+    }
+
+    /**
+     * Fold the log into a new snapshot. Starting a new log segment waits for
+     * the records already appended to reach the disk; the snapshot itself is
+     * written by a task on executor while mutations continue.
+     *
+     * @param executor runs the task that writes the snapshot and deletes the
+     *        files it replaces; the task blocks on disk I/O
+     * @return a future that completes once the snapshot is durable and the
+     *         files it replaces are deleted
+     */
+    public CompletableFuture<Void> compact(Executor executor) {
+        final PersistentGraph<L> snapshot;
+        final int number;
+        synchronized (this) {
+            checkOpen();
+            while (durable < appended) {
+                awaitDurable(appended); // Mutations may slip in while waiting
+            }
+            try {
+                log.close();
+                segment++;
+                log = openSegment(segment);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("Cannot start a new log segment", e);
+            }
+            snapshot = graph.snapshot();
+            number = segment;
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                writeSnapshot(snapshot, number);
+                syncDirectory(); // The new snapshot must be durable before the files it replaces go
+                for (int old : numbered(SNAPSHOT)) {
+                    if (old < number) {
+                        Files.deleteIfExists(directory.resolve(SNAPSHOT + old));
+                    }
+                }
+                for (int old : numbered(LOG)) {
+                    if (old < number) {
+                        Files.deleteIfExists(directory.resolve(LOG + old));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + number, e);
+            }
+        }, executor);
+    }
+
+    private void writeSnapshot(PersistentGraph<L> snapshot, int number) throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT + number + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            Set<L> vertices = snapshot.vertices();
+            out.writeInt(vertices.size());
+            for (L vertex : vertices) {
+                codec.write(vertex, out);
+            }
+            out.writeInt(snapshot.edgeCount());
+            for (L source : vertices) {
+                for (Map.Entry<L, Integer> target : snapshot.targets(source).entrySet()) {
+                    codec.write(source, out);
+                    codec.write(target.getKey(), out);
+                    out.writeInt(target.getValue());
+                }
+            }
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT + number), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Make the entries of 'directory', such as a file just renamed into it,
+     * durable.
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void readSnapshot(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            int vertices = in.readInt();
+            for (int i = 0; i < vertices; i++) {
+                graph.add(codec.read(in));
+            }
+            int edges = in.readInt();
+            for (int i = 0; i < edges; i++) {
+                L source = codec.read(in);
+                L target = codec.read(in);
+                graph.set(source, target, in.readInt());
+            }
+        }
+    }
+
+    /**
+     * Write all pending records to disk and close the log. The graph can no
+     * longer be mutated, but can still be read.
+     *
+     * @throws IOException if the log cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            log.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
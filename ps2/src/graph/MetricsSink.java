@@ -0,0 +1,22 @@
+package graph;
+
+/**
+ * A destination for individual operation measurements recorded by
+ * {@link GraphMetrics}, e.g. a log, a tracing system, or a metrics registry.
+ *
+ * <p>Implementations are called on the thread that performed the operation,
+ * so they must be thread-safe and should return quickly.
+ */
+public interface MetricsSink {
+
+    /**
+     * Receive one measurement.
+     *
+     * @param operation name of the operation, e.g. "targets" or "poem"
+     * @param nanos elapsed wall-clock time of the operation
+     * @param allocatedBytes bytes allocated by the operation's thread, or -1
+     *        if allocation tracking is off or unsupported
+     */
+    public void record(String operation, long nanos, long allocatedBytes);
+
+}
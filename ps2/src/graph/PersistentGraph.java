@@ -0,0 +1,203 @@
+package graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable weighted directed graph with structural sharing.
+ *
+ * <p>Updates such as {@link #withEdge} return a new version of the graph
+ * that shares all unchanged adjacency with this one (through hash array
+ * mapped tries), so keeping any number of old versions is cheap and a
+ * version can be read from many threads without locking. Use
+ * {@link SnapshotGraph} for a mutable Graph whose versions are these.
+ *
+ * <p>A PersistentGraph is also a read-only Graph; its mutators throw
+ * UnsupportedOperationException.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public final class PersistentGraph<L> implements Graph<L> {
+
+    private static final PersistentGraph<?> EMPTY =
+            new PersistentGraph<>(PersistentMap.empty(), PersistentMap.empty(), 0);
+
+    private final PersistentMap<L, PersistentMap<L, Integer>> out;
+    private final PersistentMap<L, PersistentMap<L, Integer>> in;
+    private final int edgeCount;
+
+    // Abstraction function:
+    //   Represents the graph whose vertices are the keys of 'out', with an
+    //   edge u -> v of weight w for each out.get(u).get(v) == w.
+    //
+    // Representation invariant:
+    //   - 'out' and 'in' have the same keys
+    //   - out.get(u).get(v) == in.get(v).get(u) for every edge, and both are
+    //     positive; neither map holds other entries
+    //   - edgeCount is the number of edges
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final and refer to immutable maps; the
+    //   Graph observers return fresh mutable copies.
+
+    private PersistentGraph(PersistentMap<L, PersistentMap<L, Integer>> out,
+            PersistentMap<L, PersistentMap<L, Integer>> in, int edgeCount) {
+        this.out = out;
+        this.in = in;
+        this.edgeCount = edgeCount;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert out.size() == in.size();
+        assert edgeCount >= 0;
+    }
+
+    /**
+     * @param <L> type of vertex labels
+     * @return the empty graph
+     */
+    @SuppressWarnings("unchecked")
+    public static <L> PersistentGraph<L> empty() {
+        return (PersistentGraph<L>) EMPTY;
+    }
+
+    /**
+     * @param vertex label of a vertex
+     * @return this graph with vertex added; this graph itself if it already
+     *         includes vertex
+     */
+    public PersistentGraph<L> withVertex(L vertex) {
+        if (out.get(vertex) != null) {
+            return this;
+        }
+        return new PersistentGraph<>(out.put(vertex, PersistentMap.empty()),
+                in.put(vertex, PersistentMap.empty()), edgeCount);
+    }
+
+    /**
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @param weight nonnegative weight of the edge
+     * @return this graph with the edge from source to target set as by
+     *         {@link Graph#set}: added or reweighted (adding missing vertices)
+     *         if weight is nonzero, removed if weight is zero
+     */
+    public PersistentGraph<L> withEdge(L source, L target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
+        int previousWeight = weight(source, target);
+        if (previousWeight == weight) {
+            return this;
+        }
+        if (weight == 0) {
+            return new PersistentGraph<>(
+                    out.put(source, out.get(source).remove(target)),
+                    in.put(target, in.get(target).remove(source)),
+                    edgeCount - 1);
+        }
+        PersistentGraph<L> graph = withVertex(source).withVertex(target);
+        return new PersistentGraph<>(
+                graph.out.put(source, graph.out.get(source).put(target, weight)),
+                graph.in.put(target, graph.in.get(target).put(source, weight)),
+                previousWeight == 0 ? edgeCount + 1 : edgeCount);
+    }
+
+    /**
+     * @param vertex label of a vertex
+     * @return this graph without vertex and its edges; this graph itself if
+     *         it does not include vertex
+     */
+    public PersistentGraph<L> withoutVertex(L vertex) {
+        PersistentMap<L, Integer> targets = out.get(vertex);
+        if (targets == null) {
+            return this;
+        }
+        PersistentMap<L, Integer> sources = in.get(vertex);
+        PersistentMap<L, PersistentMap<L, Integer>> newOut = out.remove(vertex);
+        PersistentMap<L, PersistentMap<L, Integer>> newIn = in.remove(vertex);
+        for (L target : targets.toMap().keySet()) {
+            if (!target.equals(vertex)) {
+                newIn = newIn.put(target, newIn.get(target).remove(vertex));
+            }
+        }
+        for (L source : sources.toMap().keySet()) {
+            if (!source.equals(vertex)) {
+                newOut = newOut.put(source, newOut.get(source).remove(vertex));
+            }
+        }
+        int selfLoop = targets.get(vertex) != null ? 1 : 0;
+        return new PersistentGraph<>(newOut, newIn, edgeCount - targets.size() - sources.size() + selfLoop);
+    }
+
+    /**
+     * @param vertex a label
+     * @return true iff this graph includes a vertex with that label
+     */
+    public boolean contains(L vertex) {
+        return out.get(vertex) != null;
+    }
+
+    /**
+     * @param source label of the source vertex
+     * @param target label of the target vertex
+     * @return weight of the edge from source to target, or zero if none
+     */
+    public int weight(L source, L target) {
+        PersistentMap<L, Integer> targets = out.get(source);
+        Integer weight = targets == null ? null : targets.get(target);
+        return weight == null ? 0 : weight;
+    }
+
+    /** @return number of vertices */
+    public int vertexCount() {
+        return out.size();
+    }
+
+    /** @return number of edges */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        throw new UnsupportedOperationException("PersistentGraph is immutable, use withVertex");
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        throw new UnsupportedOperationException("PersistentGraph is immutable, use withEdge");
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        throw new UnsupportedOperationException("PersistentGraph is immutable, use withoutVertex");
+    }
+
+    @Override
+    public Set<L> vertices() {
+        Set<L> vertices = new HashSet<>();
+        out.forEach((vertex, targets) -> vertices.add(vertex));
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        PersistentMap<L, Integer> sources = in.get(target);
+        return sources == null ? new HashMap<>() : sources.toMap();
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        PersistentMap<L, Integer> targets = out.get(source);
+        return targets == null ? new HashMap<>() : targets.toMap();
+    }
+
+    @Override
+    public String toString() {
+        return "PersistentGraph" + out;
+    }
+}
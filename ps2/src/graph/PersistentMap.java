@@ -0,0 +1,365 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map implemented as a hash array mapped trie (HAMT).
+ *
+ * <p>{@link #put} and {@link #remove} return a new map that shares all but
+ * one root-to-leaf path of trie nodes with this one, so both versions stay
+ * usable and an update costs O(log32 n) time and space. Keys must be
+ * immutable and non-null; values must be non-null.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+final class PersistentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    // Abstraction function:
+    //   Represents the map of all (key, value) pairs stored in the trie under
+    //   'root', or the empty map if root is null.
+    //
+    // Representation invariant:
+    //   - 'size' is the number of pairs in the trie
+    //   - a key appears at most once, at the position chosen by its hash
+    //   - no node is empty, except that 'root' may be null
+    //
+    // Safety from rep exposure:
+    //   Nodes are never mutated after construction and never returned.
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param <K> type of keys
+     * @param <V> type of values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** @return number of keys in this map */
+    int size() {
+        return size;
+    }
+
+    /** @return true iff this map has no keys */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key a key
+     * @return the value for key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        return root == null ? null : (V) root.get(0, hash(key), key);
+    }
+
+    /**
+     * @param key a key
+     * @param value value for key
+     * @return a map equal to this one except that key maps to value; this map
+     *         itself if key already maps to an equal value
+     */
+    PersistentMap<K, V> put(K key, V value) {
+        boolean[] added = { false };
+        Node node = root == null ? BitmapNode.EMPTY : root;
+        Node updated = node.put(0, hash(key), key, value, added);
+        if (updated == root) {
+            return this;
+        }
+        return new PersistentMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @param key a key
+     * @return a map equal to this one except that it has no value for key;
+     *         this map itself if it had none
+     */
+    PersistentMap<K, V> remove(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Node updated = root.remove(0, hash(key), key);
+        if (updated == root) {
+            return this;
+        }
+        return updated == null ? empty() : new PersistentMap<>(updated, size - 1);
+    }
+
+    /**
+     * Call action on every pair of this map, in no particular order.
+     *
+     * @param action action to call
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    /**
+     * @return a new mutable map with the same pairs as this one
+     */
+    Map<K, V> toMap() {
+        Map<K, V> map = new HashMap<>(Math.max(16, size * 4 / 3 + 1));
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * A trie node.
+     */
+    private interface Node {
+        Object get(int shift, int hash, Object key);
+        Node put(int shift, int hash, Object key, Object value, boolean[] added);
+        Node remove(int shift, int hash, Object key);
+        void forEach(BiConsumer<Object, Object> action);
+
+        /*
+         * Returns { key, value } if this node holds exactly one pair and no
+         * children, so the parent can hold the pair itself; otherwise null.
+         */
+        Object[] singlePair();
+    }
+
+    /**
+     * An inner node. For each set bit of 'bitmap', 'array' holds a pair
+     * (key, value), or (null, child node) for keys that share these hash bits.
+     */
+    private static final class BitmapNode implements Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        private BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object get(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * index(bit);
+            Object keyOrNull = array[i];
+            if (keyOrNull == null) {
+                return ((Node) array[i + 1]).get(shift + BITS, hash, key);
+            }
+            return key.equals(keyOrNull) ? array[i + 1] : null;
+        }
+
+        @Override
+        public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] inserted = new Object[array.length + 2];
+                System.arraycopy(array, 0, inserted, 0, i);
+                inserted[i] = key;
+                inserted[i + 1] = value;
+                System.arraycopy(array, i, inserted, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, inserted);
+            }
+            Object keyOrNull = array[i];
+            Object valueOrNode = array[i + 1];
+            if (keyOrNull == null) {
+                Node child = ((Node) valueOrNode).put(shift + BITS, hash, key, value, added);
+                return child == valueOrNode ? this : with(i + 1, null, child);
+            }
+            if (key.equals(keyOrNull)) {
+                return value.equals(valueOrNode) ? this : with(i + 1, key, value);
+            }
+            added[0] = true;
+            Node child = pair(shift + BITS, keyOrNull, valueOrNode, hash, key, value);
+            return with(i + 1, null, child);
+        }
+
+        /*
+         * Copy of this node with array[valueIndex - 1] = key and
+         * array[valueIndex] = value.
+         */
+        private BitmapNode with(int valueIndex, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[valueIndex - 1] = key;
+            copy[valueIndex] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private static Node pair(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+            }
+            boolean[] ignored = { false };
+            return EMPTY.put(shift, hash1, key1, value1, ignored).put(shift, hash2, key2, value2, ignored);
+        }
+
+        @Override
+        public Node remove(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * index(bit);
+            Object keyOrNull = array[i];
+            if (keyOrNull == null) {
+                Node child = (Node) array[i + 1];
+                Node updated = child.remove(shift + BITS, hash, key);
+                if (updated == child) {
+                    return this;
+                }
+                if (updated == null) {
+                    return without(bit, i);
+                }
+                Object[] single = updated.singlePair();
+                return single != null ? with(i + 1, single[0], single[1]) : with(i + 1, null, updated);
+            }
+            return key.equals(keyOrNull) ? without(bit, i) : this;
+        }
+
+        private BitmapNode without(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] removed = new Object[array.length - 2];
+            System.arraycopy(array, 0, removed, 0, i);
+            System.arraycopy(array, i + 2, removed, i, array.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, removed);
+        }
+
+        @Override
+        public Object[] singlePair() {
+            return array.length == 2 && array[0] != null ? array : null;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A leaf for distinct keys whose hashes are equal, as pairs in 'array'.
+     */
+    private static final class CollisionNode implements Node {
+
+        private final int hash;
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object get(int shift, int hash, Object key) {
+            int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this leaf one level down beside the new key
+                boolean[] ignored = { false };
+                Node node = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] { null, this });
+                added[0] = true;
+                return node.put(shift, hash, key, value, ignored);
+            }
+            int i = find(key);
+            if (i >= 0) {
+                if (value.equals(array[i + 1])) {
+                    return this;
+                }
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] grown = Arrays.copyOf(array, array.length + 2);
+            grown[array.length] = key;
+            grown[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, grown);
+        }
+
+        @Override
+        public Node remove(int shift, int hash, Object key) {
+            int i = find(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] removed = new Object[array.length - 2];
+            System.arraycopy(array, 0, removed, 0, i);
+            System.arraycopy(array, i + 2, removed, i, array.length - i - 2);
+            return new CollisionNode(hash, removed);
+        }
+
+        @Override
+        public Object[] singlePair() {
+            return array.length == 2 ? array : null;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
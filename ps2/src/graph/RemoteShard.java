@@ -0,0 +1,183 @@
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A client of a shard served by a {@link ShardServer}, usually in another
+ * process.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+class RemoteShard<L> implements Shard<L> {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final LabelCodec<L> codec;
+
+    // Abstraction function:
+    //   Represents the shard served at the other end of 'socket'.
+    //
+    // Representation invariant:
+    //   - 'in' and 'out' are the streams of 'socket'
+    //   - unless 'socket' is closed, 'out' holds no part of a request and
+    //     'in' no part of an answer between calls
+    //
+    // Safety from rep exposure:
+    //   All fields are private and none are returned.
+    //
+    // Thread safety argument:
+    //   Each request and its answer are exchanged while holding this
+    //   object's lock, so requests from different threads never interleave.
+    //   'socket' is closed under the lock, or by close().
+
+    /**
+     * Connect to a shard server.
+     *
+     * @param address address of the server
+     * @param codec encoding of labels on the wire, as used by the server
+     * @throws IOException if the server cannot be reached
+     */
+    RemoteShard(InetSocketAddress address, LabelCodec<L> codec) throws IOException {
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(address);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.codec = codec;
+    }
+
+    /**
+     * Writes the operation byte and arguments of a request.
+     */
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the result of an answer that succeeded.
+     */
+    private interface Reply<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /*
+     * Encode a request in full, send it in one write, and read its answer.
+     * A request that cannot be encoded is never sent. If the exchange itself
+     * fails, the connection may be partway through a request or an answer,
+     * so it is closed, and every later call fails at once.
+     */
+    private <T> T call(Request request, Reply<T> reply) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        request.write(new DataOutputStream(bytes));
+        if (socket.isClosed()) {
+            throw new IOException("Shard connection closed");
+        }
+        byte status;
+        String failure;
+        try {
+            bytes.writeTo(out);
+            out.flush();
+            status = in.readByte();
+            if (status == ShardServer.OK) {
+                return reply.read(in);
+            }
+            failure = in.readUTF();
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+        // The server answered in full, so the connection is still in step
+        throw new IOException("Shard failed: " + failure);
+    }
+
+    @Override
+    public synchronized boolean add(L vertex) throws IOException {
+        return call(out -> {
+            out.writeByte(ShardServer.ADD);
+            codec.write(vertex, out);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public synchronized int setTarget(L source, L target, int weight) throws IOException {
+        return set(ShardServer.SET_TARGET, source, target, weight);
+    }
+
+    @Override
+    public synchronized int setSource(L target, L source, int weight) throws IOException {
+        return set(ShardServer.SET_SOURCE, target, source, weight);
+    }
+
+    private int set(byte op, L vertex, L other, int weight) throws IOException {
+        return call(out -> {
+            out.writeByte(op);
+            codec.write(vertex, out);
+            codec.write(other, out);
+            out.writeInt(weight);
+        }, DataInputStream::readInt);
+    }
+
+    @Override
+    public synchronized List<Map<L, Integer>> remove(L vertex) throws IOException {
+        return call(out -> {
+            out.writeByte(ShardServer.REMOVE);
+            codec.write(vertex, out);
+        }, in -> {
+            if (!in.readBoolean()) {
+                return null;
+            }
+            Map<L, Integer> targets = ShardServer.readMap(codec, in);
+            Map<L, Integer> sources = ShardServer.readMap(codec, in);
+            return Arrays.asList(targets, sources);
+        });
+    }
+
+    @Override
+    public synchronized Set<L> vertices() throws IOException {
+        return call(out -> out.writeByte(ShardServer.VERTICES), in -> ShardServer.readLabelSet(codec, in));
+    }
+
+    @Override
+    public synchronized Map<L, Integer> targets(L source) throws IOException {
+        return edges(ShardServer.TARGETS, source);
+    }
+
+    @Override
+    public synchronized Map<L, Integer> sources(L target) throws IOException {
+        return edges(ShardServer.SOURCES, target);
+    }
+
+    private Map<L, Integer> edges(byte op, L vertex) throws IOException {
+        return call(out -> {
+            out.writeByte(op);
+            codec.write(vertex, out);
+        }, in -> ShardServer.readMap(codec, in));
+    }
+
+    @Override
+    public synchronized Set<L> withTarget(Collection<L> candidates, L target) throws IOException {
+        return call(out -> {
+            out.writeByte(ShardServer.WITH_TARGET);
+            codec.write(target, out);
+            ShardServer.writeLabels(candidates, codec, out);
+        }, in -> ShardServer.readLabelSet(codec, in));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        socket.close();
+    }
+}
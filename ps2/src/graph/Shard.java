@@ -0,0 +1,84 @@
+package graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One partition of a {@link ShardedGraph}: the vertices whose labels hash to
+ * it, each with both its out-edges and its in-edges.
+ *
+ * <p>An edge from u to v is stored twice, as an out-edge of u in u's shard
+ * and as an in-edge of v in v's shard; the sharded graph keeps the two
+ * copies in step. Every method may throw IOException if the shard lives in
+ * another process and cannot be reached.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+interface Shard<L> extends Closeable {
+
+    /**
+     * @param vertex label of a vertex of this shard
+     * @return true if vertex was added, false if already present
+     */
+    boolean add(L vertex) throws IOException;
+
+    /**
+     * Set the weight of an out-edge of source, adding source if weight is
+     * nonzero.
+     *
+     * @param source label of a vertex of this shard
+     * @param target label of any vertex
+     * @param weight nonnegative weight; zero removes the edge
+     * @return previous weight of the edge, or zero if there was none
+     */
+    int setTarget(L source, L target, int weight) throws IOException;
+
+    /**
+     * Set the weight of an in-edge of target, adding target if weight is
+     * nonzero.
+     *
+     * @param target label of a vertex of this shard
+     * @param source label of any vertex
+     * @param weight nonnegative weight; zero removes the edge
+     * @return previous weight of the edge, or zero if there was none
+     */
+    int setSource(L target, L source, int weight) throws IOException;
+
+    /**
+     * Remove a vertex with its out- and in-edges. Copies of those edges in
+     * other shards are left for the caller to remove.
+     *
+     * @param vertex label of a vertex of this shard
+     * @return null if vertex was not present, else a list of its former
+     *         targets and its former sources, in that order
+     */
+    List<Map<L, Integer>> remove(L vertex) throws IOException;
+
+    /** @return the vertices of this shard */
+    Set<L> vertices() throws IOException;
+
+    /**
+     * @param source label of a vertex of this shard
+     * @return out-edges of source, mapping targets to weights
+     */
+    Map<L, Integer> targets(L source) throws IOException;
+
+    /**
+     * @param target label of a vertex of this shard
+     * @return in-edges of target, mapping sources to weights
+     */
+    Map<L, Integer> sources(L target) throws IOException;
+
+    /**
+     * The shard-local half of a two-hop join.
+     *
+     * @param candidates labels of vertices of this shard
+     * @param target label of any vertex
+     * @return the candidates that have an edge to target
+     */
+    Set<L> withTarget(Collection<L> candidates, L target) throws IOException;
+}
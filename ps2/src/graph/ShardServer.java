@@ -0,0 +1,256 @@
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves one {@link Shard} of a {@link ShardedGraph} over TCP, so that the
+ * shards of a graph can live in separate processes.
+ *
+ * <p>Each connection carries a sequence of requests, each answered before
+ * the next is read: an operation byte and its arguments, answered by a
+ * status byte and the result. Labels are encoded with a {@link LabelCodec}.
+ * Run as a program, it listens on the loopback interface, prints its
+ * port on the first line of standard output, and exits when its standard
+ * input ends, so that it does not outlive the process that started it.
+ *
+ * @param <L> type of vertex labels, must be immutable
+ */
+public class ShardServer<L> implements Closeable {
+
+    static final byte ADD = 1;
+    static final byte SET_TARGET = 2;
+    static final byte SET_SOURCE = 3;
+    static final byte REMOVE = 4;
+    static final byte VERTICES = 5;
+    static final byte TARGETS = 6;
+    static final byte SOURCES = 7;
+    static final byte WITH_TARGET = 8;
+
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+
+    private final Shard<L> shard = new LocalShard<>();
+    private final LabelCodec<L> codec;
+    private final ServerSocket socket;
+    private final Thread acceptor;
+
+    // Abstraction function:
+    //   Represents a server answering requests on 'socket' about 'shard'.
+    //
+    // Representation invariant:
+    //   - 'acceptor' runs acceptLoop
+    //
+    // Safety from rep exposure:
+    //   All fields are private and none are returned.
+    //
+    // Thread safety argument:
+    //   Each connection is served by its own thread; 'shard' is threadsafe.
+
+    /**
+     * Start serving an empty shard on the loopback interface.
+     *
+     * @param port port to listen on, or 0 to choose a free port
+     * @param codec encoding of labels on the wire
+     * @throws IOException if the server cannot listen on port
+     */
+    public ShardServer(int port, LabelCodec<L> codec) throws IOException {
+        this.codec = codec;
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::acceptLoop, "ShardServer " + socket.getLocalPort());
+        this.acceptor.start();
+    }
+
+    /** @return port this server listens on */
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                connection.setTcpNoDelay(true);
+                Thread handler = new Thread(() -> serve(connection), "ShardServer connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // closed, or the connection failed before it was accepted
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (Socket client = connection;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()))) {
+            while (true) {
+                int op = in.read();
+                if (op < 0) {
+                    return;
+                }
+                try {
+                    answer((byte) op, in, out);
+                } catch (RuntimeException e) {
+                    out.writeByte(FAILED);
+                    out.writeUTF(String.valueOf(e));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away; nothing to answer
+        }
+    }
+
+    private void answer(byte op, DataInput in, DataOutput out) throws IOException {
+        switch (op) {
+        case ADD: {
+            boolean added = shard.add(codec.read(in));
+            out.writeByte(OK);
+            out.writeBoolean(added);
+            break;
+        }
+        case SET_TARGET:
+        case SET_SOURCE: {
+            L vertex = codec.read(in);
+            L other = codec.read(in);
+            int weight = in.readInt();
+            int previous = op == SET_TARGET ? shard.setTarget(vertex, other, weight)
+                    : shard.setSource(vertex, other, weight);
+            out.writeByte(OK);
+            out.writeInt(previous);
+            break;
+        }
+        case REMOVE: {
+            List<Map<L, Integer>> removed = shard.remove(codec.read(in));
+            out.writeByte(OK);
+            out.writeBoolean(removed != null);
+            if (removed != null) {
+                writeMap(removed.get(0), codec, out);
+                writeMap(removed.get(1), codec, out);
+            }
+            break;
+        }
+        case VERTICES: {
+            Set<L> vertices = shard.vertices();
+            out.writeByte(OK);
+            writeLabels(vertices, codec, out);
+            break;
+        }
+        case TARGETS:
+        case SOURCES: {
+            L vertex = codec.read(in);
+            Map<L, Integer> edges = op == TARGETS ? shard.targets(vertex) : shard.sources(vertex);
+            out.writeByte(OK);
+            writeMap(edges, codec, out);
+            break;
+        }
+        case WITH_TARGET: {
+            L target = codec.read(in);
+            List<L> candidates = readLabels(codec, in, new ArrayList<>());
+            Set<L> result = shard.withTarget(candidates, target);
+            out.writeByte(OK);
+            writeLabels(result, codec, out);
+            break;
+        }
+        default:
+            throw new IOException("Unknown operation " + op);
+        }
+    }
+
+    static <L> void writeLabels(Collection<L> labels, LabelCodec<L> codec, DataOutput out) throws IOException {
+        out.writeInt(labels.size());
+        for (L label : labels) {
+            codec.write(label, out);
+        }
+    }
+
+    static <L, C extends Collection<L>> C readLabels(LabelCodec<L> codec, DataInput in, C labels)
+            throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            labels.add(codec.read(in));
+        }
+        return labels;
+    }
+
+    static <L> Set<L> readLabelSet(LabelCodec<L> codec, DataInput in) throws IOException {
+        return readLabels(codec, in, new HashSet<>());
+    }
+
+    static <L> void writeMap(Map<L, Integer> map, LabelCodec<L> codec, DataOutput out) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<L, Integer> entry : map.entrySet()) {
+            codec.write(entry.getKey(), out);
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    static <L> Map<L, Integer> readMap(LabelCodec<L> codec, DataInput in) throws IOException {
+        int size = in.readInt();
+        Map<L, Integer> map = new HashMap<>(Math.max(16, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            L label = codec.read(in);
+            map.put(label, in.readInt());
+        }
+        return map;
+    }
+
+    /**
+     * Stop accepting connections. Connections already open stay open until
+     * their clients close them.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Serve a shard until standard input ends or the process is killed.
+     *
+     * @param args label type, "string" or "integer", and optionally the port
+     *        to listen on (default: any free port)
+     * @throws IOException if the server cannot listen or standard input
+     *         cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        ShardServer<?> server;
+        switch (args.length > 0 ? args[0] : "") {
+        case "string":
+            server = new ShardServer<>(port, LabelCodec.STRING);
+            break;
+        case "integer":
+            server = new ShardServer<>(port, LabelCodec.INTEGER);
+            break;
+        default:
+            System.err.println("usage: ShardServer string|integer [port]");
+            System.exit(2);
+            return;
+        }
+        System.out.println(server.port());
+        System.out.flush();
+        // The parent holds the other end of standard input, so it ends
+        // when the parent closes it or dies
+        while (System.in.read() >= 0) {
+            // ignore input
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,389 @@
+package graph;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A Graph partitioned by vertex across shards, which may live in this
+ * process or in separate processes.
+ *
+ * <p>A vertex belongs to the shard chosen by the hash of its label, and that
+ * shard holds both its out-edges and its in-edges, so sources() and
+ * targets() are each answered by one shard. {@link #bridge} finds the
+ * heaviest two-edge path between two vertices as a scatter-gather join: the
+ * out-edges of the first are fetched from its shard, the candidates are
+ * grouped by their own shards, and every shard checks its candidates for an
+ * edge to the second vertex in parallel.
+ *
+ * <p>Mutators are serialized with each other; a read concurrent with a
+ * mutation may see it half applied.
+ *
+ * <p>A method throws UncheckedIOException if a shard cannot be reached.
+ * set() then leaves the edge as it was: if the target's shard fails after
+ * the source's shard has changed, the source's shard is set back to the
+ * previous weight, though a source vertex the call added stays. Only if
+ * that fails as well may the two copies of the edge disagree.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class ShardedGraph<L> implements Graph<L>, Closeable {
+
+    private final List<Shard<L>> shards;
+    private final List<Process> processes;
+    private final ExecutorService scatter;
+
+    // Abstraction function:
+    //   Represents the graph whose vertices are the union of the vertices of
+    //   'shards', with the out-edges of each vertex v as held by shard(v).
+    //
+    // Representation invariant:
+    //   - every vertex v is held only by shards.get(index(v))
+    //   - shard(u) holds edge u -> v with weight w iff shard(v) holds the
+    //     in-edge of v from u with weight w
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final; shards return copies.
+    //
+    // Thread safety argument:
+    //   Shards are threadsafe; mutators hold this object's lock so that the
+    //   two halves of an edge change together.
+
+    private ShardedGraph(List<Shard<L>> shards, List<Process> processes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one shard");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.processes = new ArrayList<>(processes);
+        this.scatter = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ShardedGraph scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Make an empty graph whose shards all live in this process.
+     *
+     * @param <L> type of vertex labels
+     * @param partitions number of shards, must be positive
+     * @return the new graph
+     */
+    public static <L> ShardedGraph<L> inProcess(int partitions) {
+        List<Shard<L>> shards = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            shards.add(new LocalShard<>());
+        }
+        return new ShardedGraph<>(shards, Collections.emptyList());
+    }
+
+    /**
+     * Make a graph over shards served by running {@link ShardServer}s. Every
+     * client of the same servers must list them in the same order.
+     *
+     * @param <L> type of vertex labels
+     * @param servers addresses of the servers, at least one
+     * @param codec encoding of labels, as used by the servers
+     * @return the new graph
+     * @throws IOException if a server cannot be reached
+     */
+    public static <L> ShardedGraph<L> connect(List<InetSocketAddress> servers, LabelCodec<L> codec)
+            throws IOException {
+        return connect(servers, codec, Collections.emptyList());
+    }
+
+    private static <L> ShardedGraph<L> connect(List<InetSocketAddress> servers, LabelCodec<L> codec,
+            List<Process> processes) throws IOException {
+        List<Shard<L>> shards = new ArrayList<>();
+        try {
+            for (InetSocketAddress server : servers) {
+                shards.add(new RemoteShard<>(server, codec));
+            }
+        } catch (IOException e) {
+            for (Shard<L> shard : shards) {
+                shard.close();
+            }
+            throw e;
+        }
+        return new ShardedGraph<>(shards, processes);
+    }
+
+    /**
+     * Make an empty graph whose shards each live in a new local process
+     * running {@link ShardServer} on the classpath of this one. Closing the
+     * graph stops the processes.
+     *
+     * @param partitions number of shards, must be positive
+     * @return the new graph
+     * @throws IOException if a process cannot be started or reached
+     */
+    public static ShardedGraph<String> launchStrings(int partitions) throws IOException {
+        return launch(partitions, "string", LabelCodec.STRING);
+    }
+
+    /**
+     * Make an empty graph with Integer labels whose shards each live in a new
+     * local process, as {@link #launchStrings}.
+     *
+     * @param partitions number of shards, must be positive
+     * @return the new graph
+     * @throws IOException if a process cannot be started or reached
+     */
+    public static ShardedGraph<Integer> launchIntegers(int partitions) throws IOException {
+        return launch(partitions, "integer", LabelCodec.INTEGER);
+    }
+
+    private static <L> ShardedGraph<L> launch(int partitions, String type, LabelCodec<L> codec)
+            throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> servers = new ArrayList<>();
+        try {
+            for (int i = 0; i < partitions; i++) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        ShardServer.class.getName(), type)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                BufferedReader out = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                String port = out.readLine();
+                if (port == null) {
+                    throw new IOException("Shard process exited before listening");
+                }
+                servers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())));
+            }
+            return connect(servers, codec, processes);
+        } catch (IOException | RuntimeException e) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            throw e;
+        }
+    }
+
+    /** @return number of shards */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    private Shard<L> shard(L vertex) {
+        return shards.get(index(vertex));
+    }
+
+    private int index(L vertex) {
+        int h = vertex.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.size());
+    }
+
+    @Override
+    public synchronized boolean add(L vertex) {
+        try {
+            return shard(vertex).add(vertex);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int set(L source, L target, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be nonnegative");
+        }
+        try {
+            int previous = shard(source).setTarget(source, target, weight);
+            try {
+                shard(target).setSource(target, source, weight);
+            } catch (IOException | RuntimeException e) {
+                try {
+                    shard(source).setTarget(source, target, previous);
+                } catch (IOException | RuntimeException rollback) {
+                    e.addSuppressed(rollback);
+                }
+                throw e;
+            }
+            return previous;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean remove(L vertex) {
+        try {
+            List<Map<L, Integer>> removed = shard(vertex).remove(vertex);
+            if (removed == null) {
+                return false;
+            }
+            for (L target : removed.get(0).keySet()) {
+                if (!target.equals(vertex)) {
+                    shard(target).setSource(target, vertex, 0);
+                }
+            }
+            for (L source : removed.get(1).keySet()) {
+                if (!source.equals(vertex)) {
+                    shard(source).setTarget(source, vertex, 0);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Set<L> vertices() {
+        Set<L> vertices = new HashSet<>();
+        for (Set<L> part : gather(shards.size(), i -> shards.get(i).vertices())) {
+            vertices.addAll(part);
+        }
+        return vertices;
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        try {
+            return shard(target).sources(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        try {
+            return shard(source).targets(source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Find a bridge from source to target: a vertex b with edges source -> b
+     * and b -> target whose first edge is as heavy as possible. Of equally
+     * heavy bridges, any one may be returned.
+     *
+     * @param source label of a vertex
+     * @param target label of a vertex
+     * @return a bridge from source to target, or null if there is none
+     */
+    public L bridge(L source, L target) {
+        return bridge(source, target, (a, b) -> 0);
+    }
+
+    /**
+     * Find a bridge from source to target: a vertex b with edges source -> b
+     * and b -> target whose first edge is as heavy as possible, breaking
+     * ties by the first label in an order.
+     *
+     * @param source label of a vertex
+     * @param target label of a vertex
+     * @param ties order of equally heavy bridges; the first is returned
+     * @return the bridge from source to target, or null if there is none
+     */
+    public L bridge(L source, L target, Comparator<? super L> ties) {
+        Map<L, Integer> candidates = targets(source);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        List<List<L>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (L candidate : candidates.keySet()) {
+            byShard.get(index(candidate)).add(candidate);
+        }
+        List<Shard<L>> asked = new ArrayList<>();
+        List<List<L>> questions = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            if (!byShard.get(i).isEmpty()) {
+                asked.add(shards.get(i));
+                questions.add(byShard.get(i));
+            }
+        }
+        List<Set<L>> answers = gather(asked.size(), i -> asked.get(i).withTarget(questions.get(i), target));
+
+        L bridge = null;
+        int maxWeight = 0;
+        for (Set<L> answer : answers) {
+            for (L candidate : answer) {
+                int weight = candidates.get(candidate);
+                if (weight > maxWeight || weight == maxWeight && ties.compare(candidate, bridge) < 0) {
+                    maxWeight = weight;
+                    bridge = candidate;
+                }
+            }
+        }
+        return bridge;
+    }
+
+    /**
+     * The i-th of several calls to shards.
+     */
+    private interface ShardCall<R> {
+        R apply(int i) throws IOException;
+    }
+
+    /*
+     * Make calls 0..count-1 in parallel and return their answers in order.
+     */
+    private <R> List<R> gather(int count, ShardCall<R> call) {
+        List<CompletableFuture<R>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.apply(index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, scatter));
+        }
+        List<R> answers = new ArrayList<>();
+        for (CompletableFuture<R> future : futures) {
+            try {
+                answers.add(future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        return answers;
+    }
+
+    /**
+     * Disconnect from the shards, and stop the processes started by
+     * {@link #launchStrings} or {@link #launchIntegers}.
+     */
+    @Override
+    public void close() throws IOException {
+        scatter.shutdown();
+        for (Shard<L> shard : shards) {
+            shard.close();
+        }
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedGraph of " + shards.size() + " shards";
+    }
+}
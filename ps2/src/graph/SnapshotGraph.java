@@ -0,0 +1,92 @@
+package graph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mutable Graph that publishes every version as an immutable
+ * {@link PersistentGraph}.
+ *
+ * <p>Writers are serialized and each successful mutation swaps in a new
+ * version that shares structure with the previous one. {@link #snapshot()}
+ * returns the current version in O(1), and readers of a snapshot never take
+ * a lock or see a later write. The Graph observers of this object read the
+ * current version, so each call sees a consistent graph, but two calls may
+ * see different versions; take one snapshot to read several things
+ * consistently.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class SnapshotGraph<L> implements Graph<L> {
+
+    private volatile PersistentGraph<L> current = PersistentGraph.empty();
+
+    // Abstraction function:
+    //   Represents the graph 'current'.
+    //
+    // Representation invariant:
+    //   - 'current' is not null
+    //
+    // Safety from rep exposure:
+    //   'current' is immutable, so returning it from snapshot() is safe.
+    //
+    // Thread safety argument:
+    //   Mutators hold this object's lock while they read 'current' and write
+    //   its successor, so no update is lost. 'current' is volatile, so a
+    //   reader sees a fully constructed version.
+
+    /**
+     * Create an empty graph.
+     */
+    public SnapshotGraph() {
+    }
+
+    /**
+     * @return the current version of this graph, which later mutations of
+     *         this graph do not change
+     */
+    public PersistentGraph<L> snapshot() {
+        return current;
+    }
+
+    @Override
+    public synchronized boolean add(L vertex) {
+        PersistentGraph<L> previous = current;
+        current = previous.withVertex(vertex);
+        return current != previous;
+    }
+
+    @Override
+    public synchronized int set(L source, L target, int weight) {
+        PersistentGraph<L> previous = current;
+        current = previous.withEdge(source, target, weight);
+        return previous.weight(source, target);
+    }
+
+    @Override
+    public synchronized boolean remove(L vertex) {
+        PersistentGraph<L> previous = current;
+        current = previous.withoutVertex(vertex);
+        return current != previous;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return current.vertices();
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        return current.sources(target);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        return current.targets(source);
+    }
+
+    @Override
+    public String toString() {
+        return current.toString();
+    }
+}
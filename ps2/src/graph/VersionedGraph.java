@@ -0,0 +1,96 @@
+package graph;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Graph that counts its own mutations.
+ *
+ * <p>Wraps another graph and forwards every operation to it. Each call that
+ * actually changes the graph increments a version number, so that anything
+ * derived from the graph (caches, snapshots) can tell whether it is stale by
+ * comparing the version it was computed at with {@link #version()}.
+ *
+ * @param <L> type of vertex labels in this graph, must be immutable
+ */
+public class VersionedGraph<L> implements Graph<L> {
+
+    private final Graph<L> graph;
+    private final AtomicLong version = new AtomicLong();
+
+    // Abstraction function:
+    //   Represents the same graph as 'graph', after 'version' mutations
+    //   made through this wrapper.
+    //
+    // Representation invariant:
+    //   - 'graph' is not null
+    //   - 'version' never decreases
+    //
+    // Safety from rep exposure:
+    //   - fields are private and final; 'graph' is owned by this wrapper and
+    //     must not be mutated except through it, or versions will be missed
+
+    /**
+     * Wrap a graph. The caller must not mutate the graph directly afterwards.
+     *
+     * @param graph graph to forward to
+     */
+    public VersionedGraph(Graph<L> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @return the number of changes made to this graph so far
+     */
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public boolean add(L vertex) {
+        boolean added = graph.add(vertex);
+        if (added) {
+            version.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public int set(L source, L target, int weight) {
+        int previousWeight = graph.set(source, target, weight);
+        if (previousWeight != weight) {
+            version.incrementAndGet();
+        }
+        return previousWeight;
+    }
+
+    @Override
+    public boolean remove(L vertex) {
+        boolean removed = graph.remove(vertex);
+        if (removed) {
+            version.incrementAndGet();
+        }
+        return removed;
+    }
+
+    @Override
+    public Set<L> vertices() {
+        return graph.vertices();
+    }
+
+    @Override
+    public Map<L, Integer> sources(L target) {
+        return graph.sources(target);
+    }
+
+    @Override
+    public Map<L, Integer> targets(L source) {
+        return graph.targets(source);
+    }
+
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,314 @@
+package poet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of bridge words, keyed on pairs of word ids.
+ *
+ * <p>Pairs without a bridge are cached too (as {@link Vocabulary#NO_WORD}).
+ * When the cache is full, a new pair is only admitted if it has been asked for
+ * more often than the pair it would replace, using a compact frequency sketch
+ * that forgets old counts over time (TinyLFU). The pair to replace is the
+ * first one not looked up since the last sweep passed it (CLOCK, an
+ * approximation of least recently used). This keeps a skewed set of hot pairs
+ * resident even when a burst of one-off pairs goes by.
+ *
+ * <p>Every entry belongs to one version of the poet's graph; looking up with a
+ * newer version drops all entries first, so mutating the graph never serves a
+ * stale bridge.
+ *
+ * <p>Lookups never lock: they read a concurrent map, mark the entry they find
+ * as referenced and count the request in the sketch with atomic updates. Only
+ * {@link #put} and {@link #invalidateAll} take this object's lock.
+ */
+public class BridgeCache {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int MAX_SKETCH_WIDTH = 1 << 20;
+
+    private final int maximumSize;
+    private final AtomicReference<Table> table = new AtomicReference<>(new Table(0));
+    private final AtomicIntegerArray sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Abstraction function:
+    //   Represents the map table.entries from packed (w1, w2) pairs to
+    //   bridges computed at graph version table.version, whose CLOCK order is
+    //   table.ring starting at table.hand. sketch[row * width +
+    //   hash_row(key) & sketchMask] over-estimates how often key was recently
+    //   requested.
+    //
+    // Representation invariant:
+    //   - table.entries holds exactly the entries of table.ring, by key
+    //   - table.ring.size() <= maximumSize
+    //   - 0 <= table.hand < max(1, table.ring.size())
+    //   - 0 <= every counter of sketch <= MAX_FREQUENCY
+    //
+    // Safety from rep exposure:
+    //   All fields are private; only primitives are returned.
+    //
+    // Thread safety argument:
+    //   - a table's entries is a ConcurrentHashMap, and an entry's bridge is
+    //     final, so get() reads a consistent bridge without a lock; its
+    //     'referenced' flag is volatile
+    //   - a table's ring and hand are guarded by this object's lock; get()
+    //     never touches them
+    //   - 'table' is replaced by compare-and-set when a newer version is seen,
+    //     so every thread agrees on the newest table; put() into a table that
+    //     has just been replaced only changes a table no one reads any more
+    //   - sketch counters are updated by compare-and-set and never exceed
+    //     MAX_FREQUENCY; halving them every sampleSize additions races with
+    //     increments, which at worst loses a few counts of an estimate
+    //   - hits, misses and evictions are LongAdders
+
+    /**
+     * The entries of one version of the graph.
+     */
+    private static class Table {
+        private final long version;
+        private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+        private final List<Entry> ring = new ArrayList<>();
+        private int hand = 0;
+
+        private Table(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * A cached bridge, and whether it was looked up since the last sweep.
+     */
+    private static class Entry {
+        private final long key;
+        private final int bridge;
+        private volatile boolean referenced = false;
+
+        private Entry(long key, int bridge) {
+            this.key = key;
+            this.bridge = bridge;
+        }
+    }
+
+    /**
+     * Create an empty cache.
+     *
+     * @param maximumSize maximum number of pairs to keep, must be positive
+     */
+    public BridgeCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maximumSize = maximumSize;
+        // The smallest power of two of at least twice maximumSize, in long
+        // so that large sizes do not overflow, and capped so that the sketch
+        // stays within 4 rows of 4 MiB however large the cache is
+        long wanted = Long.highestOneBit(Math.max(16, 2L * maximumSize - 1) << 1);
+        int width = (int) Math.min(wanted, MAX_SKETCH_WIDTH);
+        this.sketch = new AtomicIntegerArray(SKETCH_DEPTH * width);
+        this.sketchMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    // Caller holds the lock
+    private void checkRep() {
+        Table current = table.get();
+        assert current.entries.size() == current.ring.size();
+        assert current.ring.size() <= maximumSize;
+        assert current.hand >= 0 && current.hand < Math.max(1, current.ring.size());
+    }
+
+    /**
+     * Pack a pair of word ids into one cache key.
+     */
+    static long key(int first, int second) {
+        return ((long) first << 32) | (second & 0xffffffffL);
+    }
+
+    /**
+     * Look up the bridge between two words, recording the request. Never
+     * blocks.
+     *
+     * @param first id of the first word
+     * @param second id of the second word
+     * @param graphVersion current version of the graph the bridge is for
+     * @return the cached bridge id, {@link Vocabulary#NO_WORD} if the pair is
+     *         cached as having no bridge, or null if the pair is not cached
+     *         or graphVersion is older than the cached entries
+     */
+    public Integer get(int first, int second, long graphVersion) {
+        Table current = current(graphVersion);
+        long key = key(first, second);
+        increment(key);
+        Entry entry = graphVersion == current.version ? current.entries.get(key) : null;
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true; // Read first, so hot entries are not written on every hit
+        }
+        hits.increment();
+        return entry.bridge;
+    }
+
+    /**
+     * Cache the bridge between two words, unless the cache is full and the
+     * pair is requested less often than the pair it would evict.
+     *
+     * @param first id of the first word
+     * @param second id of the second word
+     * @param bridge id of the bridge word, or {@link Vocabulary#NO_WORD}
+     * @param graphVersion version of the graph the bridge was computed from
+     */
+    public synchronized void put(int first, int second, int bridge, long graphVersion) {
+        Table current = current(graphVersion);
+        if (graphVersion != current.version) {
+            return; // Computed from an older graph, do not cache it
+        }
+        long key = key(first, second);
+        if (current.entries.containsKey(key)) {
+            return; // Another reader cached the same bridge first
+        }
+        Entry entry = new Entry(key, bridge);
+        if (current.ring.size() < maximumSize) {
+            current.ring.add(entry);
+        } else {
+            Entry victim = sweep(current);
+            if (frequency(key) <= frequency(victim.key)) {
+                return; // Not admitted, the victim is hotter
+            }
+            current.entries.remove(victim.key);
+            current.ring.set(current.hand, entry);
+            current.hand = (current.hand + 1) % current.ring.size();
+            evictions.increment();
+        }
+        current.entries.put(key, entry);
+        checkRep();
+    }
+
+    /*
+     * Advance the hand of a full table past the entries looked up since it
+     * last passed them, clearing their flags, and return the entry it stops
+     * at. Caller holds the lock.
+     */
+    private static Entry sweep(Table current) {
+        while (true) {
+            Entry candidate = current.ring.get(current.hand);
+            if (!candidate.referenced) {
+                return candidate;
+            }
+            candidate.referenced = false;
+            current.hand = (current.hand + 1) % current.ring.size();
+        }
+    }
+
+    /**
+     * Drop every cached pair.
+     */
+    public synchronized void invalidateAll() {
+        Table current = table.get();
+        table.compareAndSet(current, new Table(current.version));
+    }
+
+    /*
+     * Return the table for graphVersion if it is the newest version seen,
+     * replacing the table with an empty one for it if it is newer, or else
+     * the newest table.
+     */
+    private Table current(long graphVersion) {
+        while (true) {
+            Table current = table.get();
+            if (graphVersion <= current.version) {
+                return current;
+            }
+            Table newer = new Table(graphVersion);
+            if (table.compareAndSet(current, newer)) {
+                return newer;
+            }
+        }
+    }
+
+    /*
+     * Count-min sketch with small saturating counters. All counters are
+     * halved every sampleSize increments so that old popularity fades.
+     */
+    private void increment(long key) {
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int index = index(key, row);
+            int count;
+            do {
+                count = sketch.get(index);
+            } while (count < MAX_FREQUENCY && !sketch.compareAndSet(index, count, count + 1));
+        }
+        if (additions.incrementAndGet() == sampleSize) {
+            additions.addAndGet(-sampleSize);
+            for (int i = 0; i < sketch.length(); i++) {
+                int count;
+                do {
+                    count = sketch.get(i);
+                } while (!sketch.compareAndSet(i, count, count >>> 1));
+            }
+        }
+    }
+
+    private int frequency(long key) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            frequency = Math.min(frequency, sketch.get(index(key, row)));
+        }
+        return frequency;
+    }
+
+    private int index(long key, int row) {
+        long hash = (key + row) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> (29 + row);
+        return row * (sketchMask + 1) + ((int) hash & sketchMask);
+    }
+
+    /**
+     * @return number of pairs currently cached
+     */
+    public int size() {
+        return table.get().entries.size();
+    }
+
+    /**
+     * @return number of lookups that found a cached pair
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that did not find a cached pair
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of pairs evicted to make room for hotter ones
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BridgeCache(size=%d/%d, hits=%d, misses=%d, evictions=%d)",
+                size(), maximumSize, hitCount(), missCount(), evictionCount());
+    }
+}
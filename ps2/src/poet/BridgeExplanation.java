@@ -0,0 +1,139 @@
+package poet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable account of how a poet chooses the bridge between two words:
+ * every candidate bridge b with edges first -> b -> second, ranked as the
+ * poet ranks them.
+ *
+ * <p>A candidate's score is the weight of its first hop, the number of times
+ * b follows the first word in the corpus; of equal scores, the word first
+ * interned in the vocabulary ranks higher. The top candidate is the bridge
+ * that {@link GraphPoet#poem} inserts. Both hop weights are reported so that
+ * a surprising choice can be traced to the corpus.
+ */
+public final class BridgeExplanation {
+
+    private final String first;
+    private final String second;
+    private final List<Candidate> candidates;
+    private final int total;
+
+    // Abstraction function:
+    //   Represents the ranked candidate bridges from 'first' to 'second', of
+    //   which the 'candidates' are the highest ranked and 'total' is the count.
+    //
+    // Representation invariant:
+    //   - candidates.size() <= total
+    //   - candidates are in decreasing order of score
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final; 'candidates' is unmodifiable and
+    //   Candidate is immutable.
+    //
+    // Thread safety argument:
+    //   This type is immutable.
+
+    BridgeExplanation(String first, String second, List<Candidate> candidates, int total) {
+        this.first = first;
+        this.second = second;
+        this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+        this.total = total;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert candidates.size() <= total;
+        for (int i = 1; i < candidates.size(); i++) {
+            assert candidates.get(i - 1).score() >= candidates.get(i).score();
+        }
+    }
+
+    /** @return the first word of the pair, as written in the input */
+    public String first() {
+        return first;
+    }
+
+    /** @return the second word of the pair, as written in the input */
+    public String second() {
+        return second;
+    }
+
+    /** @return the highest ranked candidates, best first */
+    public List<Candidate> candidates() {
+        return candidates;
+    }
+
+    /**
+     * @return number of candidate bridges, including any left out of
+     *         candidates() by a limit
+     */
+    public int total() {
+        return total;
+    }
+
+    /** @return the bridge the poet inserts, or null if there is none */
+    public String bridge() {
+        return candidates.isEmpty() ? null : candidates.get(0).word();
+    }
+
+    /**
+     * A candidate bridge word with the weights of its two hops.
+     */
+    public static final class Candidate {
+        private final String word;
+        private final int firstWeight;
+        private final int secondWeight;
+
+        // Abstraction function:
+        //   Represents the path first -> word -> second with hop weights
+        //   firstWeight and secondWeight.
+        //
+        // Representation invariant:
+        //   - firstWeight > 0 and secondWeight > 0
+        //
+        // Safety from rep exposure:
+        //   All fields are private, final and immutable.
+
+        Candidate(String word, int firstWeight, int secondWeight) {
+            this.word = word;
+            this.firstWeight = firstWeight;
+            this.secondWeight = secondWeight;
+            assert firstWeight > 0 && secondWeight > 0;
+        }
+
+        /** @return the bridge word, normalized */
+        public String word() {
+            return word;
+        }
+
+        /** @return weight of the edge from the first word to this one */
+        public int firstWeight() {
+            return firstWeight;
+        }
+
+        /** @return weight of the edge from this word to the second one */
+        public int secondWeight() {
+            return secondWeight;
+        }
+
+        /** @return the score the poet ranks candidates by */
+        public int score() {
+            return firstWeight;
+        }
+
+        @Override
+        public String toString() {
+            return word + " (" + firstWeight + ", " + secondWeight + ")";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return first + " -> " + candidates + (total > candidates.size() ? " and " + (total - candidates.size())
+                + " more" : "") + " -> " + second;
+    }
+}
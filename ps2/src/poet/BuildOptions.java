@@ -0,0 +1,120 @@
+package poet;
+
+import java.util.Comparator;
+
+import graph.DegreeCap;
+
+/**
+ * Immutable options for building a poet's affinity graph from a corpus.
+ *
+ * <p>Besides the {@link TokenPipeline} that normalizes its words, a build
+ * can bound the fan-out of hub words: a few function words such as "the"
+ * follow or precede a large part of the vocabulary, and their edges dominate
+ * the memory of the graph and the cost of every query that touches them.
+ * With a maximum out-degree, each word keeps only its heaviest out-edges;
+ * with a minimum weight, edges seen fewer times are dropped. Bridges can
+ * only pass through kept edges, so these options trade poem quality for
+ * memory and speed.
+ */
+public final class BuildOptions {
+
+    /** The default pipeline, and every edge kept. */
+    public static final BuildOptions DEFAULT =
+            new BuildOptions(TokenPipeline.DEFAULT, Integer.MAX_VALUE, 1);
+
+    private final TokenPipeline pipeline;
+    private final int maxOutDegree;
+    private final int minWeight;
+
+    // Abstraction function:
+    //   Represents the build that normalizes words with 'pipeline' and keeps,
+    //   of each word's out-edges of weight at least 'minWeight', the
+    //   'maxOutDegree' heaviest.
+    //
+    // Representation invariant:
+    //   - maxOutDegree >= 0 and minWeight >= 1
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final, and TokenPipeline is immutable.
+    //
+    // Thread safety argument:
+    //   This type is immutable.
+
+    private BuildOptions(TokenPipeline pipeline, int maxOutDegree, int minWeight) {
+        this.pipeline = pipeline;
+        this.maxOutDegree = maxOutDegree;
+        this.minWeight = minWeight;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert pipeline != null;
+        assert maxOutDegree >= 0 && minWeight >= 1;
+    }
+
+    /**
+     * @param pipeline normalization of corpus and input words
+     * @return these options with pipeline instead
+     */
+    public BuildOptions withPipeline(TokenPipeline pipeline) {
+        return new BuildOptions(pipeline, maxOutDegree, minWeight);
+    }
+
+    /**
+     * @param maxOutDegree most out-edges each word keeps, nonnegative; of
+     *        equally heavy edges, those to the words first interned in the
+     *        vocabulary are kept
+     * @return these options with maxOutDegree instead
+     */
+    public BuildOptions withMaxOutDegree(int maxOutDegree) {
+        if (maxOutDegree < 0) {
+            throw new IllegalArgumentException("maxOutDegree must be nonnegative");
+        }
+        return new BuildOptions(pipeline, maxOutDegree, minWeight);
+    }
+
+    /**
+     * @param minWeight least number of times two words must be adjacent in
+     *        the corpus for their edge to be kept, positive
+     * @return these options with minWeight instead
+     */
+    public BuildOptions withMinWeight(int minWeight) {
+        if (minWeight < 1) {
+            throw new IllegalArgumentException("minWeight must be positive");
+        }
+        return new BuildOptions(pipeline, maxOutDegree, minWeight);
+    }
+
+    /** @return normalization of corpus and input words */
+    public TokenPipeline pipeline() {
+        return pipeline;
+    }
+
+    /** @return most out-edges each word keeps */
+    public int maxOutDegree() {
+        return maxOutDegree;
+    }
+
+    /** @return least weight of a kept edge */
+    public int minWeight() {
+        return minWeight;
+    }
+
+    /**
+     * @return the bound on out-edges of word ids, or null if every edge is
+     *         kept
+     */
+    DegreeCap<Integer> degreeCap() {
+        if (maxOutDegree == Integer.MAX_VALUE && minWeight == 1) {
+            return null;
+        }
+        return DegreeCap.of(maxOutDegree, minWeight, Comparator.<Integer>naturalOrder());
+    }
+
+    @Override
+    public String toString() {
+        return "BuildOptions(" + pipeline + ", max out-degree "
+                + (maxOutDegree == Integer.MAX_VALUE ? "unlimited" : maxOutDegree) + ", min weight " + minWeight
+                + ")";
+    }
+}
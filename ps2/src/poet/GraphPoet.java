@@ -3,14 +3,41 @@
  */
 package poet;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
+import graph.AdaptiveWeights;
+import graph.AdjacencyBlocks;
+import graph.BlendedGraph;
+import graph.CompactVerticesGraph;
+import graph.DegreeCap;
 import graph.Graph;
+import graph.GraphMetrics;
+import graph.GraphStatistics;
+import graph.InstrumentedGraph;
+import graph.ShardedGraph;
+import graph.VersionedGraph;
 
 /**
  * A graph-based poetry generator.
@@ -55,40 +82,709 @@ import graph.Graph;
  * class is up to you.
  */
 
-public class GraphPoet {
+public class GraphPoet implements Closeable {
 
-    private final Graph<String> graph = Graph.empty();
+    private final Vocabulary vocabulary;
+    private final TokenPipeline pipeline;
+    private final DegreeCap<Integer> degreeCap;
+    private final Mode mode;
+    private final Graph<Integer> base;
+    private final InstrumentedGraph<Integer> instrumented;
+    private final VersionedGraph<Integer> graph;
+    private volatile BridgeCache bridgeCache = null;
+    private volatile AdjacencyBlocks blocks;
+
+    // Abstraction function:
+    //   Represents the word affinity graph in which the vertex for a word is its
+    //   id in 'vocabulary' and edge weights in 'graph' count adjacencies of the
+    //   words kept by 'pipeline'.
+    //
+    // Representation invariant:
+    //   - every vertex of 'graph' is an id of 'vocabulary'
+    //   - 'base' is of the class 'mode' names; 'graph' wraps 'instrumented',
+    //     which wraps 'base'
+    //   - 'pipeline' is TokenPipeline.DEFAULT unless 'mode' allows others
+    //   - 'degreeCap' is null unless 'mode' is COUNTED; if it is not null,
+    //     the out-edges of every vertex are within it
+    //   - if 'mode' is IMAGE, 'vocabulary' is frozen and holds exactly the
+    //     image's words, with the same ids
+    //   - every edge weight is positive
+    //   - if 'bridgeCache' is not null, its entries for the current version()
+    //     agree with findBridgeWord
+    //   - 'blocks' is null unless 'mode' is COUNTED; otherwise, outside of
+    //     learn(), it equals 'graph' at its version()
+    //
+    // Safety from rep exposure:
+    //   - all fields are private, and all but 'bridgeCache' and 'blocks' are
+    //     final
+    //   - 'graph' is never returned; 'vocabulary' is shared on purpose, but it
+    //     only ever grows, so other poets cannot change the meaning of our ids
+    //
+    // Thread safety argument:
+    //   - learn() is the only mutator, and is called by one thread at a time
+    //   - a poet whose 'mode' is COUNTED answers poems and explanations from
+    //     'blocks' alone: each reads the volatile field once and queries that
+    //     immutable version, while learn() changes 'graph' and then publishes
+    //     the next version with a single write
+    //   - other poets read 'graph', whose base is threadsafe for readers, and
+    //     must not learn concurrently with them
+    //   - a blended poet reads its components' graphs, not their 'blocks',
+    //     so blend() requires that the component poets not learn while the
+    //     blend is in use or being materialized
+    //   - 'bridgeCache' is volatile, and BridgeCache is threadsafe; it only
+    //     serves entries of the version that a reader asks for
+
+    /**
+     * Create a new poet with the graph from corpus (as described above),
+     * interning its words in the shared vocabulary.
+     *
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @throws IOException if the corpus file cannot be found or read
+     */
+    public GraphPoet(File corpus) throws IOException {
+        this(corpus, Vocabulary.shared());
+    }
 
     /**
      * Create a new poet with the graph from corpus (as described above).
      *
      * @param corpus text file from which to derive the poet's affinity graph
+     * @param vocabulary vocabulary in which to intern the words of corpus;
+     *        poets over overlapping corpora should share one vocabulary
      * @throws IOException if the corpus file cannot be found or read
+     * @throws IllegalStateException if vocabulary is frozen and corpus contains
+     *         a word that it does not include
      */
-    public GraphPoet(File corpus) throws IOException {      
+    public GraphPoet(File corpus, Vocabulary vocabulary) throws IOException {
+        this(corpus, vocabulary, BuildOptions.DEFAULT);
+    }
+
+    /**
+     * Create a new poet with the graph from corpus, normalizing every word of
+     * the corpus and of poem inputs with a pipeline. Words are as described
+     * above, then transformed by pipeline; a word it drops is left out of the
+     * graph, so that its neighbors in the corpus become adjacent. In a poem, a
+     * dropped input word is kept as it is but does not separate the words
+     * around it: the bridge between the kept words on either side of it, if
+     * any, is inserted just before the second of them.
+     *
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @param vocabulary vocabulary in which to intern the normalized words of
+     *        corpus
+     * @param pipeline normalization of corpus and input words
+     * @throws IOException if the corpus file cannot be found or read
+     * @throws IllegalStateException if vocabulary is frozen and corpus contains
+     *         a normalized word that it does not include
+     */
+    public GraphPoet(File corpus, Vocabulary vocabulary, TokenPipeline pipeline) throws IOException {
+        this(corpus, vocabulary, BuildOptions.DEFAULT.withPipeline(pipeline));
+    }
+
+    /**
+     * Create a new poet with the graph from corpus, built with options: words
+     * are normalized by options.pipeline() as for
+     * {@link #GraphPoet(File, Vocabulary, TokenPipeline)}, and then each word
+     * keeps only its out-edges allowed by options.maxOutDegree() and
+     * options.minWeight(). Poems bridge only through kept edges. learn()
+     * applies the same bound to the words whose out-edges it changes; the
+     * counts of edges dropped earlier are forgotten, so learning them again
+     * counts from zero.
+     *
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @param vocabulary vocabulary in which to intern the normalized words of
+     *        corpus
+     * @param options how to build the graph
+     * @throws IOException if the corpus file cannot be found or read
+     * @throws IllegalStateException if vocabulary is frozen and corpus contains
+     *         a normalized word that it does not include
+     */
+    public GraphPoet(File corpus, Vocabulary vocabulary, BuildOptions options) throws IOException {
+        this(vocabulary, options, Mode.COUNTED, new CompactVerticesGraph<>());
+        count(read(corpus));
+        checkRep();
+    }
+
+    /**
+     * Create a new poet with the graph from corpus (as described above),
+     * stored in a sharded graph. Bridges are then found by a scatter-gather
+     * join across the shards; see {@link ShardedGraph#bridge}.
+     *
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @param vocabulary vocabulary in which to intern the words of corpus
+     * @param shards an empty graph, owned by this poet from now on: closing
+     *        the poet closes it, and so does failing to make the poet
+     * @throws IOException if the corpus file cannot be found or read
+     * @throws IllegalStateException if vocabulary is frozen and corpus contains
+     *         a word that it does not include
+     */
+    public GraphPoet(File corpus, Vocabulary vocabulary, ShardedGraph<Integer> shards) throws IOException {
+        this(vocabulary, BuildOptions.DEFAULT, Mode.SHARDED, shards);
         try {
-            List<String> lines = Files.readAllLines(corpus.toPath());
-
-            // Process lines to build the word affinity graph
-            for (String line : lines) {
-                String[] words = line.split("\\s+");
-                for (int i = 0; i < words.length - 1; i++) {
-                    String currentWord = words[i].toLowerCase();
-                    String nextWord = words[i + 1].toLowerCase();
-                    graph.add(currentWord);
-                    graph.add(nextWord);
-                    int weight = graph.set(currentWord, nextWord, graph.targets(currentWord).getOrDefault(nextWord, 0) + 1);
-                    if (weight == 0) {
-                        // Increment the weight of the existing edge
-                        graph.set(currentWord, nextWord, weight + 1);
+            count(read(corpus));
+        } catch (IOException | RuntimeException e) {
+            shards.close();
+            throw e;
+        }
+        checkRep();
+    }
+
+    /**
+     * Where a poet's graph comes from, and what that lets the poet do. Each
+     * mode names the class of the base graph it wraps.
+     */
+    private enum Mode {
+        /** Counted from the corpus and published to readers as blocks. */
+        COUNTED(CompactVerticesGraph.class, true, null),
+
+        /** Counted word by word as poems need it; see lazy(). */
+        LAZY(LazyCorpusGraph.class, false, null) {
+            @Override
+            CompletableFuture<Void> materialize(Graph<Integer> base, Executor executor) {
+                return ((LazyCorpusGraph) base).materialize(executor);
+            }
+        },
+
+        /** Counted into shards, which find bridges by their own join. */
+        SHARDED(ShardedGraph.class, false, null) {
+            @Override
+            @SuppressWarnings("unchecked")
+            Integer bridge(Graph<Integer> base, int currentWord, int nextWord) {
+                Integer bridge = ((ShardedGraph<Integer>) base).bridge(currentWord, nextWord,
+                        Comparator.<Integer>naturalOrder());
+                return bridge != null ? bridge : Vocabulary.NO_WORD;
+            }
+
+            @Override
+            void close(Graph<Integer> base) throws IOException {
+                ((ShardedGraph<?>) base).close();
+            }
+        },
+
+        /** A view of other poets' graphs; see blend(). */
+        BLENDED(BlendedGraph.class, true, "Blended poets learn through the poets they blend") {
+            @Override
+            long version(Graph<Integer> base) {
+                return ((BlendedGraph<?>) base).version();
+            }
+        },
+
+        /** Mapped from an image with its own bridge table; see open(). */
+        IMAGE(PoetImage.class, false, "Poets opened from an image cannot learn") {
+            @Override
+            Integer bridge(Graph<Integer> base, int currentWord, int nextWord) {
+                return ((PoetImage) base).bridge(currentWord, nextWord);
+            }
+        };
+
+        private final Class<?> baseClass;
+        private final boolean anyPipeline;
+        private final String cannotLearn;
+
+        private Mode(Class<?> baseClass, boolean anyPipeline, String cannotLearn) {
+            this.baseClass = baseClass;
+            this.anyPipeline = anyPipeline;
+            this.cannotLearn = cannotLearn;
+        }
+
+        /*
+         * Find the bridge between two known words from the base graph, or
+         * return null to search the poet's blocks or adjacency maps.
+         */
+        Integer bridge(Graph<Integer> base, int currentWord, int nextWord) {
+            return null;
+        }
+
+        /*
+         * Count the changes to the base graph made other than through the
+         * poet.
+         */
+        long version(Graph<Integer> base) {
+            return 0;
+        }
+
+        /* Build the whole base graph, if it is built lazily. */
+        CompletableFuture<Void> materialize(Graph<Integer> base, Executor executor) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        /* Release what the base graph holds, if the poet owns any of it. */
+        void close(Graph<Integer> base) throws IOException {
+            // nothing to release
+        }
+    }
+
+    private GraphPoet(Vocabulary vocabulary, BuildOptions options, Mode mode, Graph<Integer> base) {
+        this.vocabulary = vocabulary;
+        this.pipeline = options.pipeline();
+        this.degreeCap = options.degreeCap();
+        this.mode = mode;
+        this.base = base;
+        this.instrumented = new InstrumentedGraph<>(base);
+        this.graph = new VersionedGraph<>(instrumented);
+        this.blocks = mode == Mode.COUNTED ? AdjacencyBlocks.EMPTY : null;
+    }
+
+    /**
+     * Create a new poet with the graph from corpus (as described above),
+     * interning its words in the shared vocabulary, without building the
+     * graph yet.
+     *
+     * @see #lazy(File, Vocabulary)
+     */
+    public static GraphPoet lazy(File corpus) throws IOException {
+        return lazy(corpus, Vocabulary.shared());
+    }
+
+    /**
+     * Create a new poet with the graph from corpus (as described above),
+     * without building the graph yet. Only the corpus's words and their
+     * positions are indexed; the edges of a word are counted when a poem
+     * first needs them, or ahead of time by {@link #materialize(Executor)}.
+     * The poet behaves exactly as one made by the constructor; learn() builds
+     * the whole graph first.
+     *
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @param vocabulary vocabulary in which to intern the words of corpus
+     * @return the new poet
+     * @throws IOException if the corpus file cannot be found or read
+     * @throws IllegalStateException if vocabulary is frozen and corpus contains
+     *         a word that it does not include
+     */
+    public static GraphPoet lazy(File corpus, Vocabulary vocabulary) throws IOException {
+        byte[] text = read(corpus);
+        IdCollector ids = new IdCollector(vocabulary);
+        Tokenizer.tokenize(text, 0, text.length, true, ids);
+        GraphPoet poet = new GraphPoet(vocabulary, BuildOptions.DEFAULT, Mode.LAZY,
+                new LazyCorpusGraph(ids.toArray()));
+        poet.checkRep();
+        return poet;
+    }
+
+    /**
+     * Interns each word it receives and collects the ids in order.
+     */
+    private static class IdCollector implements Tokenizer.SpanConsumer {
+        private final Vocabulary vocabulary;
+        private int[] ids = new int[64];
+        private int size = 0;
+
+        private IdCollector(Vocabulary vocabulary) {
+            this.vocabulary = vocabulary;
+        }
+
+        @Override
+        public void accept(byte[] text, int start, int end) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = vocabulary.intern(Tokenizer.decode(text, start, end));
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * Create a poet over a weighted blend of other poets' affinity graphs,
+     * as {@link BlendedGraph} describes: an edge weighs the share-weighted
+     * sum of its weights in the poets' graphs. The blend is computed when
+     * poems need it, and reflects later learn() calls on the poets.
+     *
+     * <p>The blend reads the poets' graphs directly, not the adjacency they
+     * publish to concurrent readers, so a poet must not learn while the
+     * blended poet answers a poem or an explanation. Learn between uses of
+     * the blend instead.
+     *
+     * @param poets poets to blend, at least one; all must share one
+     *        vocabulary and one token pipeline, and none may learn while the
+     *        blended poet is in use
+     * @param mix the share of each poet, in the same order; nonnegative and
+     *        finite, and not all zero
+     * @return the blended poet; its learn() throws UnsupportedOperationException
+     * @throws IllegalArgumentException if the poets do not share a vocabulary
+     *         and pipeline, or the shares are not as described
+     */
+    public static GraphPoet blend(List<GraphPoet> poets, List<Double> mix) {
+        return blend(poets, mix, BlendedGraph.of(graphs(poets), mix));
+    }
+
+    /**
+     * Create a poet over a weighted blend of other poets' affinity graphs, as
+     * {@link #blend(List, List)}, that copies the blend on executor once it
+     * has been queried hotQueries times; see
+     * {@link BlendedGraph#withMaterializer}.
+     *
+     * <p>The copy is read from the poets' graphs on executor, so a poet
+     * must not learn while a copy is being made either, as well as while the
+     * blended poet is in use.
+     *
+     * @param poets poets to blend; none may learn while the blended poet is
+     *        in use or its blend is being copied
+     * @param mix the share of each poet
+     * @param hotQueries number of graph queries after which the blend is
+     *        copied, must be positive
+     * @param executor executor to copy the blend on
+     * @return the blended poet
+     */
+    public static GraphPoet blend(List<GraphPoet> poets, List<Double> mix, int hotQueries, Executor executor) {
+        return blend(poets, mix, BlendedGraph.of(graphs(poets), mix).withMaterializer(hotQueries, executor));
+    }
+
+    private static List<Graph<Integer>> graphs(List<GraphPoet> poets) {
+        List<Graph<Integer>> graphs = new ArrayList<>(poets.size());
+        for (GraphPoet poet : poets) {
+            graphs.add(poet.graph);
+        }
+        return graphs;
+    }
+
+    private static GraphPoet blend(List<GraphPoet> poets, List<Double> mix, BlendedGraph<Integer> blended) {
+        GraphPoet first = poets.get(0);
+        for (GraphPoet poet : poets) {
+            if (poet.vocabulary != first.vocabulary || poet.pipeline != first.pipeline) {
+                throw new IllegalArgumentException("Blended poets must share a vocabulary and a pipeline");
+            }
+        }
+        BuildOptions options = BuildOptions.DEFAULT.withPipeline(first.pipeline);
+        GraphPoet poet = new GraphPoet(first.vocabulary, options, Mode.BLENDED, blended);
+        poet.checkRep();
+        return poet;
+    }
+
+    /**
+     * Load a poet from a corpus without blocking the calling thread,
+     * interning its words in the shared vocabulary.
+     *
+     * @see #loadAsync(Path, Vocabulary, Executor)
+     */
+    public static CompletableFuture<GraphPoet> loadAsync(Path corpus, Executor executor) {
+        return loadAsync(corpus, Vocabulary.shared(), executor);
+    }
+
+    /**
+     * Load a poet from a corpus without blocking the calling thread. The
+     * corpus is read with asynchronous file I/O, so no thread waits on the
+     * disk, and the graph is then built on executor; loading several corpora
+     * at once overlaps the reading of some with the counting of others.
+     *
+     * @param corpus text file from which to derive the poet's affinity graph
+     * @param vocabulary vocabulary in which to intern the words of corpus
+     * @param executor executor to build the graph on
+     * @return a future poet, as made by {@link #GraphPoet(File, Vocabulary)};
+     *         it fails with an IOException if the corpus cannot be read, or
+     *         an IllegalStateException if vocabulary is frozen and corpus
+     *         contains a word that it does not include
+     */
+    public static CompletableFuture<GraphPoet> loadAsync(Path corpus, Vocabulary vocabulary, Executor executor) {
+        return readAsync(corpus).thenApplyAsync(text -> {
+            GraphPoet poet = new GraphPoet(vocabulary, BuildOptions.DEFAULT, Mode.COUNTED,
+                    new CompactVerticesGraph<>());
+            poet.count(text);
+            poet.checkRep();
+            return poet;
+        }, executor);
+    }
+
+    /*
+     * Read a whole file asynchronously.
+     */
+    private static CompletableFuture<byte[]> readAsync(Path corpus) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(corpus, StandardOpenOption.READ);
+            boolean reading = false;
+            try {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Corpus too large: " + size + " bytes");
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+                    @Override
+                    public void completed(Integer count, ByteBuffer buffer) {
+                        if (count >= 0 && buffer.hasRemaining()) {
+                            channel.read(buffer, buffer.position(), buffer, this);
+                            return;
+                        }
+                        closeQuietly(channel);
+                        result.complete(Arrays.copyOf(buffer.array(), buffer.position()));
+                    }
+
+                    @Override
+                    public void failed(Throwable failure, ByteBuffer buffer) {
+                        closeQuietly(channel);
+                        result.completeExceptionally(new IOException("Error reading the corpus file", failure));
                     }
+                });
+                reading = true;
+            } finally {
+                if (!reading) {
+                    closeQuietly(channel); // Sizing, allocating or starting the read failed
                 }
             }
+        } catch (IOException e) {
+            result.completeExceptionally(new IOException("Error reading the corpus file", e));
+        }
+        return result;
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // everything has been read, or reading already failed
+        }
+    }
+
+    private static byte[] read(File corpus) throws IOException {
+        try {
+            // Words are adjacent across line breaks too, so split the whole corpus
+            return Files.readAllBytes(corpus.toPath());
         } catch (IOException e) {
             throw new IOException("Error reading the corpus file", e);
         }
     }
-    
+
+    /**
+     * Compile this poet into an image file that {@link #open(Path)} serves
+     * poems from without rebuilding the graph: the words of the graph, its
+     * edges, and the best bridge between every pair of words two hops apart,
+     * for as many first words as the table limit allows. Must not be called
+     * concurrently with learn().
+     *
+     * @param image file to write, replaced once the new image is complete
+     * @param maxBridges most word pairs in the bridge table, nonnegative;
+     *        bridges from first words beyond it are searched for when asked
+     * @throws IOException if the file cannot be written, or the image would
+     *         exceed 2 GB
+     * @throws UnsupportedOperationException if this poet's pipeline is not
+     *         the default
+     */
+    public void writeImage(Path image, int maxBridges) throws IOException {
+        if (!pipeline.isDefault()) {
+            throw new UnsupportedOperationException("Only poets with the default pipeline can be compiled");
+        }
+        PoetImage.write(vocabulary, graph, maxBridges, image);
+    }
+
+    /**
+     * Open a poet image written by {@link #writeImage}. The file is
+     * memory-mapped, not read, so poems can be served as soon as the
+     * image's words are interned, and pages of the graph are loaded as
+     * poems touch them. The file must not be changed while the poet is in
+     * use; writeImage() replaces an image by a new file instead.
+     *
+     * <p>The poet generates the same poems as the poet that wrote the image.
+     * It has its own frozen vocabulary and cannot learn.
+     *
+     * @param image file written by writeImage()
+     * @return the poet of the image
+     * @throws IOException if the file cannot be read, or is not a complete
+     *         poet image
+     */
+    public static GraphPoet open(Path image) throws IOException {
+        PoetImage mapped = PoetImage.open(image);
+        Vocabulary vocabulary = new Vocabulary();
+        for (int v = 0; v < mapped.wordCount(); v++) {
+            if (vocabulary.intern(mapped.word(v)) != v) {
+                throw new IOException("Poet image has duplicate words");
+            }
+        }
+        vocabulary.freeze();
+        GraphPoet poet = new GraphPoet(vocabulary, BuildOptions.DEFAULT, Mode.IMAGE, mapped);
+        poet.checkRep();
+        return poet;
+    }
+
+    /**
+     * Count the edges of every word of a lazily built poet in the background,
+     * most frequent words first. Poems may be generated meanwhile.
+     *
+     * @param executor executor to count on
+     * @return a future that completes once the graph is fully built; already
+     *         complete if this poet was not made by lazy()
+     */
+    public CompletableFuture<Void> materialize(Executor executor) {
+        return mode.materialize(base, executor);
+    }
+
+    /**
+     * Add more text to this poet's corpus, as if it were another corpus file
+     * read after the first: adjacencies within text are counted, but the
+     * last word of the old corpus is not adjacent to the first word of text.
+     * Must not be called concurrently with another call of learn().
+     *
+     * <p>Unless this poet was made by lazy(), blend() or with shards, poem(),
+     * poems(), poemAsync(), poemsAsync() and the explain methods may run
+     * concurrently with learn(), without waiting for it: each poem, batch or
+     * explanation sees the graph either before or after all of text.
+     * Otherwise no other method may run concurrently with learn().
+     *
+     * @param text corpus text to add
+     * @throws IllegalStateException if this poet's vocabulary is frozen and
+     *         text contains a word that it does not include; the adjacencies
+     *         before that word are learned, and every method sees them
+     * @throws UnsupportedOperationException if this poet was made by blend()
+     *         or open()
+     */
+    public void learn(String text) {
+        if (mode.cannotLearn != null) {
+            throw new UnsupportedOperationException(mode.cannotLearn);
+        }
+        count(text.getBytes(StandardCharsets.UTF_8));
+        checkRep();
+    }
+
+    /*
+     * Count the adjacencies of UTF-8 text, lowercasing its ASCII letters in
+     * place as the tokenizer finds them and then normalizing each word with
+     * the pipeline, unless it is the default. Then prune the out-edges of the
+     * words whose out-edges changed to the degree cap, if any, and publish
+     * the blocks of the words whose edges changed.
+     */
+    private void count(byte[] text) {
+        EdgeCounter counter = new EdgeCounter();
+        try {
+            Tokenizer.tokenize(text, 0, text.length, true, counter);
+        } finally {
+            // A word a frozen vocabulary rejects stops the count partway, but
+            // the edges counted before it stay in 'graph', so they must be
+            // pruned and published all the same
+            if (degreeCap != null) {
+                List<Integer> dropped = new ArrayList<>();
+                for (int source : counter.sources) {
+                    degreeCap.prune(graph, source, dropped);
+                    if (counter.changed != null) {
+                        for (int target : dropped) {
+                            counter.changed.put(AdjacencyBlocks.key(source, target), 0);
+                        }
+                    }
+                    dropped.clear();
+                }
+            }
+            AdjacencyBlocks current = blocks;
+            if (current == AdjacencyBlocks.EMPTY) {
+                // Build the first blocks from the finished graph, without a
+                // map entry per edge
+                blocks = AdjacencyBlocks.of(graph, graph.version());
+            } else if (current != null) {
+                blocks = current.withEdges(counter.changed, graph.version());
+            }
+        }
+    }
+
+    /**
+     * Interns each word it receives and counts its adjacency to the previous
+     * one, collecting the previous words if there is a degree cap, and the
+     * new weights if there are blocks to update; the first blocks are built
+     * from the graph instead.
+     */
+    private class EdgeCounter implements Tokenizer.SpanConsumer {
+        private final TokenPipeline.Session session = pipeline.isDefault() ? null : pipeline.session();
+        private final Set<Integer> sources = degreeCap == null ? null : new HashSet<>();
+        private final Map<Long, Integer> changed = blocks == null || blocks == AdjacencyBlocks.EMPTY ? null
+                : new HashMap<>();
+        private int previous = Vocabulary.NO_WORD;
+
+        @Override
+        public void accept(byte[] text, int start, int end) {
+            String word = session == null ? Tokenizer.decode(text, start, end) : session.normalize(text, start, end);
+            if (word == null) {
+                return;
+            }
+            int current = vocabulary.intern(word);
+            graph.add(current);
+            if (previous != Vocabulary.NO_WORD) {
+                if (sources != null) {
+                    sources.add(previous);
+                }
+                int weight = graph.set(previous, current, 1);
+                if (weight != 0) {
+                    // Increment the weight of the existing edge, saturating
+                    // rather than wrapping around on huge corpora
+                    graph.set(previous, current, AdaptiveWeights.saturatedAdd(weight, 1));
+                }
+                if (changed != null) {
+                    changed.put(AdjacencyBlocks.key(previous, current), AdaptiveWeights.saturatedAdd(weight, 1));
+                }
+            }
+            previous = current;
+        }
+    }
+
+    /**
+     * Cache the bridges between pairs of words that poem() looks up, replacing
+     * any previous cache. Cached bridges are dropped whenever learn() changes
+     * the graph.
+     *
+     * @param maximumSize maximum number of word pairs to cache
+     * @return the new cache, for reading its hit, miss and eviction counts
+     */
+    public BridgeCache enableBridgeCache(int maximumSize) {
+        BridgeCache cache = new BridgeCache(maximumSize);
+        bridgeCache = cache;
+        return cache;
+    }
+
+    /**
+     * Stop caching bridges.
+     */
+    public void disableBridgeCache() {
+        bridgeCache = null;
+    }
+
+    /**
+     * Get the metrics of this poet. They are disabled until enabled through
+     * {@link GraphMetrics#setEnabled(boolean)}; once enabled they measure the
+     * operations on the poet's affinity graph, and poem() as "poem".
+     *
+     * @return the metrics of this poet's graph
+     */
+    public GraphMetrics metrics() {
+        return instrumented.metrics();
+    }
+
+    /**
+     * Release the resources this poet owns: the shards it was made with, if
+     * any. A closed poet must not be used again. Closing a poet that owns
+     * none has no effect.
+     *
+     * @throws IOException if the shards cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        mode.close(base);
+    }
+
+    private void checkRep() {
+        assert vocabulary != null;
+        assert graph != null;
+        assert mode.baseClass.isInstance(base);
+        assert pipeline == TokenPipeline.DEFAULT || mode.anyPipeline;
+        assert degreeCap == null || mode == Mode.COUNTED;
+        assert (blocks == null) == (mode != Mode.COUNTED);
+        assert mode != Mode.IMAGE || vocabulary.isFrozen() && vocabulary.size() == ((PoetImage) base).wordCount();
+    }
+
+    private static List<String> split(String text) {
+        List<String> tokens = new ArrayList<>();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Tokenizer.tokenize(bytes, 0, bytes.length, false,
+                (word, start, end) -> tokens.add(Tokenizer.decode(word, start, end)));
+        return tokens;
+    }
+
+    /**
+     * Compute statistics of this poet's affinity graph. Must not be called
+     * concurrently with learn().
+     *
+     * @param hubs number of hub words to report for each direction
+     * @return statistics of the affinity graph, with hubs labelled by word
+     */
+    public GraphStatistics<String> statistics(int hubs) {
+        return GraphStatistics.of(graph, hubs).relabel(vocabulary::word);
+    }
 
     /**
      * Generate a poem.
@@ -97,44 +793,345 @@ public class GraphPoet {
      * @return poem (as described above)
      */
     public String poem(String input) {
-        String[] inputWords = input.split("\\s+");
+        GraphMetrics metrics = instrumented.metrics();
+        if (!metrics.isEnabled()) {
+            return compose(input, blocks, null);
+        }
+        long allocated = metrics.allocatedBytes();
+        long start = System.nanoTime();
+        String poem = compose(input, blocks, null);
+        metrics.record("poem", start, allocated);
+        return poem;
+    }
+
+    /**
+     * Generate a batch of poems, looking up the bridge between each distinct
+     * pair of adjacent words only once for the whole batch.
+     *
+     * @param inputs strings from which to create the poems
+     * @return the poem for each input, as {@link #poem(String)} would
+     *         generate it, in the same order
+     */
+    public List<String> poems(List<String> inputs) {
+        GraphMetrics metrics = instrumented.metrics();
+        long allocated = metrics.isEnabled() ? metrics.allocatedBytes() : -1;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        AdjacencyBlocks view = blocks;
+        Map<Long, Integer> bridges = new HashMap<>();
+        List<String> poems = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            poems.add(compose(input, view, bridges));
+        }
+        if (metrics.isEnabled()) {
+            metrics.record("poems", start, allocated);
+        }
+        return poems;
+    }
+
+    /**
+     * Generate a poem on executor.
+     *
+     * @param input string from which to create the poem
+     * @param executor executor to generate the poem on
+     * @return the future poem, as {@link #poem(String)} would generate it
+     */
+    public CompletableFuture<String> poemAsync(String input, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> poem(input), executor);
+    }
+
+    /**
+     * Generate the poems for a stream of inputs on executor, with
+     * backpressure: an input is read only while fewer than maxInFlight poems
+     * are started but not yet consumed, so neither a slow consumer nor a
+     * busy executor lets inputs pile up in memory. Each poem sees the graph
+     * as poem() would when it is generated.
+     *
+     * @param inputs strings from which to create the poems; read by one
+     *        thread at a time, and not used by anyone else until the
+     *        returned future completes
+     * @param maxInFlight maximum number of poems started but not yet
+     *        consumed, must be positive
+     * @param executor executor to generate poems on
+     * @param poems receives each poem, as {@link #poem(String)} would
+     *        generate it, in input order and one at a time
+     * @return a future that completes when every poem has been consumed, or
+     *         exceptionally if reading an input, generating a poem or
+     *         consuming one throws; completing it early stops reading inputs
+     */
+    public CompletableFuture<Void> poemsAsync(Iterator<String> inputs, int maxInFlight, Executor executor,
+            Consumer<? super String> poems) {
+        return new PoemStream(this, inputs, poems, maxInFlight, executor).start();
+    }
+
+    /**
+     * Explain the bridge between two words: list the candidate bridges, as
+     * {@link BridgeExplanation} describes, from the same adjacency structures
+     * that poem() searches. For every kind of poet, the top candidate is the
+     * bridge that poem() inserts between the two words.
+     *
+     * @param first a word, normalized as a poem input word
+     * @param second a word, normalized as a poem input word
+     * @param limit maximum number of candidates to list, must be positive
+     * @return the explanation; it has no candidates if either word is not in
+     *         the graph or is dropped by this poet's pipeline
+     */
+    public BridgeExplanation explain(String first, String second, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        TokenPipeline.Session session = pipeline.session();
+        String firstWord = session.normalize(first);
+        String secondWord = session.normalize(second);
+        if (firstWord == null || secondWord == null) {
+            return new BridgeExplanation(first, second, Collections.<BridgeExplanation.Candidate>emptyList(), 0);
+        }
+        return rank(blocks, first, second, vocabulary.lookup(firstWord), vocabulary.lookup(secondWord), limit);
+    }
+
+    /**
+     * Explain every bridge of a poem.
+     *
+     * @param input string from which to create the poem
+     * @param limit maximum number of candidates to list per pair, must be
+     *        positive
+     * @return an explanation, as {@link #explain} gives, for each pair of
+     *         input words that {@link #poem(String)} bridges, in order
+     */
+    public List<BridgeExplanation> explainPoem(String input, int limit) {
+        return explainPoems(Collections.singletonList(input), limit).get(0);
+    }
+
+    /**
+     * Explain every bridge of a batch of poems, ranking the candidates for
+     * each distinct pair of adjacent words only once for the whole batch.
+     *
+     * @param inputs strings from which to create the poems
+     * @param limit maximum number of candidates to list per pair, must be
+     *        positive
+     * @return for each input, the explanations {@link #explainPoem} gives
+     */
+    public List<List<BridgeExplanation>> explainPoems(List<String> inputs, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        AdjacencyBlocks view = blocks;
+        Map<Long, BridgeExplanation> ranked = new HashMap<>();
+        TokenPipeline.Session session = pipeline.session();
+        List<List<BridgeExplanation>> explanations = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            List<BridgeExplanation> poem = new ArrayList<>();
+            String previousWord = null;
+            int previous = Vocabulary.NO_WORD;
+            for (String word : split(input)) {
+                String normalized = session.normalize(word);
+                if (normalized == null) {
+                    continue;
+                }
+                int current = vocabulary.lookup(normalized);
+                if (previousWord != null) {
+                    final int first = previous;
+                    BridgeExplanation explanation = ranked.computeIfAbsent(BridgeCache.key(first, current),
+                            key -> rank(view, null, null, first, current, limit));
+                    poem.add(new BridgeExplanation(previousWord, word, explanation.candidates(),
+                            explanation.total()));
+                }
+                previousWord = word;
+                previous = current;
+            }
+            explanations.add(poem);
+        }
+        return explanations;
+    }
+
+    /*
+     * Rank the candidate bridges between two word ids, either of which may
+     * be NO_WORD, in view if it is not null.
+     */
+    private BridgeExplanation rank(AdjacencyBlocks view, String first, String second, int firstWord,
+            int secondWord, int limit) {
+        Candidates candidates = new Candidates();
+        if (firstWord != Vocabulary.NO_WORD && secondWord != Vocabulary.NO_WORD) {
+            if (view != null) {
+                view.intersect(firstWord, secondWord, candidates::add);
+            } else {
+                Map<Integer, Integer> sources = graph.sources(secondWord);
+                for (Map.Entry<Integer, Integer> target : graph.targets(firstWord).entrySet()) {
+                    Integer secondWeight = sources.get(target.getKey());
+                    if (secondWeight != null) {
+                        candidates.add(target.getKey(), target.getValue(), secondWeight);
+                    }
+                }
+            }
+        }
+        return candidates.explanation(first, second, limit);
+    }
+
+    /**
+     * Collects candidate bridges as word ids and hop weights.
+     */
+    private class Candidates {
+        private int[] words = new int[8];
+        private int[] firstWeights = new int[8];
+        private int[] secondWeights = new int[8];
+        private int size = 0;
+
+        private void add(int word, int firstWeight, int secondWeight) {
+            if (size == words.length) {
+                words = Arrays.copyOf(words, size * 2);
+                firstWeights = Arrays.copyOf(firstWeights, size * 2);
+                secondWeights = Arrays.copyOf(secondWeights, size * 2);
+            }
+            words[size] = word;
+            firstWeights[size] = firstWeight;
+            secondWeights[size] = secondWeight;
+            size++;
+        }
+
+        /*
+         * Rank by decreasing first weight, then increasing word id, as
+         * findBridgeWord does.
+         */
+        private BridgeExplanation explanation(String first, String second, int limit) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> firstWeights[a] != firstWeights[b]
+                    ? Integer.compare(firstWeights[b], firstWeights[a]) : Integer.compare(words[a], words[b]));
+            List<BridgeExplanation.Candidate> ranked = new ArrayList<>(Math.min(limit, size));
+            for (int i = 0; i < Math.min(limit, size); i++) {
+                int c = order[i];
+                ranked.add(new BridgeExplanation.Candidate(vocabulary.word(words[c]), firstWeights[c],
+                        secondWeights[c]));
+            }
+            return new BridgeExplanation(first, second, ranked, size);
+        }
+    }
+
+    /*
+     * Compose the poem for input, from view if it is not null. If bridges is
+     * not null, it memoizes bridges by BridgeCache.key(first, second) across
+     * calls with the same view.
+     */
+    private String compose(String input, AdjacencyBlocks view, Map<Long, Integer> bridges) {
+        List<String> inputWords = split(input);
         StringBuilder result = new StringBuilder();
+        TokenPipeline.Session session = pipeline.isDefault() ? null : pipeline.session();
 
-        for (int i = 0; i < inputWords.length - 1; i++) {
-            String currentWord = inputWords[i].toLowerCase();
-            String nextWord = inputWords[i + 1].toLowerCase();
-            result.append(currentWord).append(" ");
-            String bridgeWord = findBridgeWord(currentWord, nextWord);
-            result.append(bridgeWord).append(" ");
+        boolean started = false;
+        int previous = Vocabulary.NO_WORD;
+        for (String word : inputWords) {
+            String normalized = session == null ? word : session.normalize(word);
+            if (normalized == null) {
+                // Dropped by the pipeline: kept in the poem, but not bridged
+                result.append(word).append(' ');
+                continue;
+            }
+            int current = vocabulary.lookup(normalized);
+            if (started) {
+                int bridge;
+                if (bridges == null) {
+                    bridge = bridge(view, previous, current);
+                } else {
+                    final int first = previous;
+                    bridge = bridges.computeIfAbsent(BridgeCache.key(first, current),
+                            key -> bridge(view, first, current));
+                }
+                if (bridge != Vocabulary.NO_WORD) {
+                    result.append(vocabulary.word(bridge)).append(' ');
+                }
+            }
+            result.append(word).append(' ');
+            started = true;
+            previous = current;
+        }
+        if (result.length() > 0) {
+            result.setLength(result.length() - 1); // Remove the trailing space
         }
-        result.append(inputWords[inputWords.length - 1]);
 
         return result.toString();
     }
 
-    private String findBridgeWord(String currentWord, String nextWord) {
-        Map<String, Integer> targets = graph.targets(currentWord);
-        Set<String> commonTargets = targets.keySet();
-        commonTargets.retainAll(graph.sources(nextWord).keySet());
+    /*
+     * The version of this poet's graph, which also changes when a blended
+     * poet's components do.
+     */
+    private long version() {
+        return graph.version() + mode.version(base);
+    }
+
+    private int bridge(AdjacencyBlocks view, int currentWord, int nextWord) {
+        BridgeCache cache = bridgeCache;
+        if (cache == null || currentWord == Vocabulary.NO_WORD || nextWord == Vocabulary.NO_WORD) {
+            return findBridgeWord(view, currentWord, nextWord);
+        }
+        long version = view != null ? view.version() : version();
+        Integer cached = cache.get(currentWord, nextWord, version);
+        if (cached != null) {
+            return cached;
+        }
+        int bridge = findBridgeWord(view, currentWord, nextWord);
+        cache.put(currentWord, nextWord, bridge, version);
+        return bridge;
+    }
 
-        if (!commonTargets.isEmpty()) {
-            int maxWeight = 0;
-            String bridgeWord = "";
-            for (String commonTarget : commonTargets) {
-                int weight = targets.get(commonTarget);
-                if (weight > maxWeight) {
-                    maxWeight = weight;
-                    bridgeWord = commonTarget;
-                }
+    /*
+     * Find the bridge between two words, preferring the heaviest first hop
+     * and then the smallest word id. Returns NO_WORD if either word is
+     * unknown or there is no bridge.
+     *
+     * A sharded graph answers by its own scatter-gather join, an image from
+     * its bridge table, and a lazy or blended graph from its adjacency maps,
+     * so as not to build every word's edges; otherwise the out-block of the
+     * first word is intersected with the in-block of the second in view.
+     */
+    private int findBridgeWord(AdjacencyBlocks view, int currentWord, int nextWord) {
+        if (currentWord == Vocabulary.NO_WORD || nextWord == Vocabulary.NO_WORD) {
+            return Vocabulary.NO_WORD;
+        }
+        Integer bridge = mode.bridge(base, currentWord, nextWord);
+        if (bridge != null) {
+            return bridge;
+        }
+        if (view == null) {
+            return findBridgeWordInMaps(currentWord, nextWord);
+        }
+        int best = view.bestBridge(currentWord, nextWord);
+        return best >= 0 ? best : Vocabulary.NO_WORD;
+    }
+
+    private int findBridgeWordInMaps(int currentWord, int nextWord) {
+        Map<Integer, Integer> targets = graph.targets(currentWord);
+        Map<Integer, Integer> sources = graph.sources(nextWord);
+
+        int maxWeight = 0;
+        int bridgeWord = Vocabulary.NO_WORD;
+        for (Map.Entry<Integer, Integer> target : targets.entrySet()) {
+            int weight = target.getValue();
+            int word = target.getKey();
+            if ((weight > maxWeight || (weight == maxWeight && word < bridgeWord)) && sources.containsKey(word)) {
+                maxWeight = weight;
+                bridgeWord = word;
             }
-            return bridgeWord;
-        } else {
-            return "";
         }
+        return bridgeWord;
     }
 
     @Override
     public String toString() {
-        return graph.toString();
+        StringBuilder sb = new StringBuilder();
+        for (int word : graph.vertices()) {
+            sb.append(vocabulary.word(word)).append(" -> ");
+            sb.append(labelled(graph.targets(word))).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private String labelled(Map<Integer, Integer> edges) {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> edge : edges.entrySet()) {
+            parts.add(vocabulary.word(edge.getKey()) + " (" + edge.getValue() + ")");
+        }
+        return parts.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+package poet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import graph.AdaptiveWeights;
+import graph.CompactVerticesGraph;
+import graph.Graph;
+
+/**
+ * The word affinity graph of a corpus, built lazily from an index of the
+ * corpus.
+ *
+ * <p>Construction only records the sequence of word ids and, for each word,
+ * the positions where it occurs. The out-edges of a word are counted the
+ * first time they are asked for, from the words that follow its occurrences,
+ * and likewise its in-edges from the words that precede them; or ahead of
+ * time by {@link #materialize(Executor)}, most frequent words first.
+ *
+ * <p>Reads are threadsafe. The first mutation builds the whole graph eagerly
+ * and forwards everything to it from then on; mutators must not be called
+ * concurrently with any other method.
+ */
+class LazyCorpusGraph implements Graph<Integer> {
+
+    private final int[] words;
+    private final int[] tokens;
+    private final int[] occurrenceOffsets;
+    private final int[] occurrences;
+    private final AtomicReferenceArray<Row> targets;
+    private final AtomicReferenceArray<Row> sources;
+    private volatile Graph<Integer> eager = null;
+
+    // Abstraction function:
+    //   If 'eager' is not null, represents 'eager'. Otherwise represents the
+    //   graph whose vertices are 'words', with an edge from words[a] to
+    //   words[b] weighted by the number of positions i with tokens[i] == a
+    //   and tokens[i + 1] == b.
+    //
+    // Representation invariant:
+    //   - 'words' is sorted and distinct, and tokens[i] indexes it
+    //   - occurrences[occurrenceOffsets[a] .. occurrenceOffsets[a + 1]) are
+    //     the positions i with tokens[i] == a, ascending
+    //   - targets.get(a) and sources.get(a), if not null, hold the out- and
+    //     in-edges of words[a] described above
+    //
+    // Safety from rep exposure:
+    //   All fields are private; observers return fresh maps and sets.
+    //
+    // Thread safety argument:
+    //   Until the first mutation the index arrays are never written after
+    //   construction. Materialized rows are never mutated after they are
+    //   published through the atomic arrays; two threads may count the same
+    //   word at once, but they compute equal rows. 'eager' is volatile, and
+    //   mutators are confined to one thread by the spec.
+
+    /**
+     * Index a corpus.
+     *
+     * @param corpus ids of the words of the corpus, in order
+     */
+    LazyCorpusGraph(int[] corpus) {
+        this.words = Arrays.stream(corpus).distinct().sorted().toArray();
+        this.tokens = new int[corpus.length];
+        this.occurrenceOffsets = new int[words.length + 1];
+        for (int i = 0; i < corpus.length; i++) {
+            tokens[i] = Arrays.binarySearch(words, corpus[i]);
+            occurrenceOffsets[tokens[i] + 1]++;
+        }
+        for (int a = 0; a < words.length; a++) {
+            occurrenceOffsets[a + 1] += occurrenceOffsets[a];
+        }
+        this.occurrences = new int[corpus.length];
+        int[] next = Arrays.copyOf(occurrenceOffsets, words.length);
+        for (int i = 0; i < tokens.length; i++) {
+            occurrences[next[tokens[i]]++] = i;
+        }
+        this.targets = new AtomicReferenceArray<>(words.length);
+        this.sources = new AtomicReferenceArray<>(words.length);
+    }
+
+    /**
+     * Count the edges of every word in the background, most frequent words
+     * first, so that later reads find them ready.
+     *
+     * @param executor executor to count on
+     * @return a future that completes once every word's edges are counted
+     */
+    CompletableFuture<Void> materialize(Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            Integer[] byFrequency = new Integer[words.length];
+            for (int a = 0; a < words.length; a++) {
+                byFrequency[a] = a;
+            }
+            Arrays.sort(byFrequency, (a, b) -> Integer.compare(frequency(b), frequency(a)));
+            for (int a : byFrequency) {
+                if (eager != null) {
+                    return;
+                }
+                counted(a, 1);
+                counted(a, -1);
+            }
+        }, executor);
+    }
+
+    /** @return number of words whose out-edges have been counted */
+    int materializedCount() {
+        int count = 0;
+        for (int a = 0; a < words.length; a++) {
+            if (targets.get(a) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int frequency(int a) {
+        return occurrenceOffsets[a + 1] - occurrenceOffsets[a];
+    }
+
+    /**
+     * The counted edges of a word: neighbor word ids in increasing order,
+     * with their weights stored compactly, since most are 1.
+     */
+    private static final class Row {
+        private final int[] neighbors;
+        private final AdaptiveWeights weights;
+
+        private Row(int[] neighbors, AdaptiveWeights weights) {
+            this.neighbors = neighbors;
+            this.weights = weights;
+        }
+
+        private Map<Integer, Integer> toMap() {
+            Map<Integer, Integer> map = new HashMap<>();
+            for (int i = 0; i < neighbors.length; i++) {
+                map.put(neighbors[i], weights.get(i));
+            }
+            return map;
+        }
+    }
+
+    /*
+     * Returns the out-edges (direction 1) or in-edges (direction -1) of
+     * words[a], counting them if no thread has yet.
+     */
+    private Row counted(int a, int direction) {
+        AtomicReferenceArray<Row> edges = direction > 0 ? targets : sources;
+        Row counted = edges.get(a);
+        if (counted != null) {
+            return counted;
+        }
+        int[] neighbors = new int[frequency(a)];
+        int count = 0;
+        for (int i = occurrenceOffsets[a]; i < occurrenceOffsets[a + 1]; i++) {
+            int neighbor = occurrences[i] + direction;
+            if (neighbor >= 0 && neighbor < tokens.length) {
+                neighbors[count++] = tokens[neighbor];
+            }
+        }
+        Arrays.sort(neighbors, 0, count);
+        AdaptiveWeights weights = new AdaptiveWeights(count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && neighbors[i] == neighbors[i - 1]) {
+                weights.increment(distinct - 1, 1);
+            } else {
+                neighbors[distinct++] = neighbors[i];
+                weights.append(1);
+            }
+        }
+        weights.trim();
+        int[] ids = new int[distinct];
+        for (int i = 0; i < distinct; i++) {
+            ids[i] = words[neighbors[i]];
+        }
+        counted = new Row(ids, weights);
+        edges.compareAndSet(a, null, counted);
+        return counted;
+    }
+
+    /*
+     * Returns the graph to forward mutations to, building it on first use.
+     */
+    private Graph<Integer> eager() {
+        if (eager == null) {
+            Graph<Integer> graph = new CompactVerticesGraph<>();
+            for (int a = 0; a < words.length; a++) {
+                graph.add(words[a]);
+            }
+            for (int a = 0; a < words.length; a++) {
+                Row row = counted(a, 1);
+                for (int i = 0; i < row.neighbors.length; i++) {
+                    graph.set(words[a], row.neighbors[i], row.weights.get(i));
+                }
+            }
+            eager = graph;
+        }
+        return eager;
+    }
+
+    @Override
+    public boolean add(Integer vertex) {
+        return eager().add(vertex);
+    }
+
+    @Override
+    public int set(Integer source, Integer target, int weight) {
+        return eager().set(source, target, weight);
+    }
+
+    @Override
+    public boolean remove(Integer vertex) {
+        return eager().remove(vertex);
+    }
+
+    @Override
+    public Set<Integer> vertices() {
+        Graph<Integer> graph = eager;
+        if (graph != null) {
+            return graph.vertices();
+        }
+        Set<Integer> vertices = new HashSet<>();
+        for (int word : words) {
+            vertices.add(word);
+        }
+        return vertices;
+    }
+
+    @Override
+    public Map<Integer, Integer> sources(Integer target) {
+        return edges(target, -1);
+    }
+
+    @Override
+    public Map<Integer, Integer> targets(Integer source) {
+        return edges(source, 1);
+    }
+
+    private Map<Integer, Integer> edges(Integer vertex, int direction) {
+        Graph<Integer> graph = eager;
+        if (graph != null) {
+            return direction > 0 ? graph.targets(vertex) : graph.sources(vertex);
+        }
+        int a = Arrays.binarySearch(words, vertex);
+        return a < 0 ? new HashMap<>() : counted(a, direction).toMap();
+    }
+
+    @Override
+    public String toString() {
+        Graph<Integer> graph = eager;
+        return graph != null ? graph.toString()
+                : "LazyCorpusGraph(" + words.length + " words, " + tokens.length + " tokens)";
+    }
+}
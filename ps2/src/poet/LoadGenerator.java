@@ -0,0 +1,166 @@
+package poet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import graph.LatencyHistogram;
+
+/**
+ * A closed-loop load generator for a {@link PoemServer}: each client thread
+ * POSTs poem requests one after another and records the round-trip latency.
+ */
+public class LoadGenerator {
+
+    private final URL url;
+    private final List<String> inputs;
+
+    // Abstraction function:
+    //   Represents a generator of POST requests to 'url' whose bodies cycle
+    //   through 'inputs'.
+    //
+    // Representation invariant:
+    //   - inputs is nonempty
+    //
+    // Safety from rep exposure:
+    //   'inputs' is a private copy and is never returned.
+
+    /**
+     * The outcome of a load run.
+     */
+    public static class Result {
+        private final long requests;
+        private final long errors;
+        private final long elapsedNanos;
+        private final LatencyHistogram latencies;
+
+        private Result(long requests, long errors, long elapsedNanos, LatencyHistogram latencies) {
+            this.requests = requests;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+        }
+
+        /** @return number of successful requests */
+        public long requests() {
+            return requests;
+        }
+
+        /** @return number of failed requests */
+        public long errors() {
+            return errors;
+        }
+
+        /** @return successful requests per second */
+        public double throughput() {
+            return requests * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /** @return round-trip latencies of successful requests, in microseconds */
+        public LatencyHistogram latencies() {
+            return latencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throughput=%.0f/s latency_micros %s",
+                    requests, errors, throughput(), latencies);
+        }
+    }
+
+    /**
+     * Make a load generator.
+     *
+     * @param port port of a PoemServer on the loopback interface
+     * @param inputs nonempty list of poem inputs to send, in turn
+     * @throws IOException if the server URL is malformed
+     */
+    public LoadGenerator(int port, List<String> inputs) throws IOException {
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one input");
+        }
+        this.url = new URL("http", "127.0.0.1", port, "/poem");
+        this.inputs = new ArrayList<>(inputs);
+    }
+
+    /**
+     * Send requests from concurrent clients.
+     *
+     * @param clients number of concurrent clients, must be positive
+     * @param requestsPerClient number of requests each client sends
+     * @return the outcome of the run
+     * @throws InterruptedException if interrupted while waiting for clients
+     */
+    public Result run(int clients, int requestsPerClient) throws InterruptedException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                final int client = c;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        String input = inputs.get((client + i) % inputs.size());
+                        long sent = System.nanoTime();
+                        try {
+                            request(input);
+                            latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new Result(latencies.count(), errors.get(), System.nanoTime() - start, latencies);
+    }
+
+    /*
+     * POST input and return the poem, or throw IOException on any failure.
+     */
+    private String request(String input) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        byte[] body = input.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("HTTP " + connection.getResponseCode());
+        }
+        // Reading the whole response lets the connection be kept alive
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream poem = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                poem.write(buffer, 0, n);
+            }
+            return new String(poem.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
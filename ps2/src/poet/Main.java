@@ -5,6 +5,13 @@ package poet;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Example program using GraphPoet.
@@ -13,16 +20,104 @@ import java.io.IOException;
  */
 public class Main {
     
+    private static final String CORPUS = "src/poet/mugar-omni-theater.txt";
+    private static final List<String> LOAD_INPUTS = Arrays.asList(
+            "Test the system.", "Test the sound system.", "the Mugar Omni Theater", "a test of the system");
+
     /**
-     * Generate example poetry.
+     * Generate example poetry, or serve it.
+     * 
+     * <p>With no arguments, print an example poem. Otherwise the first
+     * argument selects a mode:
+     * <ul><li> {@code serve [port] [image]}: serve poems with a
+     *          {@link PoemServer} on the loopback interface until killed,
+     *          from a poet image if one is given
+     *     <li> {@code compile image [corpus...]}: compile a poet of the
+     *          corpus files, read one after another, into an image file
+     *     <li> {@code open image [input]}: open a poet image, print a poem
+     *          and the time taken since the JVM started
+     *     <li> {@code load port [clients] [requests]}: run a
+     *          {@link LoadGenerator} against a server on port, with each
+     *          client sending the given number of requests
+     *     <li> {@code bench [clients] [requests]}: start a server on a free
+     *          port, run a load generator against it, and print both sides'
+     *          latencies </ul>
      * 
-     * @param args unused
-     * @throws IOException if a poet corpus file cannot be found or read
+     * @param args mode and its arguments, as above
+     * @throws IOException if a poet corpus file cannot be found or read, or
+     *         the server cannot start
+     * @throws InterruptedException if interrupted while generating load
      */
-    public static void main(String[] args) throws IOException {
-        final GraphPoet nimoy = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"));
-        final String input = "Test the system.";
-        System.out.println(input + "\n>>>\n" + nimoy.poem(input));
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final String mode = args.length > 0 ? args[0] : "example";
+        switch (mode) {
+        case "example": {
+            final GraphPoet nimoy = new GraphPoet(new File(CORPUS));
+            final String input = "Test the system.";
+            System.out.println(input + "\n>>>\n" + nimoy.poem(input));
+            break;
+        }
+        case "serve": {
+            final int port = argument(args, 1, 8080);
+            final GraphPoet poet = args.length > 2 ? GraphPoet.open(Paths.get(args[2]))
+                    : new GraphPoet(new File(CORPUS));
+            final PoemServer server = new PoemServer(poet, port, 64, 200);
+            System.out.println("Serving poems on http://127.0.0.1:" + server.port() + "/poem");
+            break;
+        }
+        case "compile": {
+            if (args.length < 2) {
+                usage();
+            }
+            final long start = System.nanoTime();
+            final String first = args.length > 2 ? args[2] : CORPUS;
+            final GraphPoet poet = new GraphPoet(new File(first), new Vocabulary());
+            for (int i = 3; i < args.length; i++) {
+                poet.learn(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.UTF_8));
+            }
+            final Path image = Paths.get(args[1]);
+            poet.writeImage(image, PoetImage.DEFAULT_MAX_BRIDGES);
+            System.out.println("Compiled " + Math.max(1, args.length - 2) + " corpus files into " + image + " ("
+                    + Files.size(image) + " bytes) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            break;
+        }
+        case "open": {
+            if (args.length < 2) {
+                usage();
+            }
+            final GraphPoet poet = GraphPoet.open(Paths.get(args[1]));
+            final String input = args.length > 2 ? args[2] : "Test the system.";
+            final String poem = poet.poem(input);
+            final long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            System.out.println(input + "\n>>>\n" + poem + "\n(" + uptime + " ms since JVM start)");
+            break;
+        }
+        case "load": {
+            final LoadGenerator load = new LoadGenerator(argument(args, 1, 8080), LOAD_INPUTS);
+            System.out.println(load.run(argument(args, 2, 16), argument(args, 3, 1000)));
+            break;
+        }
+        case "bench": {
+            try (PoemServer server = new PoemServer(new GraphPoet(new File(CORPUS)), 0, 64, 200)) {
+                final LoadGenerator load = new LoadGenerator(server.port(), LOAD_INPUTS);
+                System.out.println("client " + load.run(argument(args, 1, 16), argument(args, 2, 1000)));
+                System.out.println("server latency_micros " + server.latencies());
+            }
+            break;
+        }
+        default:
+            usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: Main [serve [port] [image] | compile image [corpus...] | open image [input]"
+                + " | load port [clients] [requests] | bench [clients] [requests]]");
+        System.exit(2);
+    }
+
+    private static int argument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
     }
     
 }
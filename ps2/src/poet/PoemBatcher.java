@@ -0,0 +1,196 @@
+package poet;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups concurrent poem requests into batches for {@link GraphPoet#poems},
+ * so that a bridge shared by several requests is looked up once.
+ *
+ * <p>A single worker thread takes the first waiting request, then keeps
+ * collecting requests until the batch is full or the batching window after
+ * the first request has passed, and hands the whole batch to an executor to
+ * answer at once. So the worker only collects, and batches are answered in
+ * parallel on as many threads as the executor has.
+ */
+class PoemBatcher implements Closeable {
+
+    private final GraphPoet poet;
+    private final int maxBatch;
+    private final long windowNanos;
+    private final Executor answerers;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile boolean closed = false;
+
+    // Abstraction function:
+    //   Represents the requests in 'queue', waiting to be answered by 'poet'
+    //   on 'answerers' in batches of at most 'maxBatch'; 'batches' and
+    //   'requests' count the batches and requests handed over so far.
+    //
+    // Representation invariant:
+    //   - maxBatch > 0, windowNanos >= 0
+    //
+    // Safety from rep exposure:
+    //   All fields are private; requests are answered through futures.
+    //
+    // Thread safety argument:
+    //   Requests are handed to the worker through a blocking queue, and each
+    //   batch to an answering thread through the executor, which owns it from
+    //   then on; requests are answered through futures, GraphPoet's poems()
+    //   may be called by several threads at once, and counters are atomic.
+    //   The worker sets 'closed' before it exits, and fails every request
+    //   left in the queue as it does; submit() checks 'closed' again after
+    //   adding its request, and fails the request itself if it can still take
+    //   it back, so no request is left waiting on a worker that has gone.
+
+    /**
+     * A poem request and the future to complete with its poem.
+     */
+    private static class Request {
+        private final String input;
+        private final CompletableFuture<String> poem = new CompletableFuture<>();
+
+        private Request(String input) {
+            this.input = input;
+        }
+    }
+
+    /**
+     * Start batching requests for a poet.
+     *
+     * @param poet poet to answer requests with
+     * @param maxBatch maximum number of requests per batch, must be positive
+     * @param windowMicros how long to wait for more requests after the first
+     *        one of a batch arrives
+     * @param answerers executor on which to answer each batch; poet must not
+     *        learn while it may still run one
+     */
+    PoemBatcher(GraphPoet poet, int maxBatch, long windowMicros, Executor answerers) {
+        if (maxBatch <= 0 || windowMicros < 0) {
+            throw new IllegalArgumentException("Batch size must be positive and window nonnegative");
+        }
+        this.poet = poet;
+        this.maxBatch = maxBatch;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.answerers = answerers;
+        this.worker = new Thread(this::run, "PoemBatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Request a poem.
+     *
+     * @param input string from which to create the poem
+     * @return a future that completes with the poem, or exceptionally if the
+     *         poet fails or this batcher is closed first
+     */
+    CompletableFuture<String> submit(String input) {
+        Request request = new Request(input);
+        if (closed) {
+            request.poem.completeExceptionally(new IllegalStateException("Batcher is closed"));
+            return request.poem;
+        }
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            // The worker may have drained the queue and exited before the add
+            request.poem.completeExceptionally(new IllegalStateException("Batcher is closed"));
+        }
+        return request.poem;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+                break;
+            }
+            dispatch(batch);
+            batch = new ArrayList<>(maxBatch);
+        }
+        queue.drainTo(batch);
+        for (Request request : batch) {
+            request.poem.completeExceptionally(new IllegalStateException("Batcher is closed"));
+        }
+    }
+
+    private void dispatch(List<Request> batch) {
+        batches.incrementAndGet();
+        requests.addAndGet(batch.size());
+        try {
+            answerers.execute(() -> answer(batch));
+        } catch (RejectedExecutionException e) {
+            for (Request request : batch) {
+                request.poem.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void answer(List<Request> batch) {
+        List<String> inputs = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            inputs.add(request.input);
+        }
+        try {
+            List<String> poems = poet.poems(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).poem.complete(poems.get(i));
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.poem.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** @return number of batches handed to the executor so far */
+    long batchCount() {
+        return batches.get();
+    }
+
+    /** @return number of requests handed to the executor so far */
+    long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Hand the requests already submitted to the executor, then stop. They
+     * are answered unless the executor rejects them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package poet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import graph.LatencyHistogram;
+
+/**
+ * A lightweight HTTP server for a GraphPoet.
+ *
+ * <p>Endpoints:
+ * <ul><li> {@code GET /poem?input=...} or {@code POST /poem} with the input
+ *          as the request body: responds with the poem as plain text, and
+ *          its latency in microseconds in the {@value #LATENCY_HEADER} header
+ *     <li> {@code GET /stats}: responds with request, batch and latency
+ *          counts as plain text </ul>
+ *
+ * <p>Each request is handled on its own thread from a growable pool, and
+ * concurrent poem requests are answered in batches by a {@link PoemBatcher},
+ * so a bridge they share is looked up once; batches are answered in parallel
+ * on one thread per processor. A poem request that is not
+ * answered within {@value #POEM_TIMEOUT_SECONDS} seconds fails with status 503.
+ */
+public class PoemServer implements Closeable {
+
+    /** Response header that carries the server-side latency of a request. */
+    public static final String LATENCY_HEADER = "X-Poem-Latency-Micros";
+
+    /** How long a request waits for its poem before failing, in seconds. */
+    public static final long POEM_TIMEOUT_SECONDS = 30;
+
+    static {
+        // Responses are written as headers then body; without TCP_NODELAY the
+        // body waits on the client's delayed ACK. Read once, when the JDK
+        // server first loads, so an explicit setting still wins.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ExecutorService poets;
+    private final PoemBatcher batcher;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    // Abstraction function:
+    //   Represents a server answering poem requests at server.getAddress()
+    //   with the poet behind 'batcher'; 'latencies' holds the latency of
+    //   every poem request answered so far, in microseconds.
+    //
+    // Representation invariant:
+    //   - 'server' runs its exchanges on 'handlers', and 'batcher' answers
+    //     its batches on 'poets'
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final and none are returned.
+    //
+    // Thread safety argument:
+    //   The batcher and histogram are threadsafe, and handlers share
+    //   nothing else.
+
+    /**
+     * Start a server on the loopback interface.
+     *
+     * @param poet poet to answer requests with; must not be changed while
+     *        the server runs
+     * @param port port to listen on, or 0 to choose a free port
+     * @param maxBatch maximum number of poem requests per batch
+     * @param windowMicros how long a batch waits for more requests
+     * @throws IOException if the server cannot listen on port
+     */
+    public PoemServer(GraphPoet poet, int port, int maxBatch, long windowMicros) throws IOException {
+        this(poet, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxBatch, windowMicros);
+    }
+
+    /**
+     * Start a server.
+     *
+     * @param poet poet to answer requests with; must not be changed while
+     *        the server runs
+     * @param address address to listen on
+     * @param maxBatch maximum number of poem requests per batch
+     * @param windowMicros how long a batch waits for more requests
+     * @throws IOException if the server cannot listen on address
+     */
+    public PoemServer(GraphPoet poet, InetSocketAddress address, int maxBatch, long windowMicros)
+            throws IOException {
+        this.poets = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "PoemServer-poet");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batcher = new PoemBatcher(poet, maxBatch, windowMicros, poets);
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "PoemServer-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/poem", this::poem);
+        server.createContext("/stats", this::stats);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /** @return port this server listens on */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** @return latencies of the poem requests answered so far, in microseconds */
+    public LatencyHistogram latencies() {
+        return latencies;
+    }
+
+    private void poem(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            String input;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                input = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                input = parameter(exchange.getRequestURI().getRawQuery(), "input");
+            } else {
+                respond(exchange, 405, "Use GET or POST\n");
+                return;
+            }
+            if (input == null) {
+                respond(exchange, 400, "Missing input\n");
+                return;
+            }
+            String poem;
+            CompletableFuture<String> pending = batcher.submit(input);
+            try {
+                poem = pending.get(POEM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                pending.cancel(false);
+                respond(exchange, 503, "Timed out\n");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Interrupted\n");
+                return;
+            } catch (ExecutionException e) {
+                respond(exchange, 500, e.getCause() + "\n");
+                return;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            latencies.record(micros);
+            exchange.getResponseHeaders().set(LATENCY_HEADER, Long.toString(micros));
+            respond(exchange, 200, poem);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            String stats = "requests " + batcher.requestCount() + "\n"
+                    + "batches " + batcher.batchCount() + "\n"
+                    + "latency_micros " + latencies + "\n";
+            respond(exchange, 200, stats);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Returns the decoded value of the first name=value pair in query, or
+     * null if there is none.
+     */
+    private static String parameter(String query, String name) throws UnsupportedEncodingException {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            if (URLDecoder.decode(key, "UTF-8").equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stop accepting requests, answer the ones in progress, and stop.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        batcher.close();
+        poets.shutdown();
+        handlers.shutdown();
+    }
+}
@@ -0,0 +1,146 @@
+package poet;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Generates the poems for a stream of inputs asynchronously, with at most a
+ * fixed number of poems in flight.
+ *
+ * <p>An input is taken from the stream only when fewer than the window of
+ * poems are being generated or waiting to be delivered, so a slow consumer
+ * or a slow executor holds back the reading of inputs instead of letting
+ * them pile up. Poems are delivered to the consumer in input order, one at
+ * a time.
+ */
+class PoemStream {
+
+    private final GraphPoet poet;
+    private final Iterator<String> inputs;
+    private final Consumer<? super String> consumer;
+    private final Executor executor;
+    private final String[] window;
+    private final boolean[] done;
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+    private long issued = 0;
+    private long delivered = 0;
+    private boolean exhausted = false;
+    private boolean pumping = false;
+
+    // Abstraction function:
+    //   Represents the stream of poems for 'inputs', of which the first
+    //   'delivered' have been given to 'consumer' and the first 'issued' have
+    //   been started; poem number i, once generated and not yet delivered, is
+    //   window[i % window.length] with done[i % window.length] set.
+    //
+    // Representation invariant:
+    //   - 0 <= delivered <= issued <= delivered + window.length
+    //   - done[i % window.length] is false for i < delivered and i >= issued
+    //   - exhausted only if inputs has no next element
+    //
+    // Safety from rep exposure:
+    //   All fields are private; 'finished' is returned on purpose, and the
+    //   caller may only complete it to cancel the stream.
+    //
+    // Thread safety argument:
+    //   Poems complete on executor threads; every field other than the final
+    //   ones is read and written only while holding this object's lock.
+
+    /**
+     * Make a stream; it starts when {@link #start()} is called.
+     *
+     * @param poet poet to generate the poems
+     * @param inputs inputs to read, not used by anyone else meanwhile
+     * @param consumer receives the poems in input order
+     * @param maxInFlight maximum number of poems started but not delivered,
+     *        must be positive
+     * @param executor executor to generate poems on
+     */
+    PoemStream(GraphPoet poet, Iterator<String> inputs, Consumer<? super String> consumer, int maxInFlight,
+            Executor executor) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.poet = poet;
+        this.inputs = inputs;
+        this.consumer = consumer;
+        this.executor = executor;
+        this.window = new String[maxInFlight];
+        this.done = new boolean[maxInFlight];
+    }
+
+    private void checkRep() {
+        assert 0 <= delivered && delivered <= issued && issued <= delivered + window.length;
+    }
+
+    /**
+     * Start reading inputs.
+     *
+     * @return a future that completes once every poem has been delivered, or
+     *         exceptionally if reading an input, generating a poem or
+     *         consuming one fails; completing it early stops the stream
+     */
+    CompletableFuture<Void> start() {
+        pump();
+        return finished;
+    }
+
+    /*
+     * Start poems until the window is full or the inputs run out. Poems
+     * that complete on this thread meanwhile are delivered without
+     * recursing back into pump().
+     */
+    private synchronized void pump() {
+        pumping = true;
+        try {
+            while (!finished.isDone() && !exhausted && issued - delivered < window.length) {
+                if (!inputs.hasNext()) {
+                    exhausted = true;
+                    break;
+                }
+                String input = inputs.next();
+                long number = issued++;
+                CompletableFuture.supplyAsync(() -> poet.poem(input), executor)
+                        .whenComplete((poem, failure) -> completed(number, poem, failure));
+            }
+        } catch (RuntimeException e) {
+            finished.completeExceptionally(e);
+        } finally {
+            pumping = false;
+        }
+        if (exhausted && delivered == issued) {
+            finished.complete(null);
+        }
+        checkRep();
+    }
+
+    private synchronized void completed(long number, String poem, Throwable failure) {
+        if (finished.isDone()) {
+            return;
+        }
+        if (failure != null) {
+            finished.completeExceptionally(failure);
+            return;
+        }
+        int slot = (int) (number % window.length);
+        window[slot] = poem;
+        done[slot] = true;
+        try {
+            for (slot = (int) (delivered % window.length); done[slot]; slot = (int) (delivered % window.length)) {
+                String next = window[slot];
+                window[slot] = null;
+                done[slot] = false;
+                delivered++;
+                consumer.accept(next);
+            }
+        } catch (RuntimeException e) {
+            finished.completeExceptionally(e);
+            return;
+        }
+        if (!pumping) {
+            pump();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package poet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import graph.AdjacencyIntersection;
+import graph.CsrSnapshot;
+import graph.Graph;
+
+/**
+ * A compiled, read-only poet: the words of a poet's affinity graph, its
+ * edges in CSR form and a table of precomputed bridges, in one file that is
+ * memory-mapped rather than parsed when opened.
+ *
+ * <p>An image numbers the words of the graph 0..n-1 in increasing order of
+ * their ids in the poet's vocabulary, so bridges tie-break as they did in
+ * the poet. The bridge table holds, for each source word below a cutoff,
+ * the best bridge to every word two hops away; pairs from later sources are
+ * answered by intersecting their mapped rows instead. The cutoff bounds the
+ * table, which can grow with the square of the degree of hub words.
+ *
+ * <p>The file is a header of {@value #HEADER_INTS} big-endian ints (magic,
+ * format, words, edges, tabulated sources, table entries, vocabulary
+ * bytes), then the int arrays word offsets, out-offsets, out-targets,
+ * out-weights, in-offsets, in-sources, in-weights, table offsets, table
+ * targets and table bridges, then the UTF-8 bytes of the words. Images are
+ * limited to 2 GB, the most one mapping can hold.
+ *
+ * <p>An image is also a read-only Graph of word numbers; its mutators throw
+ * UnsupportedOperationException.
+ */
+final class PoetImage implements Graph<Integer> {
+
+    /** Default maximum number of entries in a bridge table. */
+    static final int DEFAULT_MAX_BRIDGES = 1 << 24;
+
+    private static final int MAGIC = 0x504f4554; // "POET"
+    private static final int FORMAT = 1;
+    private static final int HEADER_INTS = 7;
+
+    private final int words;
+    private final int bridgedSources;
+    private final IntBuffer wordOffsets;
+    private final IntBuffer outOffsets;
+    private final IntBuffer outTargets;
+    private final IntBuffer outWeights;
+    private final IntBuffer inOffsets;
+    private final IntBuffer inSources;
+    private final IntBuffer inWeights;
+    private final IntBuffer bridgeOffsets;
+    private final IntBuffer bridgeTargets;
+    private final IntBuffer bridgeWords;
+    private final ByteBuffer vocabulary;
+
+    // Abstraction function:
+    //   Represents the graph on words 0..words-1 with an edge
+    //   v -> outTargets[i] of weight outWeights[i] for outOffsets[v] <= i <
+    //   outOffsets[v + 1], whose word v is the UTF-8 decoding of
+    //   vocabulary[wordOffsets[v]..wordOffsets[v + 1]); for each source
+    //   a < bridgedSources, the best bridge from a to bridgeTargets[i] is
+    //   bridgeWords[i] for bridgeOffsets[a] <= i < bridgeOffsets[a + 1], and
+    //   other targets have none.
+    //
+    // Representation invariant:
+    //   - the offset buffers have words + 1 entries (bridgeOffsets
+    //     bridgedSources + 1), start at 0 and never decrease
+    //   - each out- and in-row and each source's table targets are strictly
+    //     increasing; the in-rows hold the out-rows' edges reversed
+    //   - 0 <= bridgedSources <= words
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final, and no buffer is returned.
+    //   Observers return new collections.
+    //
+    // Thread safety argument:
+    //   The mapping is read-only, and the buffers are only read with absolute
+    //   gets, which never change a buffer's position, so any number of
+    //   threads may read them at once.
+
+    private PoetImage(ByteBuffer image) throws IOException {
+        if (image.capacity() < HEADER_INTS * 4 || image.getInt(0) != MAGIC) {
+            throw new IOException("Not a poet image");
+        }
+        if (image.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported poet image format " + image.getInt(4));
+        }
+        this.words = image.getInt(8);
+        int edges = image.getInt(12);
+        this.bridgedSources = image.getInt(16);
+        int bridges = image.getInt(20);
+        int vocabularyBytes = image.getInt(24);
+        long size = 4L * (HEADER_INTS + 3 * (words + 1L) + 4L * edges + bridgedSources + 1 + 2L * bridges)
+                + vocabularyBytes;
+        if (words < 0 || edges < 0 || bridgedSources < 0 || bridgedSources > words || bridges < 0
+                || vocabularyBytes < 0 || size != image.capacity()) {
+            throw new IOException("Truncated or corrupt poet image");
+        }
+        int[] position = { HEADER_INTS * 4 };
+        this.wordOffsets = ints(image, position, words + 1);
+        this.outOffsets = ints(image, position, words + 1);
+        this.outTargets = ints(image, position, edges);
+        this.outWeights = ints(image, position, edges);
+        this.inOffsets = ints(image, position, words + 1);
+        this.inSources = ints(image, position, edges);
+        this.inWeights = ints(image, position, edges);
+        this.bridgeOffsets = ints(image, position, bridgedSources + 1);
+        this.bridgeTargets = ints(image, position, bridges);
+        this.bridgeWords = ints(image, position, bridges);
+        this.vocabulary = slice(image, position[0], vocabularyBytes);
+        checkOffsets(wordOffsets, vocabularyBytes);
+        checkOffsets(outOffsets, edges);
+        checkOffsets(inOffsets, edges);
+        checkOffsets(bridgeOffsets, bridges);
+        checkRep();
+    }
+
+    /*
+     * Check that offsets start at 0, never decrease and end at total, so
+     * that every row they delimit lies within its array.
+     */
+    private static void checkOffsets(IntBuffer offsets, int total) throws IOException {
+        int previous = 0;
+        for (int i = 0; i < offsets.limit(); i++) {
+            int offset = offsets.get(i);
+            if (offset < previous || i == 0 && offset != 0) {
+                throw new IOException("Corrupt poet image offsets");
+            }
+            previous = offset;
+        }
+        if (previous != total) {
+            throw new IOException("Corrupt poet image offsets");
+        }
+    }
+
+    private void checkRep() {
+        assert 0 <= bridgedSources && bridgedSources <= words;
+        assert outOffsets.get(words) == outTargets.limit() && inOffsets.get(words) == inSources.limit();
+        assert bridgeOffsets.get(bridgedSources) == bridgeTargets.limit();
+        assert wordOffsets.get(words) == vocabulary.limit();
+    }
+
+    private static ByteBuffer slice(ByteBuffer image, int start, int length) {
+        ByteBuffer view = image.duplicate();
+        view.position(start);
+        view.limit(start + length);
+        return view.slice();
+    }
+
+    /*
+     * The next count ints of image from position[0], advancing it.
+     */
+    private static IntBuffer ints(ByteBuffer image, int[] position, int count) {
+        IntBuffer ints = slice(image, position[0], count * 4).asIntBuffer();
+        position[0] += count * 4;
+        return ints;
+    }
+
+    /**
+     * Compile the graph of a poet into an image file, replacing any file
+     * already there only once the new image is complete. The graph must not
+     * be mutated meanwhile.
+     *
+     * @param vocabulary vocabulary of the poet's word ids
+     * @param graph the poet's affinity graph, on word ids
+     * @param maxBridges most entries in the bridge table, nonnegative
+     * @param image file to write
+     * @throws IOException if the file cannot be written, or the image would
+     *         exceed 2 GB
+     */
+    static void write(Vocabulary vocabulary, Graph<Integer> graph, int maxBridges, Path image) throws IOException {
+        if (maxBridges < 0) {
+            throw new IllegalArgumentException("maxBridges must be nonnegative");
+        }
+        CsrSnapshot<Integer> snapshot = CsrSnapshot.of(graph, Comparator.<Integer>naturalOrder());
+        int n = snapshot.vertexCount();
+        int edges = snapshot.edgeCount();
+
+        byte[][] encoded = new byte[n][];
+        int vocabularyBytes = 0;
+        for (int v = 0; v < n; v++) {
+            encoded[v] = vocabulary.word(snapshot.label(v)).getBytes(StandardCharsets.UTF_8);
+            vocabularyBytes += encoded[v].length;
+        }
+        BridgeTable table = new BridgeTable(snapshot, maxBridges);
+        long size = 4L * (HEADER_INTS + 3 * (n + 1L) + 4L * edges + table.sources + 1 + 2L * table.size)
+                + vocabularyBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Poet image of " + size + " bytes is too large to map");
+        }
+
+        Path partial = image.resolveSibling(image.getFileName() + ".partial");
+        try (FileOutputStream file = new FileOutputStream(partial.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            for (int header : new int[] { MAGIC, FORMAT, n, edges, table.sources, table.size, vocabularyBytes }) {
+                out.writeInt(header);
+            }
+            int offset = 0;
+            out.writeInt(0);
+            for (int v = 0; v < n; v++) {
+                offset += encoded[v].length;
+                out.writeInt(offset);
+            }
+            for (int v = 0; v < n; v++) {
+                out.writeInt(snapshot.outStart(v));
+            }
+            out.writeInt(edges);
+            for (int i = 0; i < edges; i++) {
+                out.writeInt(snapshot.outTarget(i));
+            }
+            for (int i = 0; i < edges; i++) {
+                out.writeInt(snapshot.outWeight(i));
+            }
+            for (int v = 0; v < n; v++) {
+                out.writeInt(snapshot.inStart(v));
+            }
+            out.writeInt(edges);
+            for (int i = 0; i < edges; i++) {
+                out.writeInt(snapshot.inSource(i));
+            }
+            for (int i = 0; i < edges; i++) {
+                out.writeInt(snapshot.inWeight(i));
+            }
+            for (int a = 0; a <= table.sources; a++) {
+                out.writeInt(table.offsets[a]);
+            }
+            for (int i = 0; i < table.size; i++) {
+                out.writeInt(table.targets[i]);
+            }
+            for (int i = 0; i < table.size; i++) {
+                out.writeInt(table.bridges[i]);
+            }
+            for (byte[] word : encoded) {
+                out.write(word);
+            }
+            out.flush();
+            // The image must be durable before it replaces the old one, or a
+            // crash could leave the rename without the data
+            file.getChannel().force(true);
+        }
+        Files.move(partial, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The best bridge from each source, in increasing order of source, to
+     * every vertex two hops away, for as many sources as fit in a maximum
+     * number of entries.
+     */
+    private static class BridgeTable {
+        private int sources = 0;
+        private int size = 0;
+        private int[] offsets;
+        private int[] targets = new int[16];
+        private int[] bridges = new int[16];
+
+        private BridgeTable(CsrSnapshot<Integer> snapshot, int maxBridges) {
+            int n = snapshot.vertexCount();
+            offsets = new int[n + 1];
+            int[] bestWeight = new int[n];
+            int[] bestBridge = new int[n];
+            int[] reached = new int[n];
+            for (int a = 0; a < n; a++) {
+                int count = 0;
+                for (int i = snapshot.outStart(a); i < snapshot.outEnd(a); i++) {
+                    int b = snapshot.outTarget(i);
+                    int weight = snapshot.outWeight(i);
+                    for (int j = snapshot.outStart(b); j < snapshot.outEnd(b); j++) {
+                        int c = snapshot.outTarget(j);
+                        if (bestWeight[c] == 0) {
+                            reached[count++] = c;
+                        }
+                        // Rows are in increasing order of b, so the first of
+                        // equally heavy bridges is the smallest
+                        if (weight > bestWeight[c]) {
+                            bestWeight[c] = weight;
+                            bestBridge[c] = b;
+                        }
+                    }
+                }
+                boolean fits = (long) size + count <= maxBridges;
+                if (fits) {
+                    Arrays.sort(reached, 0, count);
+                    if (size + count > targets.length) {
+                        int capacity = Math.max(size + count, targets.length * 2);
+                        targets = Arrays.copyOf(targets, capacity);
+                        bridges = Arrays.copyOf(bridges, capacity);
+                    }
+                }
+                for (int k = 0; k < count; k++) {
+                    int c = reached[k];
+                    if (fits) {
+                        targets[size] = c;
+                        bridges[size] = bestBridge[c];
+                        size++;
+                    }
+                    bestWeight[c] = 0;
+                }
+                if (!fits) {
+                    break;
+                }
+                sources = a + 1;
+                offsets[sources] = size;
+            }
+        }
+    }
+
+    /**
+     * Map an image file.
+     *
+     * @param image file written by {@link #write}
+     * @return the image
+     * @throws IOException if the file cannot be read, or is not a complete
+     *         image of this format
+     */
+    static PoetImage open(Path image) throws IOException {
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Poet image is too large to map");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PoetImage(mapped);
+        }
+    }
+
+    /** @return number of words in this image */
+    int wordCount() {
+        return words;
+    }
+
+    /**
+     * @param v a word number, 0 <= v < wordCount()
+     * @return the normalized word
+     */
+    String word(int v) {
+        int start = wordOffsets.get(v);
+        byte[] bytes = new byte[wordOffsets.get(v + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = vocabulary.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Find the bridge between two words as GraphPoet does, from the table if
+     * it covers the first word.
+     *
+     * @param source a word number
+     * @param target a word number
+     * @return the best bridge, or {@link Vocabulary#NO_WORD} if there is none
+     */
+    int bridge(int source, int target) {
+        if (source < 0 || source >= words || target < 0 || target >= words) {
+            return Vocabulary.NO_WORD;
+        }
+        if (source < bridgedSources) {
+            int low = bridgeOffsets.get(source);
+            int high = bridgeOffsets.get(source + 1) - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int candidate = bridgeTargets.get(middle);
+                if (candidate < target) {
+                    low = middle + 1;
+                } else if (candidate > target) {
+                    high = middle - 1;
+                } else {
+                    return bridgeWords.get(middle);
+                }
+            }
+            return Vocabulary.NO_WORD;
+        }
+        int[] out = row(outTargets, outOffsets, source);
+        int[] in = row(inSources, inOffsets, target);
+        if (out.length == 0 || in.length == 0) {
+            return Vocabulary.NO_WORD;
+        }
+        int bridge = AdjacencyIntersection.bestBridge(out, row(outWeights, outOffsets, source), in,
+                row(inWeights, inOffsets, target));
+        return bridge >= 0 ? bridge : Vocabulary.NO_WORD;
+    }
+
+    private static int[] row(IntBuffer values, IntBuffer offsets, int v) {
+        int start = offsets.get(v);
+        int[] row = new int[offsets.get(v + 1) - start];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = values.get(start + i);
+        }
+        return row;
+    }
+
+    @Override
+    public boolean add(Integer vertex) {
+        throw new UnsupportedOperationException("Poet images are read-only");
+    }
+
+    @Override
+    public int set(Integer source, Integer target, int weight) {
+        throw new UnsupportedOperationException("Poet images are read-only");
+    }
+
+    @Override
+    public boolean remove(Integer vertex) {
+        throw new UnsupportedOperationException("Poet images are read-only");
+    }
+
+    @Override
+    public Set<Integer> vertices() {
+        Set<Integer> vertices = new HashSet<>();
+        for (int v = 0; v < words; v++) {
+            vertices.add(v);
+        }
+        return Collections.unmodifiableSet(vertices);
+    }
+
+    @Override
+    public Map<Integer, Integer> sources(Integer target) {
+        return edges(inSources, inWeights, inOffsets, target);
+    }
+
+    @Override
+    public Map<Integer, Integer> targets(Integer source) {
+        return edges(outTargets, outWeights, outOffsets, source);
+    }
+
+    private Map<Integer, Integer> edges(IntBuffer neighbors, IntBuffer weights, IntBuffer offsets, int v) {
+        Map<Integer, Integer> edges = new HashMap<>();
+        if (v >= 0 && v < words) {
+            for (int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+                edges.put(neighbors.get(i), weights.get(i));
+            }
+        }
+        return edges;
+    }
+
+    @Override
+    public String toString() {
+        return "PoetImage of " + words + " words, " + outTargets.limit() + " edges, bridges tabulated for "
+                + bridgedSources + " words";
+    }
+}
@@ -0,0 +1,288 @@
+package poet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * An immutable sequence of normalization stages applied to every word of a
+ * corpus and of poem input before it is looked up in a {@link Vocabulary}.
+ *
+ * <p>The stages run in this order, each optional except the first:
+ * <ol><li> case folding: every character to lower case (Vocabulary stores
+ *          lower case words, so this stage is always on)
+ *     <li> punctuation stripping: drop leading and trailing characters that
+ *          are not letters or digits, so "Hello," and "hello" are one word;
+ *          inner punctuation, as in "don't", stays
+ *     <li> stop-word filtering: drop words in a given set
+ *     <li> stemming: strip English plural endings, e.g. "worlds" to "world"
+ *          and "theories" to "theory" </ol>
+ * <p>A word left empty by a stage, or dropped as a stop word, is removed
+ * from the stream: in a corpus its neighbors become adjacent. The stages are
+ * fused into one pass over a reusable character buffer held by a
+ * {@link Session}, so adding stages allocates nothing per word beyond the
+ * final string.
+ */
+public final class TokenPipeline {
+
+    /** Case folding only: words are whitespace-separated runs, lowercased. */
+    public static final TokenPipeline DEFAULT = new TokenPipeline(false, null, false);
+
+    private final boolean stripPunctuation;
+    private final StopWords stopWords;
+    private final boolean stem;
+
+    // Abstraction function:
+    //   Represents the pipeline that folds case, then strips punctuation if
+    //   'stripPunctuation', drops the words in 'stopWords' if not null, and
+    //   stems if 'stem'.
+    //
+    // Representation invariant:
+    //   true
+    //
+    // Safety from rep exposure:
+    //   All fields are private and final, and StopWords is immutable.
+    //
+    // Thread safety argument:
+    //   This type is immutable; each Session is confined to one thread.
+
+    private TokenPipeline(boolean stripPunctuation, StopWords stopWords, boolean stem) {
+        this.stripPunctuation = stripPunctuation;
+        this.stopWords = stopWords;
+        this.stem = stem;
+    }
+
+    /** @return this pipeline with punctuation stripping added */
+    public TokenPipeline withPunctuationStripped() {
+        return new TokenPipeline(true, stopWords, stem);
+    }
+
+    /**
+     * @param words stop words; they are case folded, and stripped of
+     *        punctuation if this pipeline strips it, before comparison
+     * @return this pipeline with its stop words replaced by words
+     */
+    public TokenPipeline withStopWords(Collection<String> words) {
+        return new TokenPipeline(stripPunctuation, words.isEmpty() ? null : new StopWords(words, this), stem);
+    }
+
+    /** @return this pipeline with stemming added */
+    public TokenPipeline withStemming() {
+        return new TokenPipeline(stripPunctuation, stopWords, true);
+    }
+
+    /**
+     * @return true iff this pipeline only folds case, so that a word is
+     *         never dropped and its normalized form is its lowercased form
+     */
+    boolean isDefault() {
+        return !stripPunctuation && stopWords == null && !stem;
+    }
+
+    /** @return a new session for normalizing words in one thread */
+    public Session session() {
+        return new Session();
+    }
+
+    /**
+     * Normalizes words with one pipeline, reusing its buffer from word to
+     * word. Not threadsafe.
+     */
+    public final class Session {
+        private char[] buffer = new char[32];
+
+        private Session() {
+        }
+
+        /**
+         * Normalize a word.
+         *
+         * @param word a non-empty run of non-whitespace characters
+         * @return the normalized word, or null if the pipeline drops it
+         */
+        public String normalize(String word) {
+            int length = word.length();
+            ensure(length);
+            word.getChars(0, length, buffer, 0);
+            return run(length);
+        }
+
+        /**
+         * Normalize a word of UTF-8 text.
+         *
+         * @param text UTF-8 text
+         * @param start index of the first byte of the word
+         * @param end index just past the last byte of the word
+         * @return the normalized word, or null if the pipeline drops it
+         */
+        String normalize(byte[] text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (text[i] < 0) {
+                    return normalize(new String(text, start, end - start, StandardCharsets.UTF_8));
+                }
+            }
+            int length = end - start;
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buffer[i] = (char) text[start + i];
+            }
+            return run(length);
+        }
+
+        private void ensure(int length) {
+            if (buffer.length < length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+            }
+        }
+
+        /*
+         * Run the stages over buffer[0, length).
+         */
+        private String run(int length) {
+            int from = 0;
+            int to = fold(buffer, length);
+            if (stripPunctuation) {
+                while (from < to && !Character.isLetterOrDigit(buffer[from])) {
+                    from++;
+                }
+                while (to > from && !Character.isLetterOrDigit(buffer[to - 1])) {
+                    to--;
+                }
+            }
+            if (from == to) {
+                return null;
+            }
+            if (stopWords != null && stopWords.contains(buffer, from, to)) {
+                return null;
+            }
+            if (stem) {
+                to = stem(buffer, from, to);
+            }
+            return new String(buffer, from, to - from);
+        }
+    }
+
+    /*
+     * Lowercase chars[0, length) in place, returning the new length.
+     * Surrogate pairs are folded as code points.
+     */
+    private static int fold(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                if (c >= 'A' && c <= 'Z') {
+                    chars[i] = (char) (c + ('a' - 'A'));
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                int lower = Character.toLowerCase(Character.toCodePoint(c, chars[i + 1]));
+                if (Character.isSupplementaryCodePoint(lower)) {
+                    Character.toChars(lower, chars, i);
+                }
+                i++;
+            } else {
+                chars[i] = Character.toLowerCase(c);
+            }
+        }
+        return length;
+    }
+
+    /*
+     * Strip an English plural ending from chars[from, to) in place, as the
+     * "S" stemmer of Harman (1991), returning the new end.
+     */
+    private static int stem(char[] chars, int from, int to) {
+        int length = to - from;
+        if (length > 3 && endsWith(chars, to, "ies") && !endsWith(chars, to, "eies")
+                && !endsWith(chars, to, "aies")) {
+            chars[to - 3] = 'y';
+            return to - 2;
+        }
+        if (length > 3 && endsWith(chars, to, "es") && !endsWith(chars, to, "aes")
+                && !endsWith(chars, to, "ees") && !endsWith(chars, to, "oes")) {
+            return to - 1;
+        }
+        if (length > 2 && endsWith(chars, to, "s") && !endsWith(chars, to, "us") && !endsWith(chars, to, "ss")) {
+            return to - 1;
+        }
+        return to;
+    }
+
+    private static boolean endsWith(char[] chars, int to, String suffix) {
+        int start = to - suffix.length();
+        for (int i = 0; i < suffix.length(); i++) {
+            if (chars[start + i] != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An immutable open-addressed set of words, queried with a range of a
+     * character array instead of a string.
+     */
+    private static final class StopWords {
+        private final char[][] table;
+
+        // Abstraction function:
+        //   Represents the set of non-null words in 'table'.
+        //
+        // Representation invariant:
+        //   - table.length is a power of two, more than twice the word count
+        //   - each word is at or after its hash slot, with no null between
+        //
+        // Safety from rep exposure:
+        //   'table' is private and never returned.
+
+        private StopWords(Collection<String> words, TokenPipeline pipeline) {
+            this.table = new char[Integer.highestOneBit(Math.max(4, words.size() * 2)) << 1][];
+            Session session = new TokenPipeline(pipeline.stripPunctuation, null, false).session();
+            for (String word : words) {
+                String normalized = session.normalize(word);
+                if (normalized != null && !contains(normalized.toCharArray(), 0, normalized.length())) {
+                    char[] chars = normalized.toCharArray();
+                    int slot = hash(chars, 0, chars.length) & (table.length - 1);
+                    while (table[slot] != null) {
+                        slot = (slot + 1) & (table.length - 1);
+                    }
+                    table[slot] = chars;
+                }
+            }
+        }
+
+        private static int hash(char[] chars, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + chars[i];
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private boolean contains(char[] chars, int from, int to) {
+            for (int slot = hash(chars, from, to) & (table.length - 1); table[slot] != null;
+                    slot = (slot + 1) & (table.length - 1)) {
+                if (equals(table[slot], chars, from, to)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean equals(char[] word, char[] chars, int from, int to) {
+            if (word.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < word.length; i++) {
+                if (word[i] != chars[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenPipeline(fold" + (stripPunctuation ? ", strip" : "") + (stopWords != null ? ", stop" : "")
+                + (stem ? ", stem" : "") + ")";
+    }
+}
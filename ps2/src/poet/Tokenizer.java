@@ -0,0 +1,185 @@
+package poet;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits UTF-8 text into words, optionally lowercasing ASCII letters in
+ * place, without regular expressions or intermediate strings.
+ *
+ * <p>Words are maximal runs of bytes that are not whitespace, where
+ * whitespace is exactly the set matched by the regular expression
+ * {@code \s}: space, \t, \n, \u000B, \f and \r. None of these bytes occur
+ * inside a multi-byte UTF-8 sequence, so splitting bytes splits characters
+ * the same way.
+ *
+ * <p>The text is scanned eight bytes at a time as a little-endian long
+ * ("SIMD within a register"): one pass of arithmetic on the long classifies
+ * all eight bytes as whitespace or not and lowercases any ASCII capitals, and
+ * word boundaries are then read off the classification bits. Bytes left over
+ * at the end are handled one at a time, and {@link #tokenizeScalar} does the
+ * whole job one byte at a time for comparison.
+ */
+final class Tokenizer {
+
+    /**
+     * Receives the words found by a tokenizer.
+     */
+    interface SpanConsumer {
+        /**
+         * Accept a word.
+         *
+         * @param text the tokenized text
+         * @param start index of the first byte of the word
+         * @param end index just past the last byte of the word
+         */
+        void accept(byte[] text, int start, int end);
+    }
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+
+    private Tokenizer() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /*
+     * For each byte of x, 0x80 if it is at least 'bound' and at most 0x7F,
+     * else 0. Adding (0x80 - bound) to the low seven bits never carries into
+     * the next byte.
+     */
+    private static long atLeast(long x, int bound) {
+        return ((x & LOWS) + ONES * (0x80 - bound)) & ~x & HIGHS;
+    }
+
+    /*
+     * For each byte of x, 0x80 if it is less than 'bound', else 0.
+     */
+    private static long below(long x, int bound) {
+        return ~(((x & LOWS) + ONES * (0x80 - bound)) | x) & HIGHS;
+    }
+
+    /*
+     * For each byte of x, 0x80 if it is whitespace, else 0.
+     */
+    static long whitespace(long x) {
+        long space = below(x ^ (ONES * ' '), 1);
+        long control = atLeast(x, '\t') & below(x, '\r' + 1);
+        return space | control;
+    }
+
+    /*
+     * x with every byte in 'A'..'Z' lowercased.
+     */
+    static long lowercase(long x) {
+        long upper = atLeast(x, 'A') & below(x, 'Z' + 1);
+        return x | (upper >>> 2);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    private static byte lowercase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+    }
+
+    /**
+     * Find the words of text[offset..offset+length), eight bytes at a time.
+     *
+     * @param text UTF-8 text; modified in place if lowercase is true
+     * @param offset index of the first byte to tokenize
+     * @param length number of bytes to tokenize
+     * @param lowercase whether to lowercase ASCII capitals in text first
+     * @param consumer receives each word, in order
+     */
+    static void tokenize(byte[] text, int offset, int length, boolean lowercase, SpanConsumer consumer) {
+        ByteBuffer buffer = ByteBuffer.wrap(text).order(ByteOrder.LITTLE_ENDIAN);
+        int end = offset + length;
+        int start = -1;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            long x = buffer.getLong(i);
+            if (lowercase) {
+                long lowered = lowercase(x);
+                if (lowered != x) {
+                    buffer.putLong(i, lowered);
+                }
+            }
+            long word = ~whitespace(x) & HIGHS;
+            long previous = (word << 8) | (start >= 0 ? 0x80 : 0);
+            long boundaries = (word ^ previous) & HIGHS;
+            while (boundaries != 0) {
+                int at = i + (Long.numberOfTrailingZeros(boundaries) >>> 3);
+                if (start < 0) {
+                    start = at;
+                } else {
+                    consumer.accept(text, start, at);
+                    start = -1;
+                }
+                boundaries &= boundaries - 1;
+            }
+        }
+        for (; i < end; i++) {
+            if (lowercase) {
+                text[i] = lowercase(text[i]);
+            }
+            if (isWhitespace(text[i])) {
+                if (start >= 0) {
+                    consumer.accept(text, start, i);
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            consumer.accept(text, start, end);
+        }
+    }
+
+    /**
+     * Find the words of text[offset..offset+length), one byte at a time.
+     * Equivalent to {@link #tokenize}.
+     */
+    static void tokenizeScalar(byte[] text, int offset, int length, boolean lowercase, SpanConsumer consumer) {
+        int end = offset + length;
+        int start = -1;
+        for (int i = offset; i < end; i++) {
+            if (lowercase) {
+                text[i] = lowercase(text[i]);
+            }
+            if (isWhitespace(text[i])) {
+                if (start >= 0) {
+                    consumer.accept(text, start, i);
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            consumer.accept(text, start, end);
+        }
+    }
+
+    /**
+     * Decode a word found by a tokenizer.
+     *
+     * @param text UTF-8 text
+     * @param start index of the first byte of the word
+     * @param end index just past the last byte of the word
+     * @return the word as a string
+     */
+    static String decode(byte[] text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text[i] < 0) {
+                return new String(text, start, end - start, StandardCharsets.UTF_8);
+            }
+        }
+        // Pure ASCII: Latin-1 decoding is a plain copy
+        return new String(text, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,194 @@
+package poet;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe dictionary of normalized words, shared by GraphPoet instances.
+ *
+ * <p>Each distinct normalized (lower case) word is interned once and given a
+ * small nonnegative int id, so that poets and their affinity graphs can key on
+ * ids instead of holding their own copies of every word. Raw spellings that
+ * differ from their normalized word are remembered too, up to a bound, so
+ * lowercasing is paid once per distinct token rather than once per
+ * occurrence.
+ *
+ * <p>A vocabulary grows until it is frozen; after {@link #freeze()} it is
+ * immutable and can only be read, and it remembers no more spellings.
+ */
+public class Vocabulary {
+
+    /** Id returned by lookup for words that are not in the vocabulary. */
+    public static final int NO_WORD = -1;
+
+    private static final Vocabulary SHARED = new Vocabulary();
+
+    /** Most raw spellings remembered, so that they cannot grow with a corpus. */
+    private static final int MAX_SPELLINGS = 1 << 16;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> spellings = new ConcurrentHashMap<>();
+    private volatile String[] words = new String[64];
+    private volatile int size = 0;
+    private volatile boolean frozen = false;
+
+    // Abstraction function:
+    //   Represents the word list words[0..size-1]; the id of a word is its
+    //   index. 'ids' maps each normalized word to its id, and 'spellings' maps
+    //   raw tokens seen by intern() to the id of their normalized form.
+    //
+    // Representation invariant:
+    //   - 0 <= size <= words.length, words[0..size-1] are distinct and non-null
+    //   - ids.get(words[i]) == i for all i < size, and ids has size entries
+    //   - every value in spellings is an id < size, and every key differs
+    //     from the word with that id
+    //   - spellings has at most MAX_SPELLINGS entries, plus one for each
+    //     other thread interning at once, and gains none once frozen
+    //   - words are normalized, i.e. equal to their own toLowerCase()
+    //
+    // Safety from rep exposure:
+    //   All fields are private; only immutable Strings and ints are returned.
+    //
+    // Thread safety argument:
+    //   New ids are assigned only while holding this object's lock, and a word
+    //   is written into 'words' before its id is published in 'ids', so any
+    //   thread that obtains an id from the maps can read its word. Reads of
+    //   the maps and of 'words' never take the lock.
+
+    /**
+     * Create a new empty, unfrozen vocabulary.
+     */
+    public Vocabulary() {
+    }
+
+    /**
+     * @return the vocabulary shared by poets that are not given their own
+     */
+    public static Vocabulary shared() {
+        return SHARED;
+    }
+
+    private void checkRep() {
+        assert size <= words.length;
+        assert ids.size() == size;
+    }
+
+    /**
+     * Normalize a raw token the same way for corpora and for poem input.
+     *
+     * @param token a non-empty raw token
+     * @return the normalized form of token
+     */
+    static String normalize(String token) {
+        return token.toLowerCase();
+    }
+
+    /**
+     * Get the id of a token, adding its normalized form to this vocabulary if
+     * it is not there yet.
+     *
+     * @param token a non-empty raw token
+     * @return the id of the normalized form of token
+     * @throws IllegalStateException if this vocabulary is frozen and does not
+     *         include the normalized form of token
+     */
+    public int intern(String token) {
+        Integer id = spellings.get(token);
+        if (id != null) {
+            return id;
+        }
+        String word = normalize(token);
+        id = ids.get(word);
+        if (id == null) {
+            id = assign(word);
+        }
+        if (!frozen && !word.equals(token) && spellings.size() < MAX_SPELLINGS) {
+            spellings.putIfAbsent(token, id);
+        }
+        return id;
+    }
+
+    private synchronized int assign(String word) {
+        Integer existing = ids.get(word);
+        if (existing != null) {
+            return existing;
+        }
+        if (frozen) {
+            throw new IllegalStateException("Vocabulary is frozen, cannot add: " + word);
+        }
+        String[] current = words;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        int id = size;
+        current[id] = word;
+        words = current;
+        size = id + 1;
+        ids.put(word, id);
+        checkRep();
+        return id;
+    }
+
+    /**
+     * Get the id of a token without adding anything to this vocabulary.
+     *
+     * @param token a non-empty raw token
+     * @return the id of the normalized form of token, or {@link #NO_WORD} if
+     *         this vocabulary does not include it
+     */
+    public int lookup(String token) {
+        Integer id = spellings.get(token);
+        if (id == null) {
+            id = ids.get(normalize(token));
+        }
+        return id != null ? id : NO_WORD;
+    }
+
+    /**
+     * @param id an id returned by this vocabulary
+     * @return the normalized word with that id
+     * @throws IndexOutOfBoundsException if id is not an id of this vocabulary
+     */
+    public String word(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No word with id " + id);
+        }
+        return words[id];
+    }
+
+    /**
+     * @return the number of raw spellings remembered to skip normalizing
+     *         them, for measuring the footprint of this vocabulary
+     */
+    int spellingCount() {
+        return spellings.size();
+    }
+
+    /**
+     * @return the number of distinct normalized words in this vocabulary
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Make this vocabulary immutable. Words already interned keep their ids;
+     * interning a new word afterwards fails.
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * @return true if and only if {@link #freeze()} has been called
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    @Override
+    public String toString() {
+        return "Vocabulary of " + size + " words" + (frozen ? " (frozen)" : "");
+    }
+}
@@ -0,0 +1,103 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for AdaptiveWeights.
+ */
+public class AdaptiveWeightsTest {
+
+    // Testing strategy
+    //   width: all weights below 256, below 65536, larger; promotion by
+    //     append, set, increment; from one byte straight to four
+    //   increment: below the limit, saturating at Integer.MAX_VALUE
+    //   remove: first, middle, last
+    //   trim(); negative weights and bad indexes throw
+    //   saturatedAdd(): no overflow, overflow
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testPromotion() {
+        AdaptiveWeights weights = new AdaptiveWeights(0);
+        weights.append(1);
+        weights.append(255);
+        assertEquals(1, weights.width());
+        weights.append(256);
+        assertEquals(2, weights.width());
+        assertEquals(65535, weights.increment(0, 65534));
+        assertEquals(2, weights.width());
+        assertEquals(255, weights.set(1, 70000));
+        assertEquals(4, weights.width());
+        assertEquals("[65535, 70000, 256]", weights.toString());
+
+        AdaptiveWeights jump = new AdaptiveWeights();
+        jump.append(7);
+        jump.append(Integer.MAX_VALUE);
+        assertEquals(4, jump.width());
+        assertEquals(7, jump.get(0));
+    }
+
+    @Test
+    public void testSaturation() {
+        assertEquals(5, AdaptiveWeights.saturatedAdd(2, 3));
+        assertEquals(Integer.MAX_VALUE, AdaptiveWeights.saturatedAdd(Integer.MAX_VALUE, 1));
+        assertEquals(Integer.MAX_VALUE, AdaptiveWeights.saturatedAdd(Integer.MAX_VALUE - 1, Integer.MAX_VALUE));
+        AdaptiveWeights weights = new AdaptiveWeights();
+        weights.append(Integer.MAX_VALUE - 1);
+        assertEquals(Integer.MAX_VALUE, weights.increment(0, 1));
+        assertEquals(Integer.MAX_VALUE, weights.increment(0, 1));
+    }
+
+    @Test
+    public void testAgainstList() {
+        Random random = new Random(42);
+        AdaptiveWeights weights = new AdaptiveWeights();
+        List<Integer> expected = new ArrayList<>();
+        for (int step = 0; step < 5000; step++) {
+            int weight = random.nextInt(10) == 0 ? random.nextInt(100_000) : random.nextInt(4);
+            int choice = random.nextInt(4);
+            if (expected.isEmpty() || choice == 0) {
+                weights.append(weight);
+                expected.add(weight);
+            } else {
+                int index = random.nextInt(expected.size());
+                if (choice == 1) {
+                    assertEquals((int) expected.set(index, weight), weights.set(index, weight));
+                } else if (choice == 2) {
+                    expected.set(index, expected.get(index) + weight);
+                    assertEquals((int) expected.get(index), weights.increment(index, weight));
+                } else {
+                    assertEquals((int) expected.remove(index), weights.remove(index));
+                }
+            }
+            assertEquals(expected.size(), weights.size());
+        }
+        weights.trim();
+        assertEquals(expected.size() * weights.width(), weights.footprint());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals((int) expected.get(i), weights.get(i));
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeWeight() {
+        new AdaptiveWeights().append(-1);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testIndexPastSize() {
+        AdaptiveWeights weights = new AdaptiveWeights(8);
+        weights.append(1);
+        weights.get(1);
+    }
+}
@@ -0,0 +1,210 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for AdjacencyBlocks.
+ */
+public class AdjacencyBlocksTest {
+
+    // Testing strategy
+    //   withEdges(): from EMPTY, vertices beyond the current length, edges
+    //     added, reweighted and removed, vertices with no edges left,
+    //     negative vertex or weight throws; unchanged vertices keep the old
+    //     version's edges; vertices in chunks skipped over by a vertex more
+    //     than one chunk beyond the current length
+    //   bestBridge(), intersect(): no bridge, one, tied bridges; vertices
+    //     out of range; compare with the graph on random graphs
+    //   of(): empty graph, random graphs across chunks, same as withEdges()
+    //     of every edge; negative vertex throws
+    //   old versions unchanged by later withEdges(), including vertices in
+    //     other chunks and in the same chunk as a changed one
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, AdjacencyBlocks.EMPTY.version());
+        assertEquals(-1, AdjacencyBlocks.EMPTY.bestBridge(0, 1));
+        assertEquals(0, AdjacencyBlocks.EMPTY.weight(0, 1));
+        assertEquals(0, AdjacencyBlocks.EMPTY.outDegree(7));
+    }
+
+    private static Map<Long, Integer> edges(int... sourcesTargetsAndWeights) {
+        Map<Long, Integer> edges = new HashMap<>();
+        for (int i = 0; i < sourcesTargetsAndWeights.length; i += 3) {
+            edges.put(AdjacencyBlocks.key(sourcesTargetsAndWeights[i], sourcesTargetsAndWeights[i + 1]),
+                    sourcesTargetsAndWeights[i + 2]);
+        }
+        return edges;
+    }
+
+    @Test
+    public void testWithEdgesBridges() {
+        AdjacencyBlocks blocks = AdjacencyBlocks.EMPTY.withEdges(edges(1, 5, 2, 5, 9, 1, 1, 3, 2, 3, 9, 4), 1);
+        assertEquals(1, blocks.version());
+        assertEquals("tie broken by the smaller vertex", 3, blocks.bestBridge(1, 9));
+        assertEquals(-1, blocks.bestBridge(9, 1));
+        assertEquals(-1, blocks.bestBridge(1, 42));
+        assertEquals(2, blocks.weight(1, 5));
+        assertEquals(2, blocks.outDegree(1));
+        assertEquals(2, blocks.inDegree(9));
+
+        StringBuilder visited = new StringBuilder();
+        blocks.intersect(1, 9, (vertex, first, second) -> visited.append(vertex).append(':').append(first)
+                .append(',').append(second).append(' '));
+        assertEquals("3:2,4 5:2,1 ", visited.toString());
+    }
+
+    @Test
+    public void testWithEdgesSharesUnchanged() {
+        AdjacencyBlocks before = AdjacencyBlocks.EMPTY.withEdges(edges(1, 2, 1, 2, 3, 1), 1);
+        AdjacencyBlocks after = before.withEdges(edges(1, 4, 5, 4, 3, 1, 2, 3, 0), 2);
+        assertEquals(4, after.bestBridge(1, 3));
+        assertEquals(0, after.outDegree(2));
+        assertEquals(1, after.inDegree(3));
+        assertEquals("old version unchanged", 2, before.bestBridge(1, 3));
+        assertEquals(0, before.outDegree(4));
+
+        AdjacencyBlocks more = after.withEdges(edges(5, 6, 1, 1, 4, 7), 3);
+        assertEquals("unchanged vertices kept", 4, more.bestBridge(1, 3));
+        assertEquals(1, more.weight(5, 6));
+        assertEquals("reweighted", 7, more.weight(1, 4));
+        assertEquals(2, more.outDegree(1));
+    }
+
+    @Test
+    public void testWithEdgesAcrossChunks() {
+        Map<Long, Integer> path = new HashMap<>();
+        for (int v = 0; v < 1000; v++) {
+            path.put(AdjacencyBlocks.key(v, v + 1), 1);
+        }
+        AdjacencyBlocks before = AdjacencyBlocks.EMPTY.withEdges(path, 1);
+        AdjacencyBlocks after = before.withEdges(edges(700, 701, 9, 700, 2000, 3), 2);
+        assertEquals(9, after.weight(700, 701));
+        assertEquals(3, after.weight(700, 2000));
+        assertEquals(1, after.inDegree(2000));
+        assertEquals("same chunk, unchanged vertex", 1, after.weight(701, 702));
+        assertEquals("other chunk", 1, after.weight(5, 6));
+        assertEquals(700, after.bestBridge(699, 701));
+        assertEquals("old version unchanged", 1, before.weight(700, 701));
+        assertEquals(0, before.weight(700, 2000));
+        assertEquals(0, before.inDegree(2000));
+    }
+
+    @Test
+    public void testWithEdgesSkipsChunks() {
+        AdjacencyBlocks before = AdjacencyBlocks.EMPTY.withEdges(edges(0, 1, 1), 1);
+        AdjacencyBlocks after = before.withEdges(edges(0, 1000, 2), 2);
+        assertEquals(0, after.outDegree(600));
+        assertEquals(0, after.inDegree(600));
+        assertEquals(0, after.weight(600, 1000));
+        assertEquals(-1, after.bestBridge(0, 600));
+        assertEquals(-1, after.bestBridge(600, 1000));
+        assertEquals(2, after.weight(0, 1000));
+
+        AdjacencyBlocks filled = after.withEdges(edges(0, 600, 3, 600, 1000, 4), 3);
+        assertEquals(600, filled.bestBridge(0, 1000));
+        assertEquals("shared empty chunk unchanged", 0, after.outDegree(600));
+        assertEquals(0, after.weight(0, 600));
+    }
+
+    @Test
+    public void testOfAgreesWithEdges() {
+        assertEquals(0, AdjacencyBlocks.of(new CompactVerticesGraph<Integer>(), 3).outDegree(0));
+        Random random = new Random(49);
+        Graph<Integer> graph = new CompactVerticesGraph<>();
+        Map<Long, Integer> edges = new HashMap<>();
+        for (int e = 0; e < 3000; e++) {
+            int source = random.nextInt(600);
+            int target = random.nextInt(600);
+            int weight = 1 + random.nextInt(4);
+            graph.set(source, target, weight);
+            edges.put(AdjacencyBlocks.key(source, target), weight);
+        }
+        AdjacencyBlocks built = AdjacencyBlocks.of(graph, 7);
+        AdjacencyBlocks merged = AdjacencyBlocks.EMPTY.withEdges(edges, 7);
+        assertEquals(7, built.version());
+        for (int source = 0; source < 600; source++) {
+            assertEquals(merged.outDegree(source), built.outDegree(source));
+            assertEquals(merged.inDegree(source), built.inDegree(source));
+            for (int target = 0; target < 600; target += 7) {
+                assertEquals(merged.weight(source, target), built.weight(source, target));
+                assertEquals(merged.bestBridge(source, target), built.bestBridge(source, target));
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testOfNegativeVertex() {
+        Graph<Integer> graph = new CompactVerticesGraph<>();
+        graph.add(-1);
+        AdjacencyBlocks.of(graph, 1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWithEdgesNegativeVertex() {
+        AdjacencyBlocks.EMPTY.withEdges(Collections.singletonMap(AdjacencyBlocks.key(-1, 2), 1), 1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWithEdgesNegativeWeight() {
+        AdjacencyBlocks.EMPTY.withEdges(edges(1, 2, -1), 1);
+    }
+
+    @Test
+    public void testRandomGraphsAgreeWithMaps() {
+        Random random = new Random(48);
+        for (int trial = 0; trial < 20; trial++) {
+            Graph<Integer> graph = new CompactVerticesGraph<>();
+            AdjacencyBlocks blocks = AdjacencyBlocks.EMPTY;
+            for (int round = 0; round < 5; round++) {
+                Map<Long, Integer> changed = new HashMap<>();
+                for (int e = 0; e < 60; e++) {
+                    int source = random.nextInt(30);
+                    int target = random.nextInt(30);
+                    int weight = random.nextInt(4);
+                    graph.set(source, target, weight);
+                    changed.put(AdjacencyBlocks.key(source, target), weight);
+                }
+                blocks = blocks.withEdges(changed, round + 1);
+                for (int source = 0; source < 30; source++) {
+                    for (int target = 0; target < 30; target++) {
+                        assertEquals(expectedBridge(graph, source, target), blocks.bestBridge(source, target));
+                        int weight = graph.vertices().contains(source) && graph.targets(source).containsKey(target)
+                                ? graph.targets(source).get(target) : 0;
+                        assertEquals(weight, blocks.weight(source, target));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int expectedBridge(Graph<Integer> graph, int source, int target) {
+        if (!graph.vertices().contains(source) || !graph.vertices().contains(target)) {
+            return -1;
+        }
+        int best = -1;
+        int bestWeight = 0;
+        for (Map.Entry<Integer, Integer> edge : graph.targets(source).entrySet()) {
+            int bridge = edge.getKey();
+            int weight = edge.getValue();
+            if (graph.sources(target).containsKey(bridge)
+                    && (weight > bestWeight || weight == bestWeight && bridge < best)) {
+                best = bridge;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,116 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for AdjacencyIntersection.
+ */
+public class AdjacencyIntersectionTest {
+
+    // Testing strategy
+    //   strategy(): equal lengths, skewed below and above HASH_MIN_LENGTH
+    //   intersect(): each strategy; out-row shorter, in-row shorter; empty
+    //     rows, disjoint rows, self-loops; compared to a naive intersection
+    //   bestBridge(): no bridge, unique heaviest, tie broken by smallest vertex
+    //   gallop(): key before, inside, after the row
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testStrategy() {
+        assertEquals(AdjacencyIntersection.Strategy.MERGE, AdjacencyIntersection.strategy(100, 200));
+        assertEquals(AdjacencyIntersection.Strategy.GALLOP, AdjacencyIntersection.strategy(2, 500));
+        assertEquals(AdjacencyIntersection.Strategy.HASH_PROBE, AdjacencyIntersection.strategy(3, 5000));
+        assertEquals(AdjacencyIntersection.Strategy.MERGE, AdjacencyIntersection.strategy(0, 0));
+    }
+
+    @Test
+    public void testGallop() {
+        int[] row = { 9, 1, 3, 5, 7, 9, 11, 13, 9 };
+        assertEquals(1, AdjacencyIntersection.gallop(row, 1, 8, 0));
+        assertEquals(4, AdjacencyIntersection.gallop(row, 1, 8, 7));
+        assertEquals(5, AdjacencyIntersection.gallop(row, 2, 8, 8));
+        assertEquals(8, AdjacencyIntersection.gallop(row, 1, 8, 14));
+    }
+
+    private static List<int[]> naive(CsrSnapshot<Integer> graph, int source, int target) {
+        List<int[]> result = new ArrayList<>();
+        for (int b = 0; b < graph.vertexCount(); b++) {
+            int first = graph.weight(source, b);
+            int second = graph.weight(b, target);
+            if (first > 0 && second > 0) {
+                result.add(new int[] { b, first, second });
+            }
+        }
+        return result;
+    }
+
+    private static void assertSame(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testStrategiesMatchNaive() {
+        Random random = new Random(37);
+        Graph<Integer> graph = new SnapshotGraph<>();
+        int n = 1500;
+        // vertex 0 is a hub with edges to and from most vertices
+        for (int v = 1; v < n; v++) {
+            if (random.nextInt(5) > 0) {
+                graph.set(0, v, 1 + random.nextInt(9));
+                graph.set(v, 0, 1 + random.nextInt(9));
+            }
+        }
+        for (int e = 0; e < 6000; e++) {
+            graph.set(random.nextInt(60), random.nextInt(n), 1 + random.nextInt(9));
+        }
+        graph.set(5, 5, 2);
+        CsrSnapshot<Integer> snapshot = CsrSnapshot.of(graph, Integer::compare);
+
+        for (int trial = 0; trial < 200; trial++) {
+            int source = snapshot.id(trial % 3 == 0 ? 0 : random.nextInt(60));
+            int target = snapshot.id(trial % 3 == 1 ? 0 : random.nextInt(60));
+            List<int[]> expected = naive(snapshot, source, target);
+            for (AdjacencyIntersection.Strategy strategy : AdjacencyIntersection.Strategy.values()) {
+                List<int[]> actual = new ArrayList<>();
+                AdjacencyIntersection.intersect(snapshot, source, target, strategy,
+                        (b, first, second) -> actual.add(new int[] { b, first, second }));
+                assertSame(expected, actual);
+            }
+            List<int[]> chosen = new ArrayList<>();
+            AdjacencyIntersection.intersect(snapshot, source, target,
+                    (b, first, second) -> chosen.add(new int[] { b, first, second }));
+            assertSame(expected, chosen);
+        }
+    }
+
+    @Test
+    public void testBestBridge() {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "c", 4);
+        graph.set("a", "b", 4);
+        graph.set("a", "d", 1);
+        graph.set("b", "z", 1);
+        graph.set("c", "z", 1);
+        graph.set("d", "z", 9);
+        graph.add("lonely");
+        CsrSnapshot<String> snapshot = CsrSnapshot.of(graph, String::compareTo);
+        int a = snapshot.id("a");
+        int z = snapshot.id("z");
+        assertEquals("tie goes to the smallest vertex", "b", snapshot.label(AdjacencyIntersection.bestBridge(snapshot, a, z)));
+        assertEquals(-1, AdjacencyIntersection.bestBridge(snapshot, z, a));
+        assertEquals(-1, AdjacencyIntersection.bestBridge(snapshot, snapshot.id("lonely"), z));
+    }
+}
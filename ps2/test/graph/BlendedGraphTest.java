@@ -0,0 +1,196 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+/**
+ * Tests for BlendedGraph.
+ */
+public class BlendedGraphTest {
+
+    // Testing strategy
+    //   components: one, several; overlapping and disjoint edges
+    //   shares: equal, unequal, not summing to one, zero for a component
+    //   blended weight: exact, rounded, rounded up to 1
+    //   vertices(), sources(), targets(): known and unknown labels; compare
+    //     with a blend computed by hand, on random graphs
+    //   components mutated after the view is made
+    //   materializer: before and after hotQueries; component changed after
+    //     materializing; rebuilt once hot again
+    //   mutators throw; of() and withMaterializer() reject bad arguments
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Map<String, Integer> map(Object... labelsAndWeights) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < labelsAndWeights.length; i += 2) {
+            map.put((String) labelsAndWeights[i], (Integer) labelsAndWeights[i + 1]);
+        }
+        return map;
+    }
+
+    private static BlendedGraph<String> newsAndPoetry(Graph<String> news, Graph<String> poetry) {
+        news.set("x", "y", 10);
+        news.set("x", "z", 1);
+        poetry.set("x", "y", 20);
+        poetry.set("y", "z", 3);
+        poetry.add("w");
+        return BlendedGraph.of(Arrays.asList(news, poetry), Arrays.asList(7.0, 3.0));
+    }
+
+    @Test
+    public void testBlendedWeights() {
+        BlendedGraph<String> blend = newsAndPoetry(Graph.empty(), Graph.empty());
+        assertEquals(new HashSet<>(Arrays.asList("w", "x", "y", "z")), blend.vertices());
+        assertEquals(map("y", 13, "z", 1), blend.targets("x"));
+        assertEquals(map("x", 1, "y", 1), blend.sources("z"));
+        assertEquals(map(), blend.targets("w"));
+        assertEquals(map(), blend.sources("unknown"));
+    }
+
+    @Test
+    public void testSingleComponent() {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "b", 5);
+        BlendedGraph<String> blend = BlendedGraph.of(Collections.singletonList(graph), Arrays.asList(0.5));
+        assertEquals(map("b", 5), blend.targets("a"));
+    }
+
+    @Test
+    public void testZeroShare() {
+        Graph<String> news = Graph.empty();
+        Graph<String> poetry = Graph.empty();
+        newsAndPoetry(news, poetry);
+        BlendedGraph<String> blend = BlendedGraph.of(Arrays.asList(news, poetry), Arrays.asList(1.0, 0.0));
+        assertEquals(new HashSet<>(Arrays.asList("x", "y", "z")), blend.vertices());
+        assertEquals(map("y", 10, "z", 1), blend.targets("x"));
+        assertEquals(map(), blend.targets("y"));
+    }
+
+    @Test
+    public void testReflectsComponents() {
+        Graph<String> news = Graph.empty();
+        BlendedGraph<String> blend = newsAndPoetry(news, Graph.empty());
+        news.set("y", "z", 7);
+        assertEquals(map("x", 1, "y", 6), blend.sources("z"));
+        news.remove("x");
+        assertEquals(map("y", 6), blend.targets("x"));
+    }
+
+    @Test
+    public void testRandomBlends() {
+        Random random = new Random(46);
+        for (int trial = 0; trial < 20; trial++) {
+            int count = 1 + random.nextInt(3);
+            List<Graph<String>> graphs = new ArrayList<>();
+            List<Double> mix = new ArrayList<>();
+            for (int g = 0; g < count; g++) {
+                Graph<String> graph = new SnapshotGraph<>();
+                for (int e = 0; e < 40; e++) {
+                    graph.set("v" + random.nextInt(10), "v" + random.nextInt(10), 1 + random.nextInt(50));
+                }
+                graphs.add(graph);
+                mix.add((double) random.nextInt(4));
+            }
+            mix.set(0, 1.0 + mix.get(0));
+            double sum = mix.stream().mapToDouble(Double::doubleValue).sum();
+            BlendedGraph<String> blend = BlendedGraph.of(graphs, mix);
+            for (int v = 0; v < 10; v++) {
+                String source = "v" + v;
+                Map<String, Double> expected = new HashMap<>();
+                for (int g = 0; g < count; g++) {
+                    double share = mix.get(g) / sum;
+                    if (share > 0) {
+                        graphs.get(g).targets(source).forEach((target, weight) -> expected.merge(target,
+                                share * weight, Double::sum));
+                    }
+                }
+                Map<String, Integer> actual = blend.targets(source);
+                assertEquals(expected.keySet(), actual.keySet());
+                expected.forEach((target, weight) -> assertEquals(Math.max(1, Math.round(weight)),
+                        (long) actual.get(target)));
+            }
+        }
+    }
+
+    @Test
+    public void testMaterializer() {
+        VersionedGraph<String> news = new VersionedGraph<>(Graph.empty());
+        BlendedGraph<String> blend = newsAndPoetry(news, new VersionedGraph<>(Graph.empty()))
+                .withMaterializer(3, DIRECT);
+        assertFalse(blend.isMaterialized());
+        assertEquals(map("y", 13, "z", 1), blend.targets("x"));
+        blend.targets("y");
+        assertFalse(blend.isMaterialized());
+        blend.vertices();
+        assertTrue(blend.isMaterialized());
+        assertEquals(map("y", 13, "z", 1), blend.targets("x"));
+        assertEquals(map("x", 1, "y", 1), blend.sources("z"));
+        assertTrue(blend.toString().endsWith("materialized"));
+
+        news.set("x", "w", 10);
+        assertFalse(blend.isMaterialized());
+        assertEquals(map("y", 13, "z", 1, "w", 7), blend.targets("x"));
+        blend.targets("y");
+        blend.targets("z");
+        assertTrue(blend.isMaterialized());
+        assertEquals(map("y", 13, "z", 1, "w", 7), blend.targets("x"));
+    }
+
+    @Test
+    public void testVersionOfNestedBlends() {
+        VersionedGraph<String> graph = new VersionedGraph<>(Graph.empty());
+        BlendedGraph<String> inner = BlendedGraph.of(Arrays.asList(graph), Arrays.asList(1.0));
+        BlendedGraph<String> outer = BlendedGraph.of(Arrays.asList(inner, Graph.<String>empty()),
+                Arrays.asList(1.0, 1.0));
+        long version = outer.version();
+        graph.add("a");
+        assertTrue(outer.version() > version);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetThrows() {
+        newsAndPoetry(Graph.empty(), Graph.empty()).set("a", "b", 1);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testAddThrows() {
+        newsAndPoetry(Graph.empty(), Graph.empty()).add("a");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSharesAllZero() {
+        BlendedGraph.of(Arrays.asList(Graph.<String>empty()), Arrays.asList(0.0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSharesMismatched() {
+        BlendedGraph.of(Arrays.asList(Graph.<String>empty()), Arrays.asList(1.0, 1.0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testShareNegative() {
+        BlendedGraph.of(Arrays.asList(Graph.<String>empty(), Graph.<String>empty()), Arrays.asList(2.0, -1.0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testHotQueriesNotPositive() {
+        newsAndPoetry(Graph.empty(), Graph.empty()).withMaterializer(0, DIRECT);
+    }
+}
@@ -0,0 +1,115 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for CompactVerticesGraph.
+ *
+ * This class runs the GraphInstanceTest tests against CompactVerticesGraph,
+ * as well as tests for that particular implementation.
+ */
+public class CompactVerticesGraphTest extends GraphInstanceTest {
+
+    /*
+     * Provide a CompactVerticesGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new CompactVerticesGraph<>();
+    }
+
+    // Testing strategy for CompactVerticesGraph
+    //   row: inline, grown past INLINE_LIMIT into a table, shrunk back;
+    //     table grown by rehashing; removals from the middle of probe runs
+    //   weight(): present and absent edges, unknown labels
+    //   remove(): hub vertex with a table row, self loop; number reused
+    //   adjacencyBytes(): low-degree graph smaller than boxed maps would be
+    //   compare with ConcreteVerticesGraph over random hub-heavy operations
+
+    @Test
+    public void testHubGrowsAndShrinks() {
+        CompactVerticesGraph<Integer> graph = new CompactVerticesGraph<>();
+        for (int t = 0; t < 100; t++) {
+            assertEquals(0, graph.set(-1, t, t + 1));
+        }
+        assertEquals(100, graph.targets(-1).size());
+        for (int t = 0; t < 100; t++) {
+            assertEquals(t + 1, graph.weight(-1, t));
+            assertEquals(1, graph.sources(t).size());
+        }
+        assertEquals(0, graph.weight(-1, 100));
+        assertEquals(0, graph.weight(-2, 1));
+        for (int t = 0; t < 98; t++) {
+            assertEquals(t + 1, graph.set(-1, t, 0));
+        }
+        Map<Integer, Integer> expected = new HashMap<>();
+        expected.put(98, 99);
+        expected.put(99, 100);
+        assertEquals(expected, graph.targets(-1));
+        assertEquals(0, graph.set(-1, 5, 7));
+        assertEquals(7, graph.weight(-1, 5));
+    }
+
+    @Test
+    public void testRemoveHubAndSelfLoop() {
+        CompactVerticesGraph<String> graph = new CompactVerticesGraph<>();
+        for (int i = 0; i < 20; i++) {
+            graph.set("the", "w" + i, 1);
+            graph.set("w" + i, "the", 2);
+        }
+        graph.set("the", "the", 3);
+        assertTrue(graph.remove("the"));
+        assertFalse(graph.vertices().contains("the"));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(graph.targets("w" + i).isEmpty());
+            assertTrue(graph.sources("w" + i).isEmpty());
+        }
+        graph.set("a", "b", 4);
+        assertEquals(21 + 1, graph.vertices().size());
+        assertEquals(4, graph.weight("a", "b"));
+        assertTrue(graph.targets("the").isEmpty());
+    }
+
+    @Test
+    public void testAdjacencyBytesSmall() {
+        CompactVerticesGraph<Integer> graph = new CompactVerticesGraph<>();
+        for (int v = 0; v < 1000; v++) {
+            graph.set(v, v + 1, 1);
+        }
+        assertTrue("about 40 bytes per edge, was " + graph.adjacencyBytes(), graph.adjacencyBytes() < 1000 * 64);
+    }
+
+    @Test
+    public void testRandomAgainstConcreteVerticesGraph() {
+        Random random = new Random(47);
+        CompactVerticesGraph<Integer> compact = new CompactVerticesGraph<>();
+        Graph<Integer> reference = new ConcreteVerticesGraph<>();
+        for (int i = 0; i < 4000; i++) {
+            // Skew sources and targets toward vertex 0 so that some rows
+            // cross the inline limit both ways
+            int source = random.nextInt(4) == 0 ? 0 : random.nextInt(60);
+            int target = random.nextInt(4) == 0 ? 0 : random.nextInt(60);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                int weight = 1 + random.nextInt(300);
+                assertEquals(reference.set(source, target, weight), compact.set(source, target, weight));
+            } else if (operation < 9) {
+                assertEquals(reference.set(source, target, 0), compact.set(source, target, 0));
+            } else {
+                assertEquals(reference.remove(source), compact.remove(source));
+            }
+            if (i % 50 == 0) {
+                assertEquals(reference.vertices(), compact.vertices());
+                for (int v : reference.vertices()) {
+                    assertEquals(reference.targets(v), compact.targets(v));
+                    assertEquals(reference.sources(v), compact.sources(v));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for CompressedSnapshot.
+ */
+public class CompressedSnapshotTest {
+
+    // Testing strategy
+    //   of(graph): empty graph, isolated vertices, self-loops; weights 1..3
+    //     packed with the gap, larger weights up to Integer.MAX_VALUE; gaps
+    //     of one and several varint bytes; random graphs compared to the
+    //     original through targets(), sources(), weight() and cursors
+    //   of(compressed snapshot) returns it
+    //   adjacencyBytes(): smaller than the CSR arrays for a sparse graph
+    //   mutators throw
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmpty() {
+        CompressedSnapshot<String> snapshot = CompressedSnapshot.of(Graph.<String>empty());
+        assertEquals(0, snapshot.vertexCount());
+        assertEquals(0, snapshot.edgeCount());
+        assertEquals(Collections.emptySet(), snapshot.vertices());
+        assertEquals(Collections.emptyMap(), snapshot.targets("a"));
+        assertSame(snapshot, CompressedSnapshot.of(snapshot));
+    }
+
+    @Test
+    public void testWeightsAndLoops() {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "a", 1);
+        graph.set("a", "b", 3);
+        graph.set("a", "c", 4);
+        graph.set("c", "a", Integer.MAX_VALUE);
+        graph.add("lonely");
+        CompressedSnapshot<String> snapshot = CompressedSnapshot.of(graph);
+
+        assertEquals(graph.vertices(), snapshot.vertices());
+        assertEquals(4, snapshot.edgeCount());
+        for (String vertex : graph.vertices()) {
+            assertEquals(graph.targets(vertex), snapshot.targets(vertex));
+            assertEquals(graph.sources(vertex), snapshot.sources(vertex));
+        }
+        assertEquals(Integer.MAX_VALUE, snapshot.weight(snapshot.id("c"), snapshot.id("a")));
+        assertEquals(0, snapshot.weight(snapshot.id("b"), snapshot.id("a")));
+        assertEquals(-1, snapshot.id("missing"));
+        assertEquals("a has the highest degree", "a", snapshot.label(0));
+    }
+
+    @Test
+    public void testRandomGraphsMatchOriginal() {
+        Random random = new Random(38);
+        for (int trial = 0; trial < 5; trial++) {
+            int n = 1 + random.nextInt(3000);
+            Graph<Integer> graph = new SnapshotGraph<>();
+            Map<Integer, Map<Integer, Integer>> expected = new HashMap<>();
+            for (int e = 0; e < 4 * n; e++) {
+                int source = random.nextInt(n);
+                int target = random.nextInt(4) == 0 ? random.nextInt(8) : random.nextInt(n);
+                int weight = random.nextInt(4) == 0 ? 1 + random.nextInt(100000) : 1 + random.nextInt(3);
+                graph.set(source, target, weight);
+                expected.computeIfAbsent(source, v -> new HashMap<>()).put(target, weight);
+            }
+            CompressedSnapshot<Integer> snapshot = CompressedSnapshot.of(graph);
+            assertEquals(graph.vertices(), snapshot.vertices());
+            int edges = 0;
+            for (int v = 0; v < snapshot.vertexCount(); v++) {
+                Map<Integer, Integer> targets = expected.getOrDefault(snapshot.label(v), Collections.emptyMap());
+                CompressedSnapshot.EdgeCursor cursor = snapshot.outEdges(v);
+                int previous = -1;
+                int count = 0;
+                while (cursor.next()) {
+                    assertTrue("rows are increasing", cursor.vertex() > previous);
+                    previous = cursor.vertex();
+                    assertEquals(targets.get(snapshot.label(cursor.vertex())), Integer.valueOf(cursor.weight()));
+                    assertEquals(cursor.weight(), snapshot.weight(v, cursor.vertex()));
+                    count++;
+                }
+                assertEquals(targets.size(), count);
+                assertEquals(graph.sources(snapshot.label(v)), snapshot.sources(snapshot.label(v)));
+                edges += count;
+            }
+            assertEquals(edges, snapshot.edgeCount());
+        }
+    }
+
+    @Test
+    public void testSmallerThanCsr() {
+        Random random = new Random(1);
+        Graph<Integer> graph = Graph.empty();
+        for (int e = 0; e < 5000; e++) {
+            graph.set(random.nextInt(500), random.nextInt(500), 1 + random.nextInt(3));
+        }
+        CsrSnapshot<Integer> csr = CsrSnapshot.of(graph);
+        long csrBytes = 4L * (csr.outOffsets.length + csr.outTargets.length + csr.outWeights.length
+                + csr.inOffsets.length + csr.inSources.length + csr.inWeights.length);
+        assertTrue(CompressedSnapshot.of(csr).adjacencyBytes() * 3 < csrBytes);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testMutatorsThrow() {
+        CompressedSnapshot.of(Graph.<String>empty()).add("a");
+    }
+}
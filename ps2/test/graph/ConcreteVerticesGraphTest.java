@@ -21,7 +21,7 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
      * Provide a ConcreteVerticesGraph for tests in GraphInstanceTest.
      */
     @Override public Graph<String> emptyInstance() {
-        return new ConcreteVerticesGraph();
+        return new ConcreteVerticesGraph<>();
     }
     
     /*
@@ -61,20 +61,20 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
     // tests for ConcreteVerticesGraph.toString()
     @Test
     void testToStringWithEmptyGraph() {
-        ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+        ConcreteVerticesGraph<String> graph = new ConcreteVerticesGraph<>();
         assertEquals("", graph.toString());
     }
 
     @Test
     void testToStringWithOneVertex() {
-        ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+        ConcreteVerticesGraph<String> graph = new ConcreteVerticesGraph<>();
         graph.add("A");
         assertEquals("A -> []\n", graph.toString());
     }
 
     @Test
     void testToStringWithMultipleVertices() {
-        ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+        ConcreteVerticesGraph<String> graph = new ConcreteVerticesGraph<>();
         graph.add("A");
         graph.add("B");
         graph.add("C");
@@ -90,7 +90,7 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testToStringWithDisconnectedComponents() {
-        ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+        ConcreteVerticesGraph<String> graph = new ConcreteVerticesGraph<>();
         graph.add("A");
         graph.add("B");
         graph.add("C");
@@ -104,7 +104,7 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testToStringWithCycles() {
-        ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+        ConcreteVerticesGraph<String> graph = new ConcreteVerticesGraph<>();
         graph.add("A");
         graph.add("B");
         graph.add("C");
@@ -121,7 +121,7 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testToStringWithSelfLoops() {
-        ConcreteVerticesGraph graph = new ConcreteVerticesGraph();
+        ConcreteVerticesGraph<String> graph = new ConcreteVerticesGraph<>();
         graph.add("A");
         graph.add("B");
         graph.add("C");
@@ -189,8 +189,8 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testAddSource() {
-        Vertex vertexA = new Vertex("A");
-        Vertex vertexB = new Vertex("B");
+        Vertex<String> vertexA = new Vertex<>("A");
+        Vertex<String> vertexB = new Vertex<>("B");
 
         vertexA.addSource(vertexB, 3);
 
@@ -212,8 +212,8 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testAddTarget() {
-        Vertex vertexA = new Vertex("A");
-        Vertex vertexB = new Vertex("B");
+        Vertex<String> vertexA = new Vertex<>("A");
+        Vertex<String> vertexB = new Vertex<>("B");
 
         vertexA.addTarget(vertexB, 3);
 
@@ -234,8 +234,8 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testRemoveSource() {
-        Vertex vertexA = new Vertex("A");
-        Vertex vertexB = new Vertex("B");
+        Vertex<String> vertexA = new Vertex<>("A");
+        Vertex<String> vertexB = new Vertex<>("B");
 
         vertexA.addSource(vertexB, 3);
         vertexB.addTarget(vertexA, 3);
@@ -250,8 +250,8 @@ public class ConcreteVerticesGraphTest extends GraphInstanceTest {
 
     @Test
     void testRemoveTarget() {
-        Vertex vertexA = new Vertex("A");
-        Vertex vertexB = new Vertex("B");
+        Vertex<String> vertexA = new Vertex<>("A");
+        Vertex<String> vertexB = new Vertex<>("B");
 
         vertexA.addTarget(vertexB, 3);
         vertexB.addSource(vertexA, 3);
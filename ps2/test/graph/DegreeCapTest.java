@@ -0,0 +1,150 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for DegreeCap.
+ */
+public class DegreeCapTest {
+
+    // Testing strategy
+    //   maxOutDegree: 0, 1, < out-degree, >= out-degree, unlimited
+    //   minWeight: 1, > some weights, > every weight
+    //   weights: distinct, tied at the cut
+    //   keep(): compare with sorting all edges, on random rows
+    //   prune(graph, source), prune(graph): edges removed, others untouched
+    //   of(): negative maxOutDegree, nonpositive minWeight throw
+
+    private static final Comparator<Integer> NATURAL = Comparator.naturalOrder();
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Map<Integer, Integer> row(int... targetsAndWeights) {
+        Map<Integer, Integer> row = new HashMap<>();
+        for (int i = 0; i < targetsAndWeights.length; i += 2) {
+            row.put(targetsAndWeights[i], targetsAndWeights[i + 1]);
+        }
+        return row;
+    }
+
+    private static Set<Integer> set(Integer... targets) {
+        return new HashSet<>(Arrays.asList(targets));
+    }
+
+    @Test
+    public void testKeepHeaviest() {
+        Map<Integer, Integer> row = row(1, 5, 2, 1, 3, 9, 4, 2, 5, 7);
+        assertEquals(set(3, 5), DegreeCap.of(2, 1, NATURAL).keep(row));
+        assertEquals(set(3), DegreeCap.of(1, 1, NATURAL).keep(row));
+        assertEquals(set(), DegreeCap.of(0, 1, NATURAL).keep(row));
+        assertEquals(row.keySet(), DegreeCap.of(5, 1, NATURAL).keep(row));
+        assertEquals(row.keySet(), DegreeCap.of(Integer.MAX_VALUE, 1, NATURAL).keep(row));
+    }
+
+    @Test
+    public void testKeepMinWeight() {
+        Map<Integer, Integer> row = row(1, 5, 2, 1, 3, 9, 4, 2, 5, 7);
+        assertEquals(set(1, 3, 5), DegreeCap.of(Integer.MAX_VALUE, 3, NATURAL).keep(row));
+        assertEquals(set(3, 5), DegreeCap.of(2, 3, NATURAL).keep(row));
+        assertEquals(set(), DegreeCap.of(Integer.MAX_VALUE, 10, NATURAL).keep(row));
+    }
+
+    @Test
+    public void testKeepTies() {
+        Map<Integer, Integer> row = row(8, 2, 3, 2, 6, 2, 1, 2, 9, 5);
+        assertEquals(set(9, 1, 3), DegreeCap.of(3, 1, NATURAL).keep(row));
+        assertEquals(set(9, 8, 6), DegreeCap.of(3, 1, Collections.<Integer>reverseOrder()).keep(row));
+    }
+
+    @Test
+    public void testKeepRandomRows() {
+        Random random = new Random(44);
+        for (int trial = 0; trial < 200; trial++) {
+            Map<Integer, Integer> row = new HashMap<>();
+            int degree = random.nextInt(60);
+            for (int i = 0; i < degree; i++) {
+                row.put(random.nextInt(1000), 1 + random.nextInt(8));
+            }
+            int maxOutDegree = random.nextInt(20);
+            int minWeight = 1 + random.nextInt(4);
+            List<Integer> expected = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> edge : row.entrySet()) {
+                if (edge.getValue() >= minWeight) {
+                    expected.add(edge.getKey());
+                }
+            }
+            expected.sort((a, b) -> row.get(a).equals(row.get(b)) ? a - b : row.get(b) - row.get(a));
+            Set<Integer> kept = DegreeCap.of(maxOutDegree, minWeight, NATURAL).keep(row);
+            assertEquals(new HashSet<>(expected.subList(0, Math.min(maxOutDegree, expected.size()))), kept);
+        }
+    }
+
+    @Test
+    public void testPrune() {
+        Graph<String> graph = Graph.empty();
+        graph.set("the", "cat", 3);
+        graph.set("the", "dog", 1);
+        graph.set("the", "end", 2);
+        graph.set("cat", "the", 1);
+        DegreeCap<String> cap = DegreeCap.of(2, 1, Comparator.<String>naturalOrder());
+        assertEquals(1, cap.prune(graph, "the"));
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("cat", 3);
+        expected.put("end", 2);
+        assertEquals(expected, graph.targets("the"));
+        assertEquals(0, cap.prune(graph, "cat"));
+        assertEquals(Collections.singletonMap("the", 1), graph.targets("cat"));
+        assertTrue(graph.vertices().contains("dog"));
+    }
+
+    @Test
+    public void testPruneAll() {
+        Graph<Integer> graph = new SnapshotGraph<>();
+        for (int source = 0; source < 10; source++) {
+            for (int target = 0; target < 10; target++) {
+                graph.set(source, target, 1 + (source + target) % 4);
+            }
+        }
+        assertEquals(100 - 10 * 3, DegreeCap.of(3, 2, NATURAL).prune(graph));
+        for (int source = 0; source < 10; source++) {
+            Map<Integer, Integer> targets = graph.targets(source);
+            assertEquals(3, targets.size());
+            for (int weight : targets.values()) {
+                assertTrue(weight >= 3);
+            }
+        }
+    }
+
+    @Test
+    public void testIsUnbounded() {
+        assertTrue(DegreeCap.of(Integer.MAX_VALUE, 1, NATURAL).isUnbounded());
+        assertFalse(DegreeCap.of(Integer.MAX_VALUE, 2, NATURAL).isUnbounded());
+        assertFalse(DegreeCap.of(100, 1, NATURAL).isUnbounded());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeMaxOutDegree() {
+        DegreeCap.of(-1, 1, NATURAL);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testZeroMinWeight() {
+        DegreeCap.of(1, 0, NATURAL);
+    }
+}
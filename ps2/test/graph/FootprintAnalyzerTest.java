@@ -0,0 +1,175 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for FootprintAnalyzer.
+ */
+public class FootprintAnalyzerTest {
+
+    // Testing strategy
+    //   sizeOf(): plain object, primitive and reference arrays, shared and
+    //     cyclic references, collections; compressed and uncompressed
+    //     references; HashMap of 1 entry, of as many as fit in its first
+    //     table, one more, and many, against its exact layout
+    //   analyze(): empty graph, graph with edges; vertex and edge counts;
+    //     labels excluded; bytes by class sum to the total; backends compared
+    //     on the same graph
+
+    private static final FootprintAnalyzer COMPRESSED = FootprintAnalyzer.DEFAULT.withCompressedReferences(true);
+    private static final FootprintAnalyzer UNCOMPRESSED = FootprintAnalyzer.DEFAULT.withCompressedReferences(false);
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static class Pair {
+        @SuppressWarnings("unused")
+        private final Object first;
+        @SuppressWarnings("unused")
+        private final Object second;
+        @SuppressWarnings("unused")
+        private long stamp;
+
+        private Pair(Object first, Object second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    @Test
+    public void testSizeOfObjectsAndArrays() {
+        assertEquals(16, COMPRESSED.sizeOf(new Object()));
+        assertEquals(16, UNCOMPRESSED.sizeOf(new Object()));
+        assertEquals(16 + 40, COMPRESSED.sizeOf(new int[10]));
+        assertEquals(24 + 40, UNCOMPRESSED.sizeOf(new int[10]));
+        assertEquals("padded", 16 + 8, COMPRESSED.sizeOf(new byte[3]));
+        assertEquals("12 + 4 + 4 + 8 = 28, padded", 32, COMPRESSED.sizeOf(new Pair(null, null)));
+        assertEquals("16 + 8 + 8 + 8", 40, UNCOMPRESSED.sizeOf(new Pair(null, null)));
+    }
+
+    @Test
+    public void testSizeOfSharedAndCyclic() {
+        int[] shared = new int[4];
+        long pair = COMPRESSED.sizeOf(new Pair(null, null));
+        long array = COMPRESSED.sizeOf(shared);
+        assertEquals("counted once", pair + array, COMPRESSED.sizeOf(new Pair(shared, shared)));
+
+        Object[] cycle = new Object[1];
+        cycle[0] = cycle;
+        assertEquals(16 + 8, COMPRESSED.sizeOf(cycle));
+    }
+
+    @Test
+    public void testSizeOfCollectionsGrows() {
+        List<Integer> list = new ArrayList<>();
+        Map<Integer, Integer> map = new HashMap<>();
+        long emptyList = COMPRESSED.sizeOf(list);
+        long emptyMap = COMPRESSED.sizeOf(map);
+        for (int i = 1000; i < 1100; i++) {
+            list.add(i);
+            map.put(i, i);
+        }
+        assertTrue("at least the boxed elements", COMPRESSED.sizeOf(list) >= emptyList + 100 * 16);
+        assertTrue("at least boxes and nodes", COMPRESSED.sizeOf(map) >= emptyMap + 100 * (16 + 32));
+    }
+
+    /*
+     * Slots in map's table: read from the map where the JVM allows it,
+     * otherwise following HashMap's growth from 16 slots, doubling whenever
+     * more than 0.75 of them are used.
+     */
+    private static int tableSlots(HashMap<?, ?> map) {
+        try {
+            Field table = HashMap.class.getDeclaredField("table");
+            table.setAccessible(true);
+            return ((Object[]) table.get(map)).length;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            int slots = 16;
+            while (map.size() > slots * 3 / 4) {
+                slots *= 2;
+            }
+            return slots;
+        }
+    }
+
+    @Test
+    public void testSizeOfHashMapMatchesLayout() {
+        long empty = COMPRESSED.sizeOf(new HashMap<Integer, Integer>());
+        for (int size : new int[] { 1, 12, 13, 1000 }) {
+            HashMap<Integer, Integer> map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Integer boxed = 1000 + i;
+                map.put(boxed, boxed);
+            }
+            long table = 16 + 4 * tableSlots(map);
+            long nodes = size * (12 + 4 + 3 * 4 + 4); // Hash and three references, padded to 32
+            long boxes = size * (12 + 4);
+            assertEquals(size + " entries", empty + table + nodes + boxes, COMPRESSED.sizeOf(map));
+        }
+    }
+
+    @Test
+    public void testAnalyzeEmpty() {
+        FootprintAnalyzer.Footprint footprint = COMPRESSED.analyze(new CompactVerticesGraph<Integer>());
+        assertEquals(0, footprint.vertexCount());
+        assertEquals(0, footprint.edgeCount());
+        assertTrue(footprint.bytes() > 0);
+        assertEquals(0, footprint.bytesPerEdge(), 0);
+    }
+
+    @Test
+    public void testAnalyzeCountsAndClasses() {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "b", 1);
+        graph.set("b", "c", 2);
+        graph.set("c", "a", 3);
+        FootprintAnalyzer.Footprint footprint = COMPRESSED.analyze(graph);
+        assertEquals(3, footprint.vertexCount());
+        assertEquals(3, footprint.edgeCount());
+        long sum = 0;
+        for (long bytes : footprint.bytesByClass().values()) {
+            sum += bytes;
+        }
+        assertEquals(footprint.bytes(), sum);
+        assertEquals(footprint.bytes() / 3.0, footprint.bytesPerEdge(), 1e-9);
+        assertTrue(footprint.toString().contains("3 edges"));
+    }
+
+    @Test
+    public void testAnalyzeExcludesLabels() {
+        String big = new String(new char[10_000]);
+        Graph<String> small = new CompactVerticesGraph<>();
+        small.add("x");
+        Graph<String> large = new CompactVerticesGraph<>();
+        large.add(big);
+        assertEquals(COMPRESSED.analyze(small).bytes(), COMPRESSED.analyze(large).bytes());
+    }
+
+    @Test
+    public void testCompactSmallerThanConcreteVertices() {
+        Graph<Integer> concrete = new ConcreteVerticesGraph<>();
+        Graph<Integer> compact = new CompactVerticesGraph<>();
+        for (Graph<Integer> graph : Arrays.asList(concrete, compact)) {
+            for (int v = 0; v < 500; v++) {
+                graph.set(v, (v * 7) % 500, 1 + v % 3);
+                graph.set(v, (v * 13 + 1) % 500, 1000 + v);
+            }
+        }
+        FootprintAnalyzer.Footprint concreteFootprint = COMPRESSED.analyze(concrete);
+        FootprintAnalyzer.Footprint compactFootprint = COMPRESSED.analyze(compact);
+        assertEquals(concreteFootprint.edgeCount(), compactFootprint.edgeCount());
+        assertTrue(compactFootprint + " vs " + concreteFootprint,
+                compactFootprint.bytesPerEdge() < concreteFootprint.bytesPerEdge());
+    }
+}
@@ -0,0 +1,129 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for CsrSnapshot and GraphAlgorithms.
+ */
+public class GraphAlgorithmsTest {
+
+    // Testing strategy
+    //   CsrSnapshot.of(): empty graph, graph with self-loops and reciprocal
+    //     edges; observe with the Graph observers and the CSR accessors;
+    //     mutators throw
+    //   pageRank(): empty graph, cycle (uniform), star, dangling vertices
+    //   stronglyConnectedComponents(): acyclic, cycles, long path (deep DFS)
+    //   breadthFirstSearch(): unreachable vertices, several levels, wide levels
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Graph<String> sample() {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "b", 2);
+        graph.set("b", "a", 1);
+        graph.set("b", "c", 3);
+        graph.set("c", "c", 4);
+        graph.add("d");
+        return graph;
+    }
+
+    @Test
+    public void testSnapshotMatchesGraph() {
+        Graph<String> graph = sample();
+        CsrSnapshot<String> snapshot = CsrSnapshot.of(graph);
+        assertEquals(graph.vertices(), snapshot.vertices());
+        assertEquals(4, snapshot.edgeCount());
+        for (String v : graph.vertices()) {
+            assertEquals(graph.targets(v), snapshot.targets(v));
+            assertEquals(graph.sources(v), snapshot.sources(v));
+        }
+        int b = snapshot.id("b");
+        assertEquals(3, snapshot.weight(b, snapshot.id("c")));
+        assertEquals(0, snapshot.weight(b, snapshot.id("d")));
+        assertEquals(-1, snapshot.id("e"));
+        assertEquals(Collections.emptyMap(), snapshot.targets("e"));
+        assertSame(snapshot, CsrSnapshot.of(snapshot));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSnapshotImmutable() {
+        CsrSnapshot.of(sample()).set("a", "d", 1);
+    }
+
+    @Test
+    public void testPageRank() {
+        assertEquals(0, GraphAlgorithms.pageRank(CsrSnapshot.of(Graph.<String>empty()), 0.85, 10, 1e-9).length);
+
+        Graph<Integer> cycle = Graph.empty();
+        for (int i = 0; i < 4; i++) {
+            cycle.set(i, (i + 1) % 4, 1);
+        }
+        double[] uniform = GraphAlgorithms.pageRank(CsrSnapshot.of(cycle), 0.85, 100, 1e-12);
+        for (double rank : uniform) {
+            assertEquals(0.25, rank, 1e-9);
+        }
+
+        Graph<Integer> star = Graph.empty();
+        for (int i = 1; i < 5; i++) {
+            star.set(i, 0, 1);
+        }
+        CsrSnapshot<Integer> snapshot = CsrSnapshot.of(star);
+        double[] ranks = GraphAlgorithms.pageRank(snapshot, 0.85, 100, 1e-12);
+        assertEquals(1.0, Arrays.stream(ranks).sum(), 1e-9);
+        int hub = snapshot.id(0);
+        for (int v = 0; v < ranks.length; v++) {
+            assertTrue(v == hub || ranks[hub] > ranks[v]);
+        }
+    }
+
+    @Test
+    public void testStronglyConnectedComponents() {
+        CsrSnapshot<String> snapshot = CsrSnapshot.of(sample());
+        int[] component = GraphAlgorithms.stronglyConnectedComponents(snapshot);
+        assertEquals(component[snapshot.id("a")], component[snapshot.id("b")]);
+        assertEquals(3, new HashSet<>(Arrays.asList(component[0], component[1], component[2], component[3])).size());
+
+        Graph<Integer> path = Graph.empty();
+        for (int i = 0; i < 3000; i++) {
+            path.set(i, i + 1, 1);
+        }
+        path.set(3000, 0, 1);
+        int[] ring = GraphAlgorithms.stronglyConnectedComponents(CsrSnapshot.of(path));
+        for (int c : ring) {
+            assertEquals(0, c);
+        }
+    }
+
+    @Test
+    public void testBreadthFirstSearch() {
+        CsrSnapshot<String> snapshot = CsrSnapshot.of(sample());
+        int[] distance = GraphAlgorithms.breadthFirstSearch(snapshot, snapshot.id("a"));
+        assertEquals(0, distance[snapshot.id("a")]);
+        assertEquals(1, distance[snapshot.id("b")]);
+        assertEquals(2, distance[snapshot.id("c")]);
+        assertEquals(-1, distance[snapshot.id("d")]);
+
+        Graph<Integer> tree = Graph.empty();
+        for (int i = 1; i < 5000; i++) {
+            tree.set((i - 1) / 10, i, 1);
+        }
+        CsrSnapshot<Integer> wide = CsrSnapshot.of(tree);
+        int[] depth = GraphAlgorithms.breadthFirstSearch(wide, wide.id(0));
+        for (int i = 0; i < 5000; i++) {
+            int expected = 0;
+            for (int v = i; v > 0; v = (v - 1) / 10) {
+                expected++;
+            }
+            assertEquals(expected, depth[wide.id(i)]);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for GraphDiff.
+ */
+public class GraphDiffTest {
+
+    // Testing strategy
+    //   between(before, after): equal graphs; edges added, removed,
+    //     reweighted; vertices added, removed with in-, out- and self-loop
+    //     edges; random graphs larger than one partition
+    //   applyTo(graph): graph equal to before, so it becomes equal to after
+    //   write(), read(): round trip of empty and random diffs; not a patch;
+    //     negative count, counts whose sum overflows, negative weight
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static <L> Map<L, Map<L, Integer>> edges(Graph<L> graph) {
+        Map<L, Map<L, Integer>> edges = new HashMap<>();
+        for (L vertex : graph.vertices()) {
+            edges.put(vertex, graph.targets(vertex));
+        }
+        return edges;
+    }
+
+    private static <L> GraphDiff<L> roundTrip(GraphDiff<L> diff, LabelCodec<L> codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        diff.write(codec, new DataOutputStream(bytes));
+        return GraphDiff.read(codec, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testEqualGraphs() throws IOException {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "b", 1);
+        GraphDiff<String> diff = GraphDiff.between(graph, graph);
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.addedEdges() + diff.removedEdges() + diff.reweightedEdges());
+        assertTrue(roundTrip(diff, LabelCodec.STRING).isEmpty());
+    }
+
+    @Test
+    public void testSmallDiff() throws IOException {
+        Graph<String> before = Graph.empty();
+        before.set("a", "b", 1);
+        before.set("b", "c", 2);
+        before.set("c", "c", 3);
+        before.set("c", "a", 4);
+        before.set("a", "d", 5);
+        Graph<String> after = Graph.empty();
+        after.set("a", "b", 7);
+        after.set("a", "e", 1);
+        after.add("d");
+        after.add("f");
+
+        GraphDiff<String> diff = roundTrip(GraphDiff.between(before, after), LabelCodec.STRING);
+        assertEquals(Arrays.asList("c"), diff.removedVertices());
+        assertEquals(2, diff.addedVertices().size());
+        assertEquals(1, diff.addedEdges());
+        assertEquals(4, diff.removedEdges());
+        assertEquals(1, diff.reweightedEdges());
+
+        diff.applyTo(before);
+        assertEquals(after.vertices(), before.vertices());
+        assertEquals(edges(after), edges(before));
+    }
+
+    @Test
+    public void testRandomGraphs() throws IOException {
+        Random random = new Random(40);
+        Graph<Integer> before = new SnapshotGraph<>();
+        Graph<Integer> after = new SnapshotGraph<>();
+        int n = 3000;
+        for (int e = 0; e < 4 * n; e++) {
+            int source = random.nextInt(n);
+            int target = random.nextInt(n);
+            int weight = 1 + random.nextInt(300);
+            before.set(source, target, weight);
+            switch (random.nextInt(4)) {
+            case 0: // dropped
+                break;
+            case 1:
+                after.set(source, target, weight + 1);
+                break;
+            default:
+                after.set(source, target, weight);
+            }
+            if (random.nextInt(4) == 0) {
+                after.set(random.nextInt(n + 100), random.nextInt(n + 100), weight);
+            }
+        }
+        for (int v = 0; v < 50; v++) {
+            after.remove(random.nextInt(n));
+        }
+
+        GraphDiff<Integer> diff = GraphDiff.between(before, after);
+        GraphDiff<Integer> copy = roundTrip(diff, LabelCodec.INTEGER);
+        assertEquals(diff.toString(), copy.toString());
+        copy.applyTo(before);
+        assertEquals(after.vertices(), before.vertices());
+        assertEquals(edges(after), edges(before));
+        assertTrue(GraphDiff.between(before, after).isEmpty());
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadNotAPatch() throws IOException {
+        GraphDiff.read(LabelCodec.STRING, new DataInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 })));
+    }
+
+    /*
+     * Read a patch of labels "a" and "b" whose fields after the label table
+     * are the given bytes.
+     */
+    private static GraphDiff<String> readFields(int... fields) throws IOException {
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        GraphDiff.between(Graph.<String>empty(), Graph.<String>empty()).write(LabelCodec.STRING,
+                new DataOutputStream(empty));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(empty.toByteArray(), 0, 4); // the magic number
+        out.writeByte(2);
+        out.writeUTF("a");
+        out.writeUTF("b");
+        for (int field : fields) {
+            out.writeByte(field);
+        }
+        return GraphDiff.read(LabelCodec.STRING, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static final int[] MINUS_ONE = { 0xFF, 0xFF, 0xFF, 0xFF, 0x0F };
+
+    @Test
+    public void testReadFields() throws IOException {
+        // remove "a", add "b", and add the edge b -> a of weight 3
+        GraphDiff<String> diff = readFields(1, 1, 1, 0, 0, 1, 1, 1, 0, 3);
+        assertEquals(Arrays.asList("a"), diff.removedVertices());
+        assertEquals(Arrays.asList("b"), diff.addedVertices());
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadNegativeCount() throws IOException {
+        readFields(MINUS_ONE[0], MINUS_ONE[1], MINUS_ONE[2], MINUS_ONE[3], MINUS_ONE[4], 0, 0, 0, 0, 0);
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadCountsOverflow() throws IOException {
+        // 2 removed and 0x7FFFFFFF added vertices, of a table of 2
+        readFields(2, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 0, 0, 0, 0);
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadNegativeWeight() throws IOException {
+        readFields(0, 0, 1, 0, 0, 1, 0, 1, 1, MINUS_ONE[0], MINUS_ONE[1], MINUS_ONE[2], MINUS_ONE[3],
+                MINUS_ONE[4]);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testUnmodifiable() {
+        GraphDiff.between(Graph.<String>empty(), Graph.<String>empty()).addedVertices().add("a");
+    }
+}
@@ -5,7 +5,9 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
 import org.junit.Test;
 
@@ -21,6 +23,7 @@ public class GraphStaticTest {
     //   empty()
     //     no inputs, only output is empty graph
     //     observe with vertices()
+    //     vertex labels of type String, Integer
     
     @Test(expected=AssertionError.class)
     public void testAssertionsEnabled() {
@@ -33,6 +36,16 @@ public class GraphStaticTest {
                 Collections.emptySet(), Graph.empty().vertices());
     }
     
-    // TODO test other vertex label types in Problem 3.2
+    @Test
+    public void testEmptyIntegerLabels() {
+        Graph<Integer> graph = Graph.empty();
+        assertEquals("expected no previous weight", 0, graph.set(1, 2, 5));
+        assertEquals("expected set to add both vertices",
+                new HashSet<>(Arrays.asList(1, 2)), graph.vertices());
+        assertEquals("expected edge from 1", Collections.singletonMap(1, 5), graph.sources(2));
+        assertEquals("expected previous weight", 5, graph.set(1, 2, 0));
+        assertEquals("expected edge removed", Collections.emptyMap(), graph.targets(1));
+    }
+    
     
 }
@@ -0,0 +1,84 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for GraphStatistics.
+ */
+public class GraphStatisticsTest {
+
+    // Testing strategy
+    //   graph: empty, single vertex, cycle plus tail, many vertices (more than
+    //     one partition)
+    //   edges: none, reciprocal pairs, self-loops
+    //   hubs: 0, fewer than vertices
+    //   relabel(): identity, other label type
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmptyGraph() {
+        GraphStatistics<String> statistics = GraphStatistics.of(Graph.<String>empty(), 3);
+        assertEquals(0, statistics.vertexCount());
+        assertEquals(0, statistics.edgeCount());
+        assertEquals(0, statistics.reciprocity(), 0);
+        assertEquals(0, statistics.componentCount());
+        assertTrue(statistics.outHubs().isEmpty());
+    }
+
+    @Test
+    public void testCycleWithTail() {
+        Graph<String> graph = Graph.empty();
+        graph.set("a", "b", 1);
+        graph.set("b", "c", 2);
+        graph.set("c", "a", 3);
+        graph.set("a", "d", 4);
+        graph.set("d", "a", 1);
+        graph.set("c", "e", 1);
+        graph.set("e", "e", 5);
+
+        GraphStatistics<String> statistics = GraphStatistics.of(graph, 1);
+        assertEquals(5, statistics.vertexCount());
+        assertEquals(7, statistics.edgeCount());
+        assertEquals(17, statistics.totalWeight());
+        assertEquals(5, statistics.maxWeight());
+        // a->d, d->a, e->e are reciprocated
+        assertEquals(3.0 / 7, statistics.reciprocity(), 1e-9);
+        // {a, b, c, d} and {e}
+        assertEquals(2, statistics.componentCount());
+        assertEquals(4, statistics.largestComponent());
+        // out-degrees a:2 b:1 c:2 d:1 e:1 -> all in bucket 1
+        assertArrayEquals(new long[] { 0, 5 }, statistics.outDegreeHistogram());
+        // in-degrees a:2 b:1 c:1 d:1 e:2 -> all in bucket 1
+        assertArrayEquals(new long[] { 0, 5 }, statistics.inDegreeHistogram());
+        // weights 1,1,1 -> bucket 1; 2,3,4,5 -> bucket 1,2,2,2
+        assertArrayEquals(new long[] { 0, 4, 3 }, statistics.weightHistogram());
+        assertEquals(1, statistics.outHubs().size());
+        assertEquals(Integer.valueOf(2), statistics.outHubs().values().iterator().next());
+    }
+
+    @Test
+    public void testManyPartitionsAndRelabel() {
+        Graph<Integer> graph = Graph.empty();
+        for (int i = 1; i < 2000; i++) {
+            graph.set(0, i, 1);
+            graph.set(i, (i % 1999) + 1, 2);
+        }
+        GraphStatistics<Integer> statistics = GraphStatistics.of(graph, 1);
+        assertEquals(2000, statistics.vertexCount());
+        assertEquals(3998, statistics.edgeCount());
+        assertEquals(2, statistics.componentCount());
+        assertEquals(1999, statistics.largestComponent());
+
+        GraphStatistics<String> relabelled = statistics.relabel(v -> "v" + v);
+        assertEquals(Collections.singletonMap("v0", 1999), relabelled.outHubs());
+        assertEquals(statistics.edgeCount(), relabelled.edgeCount());
+    }
+}
@@ -0,0 +1,271 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Random sequences of Graph operations, replayed against a Graph and checked
+ * against a simple reference model.
+ */
+final class GraphWorkload {
+
+    /** Kinds of operations. */
+    enum Kind { ADD, SET, REWEIGHT, UNSET, REMOVE, VERTICES, SOURCES, TARGETS }
+
+    /** Kinds in the proportions they are generated. */
+    private static final Kind[] MIX = { Kind.ADD, Kind.SET, Kind.SET, Kind.SET, Kind.REWEIGHT, Kind.UNSET,
+        Kind.REMOVE, Kind.VERTICES, Kind.SOURCES, Kind.TARGETS, Kind.TARGETS };
+
+    /**
+     * One operation: kind applied to source (and target and weight, if the
+     * kind uses them).
+     */
+    static final class Operation {
+        final Kind kind;
+        final String source;
+        final String target;
+        final int weight;
+
+        private Operation(Kind kind, String source, String target, int weight) {
+            this.kind = kind;
+            this.source = source;
+            this.target = target;
+            this.weight = weight;
+        }
+
+        @Override public String toString() {
+            return kind + "(" + source + ", " + target + ", " + weight + ")";
+        }
+    }
+
+    private GraphWorkload() {
+        throw new AssertionError("not instantiable");
+    }
+
+    /**
+     * Generate a workload. Labels are drawn from "v0".."v(vertices-1)",
+     * skewed towards small numbers so that some vertices become hubs.
+     *
+     * @param seed seed of the generator
+     * @param length number of operations
+     * @param vertices number of distinct labels
+     * @return the operations
+     */
+    static List<Operation> generate(long seed, int length, int vertices) {
+        Random random = new Random(seed);
+        String[] labels = new String[vertices];
+        for (int i = 0; i < vertices; i++) {
+            labels[i] = "v" + i;
+        }
+        List<Operation> operations = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            Kind kind = MIX[random.nextInt(MIX.length)];
+            String source = labels[skewed(random, vertices)];
+            String target = labels[skewed(random, vertices)];
+            int weight = kind == Kind.UNSET ? 0 : 1 + random.nextInt(random.nextInt(8) == 0 ? 1000 : 3);
+            operations.add(new Operation(kind, source, target, weight));
+        }
+        return operations;
+    }
+
+    private static int skewed(Random random, int bound) {
+        return random.nextBoolean() ? random.nextInt(bound) : random.nextInt(1 + random.nextInt(bound));
+    }
+
+    /**
+     * Replay a workload on graph, checking every result, and the whole graph
+     * every checkEvery operations, against a reference model.
+     *
+     * @param operations workload to replay
+     * @param graph graph to replay on, initially empty
+     * @param checkEvery how often to compare the whole graph
+     * @throws AssertionError if graph ever disagrees with the model
+     */
+    static void replay(List<Operation> operations, Graph<String> graph, int checkEvery) {
+        Model model = new Model();
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            String context = "operation " + i + ": " + operation;
+            switch (operation.kind) {
+            case ADD:
+                assertEquals(context, model.add(operation.source), graph.add(operation.source));
+                break;
+            case SET:
+            case UNSET:
+                assertEquals(context, model.set(operation.source, operation.target, operation.weight),
+                        graph.set(operation.source, operation.target, operation.weight));
+                break;
+            case REWEIGHT: {
+                // change an existing edge, if the source has one
+                List<String> targets = new ArrayList<>(model.targets(operation.source).keySet());
+                Collections.sort(targets);
+                String target = targets.isEmpty() ? operation.target : targets.get(operation.weight % targets.size());
+                assertEquals(context, model.set(operation.source, target, operation.weight),
+                        graph.set(operation.source, target, operation.weight));
+                break;
+            }
+            case REMOVE:
+                assertEquals(context, model.remove(operation.source), graph.remove(operation.source));
+                break;
+            case VERTICES:
+                assertEquals(context, model.out.keySet(), graph.vertices());
+                break;
+            case SOURCES:
+                assertEquals(context, model.sources(operation.source), graph.sources(operation.source));
+                break;
+            case TARGETS:
+                assertEquals(context, model.targets(operation.source), graph.targets(operation.source));
+                break;
+            default:
+                throw new AssertionError(operation.kind);
+            }
+            if ((i + 1) % checkEvery == 0 || i == operations.size() - 1) {
+                assertEquals(context, model.out.keySet(), graph.vertices());
+                for (String vertex : model.out.keySet()) {
+                    assertEquals(context, model.targets(vertex), graph.targets(vertex));
+                    assertEquals(context, model.sources(vertex), graph.sources(vertex));
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a workload to graph without checking the results, for measuring
+     * it. VERTICES operations are skipped, since by its spec vertices()
+     * returns every vertex and so takes time that grows with the graph.
+     *
+     * @param <L> type of labels of graph
+     * @param operations workload to apply
+     * @param graph graph to apply it to
+     * @param labels the label of graph for each label of the workload
+     * @return a sum of the results, so that the operations cannot be
+     *         optimized away
+     */
+    static <L> long apply(List<Operation> operations, Graph<L> graph, Function<String, L> labels) {
+        long sum = 0;
+        for (Operation operation : operations) {
+            L source = labels.apply(operation.source);
+            switch (operation.kind) {
+            case ADD:
+                sum += graph.add(source) ? 1 : 0;
+                break;
+            case SET:
+            case UNSET:
+                sum += graph.set(source, labels.apply(operation.target), operation.weight);
+                break;
+            case REWEIGHT: {
+                Iterator<L> targets = graph.targets(source).keySet().iterator();
+                L target = targets.hasNext() ? targets.next() : labels.apply(operation.target);
+                sum += graph.set(source, target, operation.weight);
+                break;
+            }
+            case REMOVE:
+                sum += graph.remove(source) ? 1 : 0;
+                break;
+            case VERTICES:
+                break;
+            case SOURCES:
+                sum += graph.sources(source).size();
+                break;
+            case TARGETS:
+                sum += graph.targets(source).size();
+                break;
+            default:
+                throw new AssertionError(operation.kind);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Fill graph with about edges random edges of weight 1 between labels of
+     * a workload over edges / 4 labels, or 16 if that is more.
+     *
+     * @param <L> type of labels of graph
+     * @param graph graph to fill
+     * @param edges number of edges to set
+     * @param labels the label of graph for each label of the workload
+     * @return number of labels, for generating workloads over the graph
+     */
+    static <L> int fill(Graph<L> graph, int edges, Function<String, L> labels) {
+        int vertices = Math.max(16, edges / 4);
+        List<L> mapped = new ArrayList<>(vertices);
+        for (int i = 0; i < vertices; i++) {
+            mapped.add(labels.apply("v" + i));
+        }
+        Random random = new Random(edges);
+        for (int e = 0; e < edges; e++) {
+            graph.set(mapped.get(random.nextInt(vertices)), mapped.get(random.nextInt(vertices)), 1);
+        }
+        return vertices;
+    }
+
+    /**
+     * The reference model: maps of out- and in-edges, following the spec of
+     * Graph directly.
+     */
+    private static final class Model {
+        private final Map<String, Map<String, Integer>> out = new HashMap<>();
+        private final Map<String, Map<String, Integer>> in = new HashMap<>();
+
+        boolean add(String vertex) {
+            if (out.containsKey(vertex)) {
+                return false;
+            }
+            out.put(vertex, new HashMap<>());
+            in.put(vertex, new HashMap<>());
+            return true;
+        }
+
+        int set(String source, String target, int weight) {
+            if (weight == 0) {
+                Integer previous = out.containsKey(source) ? out.get(source).remove(target) : null;
+                if (previous != null) {
+                    in.get(target).remove(source);
+                }
+                return previous == null ? 0 : previous;
+            }
+            add(source);
+            add(target);
+            in.get(target).put(source, weight);
+            Integer previous = out.get(source).put(target, weight);
+            return previous == null ? 0 : previous;
+        }
+
+        boolean remove(String vertex) {
+            Map<String, Integer> targets = out.remove(vertex);
+            if (targets == null) {
+                return false;
+            }
+            for (String target : targets.keySet()) {
+                Map<String, Integer> sources = in.get(target);
+                if (sources != null) {
+                    sources.remove(vertex);
+                }
+            }
+            for (String source : in.remove(vertex).keySet()) {
+                Map<String, Integer> sourceTargets = out.get(source);
+                if (sourceTargets != null) {
+                    sourceTargets.remove(vertex);
+                }
+            }
+            return true;
+        }
+
+        Map<String, Integer> targets(String source) {
+            return out.containsKey(source) ? out.get(source) : Collections.emptyMap();
+        }
+
+        Map<String, Integer> sources(String target) {
+            return in.containsKey(target) ? in.get(target) : Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * Randomized differential and complexity tests for the Graph
+ * implementations, using GraphWorkload. Complexity is checked by counting
+ * the calls of equals() and hashCode() on labels, which do not depend on
+ * the machine; ComplexityBenchmark checks the time the same workloads take.
+ */
+public class GraphWorkloadTest {
+
+    // Testing strategy
+    //   implementation: ConcreteEdgesGraph, ConcreteVerticesGraph,
+    //     CompactVerticesGraph, SnapshotGraph, VersionedGraph and
+    //     InstrumentedGraph wrapping another graph, LoggedGraph, in-process
+    //     ShardedGraph; CsrSnapshot and CompressedSnapshot of the result
+    //   workload: long random mixes of add, set (new edge, reweight, remove
+    //     edge), remove and observers, over few and many labels
+    //   complexity, for the implementations that promise sublinear
+    //     operations: label probes per operation of the workload mix on a
+    //     graph of 1K edges versus 64K edges
+    //
+    // ConcreteEdgesGraph and ConcreteVerticesGraph keep the list reps the
+    // assignment requires and scan them, so they are checked for
+    // correctness only.
+
+    /** Most probes per operation at 64K edges, relative to 1K edges. */
+    private static final double MAX_GROWTH = 4;
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static void replay(Supplier<Graph<String>> factory) {
+        for (long seed = 0; seed < 3; seed++) {
+            List<GraphWorkload.Operation> few = GraphWorkload.generate(seed, 3000, 12);
+            GraphWorkload.replay(few, factory.get(), 100);
+            List<GraphWorkload.Operation> many = GraphWorkload.generate(seed, 5000, 400);
+            GraphWorkload.replay(many, factory.get(), 1000);
+        }
+    }
+
+    @Test
+    public void testConcreteEdgesGraph() {
+        replay(ConcreteEdgesGraph::new);
+    }
+
+    @Test
+    public void testConcreteVerticesGraph() {
+        replay(ConcreteVerticesGraph::new);
+    }
+
+    @Test
+    public void testCompactVerticesGraph() {
+        replay(CompactVerticesGraph::new);
+    }
+
+    @Test
+    public void testSnapshotGraph() {
+        replay(SnapshotGraph::new);
+    }
+
+    @Test
+    public void testWrappers() {
+        replay(() -> new VersionedGraph<>(new SnapshotGraph<>()));
+        replay(() -> new InstrumentedGraph<>(new ConcreteVerticesGraph<>()));
+    }
+
+    @Test
+    public void testShardedGraph() {
+        replay(() -> ShardedGraph.inProcess(3));
+    }
+
+    @Test
+    public void testLoggedGraph() throws IOException {
+        replay(() -> {
+            try {
+                return LoggedGraph.open(Files.createTempDirectory("workload"), LabelCodec.STRING, false);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshotsOfWorkload() {
+        List<GraphWorkload.Operation> workload = GraphWorkload.generate(7, 5000, 300);
+        SnapshotGraph<String> graph = new SnapshotGraph<>();
+        GraphWorkload.replay(workload, graph, workload.size());
+        for (Graph<String> snapshot : Arrays.<Graph<String>>asList(CsrSnapshot.of(graph), CompressedSnapshot.of(graph))) {
+            assertEquals(graph.vertices(), snapshot.vertices());
+            for (String vertex : graph.vertices()) {
+                assertEquals(graph.targets(vertex), snapshot.targets(vertex));
+                assertEquals(graph.sources(vertex), snapshot.sources(vertex));
+            }
+        }
+    }
+
+    /**
+     * A label that counts the calls of equals() and hashCode() on labels.
+     */
+    private static final class Probe {
+        private static final AtomicLong probes = new AtomicLong();
+
+        private final String name;
+
+        private Probe(String name) {
+            this.name = name;
+        }
+
+        @Override public boolean equals(Object that) {
+            probes.incrementAndGet();
+            return that instanceof Probe && ((Probe) that).name.equals(name);
+        }
+
+        @Override public int hashCode() {
+            probes.incrementAndGet();
+            return name.hashCode();
+        }
+
+        @Override public String toString() {
+            return name;
+        }
+    }
+
+    /*
+     * Fill a graph with about 'edges' random edges, then return the probes
+     * per operation of a workload mix over its labels.
+     */
+    private static double probesPerOperation(Graph<Probe> graph, int edges) {
+        Map<String, Probe> labels = new HashMap<>();
+        Function<String, Probe> label = name -> labels.computeIfAbsent(name, Probe::new);
+        int vertices = GraphWorkload.fill(graph, edges, label);
+        List<GraphWorkload.Operation> workload = GraphWorkload.generate(edges, 20_000, vertices);
+        for (GraphWorkload.Operation operation : workload) {
+            label.apply(operation.source);
+            label.apply(operation.target);
+        }
+        long before = Probe.probes.get();
+        GraphWorkload.apply(workload, graph, label);
+        return (double) (Probe.probes.get() - before) / workload.size();
+    }
+
+    private static void assertSublinear(String name, Supplier<Graph<Probe>> factory) {
+        double small = probesPerOperation(factory.get(), 1 << 10);
+        double large = probesPerOperation(factory.get(), 1 << 16);
+        assertTrue(String.format("%s: %.1f probes per operation at 1K edges, %.1f at 64K", name, small, large),
+                large <= small * MAX_GROWTH);
+    }
+
+    @Test
+    public void testComplexity() {
+        assertSublinear("SnapshotGraph", SnapshotGraph::new);
+        assertSublinear("CompactVerticesGraph", CompactVerticesGraph::new);
+        assertSublinear("VersionedGraph", () -> new VersionedGraph<>(new SnapshotGraph<>()));
+        assertSublinear("ShardedGraph", () -> ShardedGraph.inProcess(4));
+    }
+}
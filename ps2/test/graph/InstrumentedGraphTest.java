@@ -0,0 +1,100 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for InstrumentedGraph, GraphMetrics and LatencyHistogram.
+ *
+ * This class runs the GraphInstanceTest tests against InstrumentedGraph, as
+ * well as tests for that particular implementation.
+ */
+public class InstrumentedGraphTest extends GraphInstanceTest {
+
+    /*
+     * Provide an InstrumentedGraph, with metrics enabled, for tests in
+     * GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(Graph.empty());
+        graph.metrics().setEnabled(true);
+        return graph;
+    }
+
+    // Testing strategy
+    //   metrics disabled, enabled; sink absent, present
+    //   operations: each Graph operation
+    //   structure: empty graph, graph with vertices of out-degree 0, 1, 3
+    //   LatencyHistogram: values below and above 16, percentiles 0, 50, 100
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(Graph.empty());
+        graph.set("a", "b", 1);
+        graph.targets("a");
+        assertEquals(0, graph.metrics().getOperations().length);
+    }
+
+    @Test
+    public void testEnabledCountsOperations() {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(Graph.empty());
+        final List<String> seen = new ArrayList<>();
+        graph.metrics().setEnabled(true);
+        graph.metrics().setSink((operation, nanos, allocatedBytes) -> seen.add(operation));
+        graph.add("a");
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 1);
+        graph.targets("a");
+        graph.sources("b");
+        graph.remove("c");
+
+        GraphMetrics metrics = graph.metrics();
+        assertEquals(Arrays.asList("add", "remove", "set", "sources", "targets"),
+                Arrays.asList(metrics.getOperations()));
+        assertEquals(2, metrics.count("set"));
+        assertEquals(0, metrics.count("vertices"));
+        assertEquals(Arrays.asList("add", "set", "set", "targets", "sources", "remove"), seen);
+        assertTrue(metrics.latencyPercentile("set", 100) >= metrics.latencyPercentile("set", 0));
+
+        metrics.reset();
+        assertEquals(0, metrics.count("set"));
+    }
+
+    @Test
+    public void testStructure() {
+        InstrumentedGraph<String> graph = new InstrumentedGraph<>(Graph.empty());
+        assertEquals(0, graph.metrics().getVertexCount());
+        graph.set("a", "b", 1);
+        graph.set("a", "c", 1);
+        graph.set("a", "d", 1);
+        graph.set("b", "a", 1);
+        assertEquals(4, graph.metrics().getVertexCount());
+        assertEquals(4, graph.metrics().getEdgeCount());
+        // out-degrees 3, 1, 0, 0 fall in buckets 2, 1, 0, 0
+        assertArrayEquals(new long[] { 2, 1, 1 }, graph.metrics().getOutDegreeHistogram());
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100, histogram.count());
+        long min = histogram.percentile(0);
+        assertTrue("min within bucket precision: " + min, min > 940 && min <= 1000);
+        long median = histogram.percentile(50);
+        assertTrue("median within bucket precision: " + median, median > 47000 && median <= 50000);
+        long max = histogram.percentile(100);
+        assertTrue("max within bucket precision: " + max, max > 94000 && max <= 100000);
+        for (int bucket = 0; bucket < 200; bucket++) {
+            assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.lowerBound(bucket)));
+        }
+    }
+}
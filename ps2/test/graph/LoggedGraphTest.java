@@ -0,0 +1,209 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for LoggedGraph.
+ */
+public class LoggedGraphTest {
+
+    // Testing strategy
+    //   open(): empty directory, directory with log only, with snapshot and
+    //     log, with a torn record at the end of the log; with a damaged
+    //     record in the middle of the last segment or at the end of an
+    //     earlier one
+    //   mutations: add, set, remove; changing and no-op; syncWrites or not;
+    //     concurrent writers
+    //   compact(): then reopen; mutations during and after compaction
+    //   close(): then mutate
+    //   label the codec cannot encode: add, set; graph and log unchanged
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static List<String> files(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testReopenReplaysLog() throws IOException {
+        Path directory = Files.createTempDirectory("logged-graph");
+        try (LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, false)) {
+            assertTrue(graph.add("a"));
+            assertFalse(graph.add("a"));
+            assertEquals(0, graph.set("a", "b", 3));
+            assertEquals(3, graph.set("a", "b", 4));
+            graph.set("b", "c", 1);
+            graph.set("c", "c", 2);
+            assertTrue(graph.remove("b"));
+            graph.sync();
+        }
+        try (LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, false)) {
+            assertEquals(new HashSet<>(Arrays.asList("a", "c")), graph.vertices());
+            assertEquals(Collections.singletonMap("c", 2), graph.targets("c"));
+            assertEquals(Collections.emptyMap(), graph.targets("a"));
+        }
+    }
+
+    @Test
+    public void testTornRecordDiscarded() throws IOException {
+        Path directory = Files.createTempDirectory("logged-graph");
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            graph.set(1, 2, 5);
+            graph.set(2, 3, 6);
+        }
+        Path log = directory.resolve("log-0");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            assertEquals(Collections.singletonMap(2, 5), graph.targets(1));
+            assertEquals("vertex 3 came only from the torn record", 2, graph.vertices().size());
+            graph.set(3, 1, 7);
+        }
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            assertEquals(Collections.singletonMap(1, 7), graph.targets(3));
+            assertEquals(Collections.singletonMap(2, 5), graph.targets(1));
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void testDamagedRecordBeforeEndRejected() throws IOException {
+        Path directory = Files.createTempDirectory("logged-graph");
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            graph.set(1, 2, 5);
+            graph.set(2, 3, 6);
+        }
+        Path log = directory.resolve("log-0");
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[9] ^= 1; // In the payload of the first record
+        Files.write(log, bytes);
+        LoggedGraph.open(directory, LabelCodec.INTEGER, true).close();
+    }
+
+    @Test
+    public void testTornEarlierSegmentRejected() throws IOException {
+        Path directory = Files.createTempDirectory("logged-graph");
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            graph.set(1, 2, 5);
+            graph.set(2, 3, 6);
+        }
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            graph.set(3, 4, 7);
+        }
+        Path log = directory.resolve("log-0");
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        try {
+            LoggedGraph.open(directory, LabelCodec.INTEGER, true).close();
+            fail("expected a torn segment other than the last to be rejected");
+        } catch (IOException e) {
+            assertEquals("the damaged segment is left as it was", size - 3, Files.size(log));
+        }
+    }
+
+    @Test
+    public void testCompactThenReopen() throws Exception {
+        Path directory = Files.createTempDirectory("logged-graph");
+        try (LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, false)) {
+            for (int i = 0; i < 100; i++) {
+                graph.set("v" + i, "v" + (i + 1), i + 1);
+            }
+            graph.compact(ForkJoinPool.commonPool()).get();
+            graph.set("v0", "v1", 42);
+            graph.remove("v100");
+        }
+        assertEquals(Arrays.asList("log-1", "snapshot-1"), files(directory));
+        try (LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, false)) {
+            assertEquals(100, graph.vertices().size());
+            assertEquals(Collections.singletonMap("v1", 42), graph.targets("v0"));
+            assertEquals(Collections.singletonMap("v50", 50), graph.targets("v49"));
+            assertEquals(Collections.emptyMap(), graph.targets("v99"));
+        }
+    }
+
+    @Test
+    public void testConcurrentSyncWriters() throws Exception {
+        Path directory = Files.createTempDirectory("logged-graph");
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                final int offset = t * 100;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        graph.set(offset + i, -1, 1);
+                    }
+                });
+                threads[t].start();
+            }
+            graph.compact(ForkJoinPool.commonPool()).get();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        try (LoggedGraph<Integer> graph = LoggedGraph.open(directory, LabelCodec.INTEGER, true)) {
+            assertEquals(400, graph.sources(-1).size());
+        }
+    }
+
+    @Test
+    public void testUnencodableLabelChangesNothing() throws IOException {
+        Path directory = Files.createTempDirectory("logged-graph");
+        String huge = new String(new char[70_000]).replace('\0', 'x'); // Too long for writeUTF
+        try (LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, true)) {
+            graph.add("a");
+            try {
+                graph.add(huge);
+                fail("expected the label to be rejected");
+            } catch (UncheckedIOException e) {
+                // expected
+            }
+            try {
+                graph.set("a", huge, 1);
+                fail("expected the label to be rejected");
+            } catch (UncheckedIOException e) {
+                // expected
+            }
+            assertEquals(Collections.singleton("a"), graph.vertices());
+            assertEquals(Collections.emptyMap(), graph.targets("a"));
+        }
+        try (LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, true)) {
+            assertEquals(Collections.singleton("a"), graph.vertices());
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testClosedRejectsMutations() throws IOException {
+        Path directory = Files.createTempDirectory("logged-graph");
+        LoggedGraph<String> graph = LoggedGraph.open(directory, LabelCodec.STRING, false);
+        graph.close();
+        graph.add("a");
+    }
+}
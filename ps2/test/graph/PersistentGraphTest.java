@@ -0,0 +1,129 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for PersistentGraph and PersistentMap.
+ */
+public class PersistentGraphTest {
+
+    // Testing strategy
+    //   PersistentMap: put new key, put existing key with equal/different
+    //     value, remove present/absent key; keys with colliding hashes;
+    //     many random operations compared against HashMap; old versions
+    //     unchanged by later updates
+    //   PersistentGraph: withVertex new/existing, withEdge add/reweight/
+    //     remove/no-op, withoutVertex with in-, out- and self-loop edges;
+    //     every older version unchanged; mutators throw
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    /*
+     * A key whose hash is chosen by the test, to force collisions.
+     */
+    private static final class Key {
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override public boolean equals(Object that) {
+            return that instanceof Key && ((Key) that).id == id;
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Test
+    public void testMapCollisions() {
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 10; i++) {
+            map = map.put(new Key(i, 42), i);
+        }
+        map = map.put(new Key(99, 7), 99);
+        assertEquals(11, map.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), map.get(new Key(i, 42)));
+        }
+        for (int i = 0; i < 9; i++) {
+            map = map.remove(new Key(i, 42));
+        }
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(9), map.get(new Key(9, 42)));
+        assertNull(map.get(new Key(0, 42)));
+    }
+
+    @Test
+    public void testMapAgainstHashMap() {
+        Random random = new Random(1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+        PersistentMap<Integer, Integer> halfway = null;
+        Map<Integer, Integer> expectedHalfway = null;
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, step);
+                map = map.put(key, step);
+            }
+            if (step == 10000) {
+                halfway = map;
+                expectedHalfway = new HashMap<>(expected);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map.toMap());
+        assertEquals("old version unchanged", expectedHalfway, halfway.toMap());
+        assertSame(map, map.remove(-1));
+        PersistentMap<Integer, Integer> updated = map.put(-1, 0);
+        assertSame(updated, updated.put(-1, 0));
+    }
+
+    @Test
+    public void testGraphVersions() {
+        PersistentGraph<String> empty = PersistentGraph.empty();
+        PersistentGraph<String> one = empty.withEdge("a", "b", 2);
+        PersistentGraph<String> two = one.withEdge("b", "b", 3).withEdge("c", "a", 1);
+        PersistentGraph<String> three = two.withoutVertex("b");
+
+        assertEquals(0, empty.vertexCount());
+        assertEquals(2, one.vertexCount());
+        assertEquals(1, one.edgeCount());
+        assertEquals(3, two.edgeCount());
+        assertEquals(3, two.sources("b").get("b").intValue());
+        assertEquals(2, three.vertexCount());
+        assertEquals(1, three.edgeCount());
+        assertEquals(Collections.singletonMap("c", 1), three.sources("a"));
+        assertEquals(Collections.emptyMap(), three.targets("a"));
+        assertEquals("older version unchanged", 2, two.weight("a", "b"));
+
+        assertSame(one, one.withEdge("a", "b", 2));
+        assertSame(one, one.withVertex("a"));
+        assertSame(one, one.withoutVertex("z"));
+        assertEquals(0, one.withEdge("a", "b", 0).edgeCount());
+        assertEquals(2, one.withEdge("a", "b", 0).vertexCount());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testGraphImmutable() {
+        PersistentGraph.<String>empty().add("a");
+    }
+}
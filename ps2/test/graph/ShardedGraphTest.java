@@ -0,0 +1,190 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for ShardedGraph.
+ *
+ * This class runs the GraphInstanceTest tests against an in-process
+ * ShardedGraph, as well as tests for that particular implementation.
+ */
+public class ShardedGraphTest extends GraphInstanceTest {
+
+    /*
+     * Provide a ShardedGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return ShardedGraph.inProcess(3);
+    }
+
+    // Testing strategy for ShardedGraph
+    //   shards: one, several in-process, several local processes
+    //   edges within one shard, across shards, self-loops
+    //   remove() a vertex with edges in other shards
+    //   bridge(): no candidates, candidates in several shards, no bridge,
+    //     heaviest first hop wins; equally heavy bridges in several shards,
+    //     broken by a comparator
+    //   remote shard: a request that cannot be encoded is not sent, and the
+    //     connection stays in step for the next one
+    //   set() whose target's shard fails after the source's shard changed:
+    //     the edge keeps its old weight in both shards
+
+    /*
+     * Apply the same random operations to graph and to a reference graph,
+     * checking that they answer alike.
+     */
+    private static void checkAgainstReference(Graph<String> graph, long seed) {
+        Graph<String> reference = Graph.empty();
+        Random random = new Random(seed);
+        for (int i = 0; i < 400; i++) {
+            String u = "v" + random.nextInt(12);
+            String v = "v" + random.nextInt(12);
+            switch (random.nextInt(6)) {
+            case 0:
+                assertEquals(reference.add(u), graph.add(u));
+                break;
+            case 1:
+                assertEquals(reference.remove(u), graph.remove(u));
+                break;
+            default:
+                int weight = random.nextInt(4);
+                assertEquals(reference.set(u, v, weight), graph.set(u, v, weight));
+            }
+        }
+        assertEquals(reference.vertices(), graph.vertices());
+        for (String vertex : reference.vertices()) {
+            assertEquals(reference.targets(vertex), graph.targets(vertex));
+            assertEquals(reference.sources(vertex), graph.sources(vertex));
+        }
+    }
+
+    @Test
+    public void testMatchesReferenceInProcess() {
+        checkAgainstReference(ShardedGraph.inProcess(1), 1);
+        checkAgainstReference(ShardedGraph.inProcess(4), 2);
+    }
+
+    @Test
+    public void testRemoveAcrossShards() {
+        ShardedGraph<String> graph = ShardedGraph.inProcess(5);
+        for (String other : Arrays.asList("a", "b", "c", "d", "e", "f")) {
+            graph.set("hub", other, 1);
+            graph.set(other, "hub", 2);
+        }
+        graph.set("hub", "hub", 3);
+        assertTrue(graph.remove("hub"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "e", "f")), graph.vertices());
+        for (String other : graph.vertices()) {
+            assertTrue(graph.targets(other).isEmpty());
+            assertTrue(graph.sources(other).isEmpty());
+        }
+    }
+
+    @Test
+    public void testBridge() {
+        ShardedGraph<String> graph = ShardedGraph.inProcess(4);
+        assertNull(graph.bridge("a", "z"));
+        graph.set("a", "b1", 1);
+        graph.set("a", "b2", 5);
+        graph.set("a", "b3", 9);
+        graph.set("b1", "z", 7);
+        graph.set("b2", "z", 1);
+        assertEquals("b2", graph.bridge("a", "z"));
+        assertNull(graph.bridge("b3", "z"));
+        graph.set("b3", "z", 1);
+        assertEquals("b3", graph.bridge("a", "z"));
+    }
+
+    @Test
+    public void testBridgeTiesPreferFirstInOrder() {
+        ShardedGraph<String> graph = ShardedGraph.inProcess(4);
+        for (String b : Arrays.asList("b5", "b3", "b9", "b1", "b7")) {
+            graph.set("a", b, 2);
+            graph.set(b, "z", 1);
+        }
+        graph.set("a", "b0", 1);
+        graph.set("b0", "z", 1);
+        assertEquals("b1", graph.bridge("a", "z", Comparator.<String>naturalOrder()));
+        assertEquals("b9", graph.bridge("a", "z", Comparator.<String>reverseOrder()));
+    }
+
+    @Test
+    public void testLocalProcesses() throws IOException {
+        try (ShardedGraph<String> graph = ShardedGraph.launchStrings(3)) {
+            assertEquals(3, graph.shardCount());
+            checkAgainstReference(graph, 3);
+            graph.set("x", "y", 2);
+            graph.set("y", "z", 1);
+            assertEquals("y", graph.bridge("x", "z"));
+        }
+    }
+
+    @Test
+    public void testRemoteShardUnencodableLabel() throws IOException {
+        try (ShardServer<String> server = new ShardServer<>(0, LabelCodec.STRING);
+                RemoteShard<String> shard = new RemoteShard<>(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()), LabelCodec.STRING)) {
+            char[] huge = new char[70_000]; // writeUTF() takes at most 65535 bytes
+            Arrays.fill(huge, 'x');
+            try {
+                shard.setTarget("a", new String(huge), 1);
+                fail("expected the label to be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+            assertTrue(shard.add("a"));
+            assertEquals(0, shard.setTarget("a", "b", 2));
+            assertEquals(Collections.singletonMap("b", 2), shard.targets("a"));
+        }
+    }
+
+    @Test
+    public void testSetRolledBackWhenTargetShardFails() throws IOException {
+        AtomicInteger writes = new AtomicInteger();
+        AtomicInteger failing = new AtomicInteger(-1);
+        LabelCodec<String> codec = new LabelCodec<String>() {
+            @Override public void write(String label, DataOutput out) throws IOException {
+                if (writes.incrementAndGet() == failing.get()) {
+                    throw new IOException("refused");
+                }
+                LabelCodec.STRING.write(label, out);
+            }
+
+            @Override public String read(DataInput in) throws IOException {
+                return LabelCodec.STRING.read(in);
+            }
+        };
+        try (ShardServer<String> first = new ShardServer<>(0, LabelCodec.STRING);
+                ShardServer<String> second = new ShardServer<>(0, LabelCodec.STRING);
+                ShardedGraph<String> graph = ShardedGraph.connect(Arrays.asList(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), first.port()),
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), second.port())), codec)) {
+            graph.set("a", "b", 2);
+            failing.set(writes.get() + 3); // the first label of setSource(), after setTarget()'s two
+            try {
+                graph.set("a", "b", 5);
+                fail("expected the target's shard to fail");
+            } catch (UncheckedIOException e) {
+                // expected
+            }
+            assertEquals(Collections.singletonMap("b", 2), graph.targets("a"));
+            assertEquals(Collections.singletonMap("a", 2), graph.sources("b"));
+            assertEquals(2, graph.set("a", "b", 3));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for SnapshotGraph.
+ *
+ * This class runs the GraphInstanceTest tests against SnapshotGraph, as
+ * well as tests for that particular implementation.
+ */
+public class SnapshotGraphTest extends GraphInstanceTest {
+
+    /*
+     * Provide a SnapshotGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new SnapshotGraph<>();
+    }
+
+    // Testing strategy for SnapshotGraph
+    //   snapshot() before and after add, set, remove; mutations that change
+    //   nothing; concurrent writers
+
+    @Test
+    public void testSnapshotsAreStable() {
+        SnapshotGraph<String> graph = new SnapshotGraph<>();
+        PersistentGraph<String> before = graph.snapshot();
+        assertEquals(0, graph.set("a", "b", 4));
+        PersistentGraph<String> after = graph.snapshot();
+        assertEquals(4, graph.set("a", "b", 5));
+        assertTrue(graph.remove("b"));
+        assertFalse(graph.remove("b"));
+        assertFalse(graph.add("a"));
+
+        assertEquals(0, before.vertexCount());
+        assertEquals(4, after.weight("a", "b"));
+        assertEquals(Collections.singleton("a"), graph.vertices());
+        assertSame(graph.snapshot(), graph.snapshot());
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        SnapshotGraph<Integer> graph = new SnapshotGraph<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    graph.set(offset + i, -1, 1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, graph.snapshot().edgeCount());
+        assertEquals(4000, graph.sources(-1).size());
+    }
+}
@@ -0,0 +1,41 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for VersionedGraph.
+ *
+ * This class runs the GraphInstanceTest tests against VersionedGraph, as
+ * well as tests for that particular implementation.
+ */
+public class VersionedGraphTest extends GraphInstanceTest {
+
+    /*
+     * Provide a VersionedGraph for tests in GraphInstanceTest.
+     */
+    @Override public Graph<String> emptyInstance() {
+        return new VersionedGraph<>(Graph.empty());
+    }
+
+    // Testing strategy for VersionedGraph.version()
+    //   add/set/remove that change the graph, that do not change it
+
+    @Test
+    public void testVersionCountsChanges() {
+        VersionedGraph<String> graph = new VersionedGraph<>(Graph.empty());
+        assertEquals(0, graph.version());
+        graph.add("a");
+        graph.add("a");
+        assertEquals("duplicate add is not a change", 1, graph.version());
+        graph.set("a", "b", 2);
+        graph.set("a", "b", 2);
+        assertEquals("same weight is not a change", 2, graph.version());
+        graph.set("b", "a", 0);
+        graph.remove("c");
+        assertEquals("no-op set and remove", 2, graph.version());
+        graph.remove("b");
+        assertEquals(3, graph.version());
+    }
+}
@@ -0,0 +1,130 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for BridgeCache.
+ */
+public class BridgeCacheTest {
+
+    // Testing strategy
+    //   BridgeCache(): small maximum size, maximum size of 2^30 or more
+    //   get(): pair cached with a bridge, cached with NO_WORD, not cached;
+    //     graph version same as cached entries, newer, older
+    //   put(): cache not full, full with a hotter or colder candidate;
+    //     version older than the cache's
+    //   counters: hits, misses, evictions after each of the above
+    //   concurrency: readers and writers of one version, more pairs than fit
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testHugeMaximumSize() {
+        BridgeCache cache = new BridgeCache(1 << 30);
+        cache.put(1, 2, 7, 0);
+        assertEquals(Integer.valueOf(7), cache.get(1, 2, 0));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testHitMissAndNegativeEntries() {
+        BridgeCache cache = new BridgeCache(4);
+        assertNull(cache.get(1, 2, 0));
+        cache.put(1, 2, 7, 0);
+        cache.put(2, 3, Vocabulary.NO_WORD, 0);
+        assertEquals(Integer.valueOf(7), cache.get(1, 2, 0));
+        assertEquals(Integer.valueOf(Vocabulary.NO_WORD), cache.get(2, 3, 0));
+        assertNull("pairs are ordered", cache.get(2, 1, 0));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testNewerVersionInvalidates() {
+        BridgeCache cache = new BridgeCache(4);
+        cache.put(1, 2, 7, 3);
+        assertNull(cache.get(1, 2, 4));
+        assertEquals(0, cache.size());
+        cache.put(1, 2, 7, 3);
+        assertEquals("stale result not cached", 0, cache.size());
+    }
+
+    @Test
+    public void testOlderVersionMisses() {
+        BridgeCache cache = new BridgeCache(4);
+        cache.put(1, 2, 7, 4);
+        assertNull("entry is newer than the reader's graph", cache.get(1, 2, 3));
+        assertEquals(Integer.valueOf(7), cache.get(1, 2, 4));
+    }
+
+    @Test
+    public void testFrequencyAwareAdmission() {
+        BridgeCache cache = new BridgeCache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(1, 1, 0);
+            cache.get(2, 2, 0);
+        }
+        cache.put(1, 1, 10, 0);
+        cache.put(2, 2, 20, 0);
+
+        // a one-off pair is colder than the least recently used pair
+        cache.get(3, 3, 0);
+        cache.put(3, 3, 30, 0);
+        assertEquals(0, cache.evictionCount());
+        assertNull(cache.get(3, 3, 0));
+
+        // a pair requested more often than the victim replaces it
+        for (int i = 0; i < 10; i++) {
+            cache.get(4, 4, 0);
+        }
+        cache.put(4, 4, 40, 0);
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(40), cache.get(4, 4, 0));
+    }
+
+    @Test
+    public void testConcurrentGetAndPut() throws InterruptedException {
+        BridgeCache cache = new BridgeCache(64);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 4; t++) {
+            final Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20_000; i++) {
+                        int first = random.nextInt(200);
+                        Integer bridge = cache.get(first, first + 1, 5);
+                        if (bridge == null) {
+                            cache.put(first, first + 1, first * 3, 5);
+                        } else {
+                            assertEquals(first * 3, bridge.intValue());
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(80_000, cache.hitCount() + cache.missCount());
+        assertTrue(cache.size() <= 64);
+    }
+}
@@ -5,21 +5,546 @@ package poet;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
+import graph.GraphStatistics;
+import graph.ShardedGraph;
+
 /**
  * Tests for GraphPoet.
  */
 public class GraphPoetTest {
     
     // Testing strategy
-    //   TODO
+    //   GraphPoet(corpus), GraphPoet(corpus, vocabulary):
+    //     corpus has one line, several lines
+    //     vocabulary is fresh, shared with another poet
+    //   poem(input):
+    //     input has 0, 1, >1 words
+    //     adjacent input words have no bridge, one bridge, several bridges
+    //     input words in mixed case, words unknown to the corpus
+    //     whitespace between input words is one space, several spaces
+    //     bridge cache disabled, enabled; graph changed by learn() after caching
+    //     several equally heavy bridges
+    //   poems(inputs): no inputs, several inputs sharing word pairs
+    //   lazy(corpus, vocabulary): poems before, during, after materialize();
+    //     learn() after lazy construction
+    //   GraphPoet(corpus, vocabulary, shards): shards in local processes;
+    //     equally heavy bridges in different shards
+    //   close(): poet with shards, without
+    //   loadAsync(corpus, vocabulary, executor): several corpora at once,
+    //     missing corpus
+    //   poemAsync(input, executor)
+    //   poemsAsync(inputs, maxInFlight, executor, poems): no inputs, more
+    //     inputs than maxInFlight; executor runs poems in the calling thread,
+    //     on a pool; consumer throws
+    //   statistics(hubs): hubs labelled by word
+    //   GraphPoet(corpus, vocabulary, pipeline): punctuation stripped, stop
+    //     words dropped from corpus and input, stemming; poems keep dropped
+    //     input words verbatim
+    //   GraphPoet(corpus, vocabulary, options): max out-degree with ties,
+    //     min weight; learn() after pruning
+    //   explain(first, second, limit): no candidates, one, tied candidates;
+    //     limit below and above the count; unknown words; agrees with poem()
+    //     for eager, lazy and sharded poets, with tied candidates; limit not
+    //     positive
+    //   explainPoem(input, limit), explainPoems(inputs, limit): pairs in
+    //     order, words as written, dropped input words skipped
+    //   blend(poets, mix), blend(poets, mix, hotQueries, executor): bridges
+    //     from either poet, shares decide the bridge; component learn()
+    //     after blending, with the bridge cache enabled; learn() on the
+    //     blend; poets with different vocabularies
+    //   learn() concurrently with poem(), poems() and explain(), with the
+    //     bridge cache enabled: each sees the graph before or after a text
+    //   learn() stopped by a word a frozen vocabulary lacks: poems and
+    //     statistics see the adjacencies before it
+    //   learn() of a word whose id is chunks beyond the poet's other words,
+    //     with a shared vocabulary; poems with words in between
     
     @Test(expected=AssertionError.class)
     public void testAssertionsEnabled() {
         assert false; // make sure assertions are enabled with VM argument: -ea
     }
     
-    // TODO tests
+    @Test
+    public void testPoemSpecExample() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        assertEquals("Test of the system.", poet.poem("Test the system."));
+    }
+
+    @Test
+    public void testPoemEmptyAndSingleWord() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        assertEquals("", poet.poem(""));
+        assertEquals("Theater", poet.poem("  Theater "));
+    }
+
+    @Test
+    public void testPoemKeepsInputCaseAndCollapsesWhitespace() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        assertEquals("Seek TO explore strange new exciting synergies!",
+                poet.poem("Seek TO   explore new\texciting synergies!"));
+    }
+
+    @Test
+    public void testPoemBridgesAcrossLines() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        assertEquals("worlds to seek", poet.poem("worlds seek"));
+    }
+
+    @Test
+    public void testPoemHeaviestBridge() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        assertEquals("HELLO, hello, goodbye!", poet.poem("HELLO, goodbye!"));
+        assertEquals("unknown words", poet.poem("unknown words"));
+    }
+
+    @Test
+    public void testPoemTiedBridgesPreferEarliestWord() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        poet.learn("red then blue red and blue");
+        assertEquals("then was learned before and", "red then blue", poet.poem("red blue"));
+    }
+
+    @Test
+    public void testPipelineStripsPunctuation() throws IOException {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withPunctuationStripped();
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary(), pipeline);
+        assertEquals("HELLO, hello goodbye!", poet.poem("HELLO, goodbye!"));
+        assertEquals("Hello ... hello goodbye", poet.poem("Hello ... goodbye"));
+    }
+
+    @Test
+    public void testPipelineDropsStopWords() throws IOException {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withPunctuationStripped()
+                .withStopWords(Arrays.asList("a", "is", "of", "the"));
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary(), pipeline);
+        assertEquals("Test the mugar Omni", poet.poem("Test the Omni"));
+        assertEquals("the", poet.poem("the"));
+        assertEquals("this test sound system", poet.poem("this test sound system"));
+        poet.learn("the quick fox and the slow test");
+        assertEquals("Slow of test mugar", poet.poem("Slow of mugar"));
+    }
+
+    @Test
+    public void testPipelineStems() throws IOException {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withStemming();
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary(), pipeline);
+        assertEquals("strange new Worlds", poet.poem("strange Worlds"));
+        assertEquals("strange new world", poet.poem("strange world"));
+    }
+
+    @Test
+    public void testBuildMaxOutDegree() throws IOException {
+        BuildOptions options = BuildOptions.DEFAULT.withMaxOutDegree(1);
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary(), options);
+        assertEquals("new -> worlds is interned first", "strange new worlds", poet.poem("strange worlds"));
+        assertEquals("out life", poet.poem("out life"));
+        poet.learn("new life new life");
+        assertEquals("out new life", poet.poem("out life"));
+        assertEquals("strange worlds", poet.poem("strange worlds"));
+    }
+
+    @Test
+    public void testBuildMinWeight() throws IOException {
+        BuildOptions options = BuildOptions.DEFAULT.withMinWeight(2);
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary(), options);
+        assertEquals("hello, hello, hello,", poet.poem("hello, hello,"));
+        assertEquals("hello, goodbye!", poet.poem("hello, goodbye!"));
+        assertEquals(2, options.minWeight());
+    }
+
+    @Test
+    public void testExplain() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        BridgeExplanation explanation = poet.explain("Test", "THE", 3);
+        assertEquals("Test", explanation.first());
+        assertEquals("THE", explanation.second());
+        assertEquals("of", explanation.bridge());
+        assertEquals(1, explanation.total());
+        assertEquals(1, explanation.candidates().get(0).firstWeight());
+        assertEquals(1, explanation.candidates().get(0).secondWeight());
+        assertEquals(1, explanation.candidates().get(0).score());
+        assertNull(poet.explain("test", "of", 3).bridge());
+        assertEquals(0, poet.explain("test", "unknown", 3).total());
+    }
+
+    @Test
+    public void testExplainTiedCandidates() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        poet.learn("red then blue red and blue red then");
+        BridgeExplanation explanation = poet.explain("red", "blue", 5);
+        assertEquals(2, explanation.total());
+        assertEquals("then", explanation.candidates().get(0).word());
+        assertEquals(2, explanation.candidates().get(0).score());
+        assertEquals("and", explanation.candidates().get(1).word());
+        assertEquals(1, explanation.candidates().get(1).secondWeight());
+        BridgeExplanation top = poet.explain("red", "blue", 1);
+        assertEquals(1, top.candidates().size());
+        assertEquals(2, top.total());
+        assertEquals("red -> [then (2, 1)] and 1 more -> blue", top.toString());
+    }
+
+    @Test
+    public void testExplainAgreesWithPoem() throws IOException {
+        List<GraphPoet> poets = Arrays.asList(new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary()),
+                GraphPoet.lazy(new File("test/poet/seek.txt"), new Vocabulary()));
+        List<String> words = Arrays.asList("to", "explore", "strange", "new", "worlds", "seek", "out", "life",
+                "and", "civilizations");
+        for (GraphPoet poet : poets) {
+            for (String first : words) {
+                for (String second : words) {
+                    String poem = poet.poem(first + " " + second);
+                    String bridge = poet.explain(first, second, 1).bridge();
+                    assertEquals(poem, bridge == null ? first + " " + second : first + " " + bridge + " " + second);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExplainPoem() throws IOException {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withStopWords(Arrays.asList("of", "the"));
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary(), pipeline);
+        List<BridgeExplanation> explanations = poet.explainPoem("Test the Omni sound", 2);
+        assertEquals(2, explanations.size());
+        assertEquals("Test", explanations.get(0).first());
+        assertEquals("Omni", explanations.get(0).second());
+        assertEquals("mugar", explanations.get(0).bridge());
+        assertEquals("Omni", explanations.get(1).first());
+        assertEquals("theater", explanations.get(1).bridge());
+        assertEquals(Collections.emptyList(), poet.explainPoem("the", 2));
+
+        List<List<BridgeExplanation>> batch = poet.explainPoems(Arrays.asList("test omni", "", "TEST Omni"), 2);
+        assertEquals(3, batch.size());
+        assertEquals("mugar", batch.get(0).get(0).bridge());
+        assertEquals(Collections.emptyList(), batch.get(1));
+        assertEquals("TEST", batch.get(2).get(0).first());
+        assertEquals("mugar", batch.get(2).get(0).bridge());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testExplainLimitNotPositive() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        poet.explain("hello,", "goodbye!", 0);
+    }
+
+    @Test
+    public void testBlend() throws IOException {
+        Vocabulary vocabulary = new Vocabulary();
+        GraphPoet hello = new GraphPoet(new File("test/poet/hello.txt"), vocabulary);
+        GraphPoet seek = new GraphPoet(new File("test/poet/seek.txt"), vocabulary);
+        hello.learn("red then blue red then blue red then blue");
+        seek.learn("red and blue red and blue");
+
+        GraphPoet mostlyHello = GraphPoet.blend(Arrays.asList(hello, seek), Arrays.asList(9.0, 1.0));
+        assertEquals("strange new worlds", mostlyHello.poem("strange worlds"));
+        assertEquals("hello, hello, goodbye!", mostlyHello.poem("hello, goodbye!"));
+        assertEquals("red then blue", mostlyHello.poem("red blue"));
+
+        GraphPoet mostlySeek = GraphPoet.blend(Arrays.asList(hello, seek), Arrays.asList(1.0, 9.0), 2,
+                ForkJoinPool.commonPool());
+        mostlySeek.enableBridgeCache(16);
+        assertEquals("red and blue", mostlySeek.poem("red blue"));
+        assertEquals("red and blue", mostlySeek.poem("red blue"));
+        hello.learn(String.join(" ", Collections.nCopies(30, "red then blue")));
+        assertEquals("red then blue", mostlySeek.poem("red blue"));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testBlendLearn() throws IOException {
+        GraphPoet hello = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        GraphPoet.blend(Arrays.asList(hello), Arrays.asList(1.0)).learn("more words");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBlendDifferentVocabularies() throws IOException {
+        GraphPoet hello = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        GraphPoet seek = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        GraphPoet.blend(Arrays.asList(hello, seek), Arrays.asList(1.0, 1.0));
+    }
+
+    @Test
+    public void testPoetsShareVocabulary() throws IOException {
+        Vocabulary vocabulary = new Vocabulary();
+        GraphPoet hello = new GraphPoet(new File("test/poet/hello.txt"), vocabulary);
+        int size = vocabulary.size();
+        GraphPoet again = new GraphPoet(new File("test/poet/hello.txt"), vocabulary);
+        assertEquals("same corpus adds no words", size, vocabulary.size());
+        GraphPoet seek = new GraphPoet(new File("test/poet/seek.txt"), vocabulary);
+
+        assertEquals(hello.poem("hello, goodbye!"), again.poem("hello, goodbye!"));
+        assertEquals("words of other poets are not bridges", "hello, goodbye!", seek.poem("hello, goodbye!"));
+    }
+
+    @Test
+    public void testBridgeCacheInvalidatedByLearn() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        BridgeCache cache = poet.enableBridgeCache(16);
+        assertEquals("explore strange new", poet.poem("explore new"));
+        assertEquals("new life", poet.poem("new life"));
+        assertEquals("explore strange new", poet.poem("explore new"));
+        assertEquals("new life", poet.poem("new life"));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+
+        poet.learn("new wave life new wave life");
+        assertEquals("new wave life", poet.poem("new life"));
+        assertEquals(3, cache.missCount());
+    }
+
+    @Test
+    public void testPoemsMatchPoem() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        assertEquals(Collections.emptyList(), poet.poems(Collections.emptyList()));
+        assertEquals(Arrays.asList("Test of the system.", "", "test of THE Theater", "Test of the system."),
+                poet.poems(Arrays.asList("Test the system.", "", "test THE Theater", "Test the system.")));
+    }
+
+    @Test
+    public void testLazyPoetMatchesEagerPoet() throws Exception {
+        GraphPoet eager = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        GraphPoet lazy = GraphPoet.lazy(new File("test/poet/seek.txt"), new Vocabulary());
+        List<String> inputs = Arrays.asList("worlds seek", "Seek TO explore new exciting synergies!", "new life");
+        assertEquals(eager.poems(inputs), lazy.poems(inputs));
+        lazy.materialize(ForkJoinPool.commonPool()).get();
+        assertEquals(eager.poems(inputs), lazy.poems(inputs));
+        assertEquals(eager.statistics(2).edgeCount(), lazy.statistics(2).edgeCount());
+    }
+
+    @Test
+    public void testLazyPoetLearns() throws IOException {
+        GraphPoet poet = GraphPoet.lazy(new File("test/poet/seek.txt"), new Vocabulary());
+        BridgeCache cache = poet.enableBridgeCache(16);
+        assertEquals("new life", poet.poem("new life"));
+        poet.learn("new wave life new wave life");
+        assertEquals("new wave life", poet.poem("new life"));
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void testShardedPoetMatchesPoet() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        try (GraphPoet sharded = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary(),
+                ShardedGraph.launchIntegers(2))) {
+            List<String> inputs = Arrays.asList("worlds seek", "Seek TO explore new exciting synergies!", "new life");
+            assertEquals(poet.poems(inputs), sharded.poems(inputs));
+        }
+    }
+
+    @Test
+    public void testCloseClosesShards() throws IOException {
+        ShardedGraph<Integer> shards = ShardedGraph.launchIntegers(2);
+        GraphPoet sharded = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary(), shards);
+        sharded.close();
+        try {
+            shards.targets(0);
+            fail("expected the shards to be closed");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary()).close();
+    }
+
+    @Test
+    public void testShardedPoetBreaksTiesLikePoet() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/ties.txt"), new Vocabulary());
+        assertEquals("start x end", poet.poem("start end"));
+        try (ShardedGraph<Integer> shards = ShardedGraph.launchIntegers(3)) {
+            GraphPoet sharded = new GraphPoet(new File("test/poet/ties.txt"), new Vocabulary(), shards);
+            for (int i = 0; i < 20; i++) {
+                assertEquals("start x end", sharded.poem("start end"));
+            }
+        }
+    }
+
+    @Test
+    public void testExplainShardedAgreesWithPoem() throws IOException {
+        try (ShardedGraph<Integer> shards = ShardedGraph.launchIntegers(3)) {
+            GraphPoet sharded = new GraphPoet(new File("test/poet/ties.txt"), new Vocabulary(), shards);
+            BridgeExplanation explanation = sharded.explain("start", "end", 3);
+            assertEquals("[x (1, 1), y (1, 1), z (1, 1)]", explanation.candidates().toString());
+            assertEquals("start " + explanation.bridge() + " end", sharded.poem("start end"));
+        }
+    }
+
+    @Test
+    public void testLoadAsyncMatchesConstructor() throws Exception {
+        Vocabulary vocabulary = new Vocabulary();
+        CompletableFuture<GraphPoet> seek = GraphPoet.loadAsync(Paths.get("test/poet/seek.txt"), vocabulary,
+                ForkJoinPool.commonPool());
+        CompletableFuture<GraphPoet> hello = GraphPoet.loadAsync(Paths.get("test/poet/hello.txt"), vocabulary,
+                ForkJoinPool.commonPool());
+        GraphPoet expected = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        assertEquals(expected.poem("worlds seek"), seek.get().poem("worlds seek"));
+        assertEquals("HELLO, hello, goodbye!", hello.get().poem("HELLO, goodbye!"));
+    }
+
+    @Test
+    public void testLoadAsyncMissingCorpus() {
+        CompletableFuture<GraphPoet> poet = GraphPoet.loadAsync(Paths.get("test/poet/missing.txt"), new Vocabulary(),
+                ForkJoinPool.commonPool());
+        try {
+            poet.join();
+            fail("expected failure");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testPoemAsync() throws Exception {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        assertEquals("Test of the system.", poet.poemAsync("Test the system.", ForkJoinPool.commonPool()).get());
+    }
+
+    /*
+     * Inputs "worlds seek" repeated, counting how many have been read.
+     */
+    private static Iterator<String> inputs(int count, AtomicInteger read) {
+        return new Iterator<String>() {
+            @Override public boolean hasNext() {
+                return read.get() < count;
+            }
+
+            @Override public String next() {
+                read.incrementAndGet();
+                return "worlds seek " + read.get();
+            }
+        };
+    }
+
+    @Test
+    public void testPoemsAsyncBoundsInFlight() throws Exception {
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        for (boolean direct : new boolean[] { true, false }) {
+            AtomicInteger read = new AtomicInteger();
+            List<String> poems = new ArrayList<>();
+            List<Integer> backlog = new ArrayList<>();
+            poet.poemsAsync(inputs(5000, read), 4, direct ? Runnable::run : ForkJoinPool.commonPool(), poem -> {
+                backlog.add(read.get() - poems.size());
+                poems.add(poem);
+            }).get();
+            assertEquals(5000, poems.size());
+            for (int i = 0; i < poems.size(); i++) {
+                assertEquals("worlds to seek " + (i + 1), poems.get(i));
+            }
+            assertTrue("at most 4 inputs read ahead", Collections.max(backlog) <= 4);
+        }
+        poet.poemsAsync(Collections.<String>emptyIterator(), 1, Runnable::run, poem -> fail("no poems")).get();
+    }
+
+    @Test
+    public void testPoemsAsyncConsumerFails() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/seek.txt"), new Vocabulary());
+        AtomicInteger read = new AtomicInteger();
+        CompletableFuture<Void> done = poet.poemsAsync(inputs(1000, read), 2, ForkJoinPool.commonPool(), poem -> {
+            throw new IllegalStateException("full");
+        });
+        try {
+            done.join();
+            fail("expected failure");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue("stopped reading inputs", read.get() < 1000);
+    }
+
+    @Test
+    public void testLearnStoppedByFrozenVocabulary() throws IOException {
+        Path corpus = Files.createTempFile("corpus", ".txt");
+        Files.write(corpus, "x y z".getBytes(StandardCharsets.UTF_8));
+        Vocabulary vocabulary = new Vocabulary();
+        GraphPoet poet = new GraphPoet(corpus.toFile(), vocabulary);
+        Files.delete(corpus);
+        vocabulary.freeze();
+        assertEquals("x y", poet.poem("x y"));
+        try {
+            poet.learn("x z y unknown x");
+            fail("expected the unknown word to be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals("x z y", poet.poem("x y"));
+        assertEquals("x -> [z (1, 1)] -> y", poet.explain("x", "y", 5).toString());
+    }
+
+    @Test
+    public void testLearnWordFarBeyondOtherWords() throws IOException {
+        Path corpus = Files.createTempFile("corpus", ".txt");
+        Files.write(corpus, "a b c".getBytes(StandardCharsets.UTF_8));
+        Vocabulary vocabulary = new Vocabulary();
+        GraphPoet poet = new GraphPoet(corpus.toFile(), vocabulary);
+        Files.delete(corpus);
+        for (int i = 0; i < 700; i++) {
+            vocabulary.intern("w" + i); // words of another poet on the vocabulary
+        }
+        poet.learn("a zzz");
+        assertEquals("w400 a", poet.poem("w400 a"));
+        assertEquals("a w400", poet.poem("a w400"));
+        assertEquals("a b c", poet.poem("a c"));
+    }
+
+    @Test
+    public void testReadersConcurrentWithLearn() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        poet.enableBridgeCache(16);
+        AtomicBoolean learning = new AtomicBoolean(true);
+        List<CompletableFuture<Set<String>>> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            readers.add(CompletableFuture.supplyAsync(() -> {
+                Set<String> seen = new HashSet<>();
+                do {
+                    seen.add(poet.poem("Test the Test the"));
+                    seen.add(String.join(" ", poet.poems(Arrays.asList("Test the", "Test the"))));
+                    List<BridgeExplanation> explained = poet.explainPoem("Test the Test the", 1);
+                    seen.add("Test " + explained.get(0).bridge() + " the Test " + explained.get(2).bridge() + " the");
+                } while (learning.get());
+                return seen;
+            }, ForkJoinPool.commonPool()));
+        }
+        for (int i = 0; i < 200; i++) {
+            // "drive" outweighs "of" only once the text is learned twice
+            poet.learn(i == 50 || i == 100 ? "test drive the" : "filler words number " + i);
+        }
+        learning.set(false);
+        Set<String> allowed = new HashSet<>(Arrays.asList("Test of the Test of the",
+                "Test drive the Test drive the"));
+        for (CompletableFuture<Set<String>> reader : readers) {
+            Set<String> seen = reader.join();
+            seen.removeAll(allowed);
+            assertEquals("poems mixing two graphs", Collections.emptySet(), seen);
+        }
+        assertEquals("Test drive the Test drive the", poet.poem("Test the Test the"));
+    }
+
+    @Test
+    public void testStatisticsLabelledByWord() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary());
+        GraphStatistics<String> statistics = poet.statistics(1);
+        assertEquals(2, statistics.vertexCount());
+        assertEquals(2, statistics.edgeCount());
+        assertEquals(Collections.singletonMap("hello,", 2), statistics.outHubs());
+    }
     
 }
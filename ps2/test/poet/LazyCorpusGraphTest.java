@@ -0,0 +1,94 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for LazyCorpusGraph.
+ */
+public class LazyCorpusGraphTest {
+
+    // Testing strategy
+    //   corpus: empty, repeated words, sparse ids; weights fitting one byte,
+    //     two bytes, four bytes
+    //   edges: read before materialize(), after; vertex absent, first, last
+    //   mutation: first mutation builds the graph eagerly
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testEmptyCorpus() throws Exception {
+        LazyCorpusGraph graph = new LazyCorpusGraph(new int[0]);
+        assertEquals(Collections.emptySet(), graph.vertices());
+        assertEquals(Collections.emptyMap(), graph.targets(3));
+        graph.materialize(Runnable::run).get();
+    }
+
+    @Test
+    public void testEdgesCountedOnDemand() {
+        LazyCorpusGraph graph = new LazyCorpusGraph(new int[] { 70, 5, 70, 70, 900, 5 });
+        assertEquals(new HashSet<>(Arrays.asList(5, 70, 900)), graph.vertices());
+        assertEquals(0, graph.materializedCount());
+
+        Map<Integer, Integer> targets = new HashMap<>();
+        targets.put(5, 1);
+        targets.put(70, 1);
+        targets.put(900, 1);
+        assertEquals(targets, graph.targets(70));
+        assertEquals(1, graph.materializedCount());
+        assertEquals(Collections.singletonMap(70, 1), graph.targets(5));
+        assertEquals(Collections.emptyMap(), graph.sources(900 + 1));
+
+        Map<Integer, Integer> sources = new HashMap<>();
+        sources.put(5, 1);
+        sources.put(70, 1);
+        assertEquals(sources, graph.sources(70));
+        sources.remove(5);
+        sources.put(900, 1);
+        assertEquals(sources, graph.sources(5));
+    }
+
+    @Test
+    public void testWideWeights() {
+        int[] corpus = new int[140_000];
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i] = i % 2 == 0 ? 1 : i < 1000 ? 2 : 3;
+        }
+        LazyCorpusGraph graph = new LazyCorpusGraph(corpus);
+        Map<Integer, Integer> expected = new HashMap<>();
+        expected.put(2, 500);
+        expected.put(3, 69_500);
+        assertEquals(expected, graph.targets(1));
+        assertEquals(Collections.singletonMap(1, 500), graph.targets(2));
+    }
+
+    @Test
+    public void testMaterializeCountsEveryWord() throws Exception {
+        LazyCorpusGraph graph = new LazyCorpusGraph(new int[] { 1, 2, 1, 2, 3 });
+        graph.materialize(ForkJoinPool.commonPool()).get();
+        assertEquals(3, graph.materializedCount());
+        assertEquals(Collections.singletonMap(2, 2), graph.targets(1));
+        assertEquals(Collections.singletonMap(2, 1), graph.sources(3));
+    }
+
+    @Test
+    public void testMutationBuildsEagerly() {
+        LazyCorpusGraph graph = new LazyCorpusGraph(new int[] { 1, 2, 1, 2 });
+        assertEquals(2, graph.set(1, 2, 7));
+        assertEquals(Collections.singletonMap(1, 7), graph.sources(2));
+        assertEquals(Collections.singletonMap(1, 1), graph.targets(2));
+        assertTrue(graph.remove(1));
+        assertEquals(Collections.singleton(2), graph.vertices());
+    }
+}
@@ -0,0 +1,162 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for PoemServer, PoemBatcher and LoadGenerator, over loopback.
+ */
+public class PoemServerTest {
+
+    // Testing strategy
+    //   PoemServer:
+    //     GET with input parameter, GET without input, POST body
+    //     latency header present; /stats counts requests
+    //   PoemBatcher: one request, many concurrent requests, submit after close,
+    //     batch rejected by the executor,
+    //     submit racing close
+    //   LoadGenerator: several clients against a running server
+
+    private static final String CORPUS = "src/poet/mugar-omni-theater.txt";
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream();
+                Scanner scanner = new Scanner(in, "UTF-8").useDelimiter("\\A")) {
+            return scanner.hasNext() ? scanner.next() : "";
+        }
+    }
+
+    @Test
+    public void testGetPoem() throws IOException {
+        try (PoemServer server = new PoemServer(new GraphPoet(new File(CORPUS), new Vocabulary()), 0, 8, 100)) {
+            URL url = new URL("http://127.0.0.1:" + server.port() + "/poem?input=Test+the%20system.");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("Test of the system.", read(connection));
+            assertNotNull(connection.getHeaderField(PoemServer.LATENCY_HEADER));
+            assertEquals(1, server.latencies().count());
+        }
+    }
+
+    @Test
+    public void testGetWithoutInput() throws IOException {
+        try (PoemServer server = new PoemServer(new GraphPoet(new File(CORPUS), new Vocabulary()), 0, 8, 100)) {
+            URL url = new URL("http://127.0.0.1:" + server.port() + "/poem");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(400, connection.getResponseCode());
+        }
+    }
+
+    @Test
+    public void testPostPoemAndStats() throws IOException {
+        try (PoemServer server = new PoemServer(new GraphPoet(new File(CORPUS), new Vocabulary()), 0, 8, 100)) {
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + server.port() + "/poem").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.getOutputStream().write("a test the system".getBytes(StandardCharsets.UTF_8));
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("a test of the system", read(connection));
+
+            HttpURLConnection stats = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + server.port() + "/stats").openConnection();
+            assertTrue(read(stats).startsWith("requests 1\n"));
+        }
+    }
+
+    @Test
+    public void testBatcherAnswersConcurrentRequests() throws Exception {
+        GraphPoet poet = new GraphPoet(new File(CORPUS), new Vocabulary());
+        try (PoemBatcher batcher = new PoemBatcher(poet, 16, 10_000, ForkJoinPool.commonPool())) {
+            assertEquals("Test of the system.", batcher.submit("Test the system.").get());
+            List<CompletableFuture<String>> poems = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                poems.add(batcher.submit(i % 2 == 0 ? "Test the system." : "is test"));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i % 2 == 0 ? "Test of the system." : "is a test", poems.get(i).get());
+            }
+            assertEquals(101, batcher.requestCount());
+            assertTrue("expected batching, got " + batcher.batchCount() + " batches",
+                    batcher.batchCount() < 101);
+        }
+    }
+
+    @Test
+    public void testBatcherRejectsAfterClose() throws Exception {
+        GraphPoet poet = new GraphPoet(new File(CORPUS), new Vocabulary());
+        PoemBatcher batcher = new PoemBatcher(poet, 4, 0, ForkJoinPool.commonPool());
+        batcher.close();
+        assertTrue(batcher.submit("Test the system.").isCompletedExceptionally());
+    }
+
+    @Test
+    public void testSubmitRacingCloseNeverHangs() throws Exception {
+        GraphPoet poet = new GraphPoet(new File(CORPUS), new Vocabulary());
+        PoemBatcher batcher = new PoemBatcher(poet, 4, 0, ForkJoinPool.commonPool());
+        List<CompletableFuture<String>> poems = Collections.synchronizedList(new ArrayList<>());
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                poems.add(batcher.submit("Test the system."));
+            }
+        });
+        submitter.start();
+        batcher.close();
+        submitter.join();
+        for (CompletableFuture<String> poem : poems) {
+            try {
+                assertEquals("Test of the system.", poem.get(10, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    @Test
+    public void testBatcherFailsRejectedBatch() throws Exception {
+        GraphPoet poet = new GraphPoet(new File(CORPUS), new Vocabulary());
+        try (PoemBatcher batcher = new PoemBatcher(poet, 4, 0, runnable -> {
+            throw new RejectedExecutionException("no answerers");
+        })) {
+            batcher.submit("Test the system.").get(10, TimeUnit.SECONDS);
+            fail("expected the rejected batch to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testLoadGenerator() throws Exception {
+        try (PoemServer server = new PoemServer(new GraphPoet(new File(CORPUS), new Vocabulary()), 0, 32, 200)) {
+            LoadGenerator load = new LoadGenerator(server.port(), Arrays.asList("Test the system.", "is test"));
+            LoadGenerator.Result result = load.run(4, 25);
+            assertEquals(0, result.errors());
+            assertEquals(100, result.requests());
+            assertEquals(100, result.latencies().count());
+            assertEquals(100, server.latencies().count());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for PoetImage, through GraphPoet.writeImage() and GraphPoet.open().
+ */
+public class PoetImageTest {
+
+    // Testing strategy
+    //   writeImage(image, maxBridges): poet from one corpus, from a corpus
+    //     and learn(); shared vocabulary with words outside the graph;
+    //     bridge table covering every word, some words, none; pipeline not
+    //     default throws
+    //   open(image): poems equal the writing poet's, on spec examples and
+    //     random inputs; explain() agrees; learn() throws; not an image,
+    //     truncated image, offsets out of order or past their arrays throw
+    //     IOException
+
+    private static final List<String> INPUTS = Arrays.asList("Test the system.", "the Mugar Omni Theater",
+            "a test of the sound system", "red blue", "HELLO, goodbye!", "", "unknown words here");
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static Path temporary() throws IOException {
+        File file = File.createTempFile("poet", ".img");
+        file.deleteOnExit();
+        return file.toPath();
+    }
+
+    private static GraphPoet reopen(GraphPoet poet, int maxBridges) throws IOException {
+        Path image = temporary();
+        poet.writeImage(image, maxBridges);
+        return GraphPoet.open(image);
+    }
+
+    @Test
+    public void testOpenedPoetWritesSamePoems() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("src/poet/mugar-omni-theater.txt"), new Vocabulary());
+        poet.learn("red then blue red and blue");
+        for (int maxBridges : new int[] { PoetImage.DEFAULT_MAX_BRIDGES, 5, 0 }) {
+            GraphPoet opened = reopen(poet, maxBridges);
+            assertEquals(poet.poems(INPUTS), opened.poems(INPUTS));
+            assertEquals("Test of the system.", opened.poem("Test the system."));
+        }
+    }
+
+    @Test
+    public void testSharedVocabularyRenumbered() throws IOException {
+        Vocabulary vocabulary = new Vocabulary();
+        new GraphPoet(new File("test/poet/seek.txt"), vocabulary);
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), vocabulary);
+        poet.learn("red then blue red and blue");
+        GraphPoet opened = reopen(poet, PoetImage.DEFAULT_MAX_BRIDGES);
+        assertEquals("and was interned first, by seek.txt", "red and blue", poet.poem("red blue"));
+        assertEquals("tie broken as before", "red and blue", opened.poem("red blue"));
+        assertEquals(poet.poems(INPUTS), opened.poems(INPUTS));
+        assertEquals(poet.statistics(2).edgeCount(), opened.statistics(2).edgeCount());
+    }
+
+    @Test
+    public void testRandomCorpus() throws IOException {
+        Random random = new Random(49);
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            corpus.append('w').append(random.nextInt(60)).append(' ');
+        }
+        Path text = temporary();
+        Files.write(text, corpus.toString().getBytes("UTF-8"));
+        GraphPoet poet = new GraphPoet(text.toFile(), new Vocabulary());
+        GraphPoet full = reopen(poet, PoetImage.DEFAULT_MAX_BRIDGES);
+        GraphPoet partial = reopen(poet, 500);
+        for (int i = 0; i < 200; i++) {
+            String input = "w" + random.nextInt(70) + " W" + random.nextInt(70) + " w" + random.nextInt(70);
+            String expected = poet.poem(input);
+            assertEquals(expected, full.poem(input));
+            assertEquals(expected, partial.poem(input));
+        }
+        assertEquals(poet.explain("w1", "w2", 3).candidates().toString(),
+                full.explain("w1", "w2", 3).candidates().toString());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testOpenedPoetCannotLearn() throws IOException {
+        GraphPoet opened = reopen(new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary()), 10);
+        opened.learn("more words");
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testPipelineNotDefault() throws IOException {
+        GraphPoet poet = new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary(),
+                TokenPipeline.DEFAULT.withStemming());
+        poet.writeImage(temporary(), 10);
+    }
+
+    @Test(expected=IOException.class)
+    public void testNotAnImage() throws IOException {
+        GraphPoet.open(new File("test/poet/hello.txt").toPath());
+    }
+
+    @Test(expected=IOException.class)
+    public void testTruncatedImage() throws IOException {
+        Path image = temporary();
+        new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary()).writeImage(image, 10);
+        byte[] bytes = Files.readAllBytes(image);
+        Files.write(image, Arrays.copyOf(bytes, bytes.length - 1));
+        GraphPoet.open(image);
+    }
+
+    /*
+     * Write an image of hello.txt with one int of its out-offsets replaced.
+     */
+    private static Path corruptOutOffset(int index, int offset) throws IOException {
+        Path image = temporary();
+        new GraphPoet(new File("test/poet/hello.txt"), new Vocabulary()).writeImage(image, 10);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(image));
+        int words = bytes.getInt(8);
+        bytes.putInt(4 * (7 + words + 1 + index), offset); // header, then word offsets
+        Files.write(image, bytes.array());
+        return image;
+    }
+
+    @Test(expected=IOException.class)
+    public void testOffsetPastEdges() throws IOException {
+        GraphPoet.open(corruptOutOffset(1, Integer.MAX_VALUE));
+    }
+
+    @Test(expected=IOException.class)
+    public void testOffsetDecreasing() throws IOException {
+        GraphPoet.open(corruptOutOffset(1, -1));
+    }
+}
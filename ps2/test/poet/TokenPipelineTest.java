@@ -0,0 +1,116 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for TokenPipeline.
+ */
+public class TokenPipelineTest {
+
+    // Testing strategy
+    //   stages: default, punctuation stripped, stop words, stemming, all
+    //   word: ASCII, upper case, non-ASCII, supplementary characters,
+    //     only punctuation, inner punctuation, longer than the initial buffer
+    //   stop words: empty, given in mixed case or with punctuation, duplicated
+    //   stemming: "ies", "es", "s" endings and their exceptions, short words
+    //   normalize(String) vs normalize(byte[], start, end)
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static String normalizeBytes(TokenPipeline.Session session, String word) {
+        byte[] text = ("  " + word + " ").getBytes(StandardCharsets.UTF_8);
+        return session.normalize(text, 2, text.length - 1);
+    }
+
+    @Test
+    public void testDefaultFoldsCase() {
+        TokenPipeline.Session session = TokenPipeline.DEFAULT.session();
+        assertTrue(TokenPipeline.DEFAULT.isDefault());
+        assertEquals("hello,", session.normalize("HeLLo,"));
+        assertEquals("hello,", normalizeBytes(session, "HeLLo,"));
+        assertEquals("\u00e9t\u00e9", session.normalize("\u00c9T\u00c9"));
+        assertEquals("\u00e9t\u00e9", normalizeBytes(session, "\u00c9T\u00c9"));
+        assertEquals("\uD801\uDC28", session.normalize("\uD801\uDC00"));
+        assertEquals("!!!", session.normalize("!!!"));
+    }
+
+    @Test
+    public void testLongWord() {
+        char[] letters = new char[100];
+        Arrays.fill(letters, 'A');
+        String word = new String(letters);
+        TokenPipeline.Session session = TokenPipeline.DEFAULT.withPunctuationStripped().session();
+        assertEquals("ab", session.normalize("AB"));
+        assertEquals(word.toLowerCase(), session.normalize(word + "."));
+        assertEquals(word.toLowerCase(), normalizeBytes(session, word));
+        assertEquals("ab", session.normalize("(AB)"));
+    }
+
+    @Test
+    public void testPunctuationStripped() {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withPunctuationStripped();
+        TokenPipeline.Session session = pipeline.session();
+        assertFalse(pipeline.isDefault());
+        assertEquals("hello", session.normalize("Hello,"));
+        assertEquals("goodbye", normalizeBytes(session, "\"goodbye!\""));
+        assertEquals("don't", session.normalize("don't"));
+        assertEquals("caf\u00e9", normalizeBytes(session, "Caf\u00e9..."));
+        assertNull(session.normalize("--"));
+        assertNull(normalizeBytes(session, "?!"));
+    }
+
+    @Test
+    public void testStopWords() {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withPunctuationStripped()
+                .withStopWords(Arrays.asList("The", "a,", "of", "the", "!"));
+        TokenPipeline.Session session = pipeline.session();
+        assertNull(session.normalize("THE"));
+        assertNull(normalizeBytes(session, "the."));
+        assertNull(session.normalize("A"));
+        assertEquals("theater", session.normalize("Theater"));
+        assertEquals("an", session.normalize("an"));
+        assertEquals("t", session.normalize("t"));
+    }
+
+    @Test
+    public void testStopWordsEmpty() {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withStopWords(Collections.emptyList());
+        assertTrue(pipeline.isDefault());
+        assertEquals("the", pipeline.session().normalize("The"));
+    }
+
+    @Test
+    public void testStemming() {
+        TokenPipeline.Session session = TokenPipeline.DEFAULT.withStemming().session();
+        assertEquals("theory", session.normalize("theories"));
+        assertEquals("world", session.normalize("Worlds"));
+        assertEquals("horse", session.normalize("horses"));
+        assertEquals("civilization", normalizeBytes(session, "civilizations"));
+        assertEquals("aie", session.normalize("aies"));
+        assertEquals("toe", session.normalize("toes"));
+        assertEquals("glass", session.normalize("glass"));
+        assertEquals("corpus", session.normalize("corpus"));
+        assertEquals("is", session.normalize("is"));
+        assertEquals("as", session.normalize("as"));
+        assertEquals("doe", session.normalize("does"));
+    }
+
+    @Test
+    public void testAllStages() {
+        TokenPipeline pipeline = TokenPipeline.DEFAULT.withStemming().withStopWords(Arrays.asList("and"))
+                .withPunctuationStripped();
+        TokenPipeline.Session session = pipeline.session();
+        assertNull(session.normalize("And,"));
+        assertEquals("world", session.normalize("(Worlds)"));
+        assertEquals("TokenPipeline(fold, strip, stop, stem)", pipeline.toString());
+    }
+}
@@ -0,0 +1,123 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for Tokenizer.
+ */
+public class TokenizerTest {
+
+    // Testing strategy
+    //   text: empty, only whitespace, one word, words across 8-byte chunks,
+    //     every whitespace byte, non-ASCII words, random text
+    //   offset/length: whole array, strict sub-range
+    //   lowercase: false, true
+    //   whitespace(), lowercase(): every byte value
+    //   compare tokenize, tokenizeScalar and String.split("\\s+")
+
+    private static final String ALPHABET = "aZ \t\n\u000B\f\r\u00E9\u00C9\u4E16.,!Q";
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    private static List<String> tokenize(String text, boolean lowercase, boolean scalar) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        List<String> words = new ArrayList<>();
+        Tokenizer.SpanConsumer consumer = (word, start, end) -> words.add(Tokenizer.decode(word, start, end));
+        if (scalar) {
+            Tokenizer.tokenizeScalar(bytes, 0, bytes.length, lowercase, consumer);
+        } else {
+            Tokenizer.tokenize(bytes, 0, bytes.length, lowercase, consumer);
+        }
+        return words;
+    }
+
+    private static List<String> split(String text, boolean lowercase) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.split("\\s+")) {
+            if (!word.isEmpty()) {
+                words.add(lowercase ? asciiLowercase(word) : word);
+            }
+        }
+        return words;
+    }
+
+    private static String asciiLowercase(String word) {
+        StringBuilder lowered = new StringBuilder();
+        for (char c : word.toCharArray()) {
+            lowered.append(c >= 'A' && c <= 'Z' ? (char) (c | 0x20) : c);
+        }
+        return lowered.toString();
+    }
+
+    @Test
+    public void testEmptyAndWhitespace() {
+        assertEquals(Collections.emptyList(), tokenize("", true, false));
+        assertEquals(Collections.emptyList(), tokenize(" \t\n\u000B\f\r  \r\n", true, false));
+    }
+
+    @Test
+    public void testWordsAcrossChunks() {
+        String text = "  Hello, HELLO,\thello,\n\ngoodbye!  averyveryverylongword x";
+        List<String> expected = Arrays.asList("hello,", "hello,", "hello,", "goodbye!", "averyveryverylongword", "x");
+        assertEquals(expected, tokenize(text, true, false));
+        assertEquals(expected, tokenize(text, true, true));
+        assertEquals("Hello,", tokenize(text, false, false).get(0));
+    }
+
+    @Test
+    public void testNonAsciiWords() {
+        String text = "caf\u00C9 \u4E16\u754C  \u00C9T\u00C9";
+        assertEquals(Arrays.asList("caf\u00C9", "\u4E16\u754C", "\u00C9t\u00C9"), tokenize(text, true, false));
+    }
+
+    @Test
+    public void testSubRange() {
+        byte[] bytes = "XXXX Alpha beta GammaXXXX".getBytes(StandardCharsets.US_ASCII);
+        List<String> words = new ArrayList<>();
+        Tokenizer.tokenize(bytes, 5, 16, true, (word, start, end) -> words.add(Tokenizer.decode(word, start, end)));
+        assertEquals(Arrays.asList("alpha", "beta", "gamma"), words);
+        assertEquals("untouched outside the range", 'X', bytes[0]);
+        assertEquals('X', bytes[bytes.length - 1]);
+    }
+
+    @Test
+    public void testEveryByte() {
+        for (int b = 0; b < 256; b++) {
+            long x = 0x0101010101010101L * b;
+            boolean space = b == ' ' || (b >= '\t' && b <= '\r');
+            assertEquals("byte " + b, space ? 0x8080808080808080L : 0, Tokenizer.whitespace(x));
+            int lowered = b >= 'A' && b <= 'Z' ? b | 0x20 : b;
+            assertEquals("byte " + b, 0x0101010101010101L * lowered, Tokenizer.lowercase(x));
+        }
+    }
+
+    @Test
+    public void testRandomTextMatchesSplit() {
+        Random random = new Random(35);
+        for (int trial = 0; trial < 500; trial++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String input = text.toString();
+            for (boolean lowercase : new boolean[] { false, true }) {
+                List<String> expected = split(input, lowercase);
+                assertEquals(input, expected, tokenize(input, lowercase, false));
+                assertEquals(input, expected, tokenize(input, lowercase, true));
+            }
+        }
+    }
+}
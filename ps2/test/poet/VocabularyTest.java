@@ -0,0 +1,117 @@
+package poet;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for Vocabulary.
+ */
+public class VocabularyTest {
+
+    // Testing strategy
+    //   intern(token): new word, same spelling again, other spelling of a known
+    //     word; vocabulary frozen or not
+    //   lookup(token): known word in any case, unknown word
+    //   word(id): valid id, invalid id
+    //   freeze(): known words still readable, new words rejected
+    //   spellingCount(): normalized spellings not remembered, other
+    //     spellings remembered until frozen, bounded on many spellings
+
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false; // make sure assertions are enabled with VM argument: -ea
+    }
+
+    @Test
+    public void testInternNormalizesSpellings() {
+        Vocabulary vocabulary = new Vocabulary();
+        int hello = vocabulary.intern("Hello");
+        assertEquals(hello, vocabulary.intern("HELLO"));
+        assertEquals(hello, vocabulary.intern("hello"));
+        assertNotEquals(hello, vocabulary.intern("goodbye"));
+        assertEquals(2, vocabulary.size());
+        assertEquals("hello", vocabulary.word(hello));
+    }
+
+    @Test
+    public void testLookupDoesNotAdd() {
+        Vocabulary vocabulary = new Vocabulary();
+        int hello = vocabulary.intern("hello");
+        assertEquals(hello, vocabulary.lookup("hELLo"));
+        assertEquals(Vocabulary.NO_WORD, vocabulary.lookup("goodbye"));
+        assertEquals(1, vocabulary.size());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testWordUnknownId() {
+        new Vocabulary().word(0);
+    }
+
+    @Test
+    public void testFreeze() {
+        Vocabulary vocabulary = new Vocabulary();
+        int hello = vocabulary.intern("hello");
+        vocabulary.freeze();
+        assertTrue(vocabulary.isFrozen());
+        assertEquals(hello, vocabulary.intern("Hello"));
+        try {
+            vocabulary.intern("goodbye");
+            fail("expected frozen vocabulary to reject new words");
+        } catch (IllegalStateException e) {
+            assertEquals(1, vocabulary.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentIntern() throws InterruptedException {
+        final Vocabulary vocabulary = new Vocabulary();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    vocabulary.intern("w" + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, vocabulary.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("w" + i, vocabulary.word(vocabulary.lookup("W" + i)));
+        }
+    }
+
+    @Test
+    public void testSpellingsNotRememberedOnceFrozen() {
+        Vocabulary vocabulary = new Vocabulary();
+        int hello = vocabulary.intern("hello");
+        assertEquals("normalized spelling not remembered", 0, vocabulary.spellingCount());
+        assertEquals(hello, vocabulary.intern("Hello"));
+        assertEquals(1, vocabulary.spellingCount());
+        vocabulary.freeze();
+        assertEquals(hello, vocabulary.intern("HELLO"));
+        assertEquals(hello, vocabulary.intern("hELLO"));
+        assertEquals(1, vocabulary.spellingCount());
+    }
+
+    @Test
+    public void testSpellingsBounded() {
+        Vocabulary vocabulary = new Vocabulary();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            word.append('a');
+        }
+        // 2^20 spellings of one word, by the case of each letter
+        for (int mask = 0; mask < 1 << 20; mask++) {
+            for (int i = 0; i < 20; i++) {
+                word.setCharAt(i, (mask & 1 << i) != 0 ? 'A' : 'a');
+            }
+            vocabulary.intern(word.toString());
+        }
+        assertEquals(1, vocabulary.size());
+        assertTrue(vocabulary.spellingCount() <= 1 << 16);
+    }
+}